@@ -0,0 +1,44 @@
+package studio.devsavegg.benchmarks;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.SplittableRandom;
+
+/**
+ * Shared helpers for the benchmark states.
+ */
+final class BenchmarkSupport {
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * Benchmarks measure the data structures, not the console, so the forked JVM's stdout is
+     * discarded while a trial runs.
+     */
+    static void silenceStdout() {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    /**
+     * A client ID in the same shape the server hands out.
+     */
+    static String clientId(int i) {
+        return String.format("user-%08x", i);
+    }
+
+    /**
+     * Chat-like text of the given length, from a fixed word list and seed, so it compresses the
+     * way real messages do and is identical across runs.
+     */
+    static String text(int length) {
+        String[] words = {"the", "build", "is", "green", "again", "deploy", "room", "server", "after",
+                "lunch", "who", "broke", "tests", "merge", "review", "please", "thanks", "latency"};
+        SplittableRandom random = new SplittableRandom(42);
+        StringBuilder sb = new StringBuilder(length + 16);
+        while (sb.length() < length) {
+            sb.append(words[random.nextInt(words.length)]).append(' ');
+        }
+        sb.setLength(length);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,121 @@
+package studio.devsavegg.benchmarks;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionData;
+import io.netty.handler.codec.http.websocketx.extensions.compression.PerMessageDeflateServerExtensionHandshaker;
+import io.netty.util.ReferenceCountUtil;
+import org.openjdk.jmh.annotations.*;
+import studio.devsavegg.server.broadcaster.BroadcastService;
+import studio.devsavegg.server.broadcaster.BroadcastServiceImpl;
+import studio.devsavegg.server.broadcaster.PerMessageDeflate;
+import studio.devsavegg.server.metrics.ServerMetrics;
+import studio.devsavegg.server.registry.ClientRegistryService;
+import studio.devsavegg.server.registry.ClientRegistryServiceImpl;
+import studio.devsavegg.server.registry.RoomRegistryService;
+import studio.devsavegg.server.registry.RoomRegistryServiceImpl;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU per room broadcast with permessage-deflate, against {@link EmbeddedChannel}s whose
+ * pipelines hold the deflate encoder each mode negotiates with a browser's offer.
+ * <ul>
+ *     <li>{@code PER_CONNECTION}: the encoder deflates the frame separately for every member
+ *     (Netty's default handshake, with context takeover).</li>
+ *     <li>{@code BROADCAST}: {@link PerMessageDeflate} deflates once; members get the same
+ *     compressed bytes and the encoder passes them through.</li>
+ *     <li>{@code OFF}: no compression, as a floor.</li>
+ * </ul>
+ * {@code messageBytes} is the chat text length: at 100 the JSON frame stays under the 256-byte
+ * threshold and is sent uncompressed, at 2000 it is compressed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BroadcastCompressionBenchmark {
+
+    public enum Mode { OFF, PER_CONNECTION, BROADCAST }
+
+    @Param({"100", "1000"})
+    public int members;
+
+    @Param({"100", "2000"})
+    public int messageBytes;
+
+    @Param({"PER_CONNECTION", "BROADCAST", "OFF"})
+    public Mode mode;
+
+    /** What a browser offers: plain permessage-deflate, no parameters. */
+    private static final WebSocketExtensionData OFFER =
+            new WebSocketExtensionData("permessage-deflate", Map.of());
+
+    private BroadcastService broadcaster;
+    private EmbeddedChannel[] channels;
+    private String senderId;
+    private String roomId;
+    private String message;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        BenchmarkSupport.silenceStdout();
+        ClientRegistryService clients = new ClientRegistryServiceImpl();
+        RoomRegistryService rooms = new RoomRegistryServiceImpl();
+        PerMessageDeflate deflate = (mode == Mode.BROADCAST) ? new PerMessageDeflate(6, 256) : null;
+        broadcaster = new BroadcastServiceImpl(clients, rooms, new ServerMetrics(), deflate);
+        channels = new EmbeddedChannel[members];
+        message = BenchmarkSupport.text(messageBytes);
+
+        String inviteCode = null;
+        for (int i = 0; i < members; i++) {
+            EmbeddedChannel channel = new EmbeddedChannel(new DiscardWrites());
+            if (mode == Mode.PER_CONNECTION) {
+                channel.pipeline().addLast(new PerMessageDeflateServerExtensionHandshaker()
+                        .handshakeExtension(OFFER).newExtensionEncoder());
+            } else if (mode == Mode.BROADCAST) {
+                channel.pipeline().addLast(deflate.newHandshaker(channel)
+                        .handshakeExtension(OFFER).newExtensionEncoder());
+            }
+            channels[i] = channel;
+
+            String clientId = clients.registerClient(channel);
+            if (i == 0) {
+                senderId = clientId;
+                inviteCode = rooms.createRoom(clientId, "bench");
+                roomId = rooms.getRoomId(inviteCode);
+            } else {
+                rooms.joinRoom(clientId, inviteCode);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        broadcaster.shutdown();
+        for (EmbeddedChannel channel : channels) {
+            channel.finishAndReleaseAll();
+        }
+    }
+
+    @Benchmark
+    public void broadcastChat() {
+        broadcaster.broadcastChatMessage(senderId, roomId, message);
+    }
+
+    /**
+     * Stands in for the socket: accepts and releases every outbound frame.
+     */
+    private static final class DiscardWrites extends ChannelOutboundHandlerAdapter {
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+            ReferenceCountUtil.release(msg);
+            promise.setSuccess();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package studio.devsavegg.benchmarks;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.openjdk.jmh.annotations.*;
+import studio.devsavegg.server.resolver.BinaryCommandCodec;
+import studio.devsavegg.server.resolver.ClientCommandType;
+import studio.devsavegg.server.resolver.CommandParser;
+import studio.devsavegg.server.resolver.ParsedCommand;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing one client command, for every {@link ClientCommandType}.
+ * <ul>
+ *     <li>{@code decodeThenParseString}: the original path, decoding the frame to a String
+ *     and splitting it with a regex.</li>
+ *     <li>{@code parseBytes}: the byte-level parser the gateway runs on the I/O threads.</li>
+ *     <li>{@code decodeBinary}: the same command on the binary subprotocol.</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandParserBenchmark {
+    private static final Map<ClientCommandType, String> SAMPLES = Map.ofEntries(
+            Map.entry(ClientCommandType.CREATE_ROOM, "/create_room Weekend Plans"),
+            Map.entry(ClientCommandType.JOIN_ROOM, "/join_room 3f9a1c2e"),
+            Map.entry(ClientCommandType.LEAVE_ROOM, "/leave_room"),
+            Map.entry(ClientCommandType.SAY, "/say hey everyone, is the build green again?"),
+            Map.entry(ClientCommandType.DM, "/dm user-0a000001"),
+            Map.entry(ClientCommandType.LIST, "/list rooms"),
+            Map.entry(ClientCommandType.ADD_FRIEND, "/add_friend user-0a000002"),
+            Map.entry(ClientCommandType.ACCEPT_FRIEND, "/accept_friend user-0a000003"),
+            Map.entry(ClientCommandType.REJECT_FRIEND, "/reject_friend user-0a000004"),
+            Map.entry(ClientCommandType.REMOVE_FRIEND, "/remove_friend user-0a000005"),
+            Map.entry(ClientCommandType.SET_NAME, "/set_name Robert Smith"),
+            Map.entry(ClientCommandType.USER_INFO, "/user_info user-0a000006"),
+            Map.entry(ClientCommandType.ROOM_INFO, "/room_info"),
+            Map.entry(ClientCommandType.UNKNOWN, "/dance wildly")
+    );
+
+    @Param({"CREATE_ROOM", "JOIN_ROOM", "LEAVE_ROOM", "SAY", "DM", "LIST", "ADD_FRIEND", "ACCEPT_FRIEND",
+            "REJECT_FRIEND", "REMOVE_FRIEND", "SET_NAME", "USER_INFO", "ROOM_INFO", "UNKNOWN"})
+    public ClientCommandType command;
+
+    private final CommandParser parser = new CommandParser();
+    private ByteBuf text;
+    private ByteBuf binary;
+
+    @Setup
+    public void setup() {
+        String sample = SAMPLES.get(command);
+        text = Unpooled.directBuffer().writeBytes(sample.getBytes(StandardCharsets.UTF_8));
+
+        // The binary form carries the same argument: everything after the command name.
+        int space = sample.indexOf(' ');
+        binary = Unpooled.directBuffer();
+        BinaryCommandCodec.encode(command, (space < 0) ? null : sample.substring(space + 1), binary);
+    }
+
+    @TearDown
+    public void tearDown() {
+        text.release();
+        binary.release();
+    }
+
+    @Benchmark
+    public ParsedCommand decodeThenParseString() {
+        return parser.parse(text.toString(StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public ParsedCommand parseBytes() {
+        return parser.parse(text);
+    }
+
+    @Benchmark
+    public ParsedCommand decodeBinary() {
+        return BinaryCommandCodec.decode(binary);
+    }
+}
@@ -0,0 +1,73 @@
+package studio.devsavegg.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import studio.devsavegg.server.queue.MpscRingBuffer;
+import studio.devsavegg.server.queue.WaitStrategy;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The resolver's control queue against the {@link LinkedBlockingQueue} it replaced.
+ * <ul>
+ *     <li>{@code *OfferPoll}: one thread, an offer then a poll (the uncontended cost).</li>
+ *     <li>{@code ring} / {@code linked} groups: three producer threads offering while one
+ *     consumer polls, like several event loops feeding one resolver. A failed offer (queue
+ *     full) or an empty poll still counts as an operation, so compare the per-thread scores.</li>
+ * </ul>
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ControlQueueBenchmark {
+    private static final int CAPACITY = 65536;
+    private static final Object ELEMENT = new Object();
+
+    private final MpscRingBuffer<Object> ring = new MpscRingBuffer<>(CAPACITY, WaitStrategy.fromName("blocking"));
+    private final LinkedBlockingQueue<Object> linked = new LinkedBlockingQueue<>(CAPACITY);
+
+    @Benchmark
+    @Group("ringOfferPoll")
+    public Object ringOfferPoll() {
+        ring.offer(ELEMENT);
+        return ring.poll();
+    }
+
+    @Benchmark
+    @Group("linkedOfferPoll")
+    public Object linkedOfferPoll() {
+        linked.offer(ELEMENT);
+        return linked.poll();
+    }
+
+    @Benchmark
+    @Group("ring")
+    @GroupThreads(3)
+    public boolean ringProducer() {
+        return ring.offer(ELEMENT);
+    }
+
+    @Benchmark
+    @Group("ring")
+    @GroupThreads(1)
+    public Object ringConsumer() {
+        return ring.poll();
+    }
+
+    @Benchmark
+    @Group("linked")
+    @GroupThreads(3)
+    public boolean linkedProducer() {
+        return linked.offer(ELEMENT);
+    }
+
+    @Benchmark
+    @Group("linked")
+    @GroupThreads(1)
+    public Object linkedConsumer() {
+        return linked.poll();
+    }
+}
@@ -0,0 +1,123 @@
+package studio.devsavegg.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.util.ReferenceCountUtil;
+import org.openjdk.jmh.annotations.*;
+import studio.devsavegg.server.broadcaster.BroadcastService;
+import studio.devsavegg.server.broadcaster.BroadcastServiceImpl;
+import studio.devsavegg.server.broadcaster.ChatMessagePayload;
+import studio.devsavegg.server.broadcaster.WireFormat;
+import studio.devsavegg.server.registry.ClientRegistryService;
+import studio.devsavegg.server.registry.ClientRegistryServiceImpl;
+import studio.devsavegg.server.registry.RoomRegistryService;
+import studio.devsavegg.server.registry.RoomRegistryServiceImpl;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One room broadcast end to end, against Netty {@link EmbeddedChannel}s.
+ * <p>
+ * Each member is an EmbeddedChannel whose pipeline releases every frame it is asked to write,
+ * so the numbers cover registry lookups, encoding, batching and the pipeline write, but no
+ * socket. EmbeddedChannels each have their own event loop, which is the worst case for the
+ * per-event-loop batching in the dispatcher.
+ * <ul>
+ *     <li>{@code broadcastChat}: {@link BroadcastService#broadcastChatMessage}, with members
+ *     using {@code format} (MIXED alternates JSON and binary clients).</li>
+ *     <li>{@code encodePerMember}: the original approach, one Jackson String and one
+ *     {@code writeAndFlush} per member, for comparison.</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FanOutBenchmark {
+
+    public enum Format { JSON, BINARY, MIXED }
+
+    @Param({"10", "1000", "10000"})
+    public int members;
+
+    @Param({"JSON", "BINARY", "MIXED"})
+    public Format format;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ClientRegistryService clients;
+    private RoomRegistryService rooms;
+    private BroadcastService broadcaster;
+    private EmbeddedChannel[] channels;
+    private String senderId;
+    private String roomId;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        BenchmarkSupport.silenceStdout();
+        clients = new ClientRegistryServiceImpl();
+        rooms = new RoomRegistryServiceImpl();
+        broadcaster = new BroadcastServiceImpl(clients, rooms);
+        channels = new EmbeddedChannel[members];
+
+        String inviteCode = null;
+        for (int i = 0; i < members; i++) {
+            EmbeddedChannel channel = new EmbeddedChannel(new DiscardWrites());
+            if (format == Format.BINARY || (format == Format.MIXED && i % 2 == 1)) {
+                channel.attr(WireFormat.KEY).set(WireFormat.BINARY);
+            }
+            channels[i] = channel;
+
+            String clientId = clients.registerClient(channel);
+            if (i == 0) {
+                senderId = clientId;
+                inviteCode = rooms.createRoom(clientId, "bench");
+                roomId = rooms.getRoomId(inviteCode);
+            } else {
+                rooms.joinRoom(clientId, inviteCode);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        broadcaster.shutdown();
+        for (EmbeddedChannel channel : channels) {
+            channel.finishAndReleaseAll();
+        }
+    }
+
+    @Benchmark
+    public void broadcastChat() {
+        broadcaster.broadcastChatMessage(senderId, roomId, "hey everyone, is the build green again?");
+    }
+
+    @Benchmark
+    public void encodePerMember() throws Exception {
+        ChatMessagePayload payload = new ChatMessagePayload(senderId, rooms.getRoomName(roomId),
+                "hey everyone, is the build green again?", System.currentTimeMillis());
+        Set<String> memberIds = rooms.getRoomMembers(roomId);
+        for (String memberId : memberIds) {
+            Channel channel = clients.getChannel(memberId);
+            channel.writeAndFlush(new TextWebSocketFrame(objectMapper.writeValueAsString(payload)));
+        }
+    }
+
+    /**
+     * Stands in for the socket: accepts and releases every outbound frame.
+     */
+    private static final class DiscardWrites extends ChannelOutboundHandlerAdapter {
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+            ReferenceCountUtil.release(msg);
+            promise.setSuccess();
+        }
+    }
+}
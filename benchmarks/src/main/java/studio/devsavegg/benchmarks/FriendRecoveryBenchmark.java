@@ -0,0 +1,88 @@
+package studio.devsavegg.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import studio.devsavegg.server.friend.DurableFriendService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Startup recovery of a persisted friend graph: memory-map and load the snapshot, then
+ * replay the WAL written after it.
+ * <p>
+ * The trial setup builds {@code edges} relationships through {@link DurableFriendService}
+ * (users with about eight relationships each; every other request is accepted), takes a
+ * snapshot, then logs {@value #TAIL_RECORDS} more changes so there is a WAL tail to replay.
+ * Each measured operation is one cold {@link DurableFriendService#open} of that directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g", "-XX:+UseParallelGC"})
+public class FriendRecoveryBenchmark {
+    private static final int TAIL_RECORDS = 100_000;
+
+    @Param({"1000000", "10000000"})
+    public int edges;
+
+    private Path dir;
+    private DurableFriendService recovered;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("friend-recovery");
+        DurableFriendService friends = DurableFriendService.open(dir, Long.MAX_VALUE);
+        SplittableRandom random = new SplittableRandom(42);
+        int users = Math.max(2, edges / 4);
+
+        int created = 0;
+        while (created < edges) {
+            String a = BenchmarkSupport.clientId(random.nextInt(users));
+            String b = BenchmarkSupport.clientId(random.nextInt(users));
+            if (!a.equals(b) && friends.sendFriendRequest(a, b)) {
+                if ((created & 1) == 0) {
+                    friends.acceptFriendRequest(b, a);
+                }
+                created++;
+            }
+        }
+        friends.checkpoint().join();
+
+        for (int i = 0; i < TAIL_RECORDS; i++) {
+            String a = BenchmarkSupport.clientId(users + i);
+            String b = BenchmarkSupport.clientId(random.nextInt(users));
+            friends.sendFriendRequest(a, b);
+        }
+        friends.shutdown();
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() {
+        if (recovered != null) {
+            recovered.shutdown();
+            recovered = null; // Let the graph go before the next iteration builds another
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public DurableFriendService recover() throws IOException {
+        recovered = DurableFriendService.open(dir, Long.MAX_VALUE);
+        return recovered;
+    }
+}
@@ -0,0 +1,87 @@
+package studio.devsavegg.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import studio.devsavegg.server.friend.FriendService;
+import studio.devsavegg.server.friend.FriendServiceImpl;
+import studio.devsavegg.server.friend.FriendshipStatus;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Friend listings for one user inside a large social graph.
+ * <p>
+ * {@code userCount} users each get {@value #BACKGROUND_DEGREE} random accepted friendships.
+ * The probe user then gets {@code probeDegree} relationships: half accepted, a quarter
+ * incoming requests and a quarter outgoing. Listings should cost O(probeDegree) whatever
+ * the size of the graph. The seed is fixed, so every run builds the same graph.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class FriendServiceBenchmark {
+    private static final int BACKGROUND_DEGREE = 8;
+
+    @Param({"1000", "100000"})
+    public int userCount;
+
+    @Param({"10", "1000"})
+    public int probeDegree;
+
+    private FriendService friends;
+    private final String probe = BenchmarkSupport.clientId(Integer.MAX_VALUE);
+    private String probeFriend;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        friends = new FriendServiceImpl();
+        Random random = new Random(42);
+
+        for (int u = 0; u < userCount; u++) {
+            String user = BenchmarkSupport.clientId(u);
+            for (int d = 0; d < BACKGROUND_DEGREE / 2; d++) {
+                String other = BenchmarkSupport.clientId(random.nextInt(userCount));
+                if (!other.equals(user) && friends.sendFriendRequest(user, other)) {
+                    friends.acceptFriendRequest(other, user);
+                }
+            }
+        }
+
+        for (int i = 0; i < probeDegree; i++) {
+            String other = BenchmarkSupport.clientId(userCount + i);
+            switch (i % 4) {
+                case 0, 1 -> {
+                    friends.sendFriendRequest(probe, other);
+                    friends.acceptFriendRequest(other, probe);
+                }
+                case 2 -> friends.sendFriendRequest(other, probe);
+                default -> friends.sendFriendRequest(probe, other);
+            }
+        }
+        probeFriend = BenchmarkSupport.clientId(userCount);
+    }
+
+    @Benchmark
+    public Set<String> listFriends() {
+        return friends.listFriends(probe);
+    }
+
+    @Benchmark
+    public Set<String> listPendingIncoming() {
+        return friends.listPendingIncomingRequests(probe);
+    }
+
+    @Benchmark
+    public Set<String> listPendingOutgoing() {
+        return friends.listPendingOutgoingRequests(probe);
+    }
+
+    @Benchmark
+    public FriendshipStatus friendshipStatus() {
+        return friends.getFriendshipStatus(probe, probeFriend);
+    }
+}
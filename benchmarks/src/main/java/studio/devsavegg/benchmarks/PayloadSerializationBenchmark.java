@@ -0,0 +1,167 @@
+package studio.devsavegg.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonSerializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.*;
+import studio.devsavegg.server.broadcaster.BinaryPayloadCodec;
+import studio.devsavegg.server.broadcaster.ChatMessagePayload;
+import studio.devsavegg.server.broadcaster.DirectMessagePayload;
+import studio.devsavegg.server.broadcaster.ErrorPayload;
+import studio.devsavegg.server.broadcaster.JsonPayloadEncoder;
+import studio.devsavegg.server.broadcaster.ServerPayload;
+import studio.devsavegg.server.broadcaster.SystemMessagePayload;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding (and decoding) one outbound payload, for each payload type.
+ * <ul>
+ *     <li>{@code jacksonString}: the original path, {@code writeValueAsString} and then a UTF-8 copy into the frame.</li>
+ *     <li>{@code jacksonStream}: Jackson writing straight into the pooled buffer. Not what the
+ *     server sends: this generator escapes emoji and other supplementary characters.</li>
+ *     <li>{@code gson}: Gson (already on the classpath) with an equivalent "type" discriminator.</li>
+ *     <li>{@code handRolled}: {@link JsonPayloadEncoder}, what the server uses for JSON clients.</li>
+ *     <li>{@code binary}: {@link BinaryPayloadCodec}, for binary-subprotocol clients.</li>
+ * </ul>
+ * Every encode allocates from, and releases to, the pooled allocator, as the server does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PayloadSerializationBenchmark {
+
+    public enum Kind { CHAT, DM, SYSTEM, ERROR }
+
+    @Param({"CHAT", "DM", "SYSTEM", "ERROR"})
+    public Kind kind;
+
+    private final ByteBufAllocator allocator = PooledByteBufAllocator.DEFAULT;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private static final Gson PLAIN_GSON = new GsonBuilder().disableHtmlEscaping().serializeNulls().create();
+
+    private final Gson gson = new GsonBuilder()
+            .disableHtmlEscaping()
+            .serializeNulls()
+            .registerTypeHierarchyAdapter(ServerPayload.class, (JsonSerializer<ServerPayload>) (src, type, context) -> {
+                JsonObject json = new JsonObject();
+                json.addProperty("type", typeName(src));
+                for (Map.Entry<String, JsonElement> field : PLAIN_GSON.toJsonTree(src).getAsJsonObject().entrySet()) {
+                    json.add(field.getKey(), field.getValue());
+                }
+                return json;
+            })
+            .create();
+
+    private ServerPayload payload;
+    private ByteBuf json;
+    private ByteBuf binary;
+
+    @Setup
+    public void setup() {
+        long timestamp = 1_792_211_289_361L;
+        payload = switch (kind) {
+            case CHAT -> new ChatMessagePayload("user-0a000001", "lobby", "hey everyone, is the build green again?", timestamp);
+            case DM -> new DirectMessagePayload("user-0a000001", "user-0a000002", "are you coming to the standup?", timestamp);
+            case SYSTEM -> new SystemMessagePayload("NAME_CHANGE", "lobby", "User 'bob' (user-0a000001) is now known as 'robert'.",
+                    Map.of("userId", "user-0a000001", "oldName", "bob", "newName", "robert"));
+            case ERROR -> new ErrorPayload(400, "/dance wildly", "Unknown command. Type /help for commands.");
+        };
+
+        json = allocator.buffer();
+        JsonPayloadEncoder.encode(payload, json);
+        binary = allocator.buffer();
+        BinaryPayloadCodec.encode(payload, binary);
+    }
+
+    @TearDown
+    public void tearDown() {
+        json.release();
+        binary.release();
+    }
+
+    // --- Encoding ---
+
+    @Benchmark
+    public int jacksonString() throws IOException {
+        String text = objectMapper.writeValueAsString(payload);
+        ByteBuf buffer = allocator.buffer();
+        buffer.writeCharSequence(text, StandardCharsets.UTF_8);
+        return release(buffer);
+    }
+
+    @Benchmark
+    public int jacksonStream() throws IOException {
+        ByteBuf buffer = allocator.buffer();
+        objectMapper.writeValue((OutputStream) new ByteBufOutputStream(buffer), payload);
+        return release(buffer);
+    }
+
+    @Benchmark
+    public int gson() throws IOException {
+        ByteBuf buffer = allocator.buffer();
+        Writer writer = new OutputStreamWriter(new ByteBufOutputStream(buffer), StandardCharsets.UTF_8);
+        gson.toJson(payload, ServerPayload.class, writer);
+        writer.flush();
+        return release(buffer);
+    }
+
+    @Benchmark
+    public int handRolled() {
+        ByteBuf buffer = allocator.buffer();
+        JsonPayloadEncoder.encode(payload, buffer);
+        return release(buffer);
+    }
+
+    @Benchmark
+    public int binary() {
+        ByteBuf buffer = allocator.buffer();
+        BinaryPayloadCodec.encode(payload, buffer);
+        return release(buffer);
+    }
+
+    // --- Decoding (what a client pays) ---
+
+    @Benchmark
+    public ServerPayload decodeJackson() throws IOException {
+        return objectMapper.readValue((InputStream) new ByteBufInputStream(json.duplicate()), ServerPayload.class);
+    }
+
+    @Benchmark
+    public ServerPayload decodeBinary() {
+        return BinaryPayloadCodec.decode(binary.duplicate());
+    }
+
+    private static int release(ByteBuf buffer) {
+        int length = buffer.readableBytes();
+        buffer.release();
+        return length;
+    }
+
+    private static String typeName(ServerPayload payload) {
+        return switch (payload) {
+            case ChatMessagePayload ignored -> "CHAT";
+            case DirectMessagePayload ignored -> "DM";
+            case SystemMessagePayload ignored -> "SYSTEM";
+            case ErrorPayload ignored -> "ERROR";
+        };
+    }
+}
@@ -0,0 +1,123 @@
+package studio.devsavegg.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import studio.devsavegg.server.registry.RegistrySnapshots;
+import studio.devsavegg.server.registry.RoomDirectory;
+import studio.devsavegg.server.registry.RoomRegistryService;
+import studio.devsavegg.server.registry.RoomRegistryServiceImpl;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Room membership changes against a registry that is already populated.
+ * <p>
+ * The registry holds {@code roomCount} rooms of {@code membersPerRoom} members each. A probe
+ * client joins and leaves rooms on top of that, so the numbers show how each operation
+ * scales with the total number of rooms.
+ * <ul>
+ *     <li>{@code joinThenLeave}: one join plus one leave, cycling through the rooms.</li>
+ *     <li>{@code joinRoomsThenRemoveFromAll}: the probe joins {@code probeRooms} rooms, then
+ *     {@code removeClientFromAllRooms} (the disconnect path).</li>
+ *     <li>{@code listRoomsPage}: one 50-room page of the directory by member count, from the
+ *     middle (what {@code /list rooms} costs, whatever the room count).</li>
+ * </ul>
+ * {@code snapshots} shows what publishing {@link RegistrySnapshots} for the query workers costs:
+ * {@code off} publishes nothing, {@code each} publishes every change on its own (any thread that
+ * is not a resolver), and {@code batched} publishes once every {@value #PASS} operations, as a
+ * resolver does once per drain pass.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class RoomRegistryBenchmark {
+    private static final int PASS = 64;
+
+    @Param({"100", "10000"})
+    public int roomCount;
+
+    @Param({"10", "100"})
+    public int membersPerRoom;
+
+    @Param({"1", "50"})
+    public int probeRooms;
+
+    @Param({"off", "each", "batched"})
+    public String snapshots;
+
+    private RoomRegistryService registry;
+    private RegistrySnapshots published; // Null when snapshots=off
+    private String[] roomIds;
+    private String[] inviteCodes;
+    private String middleCursor;
+    private final String probe = BenchmarkSupport.clientId(Integer.MAX_VALUE);
+    private int next;
+    private int sincePublish;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        BenchmarkSupport.silenceStdout();
+        published = snapshots.equals("off") ? null : new RegistrySnapshots();
+        if (snapshots.equals("batched")) {
+            published.batchCurrentThread(); // Single-threaded, so setup runs on the benchmark thread
+        }
+        registry = new RoomRegistryServiceImpl(published);
+        roomIds = new String[roomCount];
+        inviteCodes = new String[roomCount];
+
+        int client = 0;
+        for (int r = 0; r < roomCount; r++) {
+            inviteCodes[r] = registry.createRoom(BenchmarkSupport.clientId(client++), "room-" + r);
+            roomIds[r] = registry.getRoomId(inviteCodes[r]);
+            for (int m = 1; m < membersPerRoom; m++) {
+                registry.joinRoom(BenchmarkSupport.clientId(client++), inviteCodes[r]);
+            }
+        }
+
+        String cursor = null;
+        for (int page = 0; page < roomCount / 100; page++) {
+            cursor = registry.listRooms(RoomDirectory.Sort.MEMBERS, cursor, 50).nextCursor();
+        }
+        middleCursor = cursor;
+        if (published != null) {
+            published.publish();
+        }
+    }
+
+    @Benchmark
+    public void joinThenLeave() {
+        int r = nextRoom();
+        registry.joinRoom(probe, inviteCodes[r]);
+        registry.leaveRoom(probe, roomIds[r]);
+        endOperation();
+    }
+
+    @Benchmark
+    public void joinRoomsThenRemoveFromAll() {
+        for (int i = 0; i < probeRooms; i++) {
+            registry.joinRoom(probe, inviteCodes[nextRoom()]);
+        }
+        registry.removeClientFromAllRooms(probe);
+        endOperation();
+    }
+
+    @Benchmark
+    public RoomDirectory.Page listRoomsPage() {
+        return registry.listRooms(RoomDirectory.Sort.MEMBERS, middleCursor, 50);
+    }
+
+    private void endOperation() {
+        if (published != null && ++sincePublish == PASS) {
+            sincePublish = 0;
+            published.publish(); // No-op unless this thread batches
+        }
+    }
+
+    private int nextRoom() {
+        int r = next;
+        next = (r + 1 == roomCount) ? 0 : r + 1;
+        return r;
+    }
+}
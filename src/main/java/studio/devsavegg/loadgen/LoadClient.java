@@ -0,0 +1,226 @@
+package studio.devsavegg.loadgen;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketClientProtocolHandler;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import studio.devsavegg.server.broadcaster.BinaryPayloadCodec;
+import studio.devsavegg.server.broadcaster.ChatMessagePayload;
+import studio.devsavegg.server.broadcaster.DirectMessagePayload;
+import studio.devsavegg.server.broadcaster.ErrorPayload;
+import studio.devsavegg.server.broadcaster.ServerPayload;
+import studio.devsavegg.server.broadcaster.SystemMessagePayload;
+import studio.devsavegg.server.resolver.BinaryCommandCodec;
+import studio.devsavegg.server.resolver.ClientCommandType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * One simulated chat user of a {@link LoadGenerator} run.
+ * <p>
+ * The setup steps (handshake, welcome, create/join, DM start) are driven one at a time through
+ * {@link #expect(String)}: the next matching system message completes the returned future, and
+ * an error fails it. During the run, every chat or DM delivery whose message carries a send
+ * timestamp ({@link #LATENCY_PREFIX}) is recorded in the shared {@link LoadStats}.
+ */
+final class LoadClient extends SimpleChannelInboundHandler<WebSocketFrame> {
+    /**
+     * Prefix of the messages sent by the generator; the rest is the sender's {@link System#nanoTime()}.
+     */
+    static final String LATENCY_PREFIX = "L ";
+
+    private static final String WELCOME_ID_MARKER = "Your ID is: ";
+    private static final String INVITE_CODE_MARKER = "Invite code: ";
+
+    private final ObjectMapper objectMapper;
+    private final LoadStats stats;
+    private final boolean binary;
+
+    private final CompletableFuture<Channel> handshake = new CompletableFuture<>();
+    private final CompletableFuture<String> welcome;
+    private volatile Channel channel;
+    private volatile String clientId;
+    private volatile String expectedSubType;
+    private volatile CompletableFuture<String> pending;
+
+    LoadClient(ObjectMapper objectMapper, LoadStats stats, boolean binary) {
+        this.objectMapper = objectMapper;
+        this.stats = stats;
+        this.binary = binary;
+        // The welcome is sent as soon as the server registers us, so listen for it from the start.
+        this.welcome = expect("WELCOME");
+    }
+
+    // --- Setup Steps ---
+
+    CompletableFuture<Channel> handshakeFuture() {
+        return handshake;
+    }
+
+    /**
+     * Waits for the next system message of {@code subType}. The future's value is the client ID
+     * for WELCOME, the invite code for ROOM_CREATED, and the message text otherwise.
+     */
+    CompletableFuture<String> expect(String subType) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        this.pending = future;
+        this.expectedSubType = subType;
+        return future;
+    }
+
+    /**
+     * Completes with the client ID the server assigned.
+     */
+    CompletableFuture<String> welcome() {
+        return welcome;
+    }
+
+    String clientId() {
+        return clientId;
+    }
+
+    Channel channel() {
+        return channel;
+    }
+
+    /**
+     * Sends a command as text ({@code "join_room ABC123"}) or as a binary frame, depending on
+     * the negotiated format. {@code argument} may be null.
+     */
+    void send(ClientCommandType command, String argument) {
+        Channel ch = channel;
+        if (ch == null || !ch.isActive()) {
+            return;
+        }
+        if (binary) {
+            ByteBuf content = ch.alloc().buffer();
+            BinaryCommandCodec.encode(command, argument, content);
+            ch.writeAndFlush(new BinaryWebSocketFrame(content), ch.voidPromise());
+        } else {
+            String text = (argument == null) ? command.name().toLowerCase() : command.name().toLowerCase() + " " + argument;
+            ch.writeAndFlush(new TextWebSocketFrame(text), ch.voidPromise());
+        }
+    }
+
+    // --- Netty Events ---
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt == WebSocketClientProtocolHandler.ClientHandshakeStateEvent.HANDSHAKE_COMPLETE) {
+            channel = ctx.channel();
+            handshake.complete(ctx.channel());
+        } else if (evt == WebSocketClientProtocolHandler.ClientHandshakeStateEvent.HANDSHAKE_TIMEOUT) {
+            handshake.completeExceptionally(new IllegalStateException("Handshake timed out"));
+        }
+        super.userEventTriggered(ctx, evt);
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, WebSocketFrame frame) throws Exception {
+        long receivedNanos = System.nanoTime();
+        ServerPayload payload;
+        try {
+            payload = decode(frame);
+        } catch (IOException | IllegalArgumentException e) {
+            stats.decodeErrors.increment();
+            return;
+        }
+        if (payload == null) {
+            return;
+        }
+
+        switch (payload) {
+            case ChatMessagePayload chat -> onMessage(chat.message(), chat.timestamp(), receivedNanos);
+            case DirectMessagePayload dm -> onMessage(dm.message(), dm.timestamp(), receivedNanos);
+            case SystemMessagePayload system -> onSystem(system);
+            case ErrorPayload error -> onError(error);
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        handshake.completeExceptionally(new IllegalStateException("Connection closed"));
+        CompletableFuture<String> future = pending;
+        if (future != null) {
+            future.completeExceptionally(new IllegalStateException("Connection closed"));
+        }
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        handshake.completeExceptionally(cause);
+        ctx.close();
+    }
+
+    // --- Payload Handling ---
+
+    private ServerPayload decode(WebSocketFrame frame) throws IOException {
+        if (frame instanceof BinaryWebSocketFrame) {
+            return BinaryPayloadCodec.decode(frame.content());
+        }
+        if (frame instanceof TextWebSocketFrame) {
+            return objectMapper.readValue((InputStream) new ByteBufInputStream(frame.content()), ServerPayload.class);
+        }
+        return null;
+    }
+
+    private void onMessage(String message, long serverTimestampMillis, long receivedNanos) {
+        stats.deliveries.increment();
+        if (message == null || !message.startsWith(LATENCY_PREFIX)) {
+            return;
+        }
+        try {
+            long sentNanos = Long.parseLong(message, LATENCY_PREFIX.length(), message.length(), 10);
+            stats.sendToReceiveMicros.record((receivedNanos - sentNanos) / 1_000);
+        } catch (NumberFormatException e) {
+            stats.decodeErrors.increment();
+            return;
+        }
+        stats.stampToReceiveMicros.record((System.currentTimeMillis() - serverTimestampMillis) * 1_000);
+    }
+
+    private void onSystem(SystemMessagePayload system) {
+        CompletableFuture<String> future = pending;
+        if (future == null || future.isDone() || !system.subType().equals(expectedSubType)) {
+            return;
+        }
+        String message = system.message();
+        switch (system.subType()) {
+            case "WELCOME" -> {
+                clientId = after(message, WELCOME_ID_MARKER);
+                future.complete(clientId);
+            }
+            case "ROOM_CREATED" -> future.complete(after(message, INVITE_CODE_MARKER));
+            // Other members' joins are USER_JOIN as well; only our own confirmation counts.
+            case "USER_JOIN" -> {
+                if (message.startsWith("Successfully joined")) {
+                    future.complete(message);
+                }
+            }
+            default -> future.complete(message);
+        }
+    }
+
+    private void onError(ErrorPayload error) {
+        stats.serverErrors.increment();
+        CompletableFuture<String> future = pending;
+        if (future != null && !future.isDone()) {
+            future.completeExceptionally(new IllegalStateException(
+                    "Server error " + error.errorCode() + " for " + error.command() + ": " + error.message()));
+        }
+    }
+
+    private static String after(String message, String marker) {
+        int at = message.lastIndexOf(marker);
+        return (at < 0) ? null : message.substring(at + marker.length()).trim();
+    }
+}
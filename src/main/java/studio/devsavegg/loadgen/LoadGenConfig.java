@@ -0,0 +1,98 @@
+package studio.devsavegg.loadgen;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Settings for a {@link LoadGenerator} run, given as {@code key=value} arguments.
+ *
+ * @param host               Server host (default {@code 127.0.0.1}).
+ * @param port               Server port (default 8080).
+ * @param connections        How many WebSocket clients to open.
+ * @param connectConcurrency How many handshakes may be in flight at once.
+ * @param rooms              How many rooms the room clients are spread over.
+ * @param dmClients          How many clients (an even number) pair up for DM traffic instead of joining a room.
+ * @param chatRate           Room messages per second, across all room clients.
+ * @param dmRate             Direct messages per second, across all DM clients.
+ * @param durationSeconds    How long to send traffic for.
+ * @param binary             Negotiate the binary subprotocol instead of JSON text.
+ * @param transport          Client I/O transport: auto, io_uring, epoll or nio.
+ */
+public record LoadGenConfig(
+        String host,
+        int port,
+        int connections,
+        int connectConcurrency,
+        int rooms,
+        int dmClients,
+        int chatRate,
+        int dmRate,
+        int durationSeconds,
+        boolean binary,
+        String transport
+) {
+    public static final LoadGenConfig DEFAULT = new LoadGenConfig("127.0.0.1", 8080, 1000, 200, 10, 100, 1000, 100, 30, false, "auto");
+
+    private static final Set<String> KEYS = Set.of(
+            "host", "port", "connections", "connectConcurrency", "rooms", "dmClients",
+            "chatRate", "dmRate", "duration", "binary", "transport");
+
+    /**
+     * Parses {@code key=value} arguments (for example {@code connections=5000 chatRate=2000}) over the defaults.
+     */
+    public static LoadGenConfig fromArgs(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("Expected key=value, got: " + arg);
+            }
+            String key = arg.substring(0, eq);
+            if (!KEYS.contains(key)) {
+                throw new IllegalArgumentException("Unknown setting: " + key);
+            }
+            values.put(key, arg.substring(eq + 1));
+        }
+
+        LoadGenConfig c = new LoadGenConfig(
+                values.getOrDefault("host", DEFAULT.host),
+                intValue(values, "port", DEFAULT.port),
+                intValue(values, "connections", DEFAULT.connections),
+                intValue(values, "connectConcurrency", DEFAULT.connectConcurrency),
+                intValue(values, "rooms", DEFAULT.rooms),
+                intValue(values, "dmClients", DEFAULT.dmClients),
+                intValue(values, "chatRate", DEFAULT.chatRate),
+                intValue(values, "dmRate", DEFAULT.dmRate),
+                intValue(values, "duration", DEFAULT.durationSeconds),
+                Boolean.parseBoolean(values.getOrDefault("binary", String.valueOf(DEFAULT.binary))),
+                values.getOrDefault("transport", DEFAULT.transport)
+        );
+        c.validate();
+        return c;
+    }
+
+    private static int intValue(Map<String, String> values, String key, int defaultValue) {
+        String value = values.get(key);
+        return (value != null) ? Integer.parseInt(value) : defaultValue;
+    }
+
+    private void validate() {
+        if (connections < 1 || connectConcurrency < 1 || rooms < 1 || durationSeconds < 1) {
+            throw new IllegalArgumentException("connections, connectConcurrency, rooms and duration must be positive");
+        }
+        if (dmClients < 0 || dmClients % 2 != 0) {
+            throw new IllegalArgumentException("dmClients must be an even number, got " + dmClients);
+        }
+        if (connections - dmClients < rooms) {
+            throw new IllegalArgumentException("Need at least one room client per room: connections - dmClients < rooms");
+        }
+    }
+
+    /**
+     * The clients that chat in rooms; the rest pair up for DMs.
+     */
+    public int roomClients() {
+        return connections - dmClients;
+    }
+}
@@ -0,0 +1,331 @@
+package studio.devsavegg.loadgen;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.http.EmptyHttpHeaders;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.websocketx.WebSocketClientHandshakerFactory;
+import io.netty.handler.codec.http.websocketx.WebSocketClientProtocolHandler;
+import io.netty.handler.codec.http.websocketx.WebSocketVersion;
+import studio.devsavegg.server.broadcaster.WireFormat;
+import studio.devsavegg.server.resolver.ClientCommandType;
+import studio.devsavegg.server.transport.Transport;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A WebSocket load generator for the chat server, meant to run against a local server on loopback.
+ * <p>
+ * A run has three phases:
+ * <ol>
+ *     <li><b>Connect:</b> opens {@code connections} clients to {@code /chat?username=...}, at most
+ *     {@code connectConcurrency} handshakes at a time, and waits for each WELCOME.</li>
+ *     <li><b>Setup:</b> the room clients create {@code rooms} rooms and join them by invite code;
+ *     the DM clients pair up and open a DM session with each other.</li>
+ *     <li><b>Traffic:</b> one sender thread sends {@code say} messages at {@code chatRate} and
+ *     {@code dmRate} per second, open loop (the schedule never waits for replies).</li>
+ * </ol>
+ * Each message carries the sender's {@link System#nanoTime()}, so every delivery yields a
+ * send-to-receive latency. The payload's server {@code timestamp} gives a second, millisecond
+ * resolution latency for the server-to-client leg.
+ * <p>
+ * Usage: {@code LoadGenerator [key=value ...]}, see {@link LoadGenConfig}.
+ */
+public class LoadGenerator {
+    private static final long SETUP_TIMEOUT_SECONDS = 60;
+    private static final long DRAIN_MILLIS = 2_000;
+
+    private final LoadGenConfig config;
+    private final LoadStats stats = new LoadStats();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public LoadGenerator(LoadGenConfig config) {
+        this.config = config;
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadGenConfig config;
+        try {
+            config = LoadGenConfig.fromArgs(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("[LoadGen] " + e.getMessage());
+            System.exit(2);
+            return;
+        }
+        new LoadGenerator(config).run();
+    }
+
+    public void run() throws Exception {
+        System.out.println("[LoadGen] " + config);
+        Transport transport = Transport.select(config.transport());
+        EventLoopGroup group = transport.newEventLoopGroup(0);
+        System.out.println("[LoadGen] Client transport: " + transport);
+        List<LoadClient> clients = new ArrayList<>();
+
+        try {
+            // --- Connect ---
+            long connectStart = System.nanoTime();
+            clients = connectAll(transport, group);
+            double connectSeconds = (System.nanoTime() - connectStart) / 1e9;
+            System.out.printf("[LoadGen] Connected %d/%d clients in %.2f s (%.0f conn/s), %d failed%n",
+                    clients.size(), config.connections(), connectSeconds, clients.size() / connectSeconds,
+                    stats.connectFailures.sum());
+
+            // --- Setup ---
+            List<LoadClient> roomClients = setUpRooms(clients.subList(0, Math.min(clients.size(), config.roomClients())));
+            List<LoadClient> dmClients = setUpDirectMessages(clients.subList(Math.min(clients.size(), config.roomClients()), clients.size()));
+            System.out.printf("[LoadGen] %d clients in %d rooms, %d clients in DM pairs%n",
+                    roomClients.size(), config.rooms(), dmClients.size());
+
+            // --- Traffic ---
+            long trafficStart = System.nanoTime();
+            sendTraffic(roomClients, dmClients);
+            double trafficSeconds = (System.nanoTime() - trafficStart) / 1e9;
+            Thread.sleep(DRAIN_MILLIS);
+
+            report(connectSeconds, clients.size(), trafficSeconds);
+        } finally {
+            for (LoadClient client : clients) {
+                Channel channel = client.channel();
+                if (channel != null) {
+                    channel.close();
+                }
+            }
+            group.shutdownGracefully().syncUninterruptibly();
+        }
+    }
+
+    // --- Connect Phase ---
+
+    private List<LoadClient> connectAll(Transport transport, EventLoopGroup group) throws InterruptedException {
+        Bootstrap bootstrap = new Bootstrap()
+                .group(group)
+                .channel(transport.socketChannelClass())
+                .option(ChannelOption.TCP_NODELAY, true)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 10_000);
+
+        Semaphore inFlight = new Semaphore(config.connectConcurrency());
+        List<CompletableFuture<LoadClient>> futures = new ArrayList<>(config.connections());
+
+        for (int i = 0; i < config.connections(); i++) {
+            inFlight.acquire();
+            CompletableFuture<LoadClient> future = connect(bootstrap, "load-" + i);
+            future.whenComplete((client, error) -> inFlight.release());
+            futures.add(future);
+        }
+
+        List<LoadClient> connected = new ArrayList<>(futures.size());
+        for (CompletableFuture<LoadClient> future : futures) {
+            try {
+                connected.add(future.get(SETUP_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            } catch (Exception e) {
+                stats.connectFailures.increment();
+            }
+        }
+        return connected;
+    }
+
+    private CompletableFuture<LoadClient> connect(Bootstrap bootstrap, String username) {
+        URI uri = URI.create("ws://" + config.host() + ":" + config.port() + "/chat?username=" + username);
+        String subprotocol = config.binary() ? WireFormat.BINARY_SUBPROTOCOL : null;
+        LoadClient client = new LoadClient(objectMapper, stats, config.binary());
+        long start = System.nanoTime();
+
+        bootstrap.clone()
+                .handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline().addLast(new HttpClientCodec());
+                        ch.pipeline().addLast(new HttpObjectAggregator(65536));
+                        ch.pipeline().addLast(new WebSocketClientProtocolHandler(
+                                WebSocketClientHandshakerFactory.newHandshaker(
+                                        uri, WebSocketVersion.V13, subprotocol, false, EmptyHttpHeaders.INSTANCE, 65536)));
+                        ch.pipeline().addLast(client);
+                    }
+                })
+                .connect(config.host(), config.port())
+                .addListener(f -> {
+                    if (!f.isSuccess()) {
+                        client.handshakeFuture().completeExceptionally(f.cause());
+                        client.welcome().completeExceptionally(f.cause());
+                    }
+                });
+
+        return client.handshakeFuture()
+                .thenCompose(channel -> client.welcome())
+                .thenApply(clientId -> {
+                    stats.connectMicros.record((System.nanoTime() - start) / 1_000);
+                    return client;
+                });
+    }
+
+    // --- Setup Phase ---
+
+    /**
+     * The first {@code rooms} clients each create a room; every other room client joins room
+     * {@code index % rooms} by its invite code. Returns the clients that ended up in a room.
+     */
+    private List<LoadClient> setUpRooms(List<LoadClient> candidates) throws InterruptedException {
+        int rooms = Math.min(config.rooms(), candidates.size());
+        List<CompletableFuture<String>> created = new ArrayList<>(rooms);
+        for (int r = 0; r < rooms; r++) {
+            LoadClient creator = candidates.get(r);
+            created.add(creator.expect("ROOM_CREATED"));
+            creator.send(ClientCommandType.CREATE_ROOM, "load-room-" + r);
+        }
+
+        String[] inviteCodes = new String[rooms];
+        List<LoadClient> ready = new ArrayList<>(candidates.size());
+        for (int r = 0; r < rooms; r++) {
+            inviteCodes[r] = await(created.get(r), "create_room");
+            if (inviteCodes[r] != null) {
+                ready.add(candidates.get(r));
+            }
+        }
+
+        List<LoadClient> joiners = new ArrayList<>();
+        List<CompletableFuture<String>> joined = new ArrayList<>();
+        for (int i = rooms; i < candidates.size(); i++) {
+            String code = inviteCodes[i % rooms];
+            if (code == null) {
+                continue;
+            }
+            LoadClient joiner = candidates.get(i);
+            joiners.add(joiner);
+            joined.add(joiner.expect("USER_JOIN"));
+            joiner.send(ClientCommandType.JOIN_ROOM, code);
+        }
+        for (int i = 0; i < joiners.size(); i++) {
+            if (await(joined.get(i), "join_room") != null) {
+                ready.add(joiners.get(i));
+            }
+        }
+        return ready;
+    }
+
+    /**
+     * Pairs up the clients and has each side of a pair {@code dm} the other, which makes their
+     * later {@code say} messages DMs. Returns the clients whose DM session started.
+     */
+    private List<LoadClient> setUpDirectMessages(List<LoadClient> candidates) throws InterruptedException {
+        List<LoadClient> pairs = new ArrayList<>();
+        List<CompletableFuture<String>> started = new ArrayList<>();
+        for (int i = 0; i + 1 < candidates.size(); i += 2) {
+            LoadClient a = candidates.get(i);
+            LoadClient b = candidates.get(i + 1);
+            pairs.add(a);
+            pairs.add(b);
+            started.add(a.expect("DM_START"));
+            started.add(b.expect("DM_START"));
+            a.send(ClientCommandType.DM, b.clientId());
+            b.send(ClientCommandType.DM, a.clientId());
+        }
+
+        List<LoadClient> ready = new ArrayList<>(pairs.size());
+        for (int i = 0; i < pairs.size(); i++) {
+            if (await(started.get(i), "dm") != null) {
+                ready.add(pairs.get(i));
+            }
+        }
+        return ready;
+    }
+
+    private String await(CompletableFuture<String> future, String step) throws InterruptedException {
+        try {
+            return future.get(SETUP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            System.err.println("[LoadGen] Timed out waiting for " + step);
+        } catch (Exception e) {
+            System.err.println("[LoadGen] " + step + " failed: " + e.getCause());
+        }
+        return null;
+    }
+
+    // --- Traffic Phase ---
+
+    /**
+     * Sends on a fixed schedule: by time {@code t} exactly {@code rate * t} messages of each kind
+     * are due, so a stall is caught up with a burst instead of silently lowering the rate.
+     */
+    private void sendTraffic(List<LoadClient> roomClients, List<LoadClient> dmClients) {
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(config.durationSeconds());
+        long nextReport = start + TimeUnit.SECONDS.toNanos(1);
+        long chatSent = 0;
+        long dmSent = 0;
+        int chatCursor = 0;
+        int dmCursor = 0;
+
+        long now;
+        while ((now = System.nanoTime()) < end) {
+            long elapsed = now - start;
+            if (!roomClients.isEmpty()) {
+                long chatDue = elapsed * config.chatRate() / 1_000_000_000L;
+                for (; chatSent < chatDue; chatSent++) {
+                    sendTimed(roomClients.get(chatCursor));
+                    chatCursor = (chatCursor + 1 == roomClients.size()) ? 0 : chatCursor + 1;
+                }
+            }
+            if (!dmClients.isEmpty()) {
+                long dmDue = elapsed * config.dmRate() / 1_000_000_000L;
+                for (; dmSent < dmDue; dmSent++) {
+                    sendTimed(dmClients.get(dmCursor));
+                    dmCursor = (dmCursor + 1 == dmClients.size()) ? 0 : dmCursor + 1;
+                }
+            }
+
+            if (now >= nextReport) {
+                System.out.printf("[LoadGen] t=%ds sent=%d delivered=%d p99=%s errors=%d%n",
+                        TimeUnit.NANOSECONDS.toSeconds(elapsed), stats.messagesSent.sum(), stats.deliveries.sum(),
+                        millis(stats.sendToReceiveMicros.percentile(99)), stats.serverErrors.sum());
+                nextReport += TimeUnit.SECONDS.toNanos(1);
+            }
+            LockSupport.parkNanos(100_000);
+        }
+    }
+
+    private void sendTimed(LoadClient client) {
+        client.send(ClientCommandType.SAY, LoadClient.LATENCY_PREFIX + System.nanoTime());
+        stats.messagesSent.increment();
+    }
+
+    // --- Report ---
+
+    private void report(double connectSeconds, int connected, double trafficSeconds) {
+        System.out.println("[LoadGen] ---------------- Results ----------------");
+        System.out.printf("[LoadGen] Connect:     %d clients, %.0f conn/s, p50=%s p99=%s max=%s, %d failed%n",
+                connected, connected / connectSeconds,
+                millis(stats.connectMicros.percentile(50)), millis(stats.connectMicros.percentile(99)),
+                millis(stats.connectMicros.max()), stats.connectFailures.sum());
+        System.out.printf("[LoadGen] Throughput:  %.0f msg/s sent, %.0f msg/s delivered%n",
+                stats.messagesSent.sum() / trafficSeconds, stats.deliveries.sum() / trafficSeconds);
+        printLatency("Send->recv", stats.sendToReceiveMicros);
+        printLatency("Stamp->recv", stats.stampToReceiveMicros);
+        System.out.printf("[LoadGen] Errors:      %d server, %d undecodable%n",
+                stats.serverErrors.sum(), stats.decodeErrors.sum());
+    }
+
+    private static void printLatency(String label, LatencyHistogram histogram) {
+        System.out.printf("[LoadGen] %-12s n=%d p50=%s p99=%s p99.9=%s max=%s%n",
+                label + ":", histogram.count(),
+                millis(histogram.percentile(50)), millis(histogram.percentile(99)),
+                millis(histogram.percentile(99.9)), millis(histogram.max()));
+    }
+
+    private static String millis(long micros) {
+        return String.format("%.3fms", micros / 1_000.0);
+    }
+}
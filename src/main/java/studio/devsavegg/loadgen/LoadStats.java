@@ -0,0 +1,21 @@
+package studio.devsavegg.loadgen;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms shared by every {@link LoadClient} of a run.
+ */
+final class LoadStats {
+    /** Time from the generator's send to the frame arriving back, in microseconds. */
+    final LatencyHistogram sendToReceiveMicros = new LatencyHistogram();
+    /** Time from the payload's server {@code timestamp} to arrival, in microseconds (millisecond resolution). */
+    final LatencyHistogram stampToReceiveMicros = new LatencyHistogram();
+    /** Time from starting a TCP connect to the WELCOME message, in microseconds. */
+    final LatencyHistogram connectMicros = new LatencyHistogram();
+
+    final LongAdder messagesSent = new LongAdder();
+    final LongAdder deliveries = new LongAdder();
+    final LongAdder serverErrors = new LongAdder();
+    final LongAdder decodeErrors = new LongAdder();
+    final LongAdder connectFailures = new LongAdder();
+}
@@ -0,0 +1,154 @@
+package studio.devsavegg.server;
+
+import studio.devsavegg.server.broadcaster.CompressionMode;
+import studio.devsavegg.server.broadcaster.SlowConsumerPolicy;
+import studio.devsavegg.server.gateway.RateLimitPolicy;
+import studio.devsavegg.server.history.HistoryPolicy;
+import studio.devsavegg.server.resolver.LanePolicy;
+import studio.devsavegg.server.session.SessionPolicy;
+
+/**
+ * Tunables for a server instance.
+ * Every value can be overridden with a {@code -Dcurrent.<name>=<value>} system property.
+ *
+ * @param port                     The WebSocket port.
+ * @param writeBufferLowWaterMark  Outbound bytes below which a connection becomes writable again.
+ * @param writeBufferHighWaterMark Outbound bytes above which a connection is reported unwritable.
+ * @param slowConsumerPolicy       What to do with frames for a connection that is not writable.
+ * @param resolverShards           Number of resolver logic threads (1 = classic single-threaded core).
+ * @param controlQueueCapacity     Slots in the chat and query lanes of a resolver's control queue (rounded up to a power of two).
+ * @param controlQueueWaitStrategy How an idle resolver waits: blocking, spinning or yielding.
+ * @param resolverBatchSize        Maximum commands a resolver drains per wakeup.
+ * @param metricsPort              Port of the Prometheus {@code /metrics} endpoint (0, the default, disables it).
+ * @param transport                I/O transport: auto, io_uring, epoll or nio (unavailable ones fall back).
+ * @param acceptors                Listening sockets bound with SO_REUSEPORT, each with its own accept loop.
+ * @param backlog                  Accept queue length of each listening socket (capped by the kernel).
+ * @param compressionMode          permessage-deflate mode: off, per-connection or broadcast (compress once).
+ * @param compressionThreshold     Payloads smaller than this many bytes are sent uncompressed.
+ * @param compressionLevel         Deflate level (0-9) for compress-once broadcasts.
+ * @param historyDir               Directory for room history segments (blank, the default, disables history).
+ * @param historyPolicy            Segment size, retention, replay and open-room limits for room history.
+ * @param friendsDir               Directory for the friend graph WAL and snapshots (blank, the default, keeps it in memory only).
+ * @param friendsSnapshotEvery     Friend WAL records between snapshots.
+ * @param sessionPolicy            Grace period and missed-message buffer for resumable sessions.
+ * @param clusterNode              This node's ID in a cluster (blank runs standalone).
+ * @param clusterBus               How cluster nodes talk: tcp or in-process.
+ * @param clusterNodes             Every node and its cluster address, as {@code a=host:port,b=host:port}.
+ * @param clusterSecret            Shared secret a TCP cluster link must present (blank accepts any listed node).
+ * @param rateLimitPolicy          Per-connection command rate limits, checked in the gateway.
+ * @param lanePolicy               Resolver lane weights and when queries are shed.
+ * @param queryWorkers             Threads answering read-only commands from registry snapshots (0 = on the resolver).
+ * @param queryQueueCapacity       Read-only commands that may wait for a query worker.
+ * @param roomPageSize             Rooms per page of {@code /list rooms}.
+ */
+public record ServerConfig(
+        int port,
+        int writeBufferLowWaterMark,
+        int writeBufferHighWaterMark,
+        SlowConsumerPolicy slowConsumerPolicy,
+        int resolverShards,
+        int controlQueueCapacity,
+        String controlQueueWaitStrategy,
+        int resolverBatchSize,
+        int metricsPort,
+        String transport,
+        int acceptors,
+        int backlog,
+        CompressionMode compressionMode,
+        int compressionThreshold,
+        int compressionLevel,
+        String historyDir,
+        HistoryPolicy historyPolicy,
+        String friendsDir,
+        long friendsSnapshotEvery,
+        SessionPolicy sessionPolicy,
+        String clusterNode,
+        String clusterBus,
+        String clusterNodes,
+        String clusterSecret,
+        RateLimitPolicy rateLimitPolicy,
+        LanePolicy lanePolicy,
+        int queryWorkers,
+        int queryQueueCapacity,
+        int roomPageSize
+) {
+    public ServerConfig {
+        // Netty only checks this when the option is applied to a channel, with a less helpful message.
+        if (writeBufferLowWaterMark < 0 || writeBufferLowWaterMark > writeBufferHighWaterMark) {
+            throw new IllegalArgumentException("writeBuffer.lowWaterMark must be between 0 and writeBuffer.highWaterMark, got "
+                    + writeBufferLowWaterMark + " and " + writeBufferHighWaterMark);
+        }
+    }
+
+    public static ServerConfig fromSystemProperties(int port) {
+        SlowConsumerPolicy defaults = SlowConsumerPolicy.DEFAULT;
+        HistoryPolicy historyDefaults = HistoryPolicy.DEFAULT;
+        SessionPolicy sessionDefaults = SessionPolicy.DEFAULT;
+        RateLimitPolicy rateLimitDefaults = RateLimitPolicy.DEFAULT;
+        LanePolicy laneDefaults = LanePolicy.DEFAULT;
+
+        return new ServerConfig(
+                port,
+                Integer.getInteger("current.writeBuffer.lowWaterMark", 32 * 1024),
+                Integer.getInteger("current.writeBuffer.highWaterMark", 64 * 1024),
+                new SlowConsumerPolicy(
+                        Integer.getInteger("current.slowConsumer.maxPending", defaults.maxPendingMessages()),
+                        Boolean.parseBoolean(System.getProperty("current.slowConsumer.coalesceSystem",
+                                String.valueOf(defaults.coalesceSystem()))),
+                        Long.getLong("current.slowConsumer.disconnectAfterMillis", defaults.disconnectAfterMillis())
+                ),
+                Integer.getInteger("current.resolver.shards", 1),
+                Integer.getInteger("current.controlQueue.capacity", 65536),
+                System.getProperty("current.controlQueue.waitStrategy", "blocking"),
+                Integer.getInteger("current.resolver.batchSize", 256),
+                Integer.getInteger("current.metrics.port", 0),
+                System.getProperty("current.transport", "auto"),
+                Integer.getInteger("current.transport.acceptors", 1),
+                Integer.getInteger("current.transport.backlog", 1024),
+                CompressionMode.fromName(System.getProperty("current.compression", "per-connection")),
+                Integer.getInteger("current.compression.threshold", 256),
+                Integer.getInteger("current.compression.level", 6),
+                System.getProperty("current.history.dir", ""),
+                new HistoryPolicy(
+                        Integer.getInteger("current.history.segmentBytes", historyDefaults.segmentBytes()),
+                        Integer.getInteger("current.history.retainSegments", historyDefaults.retainSegments()),
+                        Long.getLong("current.history.retainMinutes", historyDefaults.retainMillis() / 60_000) * 60_000,
+                        Integer.getInteger("current.history.replayOnJoin", historyDefaults.replayOnJoin()),
+                        Integer.getInteger("current.history.pageSize", historyDefaults.pageSize()),
+                        Integer.getInteger("current.history.openRooms", historyDefaults.openRooms())
+                ),
+                System.getProperty("current.friends.dir", ""),
+                Long.getLong("current.friends.snapshotEvery", 1_000_000),
+                new SessionPolicy(
+                        Long.getLong("current.session.graceSeconds", sessionDefaults.graceMillis() / 1000) * 1000,
+                        Integer.getInteger("current.session.bufferSize", sessionDefaults.bufferSize())
+                ),
+                System.getProperty("current.cluster.node", ""),
+                System.getProperty("current.cluster.bus", "tcp"),
+                System.getProperty("current.cluster.nodes", ""),
+                System.getProperty("current.cluster.secret", ""),
+                new RateLimitPolicy(
+                        bucket("chat", rateLimitDefaults.chat()),
+                        bucket("query", rateLimitDefaults.query()),
+                        bucket("friend", rateLimitDefaults.friend()),
+                        bucket("room", rateLimitDefaults.room())
+                ),
+                new LanePolicy(
+                        Integer.getInteger("current.lanes.lifecycleWeight", laneDefaults.lifecycleWeight()),
+                        Integer.getInteger("current.lanes.chatWeight", laneDefaults.chatWeight()),
+                        Integer.getInteger("current.lanes.queryWeight", laneDefaults.queryWeight()),
+                        Integer.getInteger("current.lanes.queryShedDepth", laneDefaults.queryShedDepth())
+                ),
+                Integer.getInteger("current.query.workers", 2),
+                Integer.getInteger("current.query.queueCapacity", 1024),
+                Integer.getInteger("current.rooms.pageSize", 50)
+        );
+    }
+
+    private static RateLimitPolicy.Bucket bucket(String commandClass, RateLimitPolicy.Bucket defaults) {
+        return new RateLimitPolicy.Bucket(
+                Integer.getInteger("current.rateLimit." + commandClass + ".perSecond", defaults.perSecond()),
+                Integer.getInteger("current.rateLimit." + commandClass + ".burst", defaults.burst())
+        );
+    }
+}
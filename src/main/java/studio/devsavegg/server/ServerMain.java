@@ -4,76 +4,317 @@ import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.WriteBufferWaterMark;
 import studio.devsavegg.server.broadcaster.BroadcastService;
 import studio.devsavegg.server.broadcaster.BroadcastServiceImpl;
+import studio.devsavegg.server.broadcaster.CompressionMode;
+import studio.devsavegg.server.broadcaster.PerMessageDeflate;
+import studio.devsavegg.server.broadcaster.SlowConsumerStats;
+import studio.devsavegg.server.cluster.ClusterService;
+import studio.devsavegg.server.cluster.ClusteredBroadcastService;
+import studio.devsavegg.server.cluster.ClusteredClientRegistry;
+import studio.devsavegg.server.cluster.ClusteredRoomRegistry;
+import studio.devsavegg.server.cluster.InProcessBus;
+import studio.devsavegg.server.cluster.TcpBus;
+import studio.devsavegg.server.friend.DurableFriendService;
 import studio.devsavegg.server.friend.FriendService;
 import studio.devsavegg.server.friend.FriendServiceImpl;
 import studio.devsavegg.server.gateway.ChatServerInitializer;
-import studio.devsavegg.server.gateway.ClientCommand;
+import studio.devsavegg.server.gateway.RateLimitStats;
+import studio.devsavegg.server.history.HistoryService;
+import studio.devsavegg.server.history.HistoryServiceImpl;
+import studio.devsavegg.server.log.Logger;
+import studio.devsavegg.server.metrics.MetricsServer;
+import studio.devsavegg.server.metrics.OutboundMetricsHandler;
+import studio.devsavegg.server.metrics.ServerMetrics;
 import studio.devsavegg.server.registry.ClientRegistryService;
 import studio.devsavegg.server.registry.ClientRegistryServiceImpl;
+import studio.devsavegg.server.registry.RegistrySnapshots;
 import studio.devsavegg.server.registry.RoomRegistryService;
 import studio.devsavegg.server.registry.RoomRegistryServiceImpl;
 import studio.devsavegg.server.resolver.CommandParser;
+import studio.devsavegg.server.resolver.Lane;
+import studio.devsavegg.server.resolver.QueryService;
 import studio.devsavegg.server.resolver.ResolverService;
+import studio.devsavegg.server.resolver.ShardRouter;
+import studio.devsavegg.server.session.SessionService;
+import studio.devsavegg.server.session.SessionServiceImpl;
+import studio.devsavegg.server.transport.Transport;
 
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 public class ServerMain {
-    private final int port;
+    private static final Logger LOG = Logger.get("ServerMain");
+    private static final long RESOLVER_JOIN_MILLIS = 5_000;
+    private static final long SHUTDOWN_MILLIS = 30_000;
+
+    private final ServerConfig config;
 
     public ServerMain(int port) {
-        this.port = port;
+        this(ServerConfig.fromSystemProperties(port));
+    }
+
+    public ServerMain(ServerConfig config) {
+        this.config = config;
     }
 
     public void run() throws Exception {
-        BlockingQueue<ClientCommand> controlQueue = new LinkedBlockingQueue<>();
+        ShardRouter shardRouter = new ShardRouter(
+                config.resolverShards(),
+                config.controlQueueCapacity(),
+                config.controlQueueWaitStrategy(),
+                config.lanePolicy()
+        );
 
         // --- Instantiate Services ---
+        ServerMetrics metrics = new ServerMetrics();
         CommandParser commandParser = new CommandParser();
-        ClientRegistryService clientRegistry = new ClientRegistryServiceImpl();
-        RoomRegistryService roomRegistry = new RoomRegistryServiceImpl();
-        BroadcastService broadcastService = new BroadcastServiceImpl(clientRegistry, roomRegistry);
+        String clusterNode = config.clusterNode();
+        boolean clustered = !clusterNode.isBlank();
+        RegistrySnapshots snapshots = new RegistrySnapshots();
+        ClientRegistryServiceImpl localClients = new ClientRegistryServiceImpl(
+                clustered ? ClusterService.clientIdPrefix(clusterNode) : "user-", snapshots);
+        RoomRegistryServiceImpl localRooms = new RoomRegistryServiceImpl(snapshots);
+        ClientRegistryService clientRegistry = localClients;
+        RoomRegistryService roomRegistry = localRooms;
+        PerMessageDeflate deflate = (config.compressionMode() == CompressionMode.BROADCAST)
+                ? new PerMessageDeflate(config.compressionLevel(), config.compressionThreshold())
+                : null;
+        SessionService sessionService = null;
+        if (config.sessionPolicy().enabled()) {
+            SessionServiceImpl sessions = new SessionServiceImpl(config.sessionPolicy());
+            metrics.registerGauge("sessions_detached", "Disconnected clients that can still resume.", "", sessions::detachedCount);
+            metrics.registerCounter("sessions_resumed_total", "Sessions resumed on a new connection.", sessions::resumed);
+            metrics.registerCounter("sessions_expired_total", "Sessions that were not resumed within the grace period.", sessions::expired);
+            metrics.registerCounter("session_buffer_dropped_total", "Payloads lost because a disconnected client's buffer was full.", sessions::dropped);
+            sessionService = sessions;
+        }
+        BroadcastServiceImpl localBroadcaster = new BroadcastServiceImpl(localClients, localRooms, metrics, deflate, sessionService);
+        BroadcastService broadcastService = localBroadcaster;
+
+        // In a cluster, the services the resolver sees announce local changes and route
+        // room fan-out and DMs to the other nodes. The local ones underneath are unchanged.
+        ClusterService cluster = null;
+        if (clustered) {
+            cluster = new ClusterService(clusterNode, shardRouter, localRooms, localBroadcaster);
+            clientRegistry = new ClusteredClientRegistry(localClients, cluster);
+            roomRegistry = new ClusteredRoomRegistry(localRooms, cluster);
+            broadcastService = new ClusteredBroadcastService(localBroadcaster, localRooms, cluster);
+            metrics.registerGauge("cluster_peers", "Other cluster nodes this node is connected to.", "", cluster::peerCount);
+        }
+        SlowConsumerStats slowConsumerStats = new SlowConsumerStats();
+        RateLimitStats rateLimitStats = new RateLimitStats();
+        registerMetrics(metrics, shardRouter, clientRegistry, roomRegistry, slowConsumerStats, rateLimitStats);
+
         FriendService friendService = new FriendServiceImpl();
+        DurableFriendService durableFriends = null;
+        if (!config.friendsDir().isBlank()) {
+            durableFriends = DurableFriendService.open(Path.of(config.friendsDir()), config.friendsSnapshotEvery());
+            metrics.registerGauge("friend_wal_queue_depth", "Friend graph changes waiting for the WAL writer.", "", durableFriends::queueDepth);
+            metrics.registerCounter("friend_wal_records_total", "Friend graph changes written to the WAL.", durableFriends::records);
+            metrics.registerCounter("friend_wal_syncs_total", "Friend WAL fsyncs; records / syncs is the average group commit.", durableFriends::syncs);
+            friendService = durableFriends;
+        }
 
-        // --- Instantiate Resolver Service ---
-        ResolverService resolverService = new ResolverService(
-                controlQueue,
-                commandParser,
-                clientRegistry,
-                roomRegistry,
-                broadcastService,
-                friendService
-        );
-        Thread resolverThread = new Thread(resolverService, "Resolver-Thread");
-        resolverThread.start();
+        HistoryService historyService = null;
+        if (!config.historyDir().isBlank()) {
+            HistoryServiceImpl history = new HistoryServiceImpl(Path.of(config.historyDir()), config.historyPolicy(),
+                    roomId -> localRooms.getRoomName(roomId) != null);
+            history.start();
+            metrics.registerGauge("history_queue_depth", "Room history tasks waiting for the writer.", "", history::queueDepth);
+            metrics.registerCounter("history_dropped_total", "History appends and replays dropped because the writer was backed up.", history::dropped);
+            historyService = history;
+        }
 
-        EventLoopGroup bossGroup = new NioEventLoopGroup(1);
-        EventLoopGroup workerGroup = new NioEventLoopGroup();
+        QueryService queryService = new QueryService(snapshots, clientRegistry, roomRegistry, friendService, broadcastService,
+                config.roomPageSize(), config.queryWorkers(), config.queryQueueCapacity());
+        metrics.registerGauge("query_queue_depth", "Read-only commands waiting for a query worker.", "", queryService::queueDepth);
+        metrics.registerCounter("registry_snapshot_version", "Registry changes published to query snapshots.", snapshots::version);
 
+        // --- Instantiate Resolver Service (one per shard) ---
+        List<Thread> resolverThreads = new ArrayList<>();
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            ResolverService resolverService = new ResolverService(
+                    shardRouter,
+                    shard,
+                    config.resolverBatchSize(),
+                    clientRegistry,
+                    roomRegistry,
+                    broadcastService,
+                    friendService,
+                    historyService,
+                    sessionService,
+                    queryService,
+                    snapshots,
+                    metrics
+            );
+            String threadName = shardRouter.shardCount() == 1 ? "Resolver-Thread" : "Resolver-Thread-" + shard;
+            Thread resolverThread = new Thread(resolverService, threadName);
+            resolverThread.start();
+            resolverThreads.add(resolverThread);
+        }
+        LOG.info("Resolver running with {} shard(s)", shardRouter.shardCount());
+
+        // --- Transport ---
+        Transport transport = Transport.select(config.transport());
+        int acceptors = config.acceptors();
+        if (acceptors > 1 && transport.reusePortOption() == null) {
+            LOG.warn("SO_REUSEPORT is not supported by the {} transport; using a single acceptor", transport);
+            acceptors = 1;
+        }
+        LOG.info("Using the {} transport with {} acceptor(s)", transport, acceptors);
+        LOG.info("permessage-deflate mode: {}", config.compressionMode());
+
+        EventLoopGroup bossGroup = transport.newEventLoopGroup(acceptors);
+        EventLoopGroup workerGroup = transport.newEventLoopGroup(0);
+
+        // Keeps the log writer alive until the shutdown below has logged its last line.
+        Runnable releaseLog = Logger.holdShutdown();
+        CountDownLatch stopped = new CountDownLatch(1);
+        MetricsServer metricsServer = null;
         try {
             ServerBootstrap b = new ServerBootstrap();
             b.group(bossGroup, workerGroup)
-                    .channel(NioServerSocketChannel.class)
-                    .childHandler(new ChatServerInitializer(controlQueue))
-                    .option(ChannelOption.SO_BACKLOG, 128)
-                    .childOption(ChannelOption.SO_KEEPALIVE, true);
+                    .channel(transport.serverChannelClass())
+                    .childHandler(new ChatServerInitializer(shardRouter, broadcastService, commandParser, config.slowConsumerPolicy(), slowConsumerStats,
+                            new OutboundMetricsHandler(metrics), config.compressionMode(), deflate,
+                            config.rateLimitPolicy(), rateLimitStats))
+                    .option(ChannelOption.SO_BACKLOG, config.backlog())
+                    .childOption(ChannelOption.SO_KEEPALIVE, true)
+                    .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(
+                            config.writeBufferLowWaterMark(),
+                            config.writeBufferHighWaterMark()
+                    ));
+
+            if (acceptors > 1) {
+                // Each bind gets its own socket and the next boss event loop; the kernel spreads
+                // incoming connections across the sockets.
+                b.option(transport.reusePortOption(), true);
+            }
+
+            LOG.info("Chat Server starting on port {}", config.port());
+            List<ChannelFuture> listeners = new ArrayList<>(acceptors);
+            for (int i = 0; i < acceptors; i++) {
+                listeners.add(b.bind(config.port()).sync());
+            }
 
-            System.out.println("[ServerMain] Chat Server starting on port " + port);
-            ChannelFuture f = b.bind(port).sync();
+            // On SIGTERM or Ctrl-C, close the listeners so the finally block below runs, and
+            // keep the JVM up until it has stopped the resolvers and closed history and the WAL.
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                listeners.forEach(listener -> listener.channel().close());
+                try {
+                    if (!stopped.await(SHUTDOWN_MILLIS, TimeUnit.MILLISECONDS)) {
+                        LOG.warn("Shutdown did not finish within {} ms", SHUTDOWN_MILLIS);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "Server-Shutdown"));
 
-            f.channel().closeFuture().sync();
+            if (cluster != null) {
+                if ("in-process".equals(config.clusterBus())) {
+                    cluster.start(new InProcessBus(clusterNode));
+                } else {
+                    TcpBus bus = new TcpBus(clusterNode, TcpBus.parseNodes(config.clusterNodes()), config.clusterSecret(),
+                            transport, bossGroup, workerGroup);
+                    metrics.registerCounter("cluster_dropped_total", "Cluster messages dropped because their node was not connected.", bus::dropped);
+                    cluster.start(bus);
+                }
+            }
+
+            if (config.metricsPort() > 0) {
+                metricsServer = new MetricsServer(config.metricsPort(), metrics);
+                metricsServer.start(transport, bossGroup, workerGroup);
+            }
+
+            for (ChannelFuture listener : listeners) {
+                listener.channel().closeFuture().sync();
+            }
         } finally {
-            System.out.println("[ServerMain] Shutting down...");
-            workerGroup.shutdownGracefully();
-            bossGroup.shutdownGracefully();
+            try {
+                LOG.info("Shutting down...");
+                if (metricsServer != null) {
+                    metricsServer.stop();
+                }
+                if (cluster != null) {
+                    cluster.shutdown();
+                }
+                workerGroup.shutdownGracefully();
+                bossGroup.shutdownGracefully();
+
+                resolverThreads.forEach(Thread::interrupt);
+                // A resolver still running could append to history or the friend WAL after they close.
+                joinAll(resolverThreads, RESOLVER_JOIN_MILLIS);
+                queryService.shutdown();
+                broadcastService.shutdown();
+                if (historyService != null) {
+                    historyService.shutdown();
+                }
+                if (durableFriends != null) {
+                    durableFriends.shutdown();
+                }
+                if (sessionService != null) {
+                    sessionService.shutdown();
+                }
+                LOG.info("Server shutdown complete.");
+            } finally {
+                stopped.countDown();
+                releaseLog.run();
+            }
+        }
+    }
+
+    /**
+     * Waits up to {@code timeoutMillis} in total for {@code threads} to finish, and warns about any that do not.
+     */
+    private static void joinAll(List<Thread> threads, long timeoutMillis) {
+        long deadline = System.nanoTime() + timeoutMillis * 1_000_000;
+        for (Thread thread : threads) {
+            long remainingMillis = Math.max(1, (deadline - System.nanoTime()) / 1_000_000);
+            try {
+                thread.join(remainingMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        for (Thread thread : threads) {
+            if (thread.isAlive()) {
+                LOG.warn("{} did not stop within {} ms", thread.getName(), timeoutMillis);
+            }
+        }
+    }
 
-            resolverThread.interrupt();
-            broadcastService.shutdown();
-            System.out.println("[ServerMain] Server shutdown complete.");
+    /**
+     * Exposes state the services already keep, read only when /metrics is scraped.
+     */
+    private static void registerMetrics(ServerMetrics metrics,
+                                        ShardRouter shardRouter,
+                                        ClientRegistryService clientRegistry,
+                                        RoomRegistryService roomRegistry,
+                                        SlowConsumerStats slowConsumerStats,
+                                        RateLimitStats rateLimitStats) {
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            for (Lane lane : Lane.values()) {
+                int s = shard;
+                metrics.registerGauge("control_queue_depth", "Commands waiting in a resolver shard's control queue.",
+                        "shard=\"" + shard + "\",lane=\"" + lane.label() + "\"", () -> shardRouter.depth(s, lane));
+            }
         }
+        metrics.registerCounter("control_queue_shed_chat_total", "Chat and other state changes refused because their lane was full.",
+                () -> shardRouter.shed(Lane.CHAT));
+        metrics.registerCounter("control_queue_shed_query_total", "Queries refused because the resolver was backed up.",
+                () -> shardRouter.shed(Lane.QUERY));
+        metrics.registerGauge("connected_clients", "Registered client connections.", "", clientRegistry::getTotalClientCount);
+        metrics.registerGauge("rooms", "Public rooms.", "", roomRegistry::getRoomCount);
+        metrics.registerCounter("slow_consumer_parked_total", "Frames held back for unwritable connections.", slowConsumerStats::parked);
+        metrics.registerCounter("slow_consumer_chat_dropped_total", "Chat frames dropped for slow connections.", slowConsumerStats::chatDropped);
+        metrics.registerCounter("slow_consumer_system_coalesced_total", "System frames replaced by a newer one.", slowConsumerStats::systemCoalesced);
+        metrics.registerCounter("slow_consumer_disconnected_total", "Connections closed as slow consumers.", slowConsumerStats::disconnected);
+        metrics.registerCounter("rate_limited_total", "Commands refused by a connection's rate limit.", rateLimitStats::throttled);
     }
 }
\ No newline at end of file
@@ -0,0 +1,140 @@
+package studio.devsavegg.server.broadcaster;
+
+import io.netty.buffer.ByteBuf;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static studio.devsavegg.server.broadcaster.BinaryWire.*;
+
+/**
+ * Encodes {@link ServerPayload} records for the binary subprotocol ({@link WireFormat#BINARY}).
+ * <p>
+ * A payload is a {@link ServerPayloadType} tag byte followed by the record components in
+ * declaration order, using the {@link BinaryWire} encodings:
+ * <pre>
+ * CHAT   : senderId, roomName, message (strings), timestamp (signed varint)
+ * DM     : senderId, conversationPartnerId, message (strings), timestamp (signed varint)
+ * SYSTEM : subType, context, message (strings), details
+ * ERROR  : errorCode (signed varint), command, message (strings)
+ * </pre>
+ * {@code details} is a varint holding the entry count plus one (0 means null), then each key
+ * as a string followed by a value tag: 0 null, 1 string, 2 signed varint, 3 false, 4 true.
+ * Values of any other type are sent as their {@code toString()}.
+ */
+public final class BinaryPayloadCodec {
+    private static final int VALUE_NULL = 0;
+    private static final int VALUE_STRING = 1;
+    private static final int VALUE_NUMBER = 2;
+    private static final int VALUE_FALSE = 3;
+    private static final int VALUE_TRUE = 4;
+
+    private BinaryPayloadCodec() {
+    }
+
+    public static void encode(ServerPayload payload, ByteBuf out) {
+        switch (payload) {
+            case ChatMessagePayload chat -> {
+                out.writeByte(ServerPayloadType.CHAT.tag);
+                writeString(chat.senderId(), out);
+                writeString(chat.roomName(), out);
+                writeString(chat.message(), out);
+                writeSignedVarLong(chat.timestamp(), out);
+            }
+            case DirectMessagePayload dm -> {
+                out.writeByte(ServerPayloadType.DM.tag);
+                writeString(dm.senderId(), out);
+                writeString(dm.conversationPartnerId(), out);
+                writeString(dm.message(), out);
+                writeSignedVarLong(dm.timestamp(), out);
+            }
+            case SystemMessagePayload system -> {
+                out.writeByte(ServerPayloadType.SYSTEM.tag);
+                writeString(system.subType(), out);
+                writeString(system.context(), out);
+                writeString(system.message(), out);
+                writeDetails(system.details(), out);
+            }
+            case ErrorPayload error -> {
+                out.writeByte(ServerPayloadType.ERROR.tag);
+                writeSignedVarLong(error.errorCode(), out);
+                writeString(error.command(), out);
+                writeString(error.message(), out);
+            }
+        }
+    }
+
+    /**
+     * Reads one payload, as a client of the binary subprotocol would.
+     * @throws IllegalArgumentException If the input is truncated or malformed.
+     */
+    public static ServerPayload decode(ByteBuf in) {
+        if (!in.isReadable()) {
+            throw new IllegalArgumentException("Empty payload");
+        }
+        return switch (ServerPayloadType.fromTag(in.readUnsignedByte())) {
+            case CHAT -> new ChatMessagePayload(readString(in), readString(in), readString(in), readSignedVarLong(in));
+            case DM -> new DirectMessagePayload(readString(in), readString(in), readString(in), readSignedVarLong(in));
+            case SYSTEM -> new SystemMessagePayload(readString(in), readString(in), readString(in), readDetails(in));
+            case ERROR -> new ErrorPayload((int) readSignedVarLong(in), readString(in), readString(in));
+        };
+    }
+
+    private static void writeDetails(Map<String, Object> details, ByteBuf out) {
+        if (details == null) {
+            out.writeByte(0);
+            return;
+        }
+
+        writeVarLong(details.size() + 1L, out);
+        for (Map.Entry<String, Object> entry : details.entrySet()) {
+            writeString(entry.getKey(), out);
+
+            Object value = entry.getValue();
+            if (value == null) {
+                out.writeByte(VALUE_NULL);
+            } else if (value instanceof Boolean b) {
+                out.writeByte(b ? VALUE_TRUE : VALUE_FALSE);
+            } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+                out.writeByte(VALUE_NUMBER);
+                writeSignedVarLong(((Number) value).longValue(), out);
+            } else {
+                out.writeByte(VALUE_STRING);
+                writeString(value.toString(), out);
+            }
+        }
+    }
+
+    private static Map<String, Object> readDetails(ByteBuf in) {
+        int encoded = readLength(in);
+        if (encoded == 0) {
+            return null;
+        }
+        int count = encoded - 1;
+        if (count == 0) {
+            return Collections.emptyMap();
+        }
+        if (count > in.readableBytes()) {
+            throw new IllegalArgumentException("Details count " + count + " exceeds the frame");
+        }
+
+        Map<String, Object> details = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            String key = readString(in);
+            if (!in.isReadable()) {
+                throw new IllegalArgumentException("Truncated details value");
+            }
+            Object value = switch (in.readUnsignedByte()) {
+                case VALUE_NULL -> null;
+                case VALUE_STRING -> readString(in);
+                case VALUE_NUMBER -> readSignedVarLong(in);
+                case VALUE_FALSE -> Boolean.FALSE;
+                case VALUE_TRUE -> Boolean.TRUE;
+                default -> throw new IllegalArgumentException("Unknown details value tag");
+            };
+            details.put(key, value);
+        }
+        return details;
+    }
+}
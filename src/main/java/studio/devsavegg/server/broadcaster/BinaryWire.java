@@ -0,0 +1,87 @@
+package studio.devsavegg.server.broadcaster;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Primitive field encodings shared by the binary subprotocol codecs.
+ * <ul>
+ *     <li><b>varint</b>: unsigned LEB128, 7 bits per byte, low bits first.</li>
+ *     <li><b>signed varint</b>: zigzag-mapped first, so small negative numbers stay short.</li>
+ *     <li><b>string</b>: a varint holding the UTF-8 length plus one (0 means null), then the bytes.</li>
+ * </ul>
+ * Readers throw {@link IllegalArgumentException} on truncated or malformed input.
+ */
+public final class BinaryWire {
+    private BinaryWire() {
+    }
+
+    public static void writeVarLong(long value, ByteBuf out) {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    public static long readVarLong(ByteBuf in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (!in.isReadable()) {
+                throw new IllegalArgumentException("Truncated varint");
+            }
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint is longer than 10 bytes");
+    }
+
+    public static void writeSignedVarLong(long value, ByteBuf out) {
+        writeVarLong((value << 1) ^ (value >> 63), out);
+    }
+
+    public static long readSignedVarLong(ByteBuf in) {
+        long raw = readVarLong(in);
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    /**
+     * Reads a varint that must fit a non-negative int (a length or a count).
+     */
+    public static int readLength(ByteBuf in) {
+        long value = readVarLong(in);
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Length out of range: " + value);
+        }
+        return (int) value;
+    }
+
+    public static void writeString(String value, ByteBuf out) {
+        if (value == null) {
+            out.writeByte(0);
+            return;
+        }
+        int length = ByteBufUtil.utf8Bytes(value);
+        writeVarLong(length + 1L, out);
+        ByteBufUtil.reserveAndWriteUtf8(out, value, length);
+    }
+
+    public static String readString(ByteBuf in) {
+        int encoded = readLength(in);
+        if (encoded == 0) {
+            return null;
+        }
+        int length = encoded - 1;
+        if (length > in.readableBytes()) {
+            throw new IllegalArgumentException("String length " + length + " exceeds the frame");
+        }
+        String value = in.toString(in.readerIndex(), length, StandardCharsets.UTF_8);
+        in.skipBytes(length);
+        return value;
+    }
+}
@@ -9,8 +9,9 @@ public interface BroadcastService {
      * @param fromClientId The ID of the client who sent the message.
      * @param roomId The ID of the room to broadcast to.
      * @param message The raw message text.
+     * @return The payload that was broadcast, or null if the room does not exist.
      */
-    void broadcastChatMessage(String fromClientId, String roomId, String message);
+    ChatMessagePayload broadcastChatMessage(String fromClientId, String roomId, String message);
 
     /**
      * Sends a direct message (DM) from one user to another.
@@ -37,6 +38,15 @@ public interface BroadcastService {
      */
     void sendSystemMessage(Channel channel, String subType, String message);
 
+    /**
+     * Sends a detailed system message with extra data to a single client.
+     * @param channel The client's channel to send to.
+     * @param subType A specific identifier (e.g., "WELCOME").
+     * @param message The system message.
+     * @param details Extra data, like the client's resume token.
+     */
+    void sendSystemMessage(Channel channel, String subType, String message, java.util.Map<String, Object> details);
+
 
     /**
      * Sends a system message to all members of a specific room.
@@ -66,7 +76,14 @@ public interface BroadcastService {
     void sendError(Channel channel, int errorCode, String command, String message);
 
     /**
-     * Shuts down the broadcast worker pool.
+     * Sends payloads a client missed while disconnected, in order. They are never dropped for a slow consumer.
+     * @param channel The client's new channel.
+     * @param payloads The payloads, oldest first.
+     */
+    void replay(Channel channel, java.util.List<ServerPayload> payloads);
+
+    /**
+     * Shuts down the outbound dispatcher; later sends are dropped.
      */
     void shutdown();
 }
\ No newline at end of file
@@ -1,53 +1,82 @@
 package studio.devsavegg.server.broadcaster;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.Channel;
-import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import studio.devsavegg.server.log.Logger;
+import studio.devsavegg.server.metrics.ServerMetrics;
 import studio.devsavegg.server.registry.ClientRegistryService;
 import studio.devsavegg.server.registry.RoomRegistryService;
+import studio.devsavegg.server.session.SessionService;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 public class BroadcastServiceImpl implements BroadcastService {
-    private final ExecutorService workerPool = Executors.newVirtualThreadPerTaskExecutor();
+    private static final Logger LOG = Logger.get("BroadcastService");
+
+    private final OutboundDispatcher dispatcher = new OutboundDispatcher();
 
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ByteBufAllocator allocator = PooledByteBufAllocator.DEFAULT;
 
     private final ClientRegistryService clientRegistry;
     private final RoomRegistryService roomRegistry;
+    private final ServerMetrics metrics;
+    private final PerMessageDeflate deflate;
+    private final SessionService sessions; // Null when sessions cannot be resumed
 
     public BroadcastServiceImpl(ClientRegistryService clientRegistry, RoomRegistryService roomRegistry) {
+        this(clientRegistry, roomRegistry, new ServerMetrics(), null, null);
+    }
+
+    public BroadcastServiceImpl(ClientRegistryService clientRegistry,
+                                RoomRegistryService roomRegistry,
+                                ServerMetrics metrics,
+                                PerMessageDeflate deflate) {
+        this(clientRegistry, roomRegistry, metrics, deflate, null);
+    }
+
+    /**
+     * @param deflate Compresses room broadcasts once for all members, or null to leave
+     *                compression to each connection.
+     * @param sessions Buffers payloads for clients whose connection dropped, or null to drop them.
+     */
+    public BroadcastServiceImpl(ClientRegistryService clientRegistry,
+                                RoomRegistryService roomRegistry,
+                                ServerMetrics metrics,
+                                PerMessageDeflate deflate,
+                                SessionService sessions) {
         this.clientRegistry = clientRegistry;
         this.roomRegistry = roomRegistry;
+        this.metrics = metrics;
+        this.deflate = deflate;
+        this.sessions = sessions;
     }
 
     @Override
-    public void broadcastChatMessage(String fromClientId, String roomId, String message) {
+    public ChatMessagePayload broadcastChatMessage(String fromClientId, String roomId, String message) {
         String roomName = roomRegistry.getRoomName(roomId);
 
         // Build specific payload
-        ServerPayload payload = new ChatMessagePayload(
+        ChatMessagePayload payload = new ChatMessagePayload(
                 fromClientId,
                 roomName,
                 message,
                 System.currentTimeMillis()
         );
 
-        String jsonPayload = serialize(payload);
-        if (jsonPayload == null) return;
-
         Set<String> members = roomRegistry.getRoomMembers(roomId);
-        if (members == null) return;
+        if (members == null) return null;
 
-        for (String memberId : members) {
-            Channel channel = clientRegistry.getChannel(memberId);
-            submitSendTask(channel, jsonPayload); // Send JSON
-        }
+        fanOut(members, payload, OutboundKind.CHAT, null);
+        return payload;
     }
 
     @Override
@@ -61,9 +90,8 @@ public class BroadcastServiceImpl implements BroadcastService {
                 message,
                 timestamp
         );
-        String targetJson = serialize(targetPayload);
-        Channel targetChannel = clientRegistry.getChannel(targetClientId);
-        submitSendTask(targetChannel, targetJson);
+        OutboundDispatcher.Batch batch = dispatcher.newBatch();
+        add(batch, clientRegistry.getChannel(targetClientId), targetPayload, OutboundKind.DIRECT, null);
 
         // --- Send copy to sender ---
         ServerPayload senderPayload = new DirectMessagePayload(
@@ -72,9 +100,8 @@ public class BroadcastServiceImpl implements BroadcastService {
                 message,
                 timestamp
         );
-        String senderJson = serialize(senderPayload);
-        Channel senderChannel = clientRegistry.getChannel(fromClientId);
-        submitSendTask(senderChannel, senderJson);
+        add(batch, clientRegistry.getChannel(fromClientId), senderPayload, OutboundKind.DIRECT, null);
+        batch.dispatch();
     }
 
     @Override
@@ -83,13 +110,18 @@ public class BroadcastServiceImpl implements BroadcastService {
     }
     @Override
     public void sendSystemMessage(Channel channel, String subType, String message) {
+        sendSystemMessage(channel, subType, message, Collections.emptyMap());
+    }
+    @Override
+    public void sendSystemMessage(Channel channel, String subType, String message, Map<String, Object> details) {
         ServerPayload payload = new SystemMessagePayload(
                 subType,
                 null, // No context
                 message,
-                Collections.emptyMap() // No details
+                details
         );
-        submitSendTask(channel, serialize(payload));
+        // Not coalesced: two notices of one sub-type (say, friend requests from two users) are different news.
+        send(channel, payload, OutboundKind.SYSTEM, null);
     }
 
     @Override
@@ -105,16 +137,21 @@ public class BroadcastServiceImpl implements BroadcastService {
                 details
         );
 
-        String jsonPayload = serialize(payload);
-        if (jsonPayload == null) return;
-
         Set<String> members = roomRegistry.getRoomMembers(roomId);
         if (members == null) return;
 
-        for (String memberId : members) {
-            Channel channel = clientRegistry.getChannel(memberId);
-            submitSendTask(channel, jsonPayload);
-        }
+        fanOut(members, payload, OutboundKind.SYSTEM, roomCoalesceKey(roomId, subType, details));
+    }
+
+    /**
+     * The coalesce key of a room system event: a parked event is only replaced by a newer one
+     * of the same sub-type about the same user in the same room. The newer one is queued last,
+     * so a JOIN, LEAVE, JOIN for one user still ends with that user in the room. Events
+     * without a {@code userId} are never coalesced.
+     */
+    public static String roomCoalesceKey(String roomId, String subType, Map<String, Object> details) {
+        Object userId = (details != null) ? details.get("userId") : null;
+        return (userId != null) ? subType + "|" + roomId + "|" + userId : null;
     }
 
     @Override
@@ -124,45 +161,156 @@ public class BroadcastServiceImpl implements BroadcastService {
                 command,
                 message
         );
-        submitSendTask(channel, serialize(payload));
+        send(channel, payload, OutboundKind.DIRECT, null);
+    }
+
+    /**
+     * Sends a ready-made payload to a room's members that are connected to this server.
+     */
+    public void deliverToRoom(String roomId, ServerPayload payload, OutboundKind kind, String coalesceKey) {
+        Set<String> members = roomRegistry.getRoomMembers(roomId);
+        if (members == null) return;
+
+        fanOut(members, payload, kind, coalesceKey);
+    }
+
+    /**
+     * Sends a ready-made payload to one client connected to this server.
+     */
+    public void deliver(String clientId, ServerPayload payload, OutboundKind kind) {
+        Channel channel = clientRegistry.getChannel(clientId);
+        if (channel == null) {
+            channel = bufferForResume(clientId, payload);
+        }
+        send(channel, payload, kind, null);
+    }
+
+    @Override
+    public void replay(Channel channel, List<ServerPayload> payloads) {
+        OutboundDispatcher.Batch batch = dispatcher.newBatch();
+        for (ServerPayload payload : payloads) {
+            add(batch, channel, payload, OutboundKind.DIRECT, null);
+        }
+        batch.dispatch();
     }
 
     @Override
     public void shutdown() {
-        System.out.println("[BroadcastService] Shutting down worker pool...");
-        workerPool.shutdown();
+        LOG.info("Shutting down outbound dispatcher...");
+        dispatcher.shutdown();
     }
 
     /**
-     * Helper to serialize a payload to JSON, handling errors.
+     * Helper to serialize a payload in a connection's wire format, handling errors.
+     * The payload is written once into a pooled buffer; the caller owns the returned reference.
+     * The hand-rolled JSON encoder handles every payload the server sends today; Jackson is
+     * only used for details it cannot reproduce byte for byte. Jackson goes through
+     * {@code writeValueAsString}, as it always has: its byte-stream generator would escape
+     * emoji and other supplementary characters instead of sending them as UTF-8.
      */
-    private String serialize(ServerPayload payload) {
+    private ByteBuf serialize(ServerPayload payload, WireFormat format) {
+        ByteBuf buffer = allocator.buffer();
+        if (format == WireFormat.BINARY) {
+            BinaryPayloadCodec.encode(payload, buffer);
+            return buffer;
+        }
+        if (JsonPayloadEncoder.encode(payload, buffer)) {
+            return buffer;
+        }
         try {
-            return objectMapper.writeValueAsString(payload);
-        } catch (JsonProcessingException e) {
-            System.err.println("[BroadcastService] CRITICAL: Failed to serialize payload: " + e.getMessage());
-            e.printStackTrace();
+            buffer.writeCharSequence(objectMapper.writeValueAsString(payload), StandardCharsets.UTF_8);
+            return buffer;
+        } catch (IOException e) {
+            buffer.release();
+            LOG.error("CRITICAL: Failed to serialize payload: {}", e.getMessage(), e);
             return null;
         }
     }
 
-    private void submitSendTask(Channel channel, String jsonPayload) {
-        if (jsonPayload == null || channel == null || !channel.isOpen()) {
+    /**
+     * Sends one payload to every member of a room.
+     * The payload is encoded at most once per wire format in use, and each member gets a
+     * retained duplicate sharing those bytes, so nothing is re-encoded or copied per recipient.
+     * With compress-once deflate, members that negotiated it share one compressed copy per format.
+     */
+    private void fanOut(Set<String> members, ServerPayload payload, OutboundKind kind, String coalesceKey) {
+        metrics.recordFanOut(members.size());
+        ByteBuf[] encoded = new ByteBuf[WireFormat.VALUES.length];
+        ByteBuf[] deflated = new ByteBuf[WireFormat.VALUES.length];
+
+        OutboundDispatcher.Batch batch = dispatcher.newBatch();
+        try {
+            for (String memberId : members) {
+                Channel channel = clientRegistry.getChannel(memberId);
+                if (channel == null || !channel.isOpen()) {
+                    channel = bufferForResume(memberId, payload);
+                    if (channel == null) continue;
+                }
+
+                WireFormat format = WireFormat.of(channel);
+                ByteBuf content = encoded[format.ordinal()];
+                if (content == null) {
+                    content = serialize(payload, format);
+                    if (content == null) continue;
+                    encoded[format.ordinal()] = content;
+                }
+
+                if (deflate != null && PerMessageDeflate.negotiated(channel) && deflate.worthCompressing(content)) {
+                    ByteBuf compressed = deflated[format.ordinal()];
+                    if (compressed == null) {
+                        compressed = deflate.compress(content, allocator);
+                        deflated[format.ordinal()] = compressed;
+                    }
+                    batch.add(channel, compressed.retainedDuplicate(), format, PerMessageDeflate.rsv(), kind, coalesceKey);
+                } else {
+                    batch.add(channel, content.retainedDuplicate(), format, kind, coalesceKey);
+                }
+            }
+        } finally {
+            releaseAll(encoded);
+            releaseAll(deflated);
+        }
+        batch.dispatch();
+    }
+
+    private static void releaseAll(ByteBuf[] buffers) {
+        for (ByteBuf buffer : buffers) {
+            if (buffer != null) buffer.release();
+        }
+    }
+
+    /**
+     * Sends a payload to a single channel.
+     */
+    private void send(Channel channel, ServerPayload payload, OutboundKind kind, String coalesceKey) {
+        OutboundDispatcher.Batch batch = dispatcher.newBatch();
+        add(batch, channel, payload, kind, coalesceKey);
+        batch.dispatch();
+    }
+
+    /**
+     * Encodes a payload for one channel and queues it on the batch.
+     */
+    private void add(OutboundDispatcher.Batch batch, Channel channel, ServerPayload payload, OutboundKind kind, String coalesceKey) {
+        if (channel == null) {
             return;
         }
+        if (!channel.isOpen()) {
+            channel = bufferForResume(clientRegistry.getClientId(channel), payload);
+            if (channel == null) return;
+        }
+        WireFormat format = WireFormat.of(channel);
+        batch.add(channel, serialize(payload, format), format, kind, coalesceKey);
+    }
 
-        workerPool.submit(() -> {
-            try {
-                channel.writeAndFlush(new TextWebSocketFrame(jsonPayload))
-                        .addListener(future -> {
-                            if (!future.isSuccess()) {
-                                System.err.println("[BroadcastWorker] Failed to send message to " + channel.remoteAddress());
-                                future.cause().printStackTrace();
-                            }
-                        });
-            } catch (Exception e) {
-                System.err.println("[BroadcastWorker] Exception while sending message: " + e.getMessage());
-            }
-        });
+    /**
+     * Keeps a payload for a client whose connection is down, so it is replayed if the client resumes.
+     * @return The channel to send it to instead, if the client resumed on a new connection meanwhile.
+     */
+    private Channel bufferForResume(String clientId, ServerPayload payload) {
+        if (sessions == null || clientId == null) {
+            return null;
+        }
+        return sessions.buffer(clientId, payload);
     }
 }
@@ -0,0 +1,23 @@
+package studio.devsavegg.server.broadcaster;
+
+/**
+ * How outbound frames are compressed with the permessage-deflate WebSocket extension.
+ */
+public enum CompressionMode {
+    /** No compression is negotiated. */
+    OFF,
+    /** Netty compresses every frame on each connection, so a broadcast is deflated once per member. */
+    PER_CONNECTION,
+    /**
+     * Room broadcasts are deflated once and the compressed bytes are shared by every member
+     * (see {@link PerMessageDeflate}). Other frames are still compressed per connection.
+     */
+    BROADCAST;
+
+    /**
+     * Resolves a mode by name: {@code off}, {@code per-connection} or {@code broadcast} (case-insensitive).
+     */
+    public static CompressionMode fromName(String name) {
+        return CompressionMode.valueOf(name.trim().toUpperCase().replace('-', '_'));
+    }
+}
@@ -0,0 +1,234 @@
+package studio.devsavegg.server.broadcaster;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Writes {@link ServerPayload} records as JSON straight into a {@link ByteBuf}.
+ * <p>
+ * The output is byte-for-byte what the server has always sent, the default Jackson
+ * {@code ObjectMapper}'s {@code writeValueAsString} encoded as UTF-8: the {@code "type"}
+ * discriminator first, then the record components in declaration order, Jackson's string
+ * escaping, and {@code null} for missing values. Characters outside the BMP, such as emoji,
+ * go out as raw four-byte UTF-8, and an unpaired surrogate becomes {@code ?}. Fixed
+ * fragments (the braces, the discriminator and the field names) are encoded once, up front.
+ * <p>
+ * Anything this encoder cannot reproduce exactly (a {@code details} value that is not a
+ * String, Integer, Long, Boolean or null) makes {@link #encode} return false, and the
+ * caller falls back to Jackson.
+ */
+public final class JsonPayloadEncoder {
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL = ascii("null");
+    private static final byte[] TRUE = ascii("true");
+    private static final byte[] FALSE = ascii("false");
+
+    // --- Pre-encoded fragments, one per field in wire order ---
+    private static final byte[] CHAT_SENDER = ascii("{\"type\":\"CHAT\",\"senderId\":");
+    private static final byte[] CHAT_ROOM = ascii(",\"roomName\":");
+    private static final byte[] DM_SENDER = ascii("{\"type\":\"DM\",\"senderId\":");
+    private static final byte[] DM_PARTNER = ascii(",\"conversationPartnerId\":");
+    private static final byte[] SYSTEM_SUBTYPE = ascii("{\"type\":\"SYSTEM\",\"subType\":");
+    private static final byte[] SYSTEM_CONTEXT = ascii(",\"context\":");
+    private static final byte[] SYSTEM_DETAILS = ascii(",\"details\":");
+    private static final byte[] ERROR_CODE = ascii("{\"type\":\"ERROR\",\"errorCode\":");
+    private static final byte[] ERROR_COMMAND = ascii(",\"command\":");
+    private static final byte[] MESSAGE = ascii(",\"message\":");
+    private static final byte[] TIMESTAMP = ascii(",\"timestamp\":");
+
+    private JsonPayloadEncoder() {
+    }
+
+    /**
+     * Appends the JSON for {@code payload} to {@code out}.
+     * @return true if written; false if the payload needs Jackson, in which case {@code out}
+     *         is left as it was.
+     */
+    public static boolean encode(ServerPayload payload, ByteBuf out) {
+        int start = out.writerIndex();
+        boolean written = switch (payload) {
+            case ChatMessagePayload chat -> encodeChat(chat, out);
+            case DirectMessagePayload dm -> encodeDirect(dm, out);
+            case SystemMessagePayload system -> encodeSystem(system, out);
+            case ErrorPayload error -> encodeError(error, out);
+        };
+        if (!written) {
+            out.writerIndex(start);
+        }
+        return written;
+    }
+
+    private static boolean encodeChat(ChatMessagePayload payload, ByteBuf out) {
+        out.writeBytes(CHAT_SENDER);
+        writeString(payload.senderId(), out);
+        out.writeBytes(CHAT_ROOM);
+        writeString(payload.roomName(), out);
+        out.writeBytes(MESSAGE);
+        writeString(payload.message(), out);
+        out.writeBytes(TIMESTAMP);
+        writeLong(payload.timestamp(), out);
+        out.writeByte('}');
+        return true;
+    }
+
+    private static boolean encodeDirect(DirectMessagePayload payload, ByteBuf out) {
+        out.writeBytes(DM_SENDER);
+        writeString(payload.senderId(), out);
+        out.writeBytes(DM_PARTNER);
+        writeString(payload.conversationPartnerId(), out);
+        out.writeBytes(MESSAGE);
+        writeString(payload.message(), out);
+        out.writeBytes(TIMESTAMP);
+        writeLong(payload.timestamp(), out);
+        out.writeByte('}');
+        return true;
+    }
+
+    private static boolean encodeSystem(SystemMessagePayload payload, ByteBuf out) {
+        out.writeBytes(SYSTEM_SUBTYPE);
+        writeString(payload.subType(), out);
+        out.writeBytes(SYSTEM_CONTEXT);
+        writeString(payload.context(), out);
+        out.writeBytes(MESSAGE);
+        writeString(payload.message(), out);
+        out.writeBytes(SYSTEM_DETAILS);
+        if (!writeDetails(payload.details(), out)) return false;
+        out.writeByte('}');
+        return true;
+    }
+
+    private static boolean encodeError(ErrorPayload payload, ByteBuf out) {
+        out.writeBytes(ERROR_CODE);
+        writeLong(payload.errorCode(), out);
+        out.writeBytes(ERROR_COMMAND);
+        writeString(payload.command(), out);
+        out.writeBytes(MESSAGE);
+        writeString(payload.message(), out);
+        out.writeByte('}');
+        return true;
+    }
+
+    // --- Value writers ---
+
+    private static boolean writeDetails(Map<String, Object> details, ByteBuf out) {
+        if (details == null) {
+            out.writeBytes(NULL);
+            return true;
+        }
+
+        out.writeByte('{');
+        boolean first = true;
+        for (Map.Entry<String, Object> entry : details.entrySet()) {
+            if (entry.getKey() == null) {
+                return false;
+            }
+            if (!first) {
+                out.writeByte(',');
+            }
+            first = false;
+
+            writeString(entry.getKey(), out);
+            out.writeByte(':');
+
+            Object value = entry.getValue();
+            if (value == null) {
+                out.writeBytes(NULL);
+            } else if (value instanceof String s) {
+                writeString(s, out);
+            } else if (value instanceof Integer || value instanceof Long) {
+                writeLong(((Number) value).longValue(), out);
+            } else if (value instanceof Boolean b) {
+                out.writeBytes(b ? TRUE : FALSE);
+            } else {
+                return false; // Leave floats, nested objects etc. to Jackson
+            }
+        }
+        out.writeByte('}');
+        return true;
+    }
+
+    /**
+     * Writes a quoted, escaped JSON string. Runs of characters that need no escaping are
+     * copied with Netty's UTF-8 writer, which joins surrogate pairs and writes {@code ?} for
+     * an unpaired one, as {@link String#getBytes} does; only the escapes are written by hand.
+     * Escapes are all ASCII, so a run never splits a surrogate pair.
+     */
+    private static void writeString(String value, ByteBuf out) {
+        if (value == null) {
+            out.writeBytes(NULL);
+            return;
+        }
+
+        out.writeByte('"');
+        int length = value.length();
+        int runStart = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x20 || c == '"' || c == '\\') {
+                if (i > runStart) {
+                    ByteBufUtil.writeUtf8(out, value, runStart, i);
+                }
+                writeEscape(c, out);
+                runStart = i + 1;
+            }
+        }
+        if (length > runStart) {
+            ByteBufUtil.writeUtf8(out, value, runStart, length);
+        }
+        out.writeByte('"');
+    }
+
+    /**
+     * Jackson's escapes: the short forms where JSON has one, otherwise a six-character
+     * unicode escape with upper-case hex.
+     */
+    private static void writeEscape(char c, ByteBuf out) {
+        out.writeByte('\\');
+        switch (c) {
+            case '"' -> out.writeByte('"');
+            case '\\' -> out.writeByte('\\');
+            case '\b' -> out.writeByte('b');
+            case '\t' -> out.writeByte('t');
+            case '\n' -> out.writeByte('n');
+            case '\f' -> out.writeByte('f');
+            case '\r' -> out.writeByte('r');
+            default -> {
+                out.writeByte('u');
+                out.writeByte(HEX[c >> 12]);
+                out.writeByte(HEX[(c >> 8) & 0xF]);
+                out.writeByte(HEX[(c >> 4) & 0xF]);
+                out.writeByte(HEX[c & 0xF]);
+            }
+        }
+    }
+
+    /**
+     * Writes a decimal number without going through a String.
+     */
+    private static void writeLong(long value, ByteBuf out) {
+        if (value == Long.MIN_VALUE) {
+            out.writeBytes(ascii(Long.toString(value)));
+            return;
+        }
+        if (value < 0) {
+            out.writeByte('-');
+            value = -value;
+        }
+
+        long divisor = 1;
+        while (divisor <= value / 10) {
+            divisor *= 10;
+        }
+        while (divisor > 0) {
+            out.writeByte((int) ('0' + (value / divisor) % 10));
+            divisor /= 10;
+        }
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
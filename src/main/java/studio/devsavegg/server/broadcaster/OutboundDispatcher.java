@@ -0,0 +1,186 @@
+package studio.devsavegg.server.broadcaster;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.EventLoop;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.util.AttributeKey;
+import studio.devsavegg.server.log.Logger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Delivers outbound frames on the event loop that owns each channel.
+ * <p>
+ * Writes are collected into a {@link Batch}, grouped by {@code channel.eventLoop()},
+ * and handed over with a single task per event loop. Inside that task every
+ * frame is written first and every channel is flushed exactly once, so a room
+ * broadcast to N members costs one task per event loop instead of one per member.
+ * Channels with a {@link SlowConsumerHandler} route their frames through it so a
+ * backed-up client cannot grow its outbound buffer without bound.
+ * <p>
+ * A channel can be put on {@link #hold} while something else (a history replay) writes
+ * to it out of band. Frames dispatched to it after the hold are kept back, in order,
+ * until the matching {@link #release}, so they cannot overtake what is written meanwhile.
+ */
+public class OutboundDispatcher {
+
+    // A client that drops mid-broadcast fails every frame queued for it, so only a sample is logged.
+    private static final Logger FAILURE_LOG = Logger.get("OutboundDispatcher").sampled("writeFailure", 100);
+
+    static final ChannelFutureListener LOG_FAILURE = future -> {
+        if (!future.isSuccess()) {
+            FAILURE_LOG.warn("Failed to send message to {}", future.channel().remoteAddress(), future.cause());
+        }
+    };
+
+    /** Frames kept back while a channel is on hold, and how many holds are outstanding. Event loop only. */
+    private static final AttributeKey<Hold> HOLD = AttributeKey.valueOf("outboundHold");
+
+    private static final class Hold {
+        final ArrayDeque<PendingWrite> writes = new ArrayDeque<>();
+        int count;
+    }
+
+    private volatile boolean shutdown = false;
+
+    /**
+     * Starts a new batch. Batches are not thread-safe and are meant to live
+     * for the duration of a single broadcast call.
+     */
+    public Batch newBatch() {
+        return new Batch();
+    }
+
+    /**
+     * Stops accepting new writes. Pending event loop tasks still run.
+     */
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    public class Batch {
+        private final Map<EventLoop, List<PendingWrite>> writesByLoop = new IdentityHashMap<>();
+
+        /**
+         * Queues a frame for the channel. Takes ownership of {@code content}.
+         * @param format The channel's wire format; decides whether a text or binary frame is sent.
+         * @param kind How the slow-consumer policy may treat this frame.
+         * @param coalesceKey Frames of kind SYSTEM with equal keys may replace each other (may be null).
+         */
+        public void add(Channel channel, ByteBuf content, WireFormat format, OutboundKind kind, String coalesceKey) {
+            add(channel, content, format, 0, kind, coalesceKey);
+        }
+
+        /**
+         * Queues a frame whose content already has an extension applied (see {@link PerMessageDeflate}).
+         * @param rsv The frame's extension bits.
+         */
+        public void add(Channel channel, ByteBuf content, WireFormat format, int rsv, OutboundKind kind, String coalesceKey) {
+            if (content == null) {
+                return;
+            }
+            if (shutdown || channel == null || !channel.isOpen()) {
+                content.release();
+                return;
+            }
+
+            writesByLoop.computeIfAbsent(channel.eventLoop(), loop -> new ArrayList<>())
+                    .add(new PendingWrite(channel, content, format, rsv, kind, coalesceKey));
+        }
+
+        /**
+         * Hands every queued write to its event loop. The batch is empty afterwards.
+         */
+        public void dispatch() {
+            for (Map.Entry<EventLoop, List<PendingWrite>> entry : writesByLoop.entrySet()) {
+                EventLoop loop = entry.getKey();
+                List<PendingWrite> writes = entry.getValue();
+
+                if (loop.inEventLoop()) {
+                    writeAndFlush(writes);
+                    continue;
+                }
+
+                try {
+                    loop.execute(() -> writeAndFlush(writes));
+                } catch (RejectedExecutionException e) {
+                    for (PendingWrite write : writes) {
+                        write.content().release();
+                    }
+                }
+            }
+            writesByLoop.clear();
+        }
+    }
+
+    /**
+     * Holds back frames dispatched to the channel from now on, until {@link #release}.
+     * Takes effect in the channel's event loop task order, so frames dispatched before
+     * this call are unaffected. Holds nest; every hold needs exactly one release.
+     */
+    public static void hold(Channel channel) {
+        try {
+            channel.eventLoop().execute(() -> {
+                Hold hold = channel.attr(HOLD).get();
+                if (hold == null) {
+                    hold = new Hold();
+                    channel.attr(HOLD).set(hold);
+                }
+                hold.count++;
+            });
+        } catch (RejectedExecutionException e) {
+            // Shutting down; nothing more will be written anyway
+        }
+    }
+
+    /**
+     * Ends one {@link #hold}; once none are left, writes the frames kept back, in order.
+     * Must run on the channel's event loop.
+     */
+    public static void release(Channel channel) {
+        Hold hold = channel.attr(HOLD).get();
+        if (hold == null || --hold.count > 0) {
+            return;
+        }
+        channel.attr(HOLD).set(null);
+        writeAndFlush(new ArrayList<>(hold.writes));
+    }
+
+    /**
+     * Runs on the event loop: write everything, then flush each channel once.
+     */
+    private static void writeAndFlush(List<PendingWrite> writes) {
+        Map<Channel, Boolean> touched = new IdentityHashMap<>();
+
+        for (PendingWrite write : writes) {
+            Channel channel = write.channel();
+            Hold hold = channel.attr(HOLD).get();
+            if (hold != null) {
+                hold.writes.add(write);
+                continue;
+            }
+            WebSocketFrame frame = write.format().frame(write.content(), write.rsv());
+
+            SlowConsumerHandler guard = channel.attr(SlowConsumerHandler.KEY).get();
+            if (guard != null) {
+                guard.offer(frame, write.kind(), write.coalesceKey());
+            } else {
+                channel.write(frame).addListener(LOG_FAILURE);
+            }
+            touched.put(channel, Boolean.TRUE);
+        }
+
+        for (Channel channel : touched.keySet()) {
+            channel.flush();
+        }
+    }
+
+    private record PendingWrite(Channel channel, ByteBuf content, WireFormat format, int rsv, OutboundKind kind, String coalesceKey) {}
+}
@@ -0,0 +1,13 @@
+package studio.devsavegg.server.broadcaster;
+
+/**
+ * Classifies an outbound frame for the slow-consumer policy.
+ */
+public enum OutboundKind {
+    /** A room chat message. May be dropped (oldest first) for a slow consumer. */
+    CHAT,
+    /** A system message. May be coalesced with an earlier one of the same key. */
+    SYSTEM,
+    /** A direct message or error addressed to this client. Never dropped. */
+    DIRECT
+}
@@ -0,0 +1,161 @@
+package studio.devsavegg.server.broadcaster;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtension;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionData;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionFilter;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionFilterProvider;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketServerExtension;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketServerExtensionHandler;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketServerExtensionHandshaker;
+import io.netty.handler.codec.http.websocketx.extensions.compression.PerMessageDeflateServerExtensionHandshaker;
+import io.netty.util.AttributeKey;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Compress-once permessage-deflate (RFC 7692) for room broadcasts.
+ * <p>
+ * The extension is always negotiated with {@code server_no_context_takeover}, so every
+ * message is a self-contained deflate block that any client can inflate regardless of what
+ * it received before. That lets a broadcast be compressed once here and the same bytes be
+ * sent to every member as a frame with RSV1 set; Netty's per-connection encoder passes such
+ * frames through untouched and still compresses everything else.
+ * <p>
+ * Clients that ask for a smaller server window ({@code server_max_window_bits}) are not
+ * offered the extension, since the shared blocks are always compressed with the full window.
+ * Payloads below the threshold are sent uncompressed on both paths.
+ */
+public final class PerMessageDeflate {
+    /** Set on channels that negotiated the extension and can take pre-compressed frames. */
+    public static final AttributeKey<Boolean> NEGOTIATED = AttributeKey.valueOf("perMessageDeflate");
+
+    private static final String EXTENSION = "permessage-deflate";
+    private static final String SERVER_NO_CONTEXT = "server_no_context_takeover";
+
+    private final int level;
+    private final int threshold;
+    private final WebSocketExtensionFilterProvider filters;
+    private final ThreadLocal<Deflater> deflaters;
+
+    /**
+     * @param level Deflate level, 0-9.
+     * @param threshold Payloads smaller than this many bytes are not compressed.
+     */
+    public PerMessageDeflate(int level, int threshold) {
+        if (level < 0 || level > 9) {
+            throw new IllegalArgumentException("Deflate level must be 0-9, got " + level);
+        }
+        this.level = level;
+        this.threshold = threshold;
+        WebSocketExtensionFilter skipSmall = frame -> frame.content().readableBytes() < threshold;
+        this.filters = new WebSocketExtensionFilterProvider() {
+            @Override
+            public WebSocketExtensionFilter encoderFilter() {
+                return skipSmall;
+            }
+
+            @Override
+            public WebSocketExtensionFilter decoderFilter() {
+                return WebSocketExtensionFilter.NEVER_SKIP;
+            }
+        };
+        // One raw (nowrap) deflater per broadcasting thread, reset for every message.
+        this.deflaters = ThreadLocal.withInitial(() -> new Deflater(level, true));
+    }
+
+    /**
+     * The extension handler for one connection. Marks the channel once the extension is negotiated.
+     */
+    public WebSocketServerExtensionHandler newExtensionHandler(Channel channel) {
+        return new WebSocketServerExtensionHandler(newHandshaker(channel));
+    }
+
+    /**
+     * The handshaker behind {@link #newExtensionHandler}, for negotiating without an HTTP upgrade.
+     */
+    public WebSocketServerExtensionHandshaker newHandshaker(Channel channel) {
+        return new NoContextTakeoverHandshaker(channel);
+    }
+
+    static boolean negotiated(Channel channel) {
+        return Boolean.TRUE.equals(channel.attr(NEGOTIATED).get());
+    }
+
+    boolean worthCompressing(ByteBuf content) {
+        return content.readableBytes() >= threshold;
+    }
+
+    /**
+     * Deflates a whole message into a new buffer, without the trailing empty block that
+     * permessage-deflate leaves out. The input's indices are not modified.
+     */
+    ByteBuf compress(ByteBuf content, ByteBufAllocator allocator) {
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        deflater.setInput(content.nioBuffer());
+
+        ByteBuf out = allocator.buffer(content.readableBytes() / 2 + 16);
+        boolean done = false;
+        try {
+            while (true) {
+                out.ensureWritable(16);
+                ByteBuffer target = out.nioBuffer(out.writerIndex(), out.writableBytes());
+                int written = deflater.deflate(target, Deflater.SYNC_FLUSH);
+                out.writerIndex(out.writerIndex() + written);
+                if (written < target.capacity()) {
+                    break; // The flush fit, so all input has been consumed
+                }
+            }
+            // A sync flush ends with an empty stored block (00 00 ff ff); RFC 7692 drops it.
+            out.writerIndex(out.writerIndex() - 4);
+            done = true;
+            return out;
+        } finally {
+            if (!done) {
+                out.release();
+            }
+        }
+    }
+
+    /**
+     * The RSV bits of a frame carrying {@link #compress} output.
+     */
+    static int rsv() {
+        return WebSocketExtension.RSV1;
+    }
+
+    /**
+     * Accepts permessage-deflate offers, always adding {@code server_no_context_takeover}.
+     */
+    private final class NoContextTakeoverHandshaker implements WebSocketServerExtensionHandshaker {
+        private final Channel channel;
+        private final PerMessageDeflateServerExtensionHandshaker delegate =
+                new PerMessageDeflateServerExtensionHandshaker(level, false, 15, true, false, filters);
+
+        NoContextTakeoverHandshaker(Channel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public WebSocketServerExtension handshakeExtension(WebSocketExtensionData extensionData) {
+            if (!EXTENSION.equals(extensionData.name())) {
+                return null;
+            }
+            Map<String, String> parameters = new HashMap<>(extensionData.parameters());
+            parameters.put(SERVER_NO_CONTEXT, null);
+
+            WebSocketServerExtension extension =
+                    delegate.handshakeExtension(new WebSocketExtensionData(EXTENSION, parameters));
+            if (extension != null) {
+                channel.attr(NEGOTIATED).set(Boolean.TRUE);
+            }
+            return extension;
+        }
+    }
+}
@@ -2,9 +2,33 @@ package studio.devsavegg.server.broadcaster;
 
 public enum ServerPayloadType {
     /** A system message (e.g., welcome, error, user join/left). */
-    SYSTEM,
+    SYSTEM(1),
     /** A user chat message sent to a room. */
-    CHAT,
+    CHAT(2),
     /** A direct message between two users. */
-    DM
-}
\ No newline at end of file
+    DM(3),
+    /** A command that failed. */
+    ERROR(4);
+
+    /** The first byte of a payload on the binary subprotocol. */
+    public final int tag;
+
+    ServerPayloadType(int tag) {
+        this.tag = tag;
+    }
+
+    private static final ServerPayloadType[] byTag = new ServerPayloadType[values().length + 1];
+
+    static {
+        for (ServerPayloadType type : values()) {
+            byTag[type.tag] = type;
+        }
+    }
+
+    public static ServerPayloadType fromTag(int tag) {
+        if (tag <= 0 || tag >= byTag.length) {
+            throw new IllegalArgumentException("Unknown payload tag: " + tag);
+        }
+        return byTag[tag];
+    }
+}
@@ -0,0 +1,169 @@
+package studio.devsavegg.server.broadcaster;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.ScheduledFuture;
+import studio.devsavegg.server.log.Logger;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-connection guard that keeps a slow client from growing its outbound buffer without bound.
+ * <p>
+ * While the channel is writable, frames go straight through. Once Netty reports the channel
+ * unwritable (the high watermark was crossed), frames are parked here instead and the
+ * {@link SlowConsumerPolicy} decides what to keep. Parked frames are written again when the
+ * channel drops below the low watermark. All methods run on the channel's event loop.
+ */
+public class SlowConsumerHandler extends ChannelInboundHandlerAdapter {
+    static final AttributeKey<SlowConsumerHandler> KEY = AttributeKey.valueOf("slowConsumerHandler");
+    private static final Logger LOG = Logger.get("SlowConsumer");
+
+    private record Parked(WebSocketFrame frame, OutboundKind kind, String coalesceKey) {}
+
+    private final SlowConsumerPolicy policy;
+    private final SlowConsumerStats stats;
+    private final ArrayDeque<Parked> parked = new ArrayDeque<>();
+
+    private Channel channel;
+    private ScheduledFuture<?> disconnectTimer;
+
+    public SlowConsumerHandler(SlowConsumerPolicy policy, SlowConsumerStats stats) {
+        this.policy = policy;
+        this.stats = stats;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        channel = ctx.channel();
+        channel.attr(KEY).set(this);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        channel.attr(KEY).set(null);
+        releaseParked();
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (channel.isWritable()) {
+            cancelDisconnectTimer();
+            drain();
+        } else {
+            startDisconnectTimer();
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        releaseParked();
+        ctx.fireChannelInactive();
+    }
+
+    /**
+     * Writes the frame or parks it if the connection is backed up. Takes ownership of {@code frame}.
+     * The caller is responsible for flushing.
+     */
+    void offer(WebSocketFrame frame, OutboundKind kind, String coalesceKey) {
+        if (parked.isEmpty() && channel.isWritable()) {
+            channel.write(frame).addListener(OutboundDispatcher.LOG_FAILURE);
+            return;
+        }
+
+        if (!channel.isActive()) {
+            frame.release();
+            return;
+        }
+
+        if (kind == OutboundKind.SYSTEM && policy.coalesceSystem() && coalesceKey != null) {
+            Iterator<Parked> it = parked.iterator();
+            while (it.hasNext()) {
+                Parked p = it.next();
+                if (p.kind() == OutboundKind.SYSTEM && Objects.equals(p.coalesceKey(), coalesceKey)) {
+                    it.remove();
+                    p.frame().release();
+                    stats.recordSystemCoalesced();
+                    break;
+                }
+            }
+        }
+
+        if (parked.size() >= policy.maxPendingMessages() && !dropOldestChat()) {
+            // Nothing left that we are allowed to drop; this client cannot keep up.
+            frame.release();
+            disconnect("outbound budget exhausted");
+            return;
+        }
+
+        parked.addLast(new Parked(frame, kind, coalesceKey));
+        stats.recordParked();
+    }
+
+    private boolean dropOldestChat() {
+        Iterator<Parked> it = parked.iterator();
+        while (it.hasNext()) {
+            Parked p = it.next();
+            if (p.kind() == OutboundKind.CHAT) {
+                it.remove();
+                p.frame().release();
+                stats.recordChatDropped();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void drain() {
+        boolean wrote = false;
+        while (!parked.isEmpty() && channel.isWritable()) {
+            Parked p = parked.pollFirst();
+            channel.write(p.frame()).addListener(OutboundDispatcher.LOG_FAILURE);
+            wrote = true;
+        }
+        if (wrote) {
+            channel.flush();
+        }
+    }
+
+    private void startDisconnectTimer() {
+        if (policy.disconnectAfterMillis() <= 0 || disconnectTimer != null) {
+            return;
+        }
+        disconnectTimer = channel.eventLoop().schedule(() -> {
+            disconnectTimer = null;
+            if (!channel.isWritable()) {
+                disconnect("unwritable for " + policy.disconnectAfterMillis() + "ms");
+            }
+        }, policy.disconnectAfterMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void cancelDisconnectTimer() {
+        if (disconnectTimer != null) {
+            disconnectTimer.cancel(false);
+            disconnectTimer = null;
+        }
+    }
+
+    private void disconnect(String reason) {
+        stats.recordDisconnected();
+        LOG.warn("Closing {}: {}", channel.remoteAddress(), reason);
+        cancelDisconnectTimer();
+        releaseParked();
+        channel.close();
+    }
+
+    private void releaseParked() {
+        Parked p;
+        while ((p = parked.pollFirst()) != null) {
+            p.frame().release();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package studio.devsavegg.server.broadcaster;
+
+/**
+ * How a connection is treated while its outbound buffer is above the high watermark.
+ *
+ * @param maxPendingMessages How many frames may be parked per connection before chat messages are dropped (oldest first).
+ * @param coalesceSystem     If true, a parked room event replaces an earlier parked one with the same sub-type, room and user.
+ * @param disconnectAfterMillis How long a connection may stay unwritable before it is closed (0 = never).
+ */
+public record SlowConsumerPolicy(
+        int maxPendingMessages,
+        boolean coalesceSystem,
+        long disconnectAfterMillis
+) {
+    public static final SlowConsumerPolicy DEFAULT = new SlowConsumerPolicy(256, true, 30_000);
+}
@@ -0,0 +1,49 @@
+package studio.devsavegg.server.broadcaster;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Server-wide counters for the slow-consumer policy. Updated from the event loops.
+ */
+public class SlowConsumerStats {
+    private final LongAdder parked = new LongAdder();
+    private final LongAdder chatDropped = new LongAdder();
+    private final LongAdder systemCoalesced = new LongAdder();
+    private final LongAdder disconnected = new LongAdder();
+
+    void recordParked() {
+        parked.increment();
+    }
+
+    void recordChatDropped() {
+        chatDropped.increment();
+    }
+
+    void recordSystemCoalesced() {
+        systemCoalesced.increment();
+    }
+
+    void recordDisconnected() {
+        disconnected.increment();
+    }
+
+    /** Frames held back because the connection was not writable. */
+    public long parked() {
+        return parked.sum();
+    }
+
+    /** Chat frames discarded to keep a slow connection within its budget. */
+    public long chatDropped() {
+        return chatDropped.sum();
+    }
+
+    /** System frames replaced by a newer frame with the same key. */
+    public long systemCoalesced() {
+        return systemCoalesced.sum();
+    }
+
+    /** Connections closed for staying unwritable past the grace period or overflowing their budget. */
+    public long disconnected() {
+        return disconnected.sum();
+    }
+}
@@ -0,0 +1,45 @@
+package studio.devsavegg.server.broadcaster;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.util.AttributeKey;
+
+/**
+ * How payloads are encoded for a connection, picked once at handshake time.
+ * <p>
+ * Clients that offer the {@link #BINARY_SUBPROTOCOL} WebSocket subprotocol get
+ * {@link #BINARY} frames (see {@link BinaryPayloadCodec}); everyone else keeps the JSON text
+ * frames. Both kinds of client share the same port and path.
+ */
+public enum WireFormat {
+    JSON,
+    BINARY;
+
+    /**
+     * The subprotocol name a client offers in {@code Sec-WebSocket-Protocol} to get binary frames.
+     */
+    public static final String BINARY_SUBPROTOCOL = "current.binary.v1";
+
+    public static final AttributeKey<WireFormat> KEY = AttributeKey.valueOf("wireFormat");
+
+    static final WireFormat[] VALUES = values();
+
+    /**
+     * The format negotiated for this channel (JSON if none was stored).
+     */
+    public static WireFormat of(Channel channel) {
+        WireFormat format = channel.attr(KEY).get();
+        return (format != null) ? format : JSON;
+    }
+
+    /**
+     * Wraps encoded content in the frame type this format is sent as. Takes ownership of {@code content}.
+     * @param rsv Extension bits for the frame; non-zero for content that is already compressed.
+     */
+    public WebSocketFrame frame(ByteBuf content, int rsv) {
+        return (this == BINARY) ? new BinaryWebSocketFrame(true, rsv, content) : new TextWebSocketFrame(true, rsv, content);
+    }
+}
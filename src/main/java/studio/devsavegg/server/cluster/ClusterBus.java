@@ -0,0 +1,42 @@
+package studio.devsavegg.server.cluster;
+
+/**
+ * Carries {@link ClusterMessage}s between the nodes of a cluster.
+ * <p>
+ * Implementations must deliver the messages one node sends to another in the order they were
+ * sent, one at a time. The listener must be thread-safe: messages from different nodes and
+ * peer events may arrive on different threads. Implementations need not queue
+ * for a peer that is down: such messages may be dropped, and the peer gets a full resync
+ * through {@link Listener#onPeerUp} once it is back.
+ */
+public interface ClusterBus {
+
+    /**
+     * Receives what the bus delivers to this node.
+     */
+    interface Listener {
+        /** A message from another node. */
+        void onMessage(String fromNode, ClusterMessage message);
+
+        /** Messages can now be sent to this node. */
+        void onPeerUp(String nodeId);
+
+        /** The link to this node was lost; it may come back later. */
+        void onPeerDown(String nodeId);
+    }
+
+    /**
+     * Connects this node to the cluster.
+     */
+    void start(Listener listener) throws Exception;
+
+    /**
+     * Sends a message to one node. Never blocks; dropped if the node is not reachable.
+     */
+    void send(String nodeId, ClusterMessage message);
+
+    /**
+     * Disconnects from the cluster.
+     */
+    void shutdown();
+}
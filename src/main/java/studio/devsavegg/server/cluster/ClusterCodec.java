@@ -0,0 +1,112 @@
+package studio.devsavegg.server.cluster;
+
+import io.netty.buffer.ByteBuf;
+import studio.devsavegg.server.broadcaster.BinaryPayloadCodec;
+import studio.devsavegg.server.broadcaster.OutboundKind;
+
+import static studio.devsavegg.server.broadcaster.BinaryWire.readString;
+import static studio.devsavegg.server.broadcaster.BinaryWire.writeString;
+
+/**
+ * Encodes {@link ClusterMessage}s for the TCP bus: a tag byte, then the record components
+ * in declaration order. Strings use the {@link studio.devsavegg.server.broadcaster.BinaryWire}
+ * encoding, payloads the {@link BinaryPayloadCodec} one, and an {@link OutboundKind} is its
+ * ordinal byte. Framing is left to the transport.
+ */
+final class ClusterCodec {
+    private static final int HELLO = 1;
+    private static final int PRESENCE = 2;
+    private static final int ROOM_JOINED = 3;
+    private static final int ROOM_LEFT = 4;
+    private static final int ROOM_PUBLISH = 5;
+    private static final int ROOM_DELIVER = 6;
+    private static final int DIRECT = 7;
+    private static final OutboundKind[] KINDS = OutboundKind.values();
+
+    private ClusterCodec() {
+    }
+
+    static void encode(ClusterMessage message, ByteBuf out) {
+        switch (message) {
+            case ClusterMessage.Hello hello -> {
+                out.writeByte(HELLO);
+                writeString(hello.nodeId(), out);
+                writeString(hello.secret(), out);
+            }
+            case ClusterMessage.Presence presence -> {
+                out.writeByte(PRESENCE);
+                writeString(presence.clientId(), out);
+                writeString(presence.username(), out);
+            }
+            case ClusterMessage.RoomJoined joined -> {
+                out.writeByte(ROOM_JOINED);
+                writeString(joined.roomId(), out);
+                writeString(joined.roomName(), out);
+                writeString(joined.inviteCode(), out);
+                writeString(joined.clientId(), out);
+            }
+            case ClusterMessage.RoomLeft left -> {
+                out.writeByte(ROOM_LEFT);
+                writeString(left.roomId(), out);
+                writeString(left.clientId(), out);
+            }
+            case ClusterMessage.RoomPublish publish -> {
+                out.writeByte(ROOM_PUBLISH);
+                writeString(publish.roomId(), out);
+                out.writeByte(publish.kind().ordinal());
+                writeString(publish.coalesceKey(), out);
+                BinaryPayloadCodec.encode(publish.payload(), out);
+            }
+            case ClusterMessage.RoomDeliver deliver -> {
+                out.writeByte(ROOM_DELIVER);
+                writeString(deliver.roomId(), out);
+                out.writeByte(deliver.kind().ordinal());
+                writeString(deliver.coalesceKey(), out);
+                BinaryPayloadCodec.encode(deliver.payload(), out);
+            }
+            case ClusterMessage.Direct direct -> {
+                out.writeByte(DIRECT);
+                writeString(direct.clientId(), out);
+                BinaryPayloadCodec.encode(direct.payload(), out);
+            }
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException If the input is truncated or malformed.
+     */
+    static ClusterMessage decode(ByteBuf in) {
+        if (!in.isReadable()) {
+            throw new IllegalArgumentException("Empty cluster message");
+        }
+        int tag = in.readUnsignedByte();
+        return switch (tag) {
+            case HELLO -> new ClusterMessage.Hello(readString(in), readString(in));
+            case PRESENCE -> new ClusterMessage.Presence(readString(in), readString(in));
+            case ROOM_JOINED -> new ClusterMessage.RoomJoined(readString(in), readString(in), readString(in), readString(in));
+            case ROOM_LEFT -> new ClusterMessage.RoomLeft(readString(in), readString(in));
+            case ROOM_PUBLISH -> {
+                String roomId = readString(in);
+                OutboundKind kind = kind(in);
+                String coalesceKey = readString(in);
+                yield new ClusterMessage.RoomPublish(roomId, BinaryPayloadCodec.decode(in), kind, coalesceKey);
+            }
+            case ROOM_DELIVER -> {
+                String roomId = readString(in);
+                OutboundKind kind = kind(in);
+                String coalesceKey = readString(in);
+                yield new ClusterMessage.RoomDeliver(roomId, BinaryPayloadCodec.decode(in), kind, coalesceKey);
+            }
+            case DIRECT -> new ClusterMessage.Direct(readString(in), BinaryPayloadCodec.decode(in));
+            default -> throw new IllegalArgumentException("Unknown cluster message tag: " + tag);
+        };
+    }
+
+    private static OutboundKind kind(ByteBuf in) {
+        int ordinal = in.readUnsignedByte();
+        if (ordinal >= KINDS.length) {
+            throw new IllegalArgumentException("Unknown outbound kind: " + ordinal);
+        }
+        return KINDS[ordinal];
+    }
+}
@@ -0,0 +1,31 @@
+package studio.devsavegg.server.cluster;
+
+import studio.devsavegg.server.broadcaster.OutboundKind;
+import studio.devsavegg.server.broadcaster.ServerPayload;
+
+/**
+ * What cluster nodes tell each other over the {@link ClusterBus}.
+ */
+public sealed interface ClusterMessage {
+
+    /** First frame on a TCP bus connection: who is sending, and the cluster's shared secret. */
+    record Hello(String nodeId, String secret) implements ClusterMessage {}
+
+    /** A client on the sender came online or changed its name; {@code username} is null once it is gone. */
+    record Presence(String clientId, String username) implements ClusterMessage {}
+
+    /** A client on the sender joined (or created) a room. Carries the room so a node that has not seen it yet can add it. */
+    record RoomJoined(String roomId, String roomName, String inviteCode, String clientId) implements ClusterMessage {}
+
+    /** A client on the sender left a room. */
+    record RoomLeft(String roomId, String clientId) implements ClusterMessage {}
+
+    /** Asks the room's owner to deliver a payload to every member, wherever they are connected. */
+    record RoomPublish(String roomId, ServerPayload payload, OutboundKind kind, String coalesceKey) implements ClusterMessage {}
+
+    /** From the room's owner: deliver a payload to the room's members connected to this node. */
+    record RoomDeliver(String roomId, ServerPayload payload, OutboundKind kind, String coalesceKey) implements ClusterMessage {}
+
+    /** Deliver a payload to one client connected to this node. */
+    record Direct(String clientId, ServerPayload payload) implements ClusterMessage {}
+}
@@ -0,0 +1,290 @@
+package studio.devsavegg.server.cluster;
+
+import studio.devsavegg.server.broadcaster.BroadcastServiceImpl;
+import studio.devsavegg.server.broadcaster.OutboundKind;
+import studio.devsavegg.server.broadcaster.ServerPayload;
+import studio.devsavegg.server.log.Logger;
+import studio.devsavegg.server.registry.RoomRegistryService;
+import studio.devsavegg.server.registry.RoomRegistryServiceImpl;
+import studio.devsavegg.server.resolver.ShardRouter;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * This node's view of the cluster, and the glue between the local services and the {@link ClusterBus}.
+ * <p>
+ * Client IDs carry the node they are connected to ({@code user-<node>-<hex>}), so a DM or
+ * presence check knows where to go without a lookup. Every node announces its clients
+ * ({@link ClusterMessage.Presence}) and their room memberships ({@link ClusterMessage.RoomJoined},
+ * {@link ClusterMessage.RoomLeft}) to every other node. So each node knows every room and every
+ * member, but only holds channels for its own clients.
+ * <p>
+ * Each room is owned by the node that a {@link HashRing} of the live nodes assigns its ID to.
+ * Room broadcasts go through the owner ({@link ClusterMessage.RoomPublish}), on that room's
+ * resolver shard, which fans out to its own members and relays one
+ * {@link ClusterMessage.RoomDeliver} to each node with members. So every member sees a room's
+ * events in one order, just as with resolver shards inside one node. Inbound room messages
+ * are handed to the room's shard, keeping the {@link ShardRouter} ownership rules.
+ * <p>
+ * When a node comes up, it is sent this node's clients and memberships. When it goes down, its
+ * clients are forgotten without announcing them as leaving, and the ring is rebuilt.
+ */
+public class ClusterService implements ClusterBus.Listener {
+    private static final Logger LOG = Logger.get("Cluster");
+    private static final Pattern NODE_ID = Pattern.compile("[A-Za-z0-9]+");
+    private static final String CLIENT_PREFIX = "user-";
+
+    private final String nodeId;
+    private final ShardRouter shardRouter;
+    private final RoomRegistryServiceImpl rooms;
+    private final BroadcastServiceImpl broadcaster;
+
+    private final Set<String> peers = ConcurrentHashMap.newKeySet();
+    private final Map<String, String> localClients = new ConcurrentHashMap<>(); // ID -> username
+    private final Map<String, String> remoteClients = new ConcurrentHashMap<>(); // ID -> username
+    private volatile HashRing ring;
+    private volatile ClusterBus bus;
+
+    /**
+     * @param rooms The node's own room registry; remote changes are applied to it directly.
+     * @param broadcaster Delivers payloads to the clients connected to this node.
+     */
+    public ClusterService(String nodeId, ShardRouter shardRouter, RoomRegistryServiceImpl rooms, BroadcastServiceImpl broadcaster) {
+        if (!NODE_ID.matcher(nodeId).matches()) {
+            throw new IllegalArgumentException("Cluster node IDs may only contain letters and digits, got '" + nodeId + "'");
+        }
+        this.nodeId = nodeId;
+        this.shardRouter = shardRouter;
+        this.rooms = rooms;
+        this.broadcaster = broadcaster;
+        this.ring = new HashRing(List.of(nodeId));
+    }
+
+    /**
+     * The prefix of every client ID issued by a node.
+     */
+    public static String clientIdPrefix(String nodeId) {
+        return CLIENT_PREFIX + nodeId + "-";
+    }
+
+    /**
+     * Joins the cluster. Until then, nothing is sent to other nodes.
+     */
+    public void start(ClusterBus bus) throws Exception {
+        this.bus = bus;
+        bus.start(this);
+        LOG.info("Cluster node {} started", nodeId);
+    }
+
+    public void shutdown() {
+        ClusterBus current = bus;
+        if (current != null) {
+            current.shutdown();
+        }
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+
+    /** Nodes this one can currently send to. */
+    public int peerCount() {
+        return peers.size();
+    }
+
+    // --- Clients ---
+
+    /**
+     * The node a client is connected to, or null if the ID is not a cluster client ID.
+     */
+    public String nodeOf(String clientId) {
+        if (clientId == null || !clientId.startsWith(CLIENT_PREFIX)) {
+            return null;
+        }
+        int end = clientId.lastIndexOf('-');
+        return (end > CLIENT_PREFIX.length()) ? clientId.substring(CLIENT_PREFIX.length(), end) : null;
+    }
+
+    /**
+     * True unless the client ID names another node.
+     */
+    public boolean isLocal(String clientId) {
+        String node = nodeOf(clientId);
+        return node == null || node.equals(nodeId);
+    }
+
+    /**
+     * The name of a client connected to another node, or null if it is not online.
+     */
+    public String remoteUsername(String clientId) {
+        return remoteClients.get(clientId);
+    }
+
+    /**
+     * Announces a local client's name, or with a null name, that it is gone.
+     */
+    public void clientUpdated(String clientId, String username) {
+        if (username != null) {
+            localClients.put(clientId, username);
+        } else {
+            localClients.remove(clientId);
+        }
+        sendToPeers(new ClusterMessage.Presence(clientId, username));
+    }
+
+    /**
+     * Sends a payload to a client connected to another node.
+     */
+    public void sendDirect(String clientId, ServerPayload payload) {
+        String node = nodeOf(clientId);
+        ClusterBus current = bus;
+        if (node != null && current != null) {
+            current.send(node, new ClusterMessage.Direct(clientId, payload));
+        }
+    }
+
+    // --- Rooms ---
+
+    /**
+     * Announces that a local client joined a public room. DM sessions stay on their node.
+     */
+    public void roomJoined(String roomId, String clientId) {
+        if (roomId.startsWith("room-")) {
+            sendToPeers(new ClusterMessage.RoomJoined(roomId, rooms.getRoomName(roomId), rooms.getInviteCode(roomId), clientId));
+        }
+    }
+
+    /**
+     * Announces that a local client left a public room.
+     */
+    public void roomLeft(String roomId, String clientId) {
+        if (roomId.startsWith("room-")) {
+            sendToPeers(new ClusterMessage.RoomLeft(roomId, clientId));
+        }
+    }
+
+    /**
+     * Delivers a payload to every member of a room, through the room's owner.
+     * Call on the room's resolver shard.
+     */
+    public void publish(String roomId, ServerPayload payload, OutboundKind kind, String coalesceKey) {
+        String owner = ring.nodeFor(roomId);
+        ClusterBus current = bus;
+        if (owner == null || owner.equals(nodeId) || current == null) {
+            deliverAsOwner(roomId, payload, kind, coalesceKey);
+        } else {
+            current.send(owner, new ClusterMessage.RoomPublish(roomId, payload, kind, coalesceKey));
+        }
+    }
+
+    /**
+     * Fans out to this node's members, then relays once to every other node with members.
+     */
+    private void deliverAsOwner(String roomId, ServerPayload payload, OutboundKind kind, String coalesceKey) {
+        broadcaster.deliverToRoom(roomId, payload, kind, coalesceKey);
+
+        Set<String> members = rooms.getRoomMembers(roomId);
+        ClusterBus current = bus;
+        if (members == null || current == null) {
+            return;
+        }
+        Set<String> nodes = new HashSet<>();
+        for (String memberId : members) {
+            String node = nodeOf(memberId);
+            if (node != null && !node.equals(nodeId) && nodes.add(node)) {
+                current.send(node, new ClusterMessage.RoomDeliver(roomId, payload, kind, coalesceKey));
+            }
+        }
+    }
+
+    // --- Bus events ---
+
+    @Override
+    public void onMessage(String fromNode, ClusterMessage message) {
+        switch (message) {
+            case ClusterMessage.Presence presence -> {
+                if (presence.username() != null) {
+                    remoteClients.put(presence.clientId(), presence.username());
+                } else {
+                    remoteClients.remove(presence.clientId());
+                }
+            }
+            case ClusterMessage.RoomJoined joined -> onRoomShard(joined.roomId(), () ->
+                    rooms.addMember(joined.roomId(), joined.roomName(), joined.inviteCode(), joined.clientId()));
+            case ClusterMessage.RoomLeft left -> onRoomShard(left.roomId(), () ->
+                    rooms.leaveRoom(left.clientId(), left.roomId()));
+            case ClusterMessage.RoomPublish publish -> onRoomShard(publish.roomId(), () ->
+                    deliverAsOwner(publish.roomId(), publish.payload(), publish.kind(), publish.coalesceKey()));
+            case ClusterMessage.RoomDeliver deliver -> onRoomShard(deliver.roomId(), () ->
+                    broadcaster.deliverToRoom(deliver.roomId(), deliver.payload(), deliver.kind(), deliver.coalesceKey()));
+            case ClusterMessage.Direct direct ->
+                    broadcaster.deliver(direct.clientId(), direct.payload(), OutboundKind.DIRECT);
+            case ClusterMessage.Hello hello -> {
+                // Handled by the bus
+            }
+        }
+    }
+
+    @Override
+    public void onPeerUp(String peer) {
+        peers.add(peer);
+        ring = ring.with(peer, true);
+        LOG.info("Cluster node {} is up ({} peer(s))", peer, peers.size());
+
+        // Bring it up to date: every local client, then every room membership of one.
+        ClusterBus current = bus;
+        for (Map.Entry<String, String> client : localClients.entrySet()) {
+            current.send(peer, new ClusterMessage.Presence(client.getKey(), client.getValue()));
+        }
+        for (RoomRegistryService.RoomInfo room : rooms.getAllRooms()) {
+            Set<String> members = rooms.getRoomMembers(room.roomId());
+            if (members == null) {
+                continue;
+            }
+            String inviteCode = rooms.getInviteCode(room.roomId());
+            for (String memberId : members) {
+                if (localClients.containsKey(memberId)) {
+                    current.send(peer, new ClusterMessage.RoomJoined(room.roomId(), room.roomName(), inviteCode, memberId));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void onPeerDown(String peer) {
+        peers.remove(peer);
+        ring = ring.with(peer, false);
+        LOG.warn("Cluster node {} is down ({} peer(s))", peer, peers.size());
+
+        // Its clients are unreachable. It resends whoever is still there when it comes back.
+        for (String clientId : remoteClients.keySet()) {
+            if (peer.equals(nodeOf(clientId))) {
+                remoteClients.remove(clientId);
+                for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+                    int owner = shard;
+                    shardRouter.handOff(owner, () -> rooms.removeClientFromRooms(clientId,
+                            roomId -> shardRouter.shardOfRoom(roomId) == owner));
+                }
+            }
+        }
+    }
+
+    private void onRoomShard(String roomId, Runnable task) {
+        shardRouter.handOff(shardRouter.shardOfRoom(roomId), task);
+    }
+
+    private void sendToPeers(ClusterMessage message) {
+        ClusterBus current = bus;
+        if (current == null) {
+            return;
+        }
+        for (String peer : peers) {
+            current.send(peer, message);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package studio.devsavegg.server.cluster;
+
+import io.netty.channel.Channel;
+import studio.devsavegg.server.broadcaster.BroadcastService;
+import studio.devsavegg.server.broadcaster.BroadcastServiceImpl;
+import studio.devsavegg.server.broadcaster.ChatMessagePayload;
+import studio.devsavegg.server.broadcaster.DirectMessagePayload;
+import studio.devsavegg.server.broadcaster.OutboundKind;
+import studio.devsavegg.server.broadcaster.ServerPayload;
+import studio.devsavegg.server.broadcaster.SystemMessagePayload;
+import studio.devsavegg.server.registry.RoomRegistryService;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A broadcast service whose room broadcasts and DMs reach clients on every cluster node.
+ * <p>
+ * Room broadcasts are built here and handed to {@link ClusterService#publish}, which routes
+ * them through the room's owner. A DM to a client on another node is delivered there, and
+ * the sender's copy is sent locally. Messages to a channel are local by nature and go
+ * straight to the wrapped service.
+ */
+public class ClusteredBroadcastService implements BroadcastService {
+    private final BroadcastServiceImpl local;
+    private final RoomRegistryService roomRegistry;
+    private final ClusterService cluster;
+
+    public ClusteredBroadcastService(BroadcastServiceImpl local, RoomRegistryService roomRegistry, ClusterService cluster) {
+        this.local = local;
+        this.roomRegistry = roomRegistry;
+        this.cluster = cluster;
+    }
+
+    @Override
+    public ChatMessagePayload broadcastChatMessage(String fromClientId, String roomId, String message) {
+        if (roomRegistry.getRoomMembers(roomId) == null) return null;
+
+        ChatMessagePayload payload = new ChatMessagePayload(
+                fromClientId,
+                roomRegistry.getRoomName(roomId),
+                message,
+                System.currentTimeMillis()
+        );
+        cluster.publish(roomId, payload, OutboundKind.CHAT, null);
+        return payload;
+    }
+
+    @Override
+    public void sendDirectMessage(String fromClientId, String targetClientId, String message) {
+        if (cluster.isLocal(targetClientId)) {
+            local.sendDirectMessage(fromClientId, targetClientId, message);
+            return;
+        }
+
+        long timestamp = System.currentTimeMillis();
+        cluster.sendDirect(targetClientId, new DirectMessagePayload(fromClientId, fromClientId, message, timestamp));
+        local.deliver(fromClientId, new DirectMessagePayload(fromClientId, targetClientId, message, timestamp), OutboundKind.DIRECT);
+    }
+
+    @Override
+    public void sendSystemMessage(Channel channel, String message) {
+        local.sendSystemMessage(channel, message);
+    }
+
+    @Override
+    public void sendSystemMessage(Channel channel, String subType, String message) {
+        local.sendSystemMessage(channel, subType, message);
+    }
+
+    @Override
+    public void sendSystemMessage(Channel channel, String subType, String message, Map<String, Object> details) {
+        local.sendSystemMessage(channel, subType, message, details);
+    }
+
+    @Override
+    public void broadcastSystemMessageToRoom(String roomId, String message) {
+        broadcastSystemMessageToRoom(roomId, "GENERIC", message, Collections.emptyMap());
+    }
+
+    @Override
+    public void broadcastSystemMessageToRoom(String roomId, String subType, String message, Map<String, Object> details) {
+        if (roomRegistry.getRoomMembers(roomId) == null) return;
+
+        ServerPayload payload = new SystemMessagePayload(
+                subType,
+                roomRegistry.getRoomName(roomId),
+                message,
+                details
+        );
+        cluster.publish(roomId, payload, OutboundKind.SYSTEM, BroadcastServiceImpl.roomCoalesceKey(roomId, subType, details));
+    }
+
+    @Override
+    public void sendError(Channel channel, int errorCode, String command, String message) {
+        local.sendError(channel, errorCode, command, message);
+    }
+
+    @Override
+    public void replay(Channel channel, List<ServerPayload> payloads) {
+        local.replay(channel, payloads);
+    }
+
+    @Override
+    public void shutdown() {
+        local.shutdown();
+    }
+}
@@ -0,0 +1,91 @@
+package studio.devsavegg.server.cluster;
+
+import io.netty.channel.Channel;
+import studio.devsavegg.server.registry.ClientRegistryService;
+
+/**
+ * A client registry that also answers for clients connected to other cluster nodes.
+ * <p>
+ * Local clients live in the wrapped registry, and their arrival, renames and departure are
+ * announced to the cluster. Names and presence of remote clients come from the
+ * {@link ClusterService}. Remote clients have no channel or context on this node.
+ */
+public class ClusteredClientRegistry implements ClientRegistryService {
+    private final ClientRegistryService local;
+    private final ClusterService cluster;
+
+    public ClusteredClientRegistry(ClientRegistryService local, ClusterService cluster) {
+        this.local = local;
+        this.cluster = cluster;
+    }
+
+    @Override
+    public String registerClient(Channel channel) {
+        String clientId = local.registerClient(channel);
+        cluster.clientUpdated(clientId, local.getUsername(clientId));
+        return clientId;
+    }
+
+    @Override
+    public void unregisterClient(String clientId) {
+        local.unregisterClient(clientId);
+        if (clientId != null) {
+            cluster.clientUpdated(clientId, null);
+        }
+    }
+
+    @Override
+    public boolean rebindClient(String clientId, Channel channel) {
+        return local.rebindClient(clientId, channel);
+    }
+
+    @Override
+    public Channel getChannel(String clientId) {
+        return local.getChannel(clientId);
+    }
+
+    @Override
+    public void setUsername(String clientId, String username) {
+        local.setUsername(clientId, username);
+        if (local.isClientOnline(clientId)) {
+            cluster.clientUpdated(clientId, username);
+        }
+    }
+
+    @Override
+    public String getUsername(String clientId) {
+        if (cluster.isLocal(clientId)) {
+            return local.getUsername(clientId);
+        }
+        String username = cluster.remoteUsername(clientId);
+        return (username != null) ? username : clientId;
+    }
+
+    @Override
+    public void setClientContext(String clientId, String contextId) {
+        local.setClientContext(clientId, contextId);
+    }
+
+    @Override
+    public String getClientContext(String clientId) {
+        return local.getClientContext(clientId);
+    }
+
+    @Override
+    public String getClientId(Channel channel) {
+        return local.getClientId(channel);
+    }
+
+    @Override
+    public boolean isClientOnline(String clientId) {
+        return cluster.isLocal(clientId) ? local.isClientOnline(clientId) : cluster.remoteUsername(clientId) != null;
+    }
+
+    /**
+     * Clients connected to this node only.
+     */
+    @Override
+    public int getTotalClientCount() {
+        return local.getTotalClientCount();
+    }
+}
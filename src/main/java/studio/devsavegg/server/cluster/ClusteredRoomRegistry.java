@@ -0,0 +1,121 @@
+package studio.devsavegg.server.cluster;
+
+import studio.devsavegg.server.registry.RoomDirectory;
+import studio.devsavegg.server.registry.RoomRegistryService;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * A room registry whose membership changes are announced to the cluster.
+ * <p>
+ * Every call goes to the wrapped registry, which also holds the rooms and members of other
+ * nodes (the {@link ClusterService} applies their announcements to it directly). Only
+ * changes made here, which are always for local clients, are announced.
+ */
+public class ClusteredRoomRegistry implements RoomRegistryService {
+    private final RoomRegistryService local;
+    private final ClusterService cluster;
+
+    public ClusteredRoomRegistry(RoomRegistryService local, ClusterService cluster) {
+        this.local = local;
+        this.cluster = cluster;
+    }
+
+    @Override
+    public String createRoom(String ownerClientId, String roomName) {
+        String inviteCode = local.createRoom(ownerClientId, roomName);
+        cluster.roomJoined(local.getRoomId(inviteCode), ownerClientId);
+        return inviteCode;
+    }
+
+    @Override
+    public String joinRoom(String clientId, String inviteCode) {
+        String roomId = local.joinRoom(clientId, inviteCode);
+        if (roomId != null) {
+            cluster.roomJoined(roomId, clientId);
+        }
+        return roomId;
+    }
+
+    @Override
+    public void leaveRoom(String clientId, String roomId) {
+        local.leaveRoom(clientId, roomId);
+        cluster.roomLeft(roomId, clientId);
+    }
+
+    @Override
+    public void removeClientFromAllRooms(String clientId) {
+        List<String> left = List.copyOf(local.getClientRooms(clientId));
+        local.removeClientFromAllRooms(clientId);
+        for (String roomId : left) {
+            cluster.roomLeft(roomId, clientId);
+        }
+    }
+
+    @Override
+    public void removeClientFromRooms(String clientId, Predicate<String> roomFilter) {
+        List<String> left = local.getClientRooms(clientId).stream().filter(roomFilter).toList();
+        local.removeClientFromRooms(clientId, roomFilter);
+        for (String roomId : left) {
+            cluster.roomLeft(roomId, clientId);
+        }
+    }
+
+    @Override
+    public Set<String> getClientRooms(String clientId) {
+        return local.getClientRooms(clientId);
+    }
+
+    @Override
+    public boolean isClientInRoom(String clientId, String roomId) {
+        return local.isClientInRoom(clientId, roomId);
+    }
+
+    @Override
+    public String getRoomId(String inviteCode) {
+        return local.getRoomId(inviteCode);
+    }
+
+    @Override
+    public String getInviteCode(String roomId) {
+        return local.getInviteCode(roomId);
+    }
+
+    @Override
+    public String getRoomName(String roomId) {
+        return local.getRoomName(roomId);
+    }
+
+    @Override
+    public Set<String> getRoomMembers(String roomId) {
+        return local.getRoomMembers(roomId);
+    }
+
+    @Override
+    public Collection<RoomInfo> getAllRooms() {
+        return local.getAllRooms();
+    }
+
+    @Override
+    public RoomDirectory.Page listRooms(RoomDirectory.Sort sort, String cursor, int limit) {
+        return local.listRooms(sort, cursor, limit);
+    }
+
+    @Override
+    public int getRoomCount() {
+        return local.getRoomCount();
+    }
+
+    @Override
+    public String getOrCreateDMSession(String clientId1, String clientId2) {
+        return local.getOrCreateDMSession(clientId1, clientId2);
+    }
+
+    @Override
+    public String getOtherDMUser(String dmContextId, String myClientId) {
+        return local.getOtherDMUser(dmContextId, myClientId);
+    }
+}
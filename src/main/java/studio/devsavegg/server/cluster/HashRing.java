@@ -0,0 +1,75 @@
+package studio.devsavegg.server.cluster;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Consistent hashing of keys (room IDs) onto cluster nodes.
+ * <p>
+ * Every node is placed on a 64-bit ring at {@value #VIRTUAL_NODES} pseudo-random points, and
+ * a key belongs to the first point at or after its own hash. Adding or removing a node only
+ * moves the keys between that node's points and their predecessors, about 1/N of them, so
+ * rooms on the other nodes keep their owner. Instances are immutable.
+ */
+final class HashRing {
+    private static final int VIRTUAL_NODES = 128;
+
+    private final TreeMap<Long, String> points = new TreeMap<>();
+    private final Set<String> nodes;
+
+    HashRing(Collection<String> nodes) {
+        this.nodes = Set.copyOf(new TreeSet<>(nodes));
+        for (String node : this.nodes) {
+            for (int i = 0; i < VIRTUAL_NODES; i++) {
+                points.put(hash(node + "#" + i), node);
+            }
+        }
+    }
+
+    /**
+     * The node that owns a key, or null if the ring is empty.
+     */
+    String nodeFor(String key) {
+        if (points.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, String> point = points.ceilingEntry(hash(key));
+        return (point != null) ? point.getValue() : points.firstEntry().getValue();
+    }
+
+    Set<String> nodes() {
+        return nodes;
+    }
+
+    /**
+     * A copy of this ring with the node added or removed.
+     */
+    HashRing with(String node, boolean present) {
+        Set<String> changed = new TreeSet<>(nodes);
+        if (present ? changed.add(node) : changed.remove(node)) {
+            return new HashRing(changed);
+        }
+        return this;
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-16 chars, finished with the MurmurHash3 mixer so that
+     * similar keys ("node#1", "node#2") land far apart.
+     */
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,71 @@
+package studio.devsavegg.server.cluster;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A bus between nodes running in the same JVM, for tests and single-machine experiments.
+ * <p>
+ * Nodes find each other through a shared hub. Messages are handed over as objects (every
+ * field is immutable), and each node runs its listener on its own "Cluster-&lt;node&gt;"
+ * thread, so a sender never runs another node's code and per-sender order is kept.
+ */
+public class InProcessBus implements ClusterBus {
+    private static final Map<String, InProcessBus> HUB = new ConcurrentHashMap<>();
+
+    private final String nodeId;
+    private final ExecutorService inbox;
+    private volatile Listener listener;
+
+    public InProcessBus(String nodeId) {
+        this.nodeId = nodeId;
+        this.inbox = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "Cluster-" + nodeId);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public void start(Listener listener) {
+        this.listener = listener;
+        if (HUB.putIfAbsent(nodeId, this) != null) {
+            throw new IllegalStateException("Node " + nodeId + " is already on the in-process bus");
+        }
+        for (InProcessBus peer : HUB.values()) {
+            if (peer != this) {
+                peer.run(() -> peer.listener.onPeerUp(nodeId));
+                run(() -> listener.onPeerUp(peer.nodeId));
+            }
+        }
+    }
+
+    @Override
+    public void send(String target, ClusterMessage message) {
+        InProcessBus peer = HUB.get(target);
+        if (peer != null && peer != this) {
+            peer.run(() -> peer.listener.onMessage(nodeId, message));
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        if (HUB.remove(nodeId, this)) {
+            for (InProcessBus peer : HUB.values()) {
+                peer.run(() -> peer.listener.onPeerDown(nodeId));
+            }
+        }
+        inbox.shutdown();
+    }
+
+    private void run(Runnable task) {
+        try {
+            inbox.execute(task);
+        } catch (RejectedExecutionException e) {
+            // This node is shutting down.
+        }
+    }
+}
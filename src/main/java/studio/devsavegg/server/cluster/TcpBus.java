@@ -0,0 +1,279 @@
+package studio.devsavegg.server.cluster;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.LengthFieldPrepender;
+import io.netty.handler.codec.MessageToByteEncoder;
+import studio.devsavegg.server.log.Logger;
+import studio.devsavegg.server.transport.Transport;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bus over TCP, one connection per direction between every pair of nodes.
+ * <p>
+ * Each node listens on its own address from the node list and dials every other node. A node
+ * only sends over the connections it dialed, and only receives over the ones it accepted,
+ * so each direction is one ordered stream. A dialed connection starts with a
+ * {@link ClusterMessage.Hello}; after that every frame is a 4-byte length followed by one
+ * {@link ClusterCodec} message. A dropped connection is re-dialed every
+ * {@value #RECONNECT_MILLIS} ms, and messages for a node that is not connected are dropped.
+ * <p>
+ * An accepted connection is only trusted once its {@code Hello} names a listed node, comes
+ * from that node's configured host (unless the node listens on a wildcard address) and
+ * carries the cluster's shared secret, when one is set. Anything else is closed. The secret
+ * is sent in the clear, so it keeps stray or misconfigured peers out, not an attacker who
+ * can read the cluster network.
+ * <p>
+ * Runs on the chat server's event loops and transport, so it works on one machine over
+ * loopback as well as across hosts.
+ */
+public class TcpBus implements ClusterBus {
+    private static final Logger LOG = Logger.get("TcpBus");
+    private static final int MAX_FRAME_BYTES = 16 * 1024 * 1024;
+    private static final long RECONNECT_MILLIS = 1000;
+
+    private final String nodeId;
+    private final Map<String, InetSocketAddress> nodes;
+    private final String secret;
+    private final Transport transport;
+    private final EventLoopGroup bossGroup;
+    private final EventLoopGroup workerGroup;
+    private final Map<String, Channel> links = new ConcurrentHashMap<>();
+    private final LongAdder dropped = new LongAdder();
+    private volatile Listener listener;
+    private volatile boolean shutdown = false;
+    private Channel serverChannel;
+
+    /**
+     * @param nodes  Every node in the cluster, this one included, with the address it listens on.
+     * @param secret Shared secret every node sends in its {@code Hello}; blank skips the check.
+     */
+    public TcpBus(String nodeId, Map<String, InetSocketAddress> nodes, String secret, Transport transport,
+                  EventLoopGroup bossGroup, EventLoopGroup workerGroup) {
+        if (!nodes.containsKey(nodeId)) {
+            throw new IllegalArgumentException("Node " + nodeId + " is not in the node list " + nodes.keySet());
+        }
+        this.nodeId = nodeId;
+        this.nodes = Map.copyOf(nodes);
+        this.secret = secret;
+        this.transport = transport;
+        this.bossGroup = bossGroup;
+        this.workerGroup = workerGroup;
+    }
+
+    /**
+     * Parses a node list of the form {@code a=10.0.0.1:7101,b=10.0.0.2:7101}.
+     */
+    public static Map<String, InetSocketAddress> parseNodes(String spec) {
+        Map<String, InetSocketAddress> nodes = new LinkedHashMap<>();
+        for (String entry : spec.split(",")) {
+            String trimmed = entry.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            int eq = trimmed.indexOf('=');
+            int colon = trimmed.lastIndexOf(':');
+            if (eq <= 0 || colon < eq + 2 || colon == trimmed.length() - 1) {
+                throw new IllegalArgumentException("Bad cluster node '" + trimmed + "', expected <node>=<host>:<port>");
+            }
+            String host = trimmed.substring(eq + 1, colon);
+            int port = Integer.parseInt(trimmed.substring(colon + 1));
+            nodes.put(trimmed.substring(0, eq), new InetSocketAddress(host, port));
+        }
+        return nodes;
+    }
+
+    @Override
+    public void start(Listener listener) throws InterruptedException {
+        this.listener = listener;
+
+        ServerBootstrap b = new ServerBootstrap();
+        b.group(bossGroup, workerGroup)
+                .channel(transport.serverChannelClass())
+                .childOption(ChannelOption.TCP_NODELAY, true)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline().addLast(new LengthFieldBasedFrameDecoder(MAX_FRAME_BYTES, 0, 4, 0, 4));
+                        ch.pipeline().addLast(new InboundHandler());
+                    }
+                });
+        serverChannel = b.bind(nodes.get(nodeId)).sync().channel();
+        LOG.info("Cluster node {} listening on {}", nodeId, nodes.get(nodeId));
+
+        for (String peer : nodes.keySet()) {
+            if (!peer.equals(nodeId)) {
+                dial(peer);
+            }
+        }
+    }
+
+    @Override
+    public void send(String target, ClusterMessage message) {
+        Channel link = links.get(target);
+        if (link == null) {
+            dropped.increment();
+            return;
+        }
+        link.writeAndFlush(message, link.voidPromise());
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        if (serverChannel != null) {
+            serverChannel.close();
+        }
+        links.values().forEach(Channel::close);
+    }
+
+    /** Messages dropped because their node was not connected. */
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    // --- Outbound ---
+
+    private void dial(String peer) {
+        if (shutdown) {
+            return;
+        }
+
+        Bootstrap b = new Bootstrap();
+        b.group(workerGroup)
+                .channel(transport.socketChannelClass())
+                .option(ChannelOption.TCP_NODELAY, true)
+                .handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline().addLast(new LengthFieldPrepender(4));
+                        ch.pipeline().addLast(new Encoder());
+                    }
+                });
+
+        ChannelFuture connect = b.connect(nodes.get(peer));
+        connect.addListener(future -> {
+            if (!future.isSuccess()) {
+                LOG.debug("Cannot reach cluster node {}: {}", peer, future.cause().getMessage());
+                redial(peer);
+                return;
+            }
+
+            Channel link = connect.channel();
+            link.writeAndFlush(new ClusterMessage.Hello(nodeId, secret), link.voidPromise());
+            links.put(peer, link);
+            LOG.info("Connected to cluster node {}", peer);
+            listener.onPeerUp(peer);
+
+            link.closeFuture().addListener(closed -> {
+                links.remove(peer, link);
+                if (!shutdown) {
+                    LOG.warn("Lost connection to cluster node {}", peer);
+                    listener.onPeerDown(peer);
+                    redial(peer);
+                }
+            });
+        });
+    }
+
+    private void redial(String peer) {
+        if (!shutdown) {
+            workerGroup.schedule(() -> dial(peer), RECONNECT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static final class Encoder extends MessageToByteEncoder<ClusterMessage> {
+        @Override
+        protected void encode(ChannelHandlerContext ctx, ClusterMessage message, ByteBuf out) {
+            ClusterCodec.encode(message, out);
+        }
+    }
+
+    // --- Inbound ---
+
+    private final class InboundHandler extends SimpleChannelInboundHandler<ByteBuf> {
+        private String peer; // Set by the Hello frame
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, ByteBuf frame) {
+            ClusterMessage message;
+            try {
+                message = ClusterCodec.decode(frame);
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                LOG.warn("Malformed cluster frame from {}; closing: {}", ctx.channel().remoteAddress(), e.getMessage());
+                ctx.close();
+                return;
+            }
+
+            if (peer == null) {
+                SocketAddress remote = ctx.channel().remoteAddress();
+                if (!(message instanceof ClusterMessage.Hello hello) || !nodes.containsKey(hello.nodeId())) {
+                    LOG.warn("Unknown cluster peer at {}; closing", remote);
+                    ctx.close();
+                    return;
+                }
+                if (!fromHost(hello.nodeId(), remote)) {
+                    LOG.warn("Cluster peer at {} claims to be node {}, which is configured at {}; closing",
+                            remote, hello.nodeId(), nodes.get(hello.nodeId()).getHostString());
+                    ctx.close();
+                    return;
+                }
+                if (!secretMatches(hello.secret())) {
+                    LOG.warn("Cluster peer at {} sent a wrong secret for node {}; closing", remote, hello.nodeId());
+                    ctx.close();
+                    return;
+                }
+                peer = hello.nodeId();
+                return;
+            }
+            listener.onMessage(peer, message);
+        }
+
+        /** Whether {@code remote} is the host {@code node} is configured on. */
+        private boolean fromHost(String node, SocketAddress remote) {
+            InetAddress expected = nodes.get(node).getAddress();
+            if (expected == null || expected.isAnyLocalAddress()) {
+                return true; // Unresolved or wildcard: nothing to compare against
+            }
+            if (!(remote instanceof InetSocketAddress inet) || inet.getAddress() == null) {
+                return false;
+            }
+            InetAddress actual = inet.getAddress();
+            return actual.equals(expected) || (actual.isLoopbackAddress() && expected.isLoopbackAddress());
+        }
+
+        private boolean secretMatches(String presented) {
+            if (secret.isEmpty()) {
+                return true;
+            }
+            return presented != null && MessageDigest.isEqual(
+                    secret.getBytes(StandardCharsets.UTF_8), presented.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            LOG.warn("Cluster link from {} failed: {}", (peer != null) ? peer : ctx.channel().remoteAddress(), cause.getMessage());
+            ctx.close();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package studio.devsavegg.server.friend;
+
+import studio.devsavegg.server.log.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+/**
+ * A {@link FriendServiceImpl} whose changes survive restarts.
+ * <p>
+ * Reads go straight to the in-memory graph. Each successful mutation queues one
+ * {@link FriendWal} record holding the pair's new state and returns without waiting for the
+ * disk, so durability adds no I/O to the resolver threads. The WAL writer syncs each batch
+ * it drains (group commit). A crash can therefore lose at most the changes of the batch that
+ * was being written. The WAL writer also triggers periodic {@link FriendSnapshot}s, which keep
+ * the log that recovery has to replay short.
+ * <p>
+ * On {@link #open}, the newest snapshot is memory-mapped and loaded, then every later WAL
+ * segment is replayed on top of it.
+ */
+public class DurableFriendService implements FriendService {
+    private static final Logger LOG = Logger.get("Friends");
+
+    private final FriendServiceImpl graph;
+    private final FriendWal wal;
+
+    private DurableFriendService(FriendServiceImpl graph, FriendWal wal) {
+        this.graph = graph;
+        this.wal = wal;
+    }
+
+    /**
+     * Recovers the graph stored in {@code dir} (creating the directory if needed) and starts logging to it.
+     * @param snapshotEvery WAL records between automatic snapshots.
+     */
+    public static DurableFriendService open(Path dir, long snapshotEvery) throws IOException {
+        if (snapshotEvery < 1) {
+            throw new IllegalArgumentException("snapshotEvery must be >= 1");
+        }
+        Files.createDirectories(dir);
+
+        long[] snapshots;
+        long[] segments;
+        try (Stream<Path> files = Files.list(dir)) {
+            Path[] all = files.toArray(Path[]::new);
+            for (Path file : all) {
+                if (file.getFileName().toString().endsWith(".tmp")) {
+                    Files.delete(file); // A snapshot that never finished
+                }
+            }
+            snapshots = Arrays.stream(all).mapToLong(FriendWal::snapshotNumber).filter(n -> n >= 0).sorted().toArray();
+            segments = Arrays.stream(all).mapToLong(FriendWal::segmentNumber).filter(n -> n >= 0).sorted().toArray();
+        }
+
+        FriendServiceImpl graph = new FriendServiceImpl();
+        long start = System.nanoTime();
+        long base = 0;
+        long edges = 0;
+        if (snapshots.length > 0) {
+            base = snapshots[snapshots.length - 1];
+            edges = FriendSnapshot.load(FriendWal.snapshotPath(dir, base), graph);
+        }
+        long loaded = System.nanoTime();
+
+        long records = 0;
+        long next = base;
+        for (long segment : segments) {
+            if (segment >= base) {
+                records += FriendWal.replay(FriendWal.segmentPath(dir, segment), graph);
+                next = segment + 1;
+            }
+        }
+        long replayed = System.nanoTime();
+
+        LOG.info("Recovering friend graph from {}", dir.toAbsolutePath());
+        LOG.info("Snapshot of {} friendship(s) loaded in {} ms", edges, (loaded - start) / 1_000_000);
+        LOG.info("Replayed {} WAL record(s) in {} ms", records, (replayed - loaded) / 1_000_000);
+
+        FriendWal wal = new FriendWal(dir, graph, next, snapshotEvery);
+        wal.start();
+        return new DurableFriendService(graph, wal);
+    }
+
+    // --- Mutations: applied, then logged under the pair's lock so records are in order ---
+
+    @Override
+    public boolean sendFriendRequest(String requesterId, String targetId) {
+        return logged(requesterId, targetId, () -> graph.sendFriendRequest(requesterId, targetId));
+    }
+
+    @Override
+    public boolean acceptFriendRequest(String acceptorId, String requesterId) {
+        return logged(acceptorId, requesterId, () -> graph.acceptFriendRequest(acceptorId, requesterId));
+    }
+
+    @Override
+    public boolean rejectOrCancelRequest(String removerId, String otherId) {
+        return logged(removerId, otherId, () -> graph.rejectOrCancelRequest(removerId, otherId));
+    }
+
+    @Override
+    public boolean removeFriend(String removerId, String friendId) {
+        return logged(removerId, friendId, () -> graph.removeFriend(removerId, friendId));
+    }
+
+    @Override
+    public boolean blockUser(String blockerId, String targetId) {
+        return logged(blockerId, targetId, () -> graph.blockUser(blockerId, targetId));
+    }
+
+    private boolean logged(String id1, String id2, BooleanSupplier mutation) {
+        synchronized (graph.lockFor(id1, id2)) {
+            if (!mutation.getAsBoolean()) {
+                return false;
+            }
+            boolean ordered = id1.compareTo(id2) < 0;
+            wal.append(new FriendWal.Entry(ordered ? id1 : id2, ordered ? id2 : id1, graph.getFriendship(id1, id2)));
+            return true;
+        }
+    }
+
+    // --- Reads ---
+
+    @Override
+    public Set<String> listFriends(String clientId) {
+        return graph.listFriends(clientId);
+    }
+
+    @Override
+    public Set<String> listPendingIncomingRequests(String clientId) {
+        return graph.listPendingIncomingRequests(clientId);
+    }
+
+    @Override
+    public Set<String> listPendingOutgoingRequests(String clientId) {
+        return graph.listPendingOutgoingRequests(clientId);
+    }
+
+    @Override
+    public FriendshipStatus getFriendshipStatus(String clientId1, String clientId2) {
+        return graph.getFriendshipStatus(clientId1, clientId2);
+    }
+
+    @Override
+    public Friendship getFriendship(String clientId1, String clientId2) {
+        return graph.getFriendship(clientId1, clientId2);
+    }
+
+    // --- Lifecycle and metrics ---
+
+    /**
+     * Snapshots the graph after every change made so far. Completes once the snapshot is on disk.
+     */
+    public CompletableFuture<Void> checkpoint() {
+        return wal.checkpoint();
+    }
+
+    /**
+     * Syncs the queued changes and stops the WAL writer.
+     */
+    public void shutdown() {
+        wal.shutdown();
+        LOG.info("Friend WAL stopped after {} record(s) in {} sync(s).", wal.records(), wal.syncs());
+    }
+
+    /** Changes waiting for the WAL writer. */
+    public int queueDepth() {
+        return wal.queueDepth();
+    }
+
+    /** Changes written to the WAL since startup. */
+    public long records() {
+        return wal.records();
+    }
+
+    /** WAL syncs since startup; records / syncs is the average group-commit size. */
+    public long syncs() {
+        return wal.syncs();
+    }
+}
@@ -1,27 +1,38 @@
 package studio.devsavegg.server.friend;
 
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 public class FriendServiceImpl implements FriendService {
-    private final Map<String, Friendship> friendships = new ConcurrentHashMap<>();
+    private static final int LOCK_STRIPES = 64;
 
     /**
-     * Creates a canonical, alphabetized key for two user IDs.
+     * Adjacency index: user ID -> (other user ID -> relationship).
+     * Both users of a relationship point at the same Friendship instance, so lookups
+     * need no composite key and every listing only walks the user's own edges.
      */
-    private String getCompositeKey(String id1, String id2) {
-        if (id1.compareTo(id2) < 0) {
-            return id1 + ":" + id2;
-        } else {
-            return id2 + ":" + id1;
+    private final Map<String, Map<String, Friendship>> adjacency = new ConcurrentHashMap<>();
+
+    /**
+     * A mutation touches both users' edge maps; striped locks keep the pair consistent.
+     */
+    private final Object[] pairLocks = new Object[LOCK_STRIPES];
+
+    public FriendServiceImpl() {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            pairLocks[i] = new Object();
         }
     }
 
     @Override
     public Friendship getFriendship(String clientId1, String clientId2) {
-        return friendships.get(getCompositeKey(clientId1, clientId2));
+        Map<String, Friendship> edges = adjacency.get(clientId1);
+        return (edges != null) ? edges.get(clientId2) : null;
     }
 
     @Override
@@ -32,95 +43,195 @@ public class FriendServiceImpl implements FriendService {
 
     @Override
     public boolean sendFriendRequest(String requesterId, String targetId) {
-        String key = getCompositeKey(requesterId, targetId);
-
-        Friendship newFs = friendships.compute(key, (k, existingFs) -> {
+        synchronized (lockFor(requesterId, targetId)) {
+            Friendship existingFs = getFriendship(requesterId, targetId);
             if (existingFs != null && (existingFs.status() == FriendshipStatus.ACCEPTED || existingFs.status() == FriendshipStatus.BLOCKED)) {
-                return existingFs;
+                return false;
             }
 
             String userA = (requesterId.compareTo(targetId) < 0) ? requesterId : targetId;
             String userB = (requesterId.compareTo(targetId) < 0) ? targetId : requesterId;
-            return new Friendship(userA, userB, requesterId, FriendshipStatus.PENDING);
-        });
-
-        return newFs.status() == FriendshipStatus.PENDING && newFs.requesterId().equals(requesterId);
+            link(new Friendship(userA, userB, requesterId, FriendshipStatus.PENDING));
+            return true;
+        }
     }
 
     @Override
     public boolean acceptFriendRequest(String acceptorId, String requesterId) {
-        String key = getCompositeKey(acceptorId, requesterId);
+        synchronized (lockFor(acceptorId, requesterId)) {
+            Friendship existingFs = getFriendship(acceptorId, requesterId);
+            if (existingFs == null) {
+                return false;
+            }
 
-        Friendship updatedFs = friendships.computeIfPresent(key, (k, existingFs) -> {
             if (existingFs.status() == FriendshipStatus.PENDING && existingFs.requesterId().equals(requesterId)) {
-                return new Friendship(existingFs.userA(), existingFs.userB(), existingFs.requesterId(), FriendshipStatus.ACCEPTED);
+                link(new Friendship(existingFs.userA(), existingFs.userB(), existingFs.requesterId(), FriendshipStatus.ACCEPTED));
+                return true;
             }
-            return existingFs;
-        });
-
-        return updatedFs != null && updatedFs.status() == FriendshipStatus.ACCEPTED;
+            return existingFs.status() == FriendshipStatus.ACCEPTED;
+        }
     }
 
     @Override
     public boolean rejectOrCancelRequest(String removerId, String otherId) {
-        String key = getCompositeKey(removerId, otherId);
-
-        Friendship fs = friendships.get(key);
-        if (fs != null && fs.status() == FriendshipStatus.PENDING) {
-            return friendships.remove(key, fs);
+        synchronized (lockFor(removerId, otherId)) {
+            Friendship fs = getFriendship(removerId, otherId);
+            if (fs != null && fs.status() == FriendshipStatus.PENDING) {
+                unlink(fs);
+                return true;
+            }
+            return false;
         }
-        return false;
     }
 
     @Override
     public boolean removeFriend(String removerId, String friendId) {
-        String key = getCompositeKey(removerId, friendId);
-
-        Friendship fs = friendships.get(key);
-        if (fs != null && fs.status() == FriendshipStatus.ACCEPTED) {
-            return friendships.remove(key, fs);
+        synchronized (lockFor(removerId, friendId)) {
+            Friendship fs = getFriendship(removerId, friendId);
+            if (fs != null && fs.status() == FriendshipStatus.ACCEPTED) {
+                unlink(fs);
+                return true;
+            }
+            return false;
         }
-        return false;
     }
 
     @Override
     public boolean blockUser(String blockerId, String targetId) {
-        String key = getCompositeKey(blockerId, targetId);
-
         String userA = (blockerId.compareTo(targetId) < 0) ? blockerId : targetId;
         String userB = (blockerId.compareTo(targetId) < 0) ? targetId : blockerId;
 
-        Friendship blockedFs = new Friendship(userA, userB, blockerId, FriendshipStatus.BLOCKED);
-
-        friendships.put(key, blockedFs);
+        synchronized (lockFor(blockerId, targetId)) {
+            link(new Friendship(userA, userB, blockerId, FriendshipStatus.BLOCKED));
+        }
         return true;
     }
 
     @Override
     public Set<String> listFriends(String clientId) {
-        return friendships.values().stream()
-                .filter(fs -> fs.status() == FriendshipStatus.ACCEPTED)
-                .filter(fs -> fs.userA().equals(clientId) || fs.userB().equals(clientId))
-                .map(fs -> fs.userA().equals(clientId) ? fs.userB() : fs.userA())
-                .collect(Collectors.toSet());
+        return collectOthers(clientId, fs -> fs.status() == FriendshipStatus.ACCEPTED);
     }
 
     @Override
     public Set<String> listPendingIncomingRequests(String clientId) {
-        return friendships.values().stream()
-                .filter(fs -> fs.status() == FriendshipStatus.PENDING)
-                .filter(fs -> fs.userA().equals(clientId) || fs.userB().equals(clientId))
-                .map(Friendship::requesterId)
-                .filter(s -> !s.equals(clientId))
-                .collect(Collectors.toSet());
+        return collectOthers(clientId, fs -> fs.status() == FriendshipStatus.PENDING && !fs.requesterId().equals(clientId));
     }
 
     @Override
     public Set<String> listPendingOutgoingRequests(String clientId) {
-        return friendships.values().stream()
-                .filter(fs -> fs.status() == FriendshipStatus.PENDING)
-                .filter(fs -> fs.requesterId().equals(clientId))
-                .map(fs -> fs.userA().equals(clientId) ? fs.userB() : fs.userA())
-                .collect(Collectors.toSet());
+        return collectOthers(clientId, fs -> fs.status() == FriendshipStatus.PENDING && fs.requesterId().equals(clientId));
+    }
+
+    // --- Persistence hooks (see DurableFriendService) ---
+
+    /**
+     * Every user with at least one relationship. Weakly consistent while mutations run.
+     */
+    Set<String> users() {
+        return adjacency.keySet();
+    }
+
+    /**
+     * Calls {@code action} once per relationship. Weakly consistent while mutations run.
+     */
+    void forEachFriendship(Consumer<Friendship> action) {
+        for (Map.Entry<String, Map<String, Friendship>> owner : adjacency.entrySet()) {
+            for (Friendship fs : owner.getValue().values()) {
+                if (fs.userA().equals(owner.getKey())) {
+                    action.accept(fs);
+                }
+            }
+        }
+    }
+
+    /**
+     * Number of relationships the user has; 0 if none.
+     */
+    int degree(String clientId) {
+        Map<String, Friendship> edges = adjacency.get(clientId);
+        return (edges != null) ? edges.size() : 0;
+    }
+
+    /**
+     * Creates the user's edge map sized for {@code expectedDegree} relationships, so recovery
+     * does not rehash it as it fills. Only for recovery, before the service is shared.
+     */
+    Map<String, Friendship> presize(String clientId, int expectedDegree) {
+        return adjacency.computeIfAbsent(clientId, id -> new ConcurrentHashMap<>(Math.max(expectedDegree, 1)));
+    }
+
+    /**
+     * Stores a recovered relationship. Only for recovery, before the service is shared.
+     */
+    void restore(Friendship fs) {
+        adjacency.computeIfAbsent(fs.userA(), id -> new ConcurrentHashMap<>()).put(fs.userB(), fs);
+        adjacency.computeIfAbsent(fs.userB(), id -> new ConcurrentHashMap<>()).put(fs.userA(), fs);
+    }
+
+    /**
+     * Drops a recovered relationship. Only for recovery, before the service is shared.
+     */
+    void forget(String userA, String userB) {
+        removeEdge(userA, userB);
+        removeEdge(userB, userA);
+    }
+
+    /**
+     * The lock every mutation of this pair holds. Reentrant, so a caller may hold it around a
+     * mutation to observe the pair's resulting state atomically.
+     */
+    Object lockFor(String id1, String id2) {
+        return pairLocks[(id1.hashCode() ^ id2.hashCode()) & (LOCK_STRIPES - 1)];
+    }
+
+    // --- Helpers ---
+
+    /**
+     * Walks only this user's edges, so the cost is O(degree) instead of O(all friendships).
+     */
+    private Set<String> collectOthers(String clientId, Predicate<Friendship> filter) {
+        Map<String, Friendship> edges = adjacency.get(clientId);
+        if (edges == null) {
+            return Collections.emptySet();
+        }
+
+        Set<String> result = new HashSet<>();
+        for (Map.Entry<String, Friendship> edge : edges.entrySet()) {
+            if (filter.test(edge.getValue())) {
+                result.add(edge.getKey());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Stores the relationship on both users' edge maps (replacing any previous one).
+     */
+    private void link(Friendship fs) {
+        putEdge(fs.userA(), fs.userB(), fs);
+        putEdge(fs.userB(), fs.userA(), fs);
+    }
+
+    private void unlink(Friendship fs) {
+        removeEdge(fs.userA(), fs.userB());
+        removeEdge(fs.userB(), fs.userA());
+    }
+
+    private void putEdge(String owner, String other, Friendship fs) {
+        // compute() so a concurrent removal of the owner's empty map can't drop this edge.
+        adjacency.compute(owner, (id, edges) -> {
+            if (edges == null) {
+                edges = new ConcurrentHashMap<>();
+            }
+            edges.put(other, fs);
+            return edges;
+        });
+    }
+
+    private void removeEdge(String owner, String other) {
+        adjacency.computeIfPresent(owner, (id, edges) -> {
+            edges.remove(other);
+            return edges.isEmpty() ? null : edges;
+        });
     }
-}
\ No newline at end of file
+}
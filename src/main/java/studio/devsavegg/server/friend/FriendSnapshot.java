@@ -0,0 +1,165 @@
+package studio.devsavegg.server.friend;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static studio.devsavegg.server.broadcaster.BinaryWire.readLength;
+import static studio.devsavegg.server.broadcaster.BinaryWire.readString;
+import static studio.devsavegg.server.broadcaster.BinaryWire.writeString;
+import static studio.devsavegg.server.broadcaster.BinaryWire.writeVarLong;
+
+/**
+ * Compact binary image of the friend graph.
+ * <pre>
+ * header : magic "CFG1" (int), user count (int), edge count (long)
+ * users  : user count entries of user ID (string), degree (varint);
+ *          an edge refers to a user by position
+ * edges  : user A index, user B index (varints), flags (byte)
+ * </pre>
+ * The flags byte holds the {@link FriendshipStatus} ordinal in bits 0-1, and bit 2 is set
+ * when user B sent the last request. Strings and varints use the
+ * {@link studio.devsavegg.server.broadcaster.BinaryWire} encodings. Each user ID is stored
+ * once, and recovery shares one String instance per user across all of that user's edges.
+ * The degree is a sizing hint, so each user's edge map is allocated once at its final size
+ * and edges are added without looking the user up again.
+ * <p>
+ * A snapshot is taken while the graph keeps changing, so it may mix older and newer
+ * states. Recovery stays exact because the WAL is rotated first and every record written
+ * after the rotation is replayed on top. Those records are idempotent "set this pair to X"
+ * updates, so the last one for each pair wins.
+ */
+final class FriendSnapshot {
+    private static final int MAGIC = 0x43464731; // "CFG1"
+    private static final int HEADER_BYTES = 16;
+    private static final int FLUSH_BYTES = 1024 * 1024;
+    private static final FriendshipStatus[] STATUSES = FriendshipStatus.values();
+
+    private FriendSnapshot() {
+    }
+
+    /**
+     * Writes the graph to {@code target}, via a temporary file that is synced and then
+     * atomically renamed, so {@code target} is either absent or complete.
+     * @return The number of relationships written.
+     */
+    static long write(FriendServiceImpl graph, Path target) throws IOException {
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        long edges;
+        try (FileChannel channel = FileChannel.open(tmp, CREATE, TRUNCATE_EXISTING, WRITE)) {
+            List<String> users = new ArrayList<>(graph.users());
+            Map<String, Integer> index = new HashMap<>(users.size() * 2);
+
+            ByteBuf out = Unpooled.directBuffer(FLUSH_BYTES + 64 * 1024);
+            try {
+                out.writeZero(HEADER_BYTES); // Patched once the counts are known
+                for (String user : users) {
+                    index.put(user, index.size());
+                    writeString(user, out);
+                    writeVarLong(graph.degree(user), out);
+                    flushIfFull(out, channel);
+                }
+
+                long[] count = {0};
+                graph.forEachFriendship(fs -> {
+                    Integer a = index.get(fs.userA());
+                    Integer b = index.get(fs.userB());
+                    if (a == null || b == null) {
+                        return; // Created after the user list was taken; its WAL record covers it
+                    }
+                    writeVarLong(a, out);
+                    writeVarLong(b, out);
+                    out.writeByte(fs.status().ordinal() | (fs.requesterId().equals(fs.userB()) ? 4 : 0));
+                    count[0]++;
+                    flushIfFull(out, channel);
+                });
+                edges = count[0];
+                flush(out, channel);
+
+                out.clear().writeInt(MAGIC).writeInt(users.size()).writeLong(edges);
+                channel.write(out.nioBuffer(), 0);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                out.release();
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+        return edges;
+    }
+
+    /**
+     * Loads a snapshot into an empty graph. The file is memory-mapped and decoded in place.
+     * @return The number of relationships loaded.
+     */
+    static long load(Path file, FriendServiceImpl graph) throws IOException {
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot " + file + " is larger than 2 GiB");
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        ByteBuf in = Unpooled.wrappedBuffer(mapped);
+        try {
+            if (in.readableBytes() < HEADER_BYTES || in.readInt() != MAGIC) {
+                throw new IOException("Not a friend graph snapshot: " + file);
+            }
+            String[] users = new String[in.readInt()];
+            List<Map<String, Friendship>> edgesOf = new ArrayList<>(users.length);
+            long edges = in.readLong();
+
+            for (int i = 0; i < users.length; i++) {
+                users[i] = readString(in);
+                edgesOf.add(graph.presize(users[i], readLength(in)));
+            }
+            for (long i = 0; i < edges; i++) {
+                int a = readLength(in);
+                int b = readLength(in);
+                int flags = in.readUnsignedByte();
+                Friendship fs = new Friendship(users[a], users[b], (flags & 4) != 0 ? users[b] : users[a], STATUSES[flags & 3]);
+                edgesOf.get(a).put(fs.userB(), fs);
+                edgesOf.get(b).put(fs.userA(), fs);
+            }
+            return edges;
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IOException("Corrupt friend graph snapshot " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static void flushIfFull(ByteBuf out, FileChannel channel) {
+        if (out.readableBytes() >= FLUSH_BYTES) {
+            flush(out, channel);
+        }
+    }
+
+    private static void flush(ByteBuf out, FileChannel channel) {
+        try {
+            ByteBuffer buffer = out.nioBuffer();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Unwrapped in write()
+        }
+        out.clear();
+    }
+}
@@ -0,0 +1,382 @@
+package studio.devsavegg.server.friend;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import studio.devsavegg.server.log.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static studio.devsavegg.server.broadcaster.BinaryWire.readString;
+import static studio.devsavegg.server.broadcaster.BinaryWire.writeString;
+
+/**
+ * Write-ahead log of friend graph changes, with group commit and background snapshots.
+ * <p>
+ * Each record holds the state a pair of users ended up in: either the new {@link Friendship}
+ * or "removed". Replaying records is therefore idempotent, and the last record for a pair
+ * wins. On disk a record is its body length (int), the CRC32C of the body (int) and the body:
+ * a type byte (1 put, 2 delete), user A and user B as strings, and for puts the
+ * {@link FriendSnapshot} flags byte.
+ * <p>
+ * Callers enqueue records on an unbounded lock-free queue. The "Friend-WAL" thread drains
+ * whatever is queued, writes it with one {@code write} and makes it durable with one
+ * {@code fsync} (group commit). Callers never wait, neither for the disk nor for queue
+ * space: {@link #append} is called under a pair lock on a resolver thread, where blocking
+ * would stall the whole shard. If the disk falls behind, the queue grows instead, which
+ * {@link #queueDepth()} shows.
+ * <p>
+ * The log is split into numbered segments ({@code wal-<n>.log}). Every {@code snapshotEvery}
+ * records, and on {@link #checkpoint()}, the writer starts a new segment and a background
+ * thread writes {@code snapshot-<n>.bin}, where n is that new segment. Once the snapshot is
+ * complete, older segments and snapshots are deleted.
+ */
+final class FriendWal implements Runnable {
+    private static final Logger LOG = Logger.get("FriendWal");
+    private static final int BATCH_SIZE = 4096;
+    private static final int PUT = 1;
+    private static final int DELETE = 2;
+    private static final FriendshipStatus[] STATUSES = FriendshipStatus.values();
+
+    /**
+     * The state a pair of users is in after a change; {@code state} is null once they have no relationship.
+     */
+    record Entry(String userA, String userB, Friendship state) {
+        /** Not logged: asks the writer to snapshot after the records queued before it. */
+        static final Entry CHECKPOINT = new Entry(null, null, null);
+        /** Not logged: asks the writer to commit what is queued and stop. */
+        static final Entry STOP = new Entry(null, null, null);
+    }
+
+    private final Path dir;
+    private final FriendServiceImpl graph;
+    private final long snapshotEvery;
+    private final ConcurrentLinkedQueue<Entry> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private volatile boolean writerParked;
+    private final Thread writer = new Thread(this, "Friend-WAL");
+    private final ExecutorService snapshotter = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "Friend-Snapshot");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicReference<CompletableFuture<Void>> checkpointRequest = new AtomicReference<>();
+    private volatile long records;
+    private volatile long syncs;
+
+    // --- Writer thread only ---
+    private final ByteBuf batch = Unpooled.directBuffer(256 * 1024);
+    private final CRC32C crc = new CRC32C();
+    private FileChannel segment;
+    private long segmentNumber;
+    private long sinceSnapshot;
+    private boolean stopping;
+    private CompletableFuture<Void> snapshotInFlight = CompletableFuture.completedFuture(null);
+
+    /**
+     * @param firstSegment Number of the segment to start with; must be newer than every segment on disk.
+     */
+    FriendWal(Path dir, FriendServiceImpl graph, long firstSegment, long snapshotEvery) throws IOException {
+        this.dir = dir;
+        this.graph = graph;
+        this.snapshotEvery = snapshotEvery;
+        this.segmentNumber = firstSegment;
+        this.segment = FileChannel.open(segmentPath(dir, firstSegment), CREATE_NEW, WRITE);
+        this.writer.setDaemon(true);
+    }
+
+    void start() {
+        writer.start();
+    }
+
+    /**
+     * Queues a record without blocking; it becomes durable with the writer's next sync.
+     */
+    void append(Entry entry) {
+        queue.offer(entry);
+        queued.incrementAndGet();
+        if (writerParked) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * Starts a snapshot after everything queued so far. The future completes once it is on disk.
+     */
+    CompletableFuture<Void> checkpoint() {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        CompletableFuture<Void> previous = checkpointRequest.getAndSet(done);
+        if (previous != null) {
+            done.whenComplete((v, e) -> previous.complete(null)); // Coalesced with this one
+        }
+        append(Entry.CHECKPOINT);
+        return done;
+    }
+
+    /**
+     * Writes out everything queued, then stops the writer. A snapshot that is already running may finish.
+     */
+    void shutdown() {
+        append(Entry.STOP); // Not an interrupt: that would close the FileChannel mid-write
+        try {
+            writer.join(10_000);
+            snapshotter.shutdown();
+            if (!snapshotter.awaitTermination(30, TimeUnit.SECONDS)) {
+                LOG.warn("Snapshot still running at shutdown; recovery will use the previous one");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    int queueDepth() {
+        return queued.get();
+    }
+
+    long records() {
+        return records;
+    }
+
+    long syncs() {
+        return syncs;
+    }
+
+    // --- Writer thread ---
+
+    @Override
+    public void run() {
+        while (!stopping) {
+            if (commitBatch() == 0) {
+                // Publish the flag before the last check, so an append either sees it or is seen here.
+                writerParked = true;
+                if (queue.isEmpty()) {
+                    LockSupport.park(this);
+                }
+                writerParked = false;
+            }
+        }
+        // Shutting down: commit whatever made it into the queue.
+        while (commitBatch() > 0) {
+            // keep draining
+        }
+        try {
+            segment.close();
+        } catch (IOException e) {
+            LOG.warn("Failed to close WAL segment {}: {}", segmentNumber, e.getMessage());
+        }
+        batch.release();
+    }
+
+    /**
+     * Drains one batch, writes it and syncs once. Returns the number of entries drained.
+     */
+    private int commitBatch() {
+        int count = 0;
+        int drained = 0;
+        Entry entry;
+        while (drained < BATCH_SIZE && (entry = queue.poll()) != null) {
+            drained++;
+            if (entry == Entry.STOP) {
+                stopping = true;
+            } else if (entry != Entry.CHECKPOINT) {
+                encode(entry);
+                count++;
+            }
+        }
+        queued.addAndGet(-drained);
+
+        if (count > 0) {
+            try {
+                ByteBuffer buffer = batch.nioBuffer();
+                while (buffer.hasRemaining()) {
+                    segment.write(buffer);
+                }
+                segment.force(false);
+                syncs++;
+                records += count;
+                sinceSnapshot += count;
+            } catch (IOException e) {
+                LOG.error("WAL write failed; {} change(s) may not survive a restart: {}", count, e.getMessage(), e);
+            }
+            batch.clear();
+        }
+
+        if (!stopping && (checkpointRequest.get() != null || sinceSnapshot >= snapshotEvery) && snapshotInFlight.isDone()) {
+            startSnapshot();
+        }
+        return drained;
+    }
+
+    private void encode(Entry entry) {
+        int lengthAt = batch.writerIndex();
+        batch.writeZero(8);
+        int bodyAt = batch.writerIndex();
+
+        Friendship fs = entry.state();
+        batch.writeByte(fs != null ? PUT : DELETE);
+        writeString(entry.userA(), batch);
+        writeString(entry.userB(), batch);
+        if (fs != null) {
+            batch.writeByte(fs.status().ordinal() | (fs.requesterId().equals(fs.userB()) ? 4 : 0));
+        }
+
+        int length = batch.writerIndex() - bodyAt;
+        crc.reset();
+        crc.update(batch.nioBuffer(bodyAt, length));
+        batch.setInt(lengthAt, length);
+        batch.setInt(lengthAt + 4, (int) crc.getValue());
+    }
+
+    /**
+     * Moves to a new segment and snapshots the graph in the background. The snapshot is named
+     * after the new segment: recovery loads it, then replays that segment and every later one.
+     */
+    private void startSnapshot() {
+        long next = segmentNumber + 1;
+        try {
+            FileChannel newSegment = FileChannel.open(segmentPath(dir, next), CREATE_NEW, WRITE);
+            segment.close();
+            segment = newSegment;
+            segmentNumber = next;
+        } catch (IOException e) {
+            LOG.error("Failed to start WAL segment {}; snapshot skipped: {}", next, e.getMessage(), e);
+            return;
+        }
+        sinceSnapshot = 0;
+
+        CompletableFuture<Void> requested = checkpointRequest.getAndSet(null);
+        snapshotInFlight = CompletableFuture.runAsync(() -> snapshot(next), snapshotter);
+        snapshotInFlight.whenComplete((v, e) -> {
+            if (requested != null) {
+                if (e != null) requested.completeExceptionally(e);
+                else requested.complete(null);
+            }
+            if (checkpointRequest.get() != null) {
+                append(Entry.CHECKPOINT); // Requested while this one ran; wake the writer to start it
+            }
+        });
+    }
+
+    // --- Snapshot thread ---
+
+    private void snapshot(long number) {
+        long start = System.nanoTime();
+        try {
+            long edges = FriendSnapshot.write(graph, snapshotPath(dir, number));
+            LOG.info("Snapshot {}: {} friendship(s) in {} ms", number, edges, (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            LOG.error("Snapshot {} failed; keeping the previous one: {}", number, e.getMessage(), e);
+            throw new UncheckedIOException(e);
+        }
+
+        // Everything before this snapshot is now redundant.
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                long n = Math.max(segmentNumber(file), snapshotNumber(file));
+                if (n >= 0 && n < number) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            LOG.warn("Failed to delete old WAL segments: {}", e.getMessage());
+        }
+    }
+
+    // --- Files and recovery ---
+
+    static Path segmentPath(Path dir, long number) {
+        return dir.resolve(String.format("wal-%020d.log", number));
+    }
+
+    static Path snapshotPath(Path dir, long number) {
+        return dir.resolve(String.format("snapshot-%020d.bin", number));
+    }
+
+    /** The number in a {@code wal-<n>.log} name, or -1. */
+    static long segmentNumber(Path file) {
+        return number(file.getFileName().toString(), "wal-", ".log");
+    }
+
+    /** The number in a {@code snapshot-<n>.bin} name, or -1 (also for unfinished {@code .tmp} files). */
+    static long snapshotNumber(Path file) {
+        return number(file.getFileName().toString(), "snapshot-", ".bin");
+    }
+
+    private static long number(String name, String prefix, String suffix) {
+        if (name.length() != prefix.length() + 20 + suffix.length() || !name.startsWith(prefix) || !name.endsWith(suffix)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name, prefix.length(), prefix.length() + 20, 10);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Applies one segment's records to the graph, stopping at the first torn or corrupt record
+     * (the tail of a segment the server was writing when it stopped).
+     * @return The number of records applied.
+     */
+    static long replay(Path file, FriendServiceImpl graph) throws IOException {
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        ByteBuf in = Unpooled.wrappedBuffer(mapped);
+        CRC32C crc = new CRC32C();
+        long applied = 0;
+        while (in.readableBytes() >= 8) {
+            int length = in.getInt(in.readerIndex());
+            int checksum = in.getInt(in.readerIndex() + 4);
+            if (length <= 0 || length > in.readableBytes() - 8) {
+                break;
+            }
+            crc.reset();
+            crc.update(in.nioBuffer(in.readerIndex() + 8, length));
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+
+            in.skipBytes(8);
+            ByteBuf body = in.readSlice(length);
+            try {
+                int type = body.readUnsignedByte();
+                String userA = readString(body);
+                String userB = readString(body);
+                if (type == PUT) {
+                    int flags = body.readUnsignedByte();
+                    graph.restore(new Friendship(userA, userB, (flags & 4) != 0 ? userB : userA, STATUSES[flags & 3]));
+                } else {
+                    graph.forget(userA, userB);
+                }
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                throw new IOException("Corrupt WAL record in " + file + " despite a valid checksum", e);
+            }
+            applied++;
+        }
+        if (in.isReadable()) {
+            LOG.warn("Ignoring {} byte(s) of incomplete WAL tail in {}", in.readableBytes(), file.getFileName());
+        }
+        return applied;
+    }
+}
@@ -3,19 +3,36 @@ package studio.devsavegg.server.gateway;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
 import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
+import studio.devsavegg.server.broadcaster.BroadcastService;
+import studio.devsavegg.server.broadcaster.WireFormat;
+import studio.devsavegg.server.log.Logger;
+import studio.devsavegg.server.resolver.BinaryCommandCodec;
+import studio.devsavegg.server.resolver.ClientCommandType;
+import studio.devsavegg.server.resolver.CommandParser;
+import studio.devsavegg.server.resolver.ParsedCommand;
+import studio.devsavegg.server.resolver.ShardRouter;
 
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.BlockingQueue;
 
-public class ChatGatewayHandler extends SimpleChannelInboundHandler<TextWebSocketFrame> {
+public class ChatGatewayHandler extends SimpleChannelInboundHandler<WebSocketFrame> {
+    private static final Logger LOG = Logger.get("Gateway");
 
-    private final BlockingQueue<ClientCommand> controlQueue;
+    private final ShardRouter shardRouter;
+    private final BroadcastService broadcastService;
+    private final CommandParser commandParser;
+    private final RateLimiter rateLimiter;
 
-    public ChatGatewayHandler(BlockingQueue<ClientCommand> controlQueue) {
-        this.controlQueue = controlQueue;
+    public ChatGatewayHandler(ShardRouter shardRouter, BroadcastService broadcastService, CommandParser commandParser,
+                              RateLimitPolicy rateLimitPolicy, RateLimitStats rateLimitStats) {
+        this.shardRouter = shardRouter;
+        this.broadcastService = broadcastService;
+        this.commandParser = commandParser;
+        this.rateLimiter = new RateLimiter(rateLimitPolicy, rateLimitStats);
     }
 
     /**
@@ -24,7 +41,12 @@ public class ChatGatewayHandler extends SimpleChannelInboundHandler<TextWebSocke
     @Override
     public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
         if (evt instanceof WebSocketServerProtocolHandler.HandshakeComplete handshake) {
-            System.out.println("[Gateway] Client connected: " + ctx.channel().remoteAddress());
+            LOG.debug("Client connected: {}", ctx.channel().remoteAddress());
+
+            // Stored before CONNECT is queued, so even the welcome message uses the negotiated format.
+            if (WireFormat.BINARY_SUBPROTOCOL.equals(handshake.selectedSubprotocol())) {
+                ctx.channel().attr(WireFormat.KEY).set(WireFormat.BINARY);
+            }
 
             String uri = handshake.requestUri();
             QueryStringDecoder decoder = new QueryStringDecoder(uri);
@@ -33,22 +55,57 @@ public class ChatGatewayHandler extends SimpleChannelInboundHandler<TextWebSocke
             String initialUsername = getParam(params, "username");
             // String password = getParam(params, "password"); // For future use
 
+            // A client that lost its connection reconnects with the token from its WELCOME message.
+            String resumeToken = getParam(params, "resume");
+            if (resumeToken != null && !resumeToken.isBlank()) {
+                shardRouter.submit(new ClientCommand(ctx.channel(), CommandType.RESUME, resumeToken));
+                return;
+            }
+
             ClientCommand connectCommand = new ClientCommand(ctx.channel(), CommandType.CONNECT, initialUsername);
-            putCommand(connectCommand);
+            shardRouter.submit(connectCommand);
         } else {
             super.userEventTriggered(ctx, evt);
         }
     }
 
     /**
-     * Called when a new message (a TextWebSocketFrame) is received.
+     * Called when a new message (a text or binary WebSocket frame) is received.
+     * The command is parsed here, straight from the frame's bytes, so malformed input is
+     * rejected without ever reaching the resolver. Either frame type is accepted on any
+     * connection; the negotiated subprotocol only decides what the server sends back.
+     * Commands over the connection's rate limit are refused here too, before they cost the
+     * resolver anything.
      */
     @Override
-    protected void channelRead0(ChannelHandlerContext ctx, TextWebSocketFrame frame) throws Exception {
-        String message = frame.text();
+    protected void channelRead0(ChannelHandlerContext ctx, WebSocketFrame frame) throws Exception {
+        ParsedCommand command;
+        if (frame instanceof TextWebSocketFrame) {
+            command = commandParser.parse(frame.content());
+        } else if (frame instanceof BinaryWebSocketFrame) {
+            command = BinaryCommandCodec.decode(frame.content());
+        } else {
+            return; // Continuation frames are not supported
+        }
+
+        CommandClass commandClass = CommandClass.of(command.command());
+        if (!rateLimiter.tryAcquire(commandClass)) {
+            if (rateLimiter.shouldNotify(commandClass)) {
+                broadcastService.sendError(ctx.channel(), 429, describe(frame, command), "Too many requests. Please slow down.");
+            }
+            return;
+        }
+
+        if (command.command() == ClientCommandType.UNKNOWN) {
+            broadcastService.sendError(ctx.channel(), 400, describe(frame, command), "Unknown command. Type /help for commands.");
+            return;
+        }
 
-        ClientCommand messageCommand = new ClientCommand(ctx.channel(), CommandType.MESSAGE, message);
-        putCommand(messageCommand);
+        ClientCommand messageCommand = ClientCommand.message(ctx.channel(), command);
+        if (!shardRouter.offer(messageCommand)) {
+            // The control queue is full. Shed this message instead of growing the heap.
+            broadcastService.sendError(ctx.channel(), 503, describe(frame, command), "Server is busy. Please try again.");
+        }
     }
 
     /**
@@ -56,10 +113,10 @@ public class ChatGatewayHandler extends SimpleChannelInboundHandler<TextWebSocke
      */
     @Override
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
-        System.out.println("[Gateway] Client disconnected: " + ctx.channel().remoteAddress());
+        LOG.debug("Client disconnected: {}", ctx.channel().remoteAddress());
 
         ClientCommand disconnectCommand = new ClientCommand(ctx.channel(), CommandType.DISCONNECT, null);
-        putCommand(disconnectCommand);
+        shardRouter.submit(disconnectCommand);
     }
 
     /**
@@ -67,25 +124,19 @@ public class ChatGatewayHandler extends SimpleChannelInboundHandler<TextWebSocke
      */
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
-        System.err.println("[Gateway] Unhandled exception caught:");
-        cause.printStackTrace();
+        LOG.warn("Unhandled exception from {}:", ctx.channel().remoteAddress(), cause);
 
         ClientCommand disconnectCommand = new ClientCommand(ctx.channel(), CommandType.DISCONNECT, null);
-        putCommand(disconnectCommand);
+        shardRouter.submit(disconnectCommand);
 
         ctx.close();
     }
 
     /**
-     * Helper to put a command in the queue, handling potential interruptions.
+     * What the client sent, for the command field of an error reply.
      */
-    private void putCommand(ClientCommand command) {
-        try {
-            controlQueue.put(command);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            System.err.println("[Gateway] Failed to enqueue command; queue thread interrupted.");
-        }
+    private String describe(WebSocketFrame frame, ParsedCommand command) {
+        return (frame instanceof TextWebSocketFrame text) ? text.text() : command.commandString();
     }
 
     /**
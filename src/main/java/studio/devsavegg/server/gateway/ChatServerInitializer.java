@@ -7,34 +7,75 @@ import io.netty.handler.codec.http.HttpObjectAggregator;
 import io.netty.handler.codec.http.HttpServerCodec;
 import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
 import io.netty.handler.codec.http.websocketx.extensions.compression.WebSocketServerCompressionHandler;
-
-import java.util.concurrent.BlockingQueue;
+import studio.devsavegg.server.broadcaster.CompressionMode;
+import studio.devsavegg.server.broadcaster.BroadcastService;
+import studio.devsavegg.server.broadcaster.PerMessageDeflate;
+import studio.devsavegg.server.broadcaster.SlowConsumerHandler;
+import studio.devsavegg.server.broadcaster.SlowConsumerPolicy;
+import studio.devsavegg.server.broadcaster.SlowConsumerStats;
+import studio.devsavegg.server.broadcaster.WireFormat;
+import studio.devsavegg.server.metrics.OutboundMetricsHandler;
+import studio.devsavegg.server.resolver.CommandParser;
+import studio.devsavegg.server.resolver.ShardRouter;
 
 public class ChatServerInitializer extends ChannelInitializer<SocketChannel> {
     private static final String WEBSOCKET_PATH = "/chat";
-    private final BlockingQueue<ClientCommand> controlQueue;
+    private final ShardRouter shardRouter;
+    private final BroadcastService broadcastService;
+    private final CommandParser commandParser;
+    private final SlowConsumerPolicy slowConsumerPolicy;
+    private final SlowConsumerStats slowConsumerStats;
+    private final OutboundMetricsHandler outboundMetrics;
+    private final CompressionMode compressionMode;
+    private final PerMessageDeflate deflate;
+    private final RateLimitPolicy rateLimitPolicy;
+    private final RateLimitStats rateLimitStats;
 
-    public ChatServerInitializer(BlockingQueue<ClientCommand> controlQueue) {
-        this.controlQueue = controlQueue;
+    public ChatServerInitializer(ShardRouter shardRouter,
+                                 BroadcastService broadcastService,
+                                 CommandParser commandParser,
+                                 SlowConsumerPolicy slowConsumerPolicy,
+                                 SlowConsumerStats slowConsumerStats,
+                                 OutboundMetricsHandler outboundMetrics,
+                                 CompressionMode compressionMode,
+                                 PerMessageDeflate deflate,
+                                 RateLimitPolicy rateLimitPolicy,
+                                 RateLimitStats rateLimitStats) {
+        this.shardRouter = shardRouter;
+        this.broadcastService = broadcastService;
+        this.commandParser = commandParser;
+        this.slowConsumerPolicy = slowConsumerPolicy;
+        this.slowConsumerStats = slowConsumerStats;
+        this.outboundMetrics = outboundMetrics;
+        this.compressionMode = compressionMode;
+        this.deflate = deflate;
+        this.rateLimitPolicy = rateLimitPolicy;
+        this.rateLimitStats = rateLimitStats;
     }
 
     @Override
     protected void initChannel(SocketChannel ch) throws Exception {
         ChannelPipeline pipeline = ch.pipeline();
 
+        pipeline.addLast(outboundMetrics); // First in the pipeline, so it sees the bytes that hit the socket
         pipeline.addLast(new HttpServerCodec());
         pipeline.addLast(new HttpObjectAggregator(65536)); // Combines HTTP chunks
 
-        pipeline.addLast(new WebSocketServerCompressionHandler());
+        switch (compressionMode) {
+            case PER_CONNECTION -> pipeline.addLast(new WebSocketServerCompressionHandler());
+            case BROADCAST -> pipeline.addLast(deflate.newExtensionHandler(ch));
+            case OFF -> { }
+        }
 
         pipeline.addLast(new WebSocketServerProtocolHandler(
                 WEBSOCKET_PATH,
-                null,
+                WireFormat.BINARY_SUBPROTOCOL, // Optional; clients that don't offer it get JSON text
                 true,
                 65536,
                 true,
                 true
         ));
-        pipeline.addLast(new ChatGatewayHandler(controlQueue));
+        pipeline.addLast(new SlowConsumerHandler(slowConsumerPolicy, slowConsumerStats));
+        pipeline.addLast(new ChatGatewayHandler(shardRouter, broadcastService, commandParser, rateLimitPolicy, rateLimitStats));
     }
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package studio.devsavegg.server.gateway;
 
 import io.netty.channel.Channel;
+import studio.devsavegg.server.resolver.ParsedCommand;
 
 /**
  * A data-transfer object (record) that the Gateway
@@ -8,9 +9,28 @@ import io.netty.channel.Channel;
  * information the Resolver thread needs to process an event.
  *
  * @param channel The client's Netty Channel (replaces javax.websocket.Session).
- * @param type    The raw event type (CONNECT, MESSAGE, DISCONNECT).
- * @param payload The raw string message from the client (null for CONNECT/DISCONNECT).
+ * @param type    The raw event type (CONNECT, RESUME, MESSAGE, DISCONNECT, HANDOFF).
+ * @param payload The raw string payload of a lifecycle event (the requested username for CONNECT, the resume token for RESUME).
+ * @param parsedCommand The client's command for a MESSAGE, already parsed on the I/O thread (null otherwise).
+ * @param task    The action to run for a HANDOFF between resolver shards (null otherwise).
  */
-public record ClientCommand(Channel channel, CommandType commandType, String payload) {
+public record ClientCommand(Channel channel, CommandType commandType, String payload, ParsedCommand parsedCommand, Runnable task) {
 
+    public ClientCommand(Channel channel, CommandType commandType, String payload) {
+        this(channel, commandType, payload, null, null);
+    }
+
+    /**
+     * Wraps a command the gateway has already parsed.
+     */
+    public static ClientCommand message(Channel channel, ParsedCommand parsedCommand) {
+        return new ClientCommand(channel, CommandType.MESSAGE, null, parsedCommand, null);
+    }
+
+    /**
+     * Wraps an action that another resolver shard must run on its own thread.
+     */
+    public static ClientCommand handoff(Runnable task) {
+        return new ClientCommand(null, CommandType.HANDOFF, null, null, task);
+    }
 }
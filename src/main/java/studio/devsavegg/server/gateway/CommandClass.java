@@ -0,0 +1,30 @@
+package studio.devsavegg.server.gateway;
+
+import studio.devsavegg.server.resolver.ClientCommandType;
+
+/**
+ * Groups of client commands that share a rate limit.
+ */
+public enum CommandClass {
+    CHAT,   // /say, /dm
+    QUERY,  // /list, /user_info, /room_info, /history, and unknown commands
+    FRIEND, // Friend requests and their answers
+    ROOM;   // Creating, joining and leaving rooms, and renaming
+
+    private static final CommandClass[] byType = new CommandClass[ClientCommandType.values().length];
+
+    static {
+        for (ClientCommandType type : ClientCommandType.values()) {
+            byType[type.ordinal()] = switch (type) {
+                case SAY, DM -> CHAT;
+                case LIST, USER_INFO, ROOM_INFO, HISTORY, UNKNOWN -> QUERY;
+                case ADD_FRIEND, ACCEPT_FRIEND, REJECT_FRIEND, REMOVE_FRIEND -> FRIEND;
+                case CREATE_ROOM, JOIN_ROOM, LEAVE_ROOM, SET_NAME -> ROOM;
+            };
+        }
+    }
+
+    public static CommandClass of(ClientCommandType type) {
+        return byType[type.ordinal()];
+    }
+}
@@ -2,6 +2,8 @@ package studio.devsavegg.server.gateway;
 
 public enum CommandType {
     CONNECT,
+    RESUME, // A reconnect presenting a resume token
     MESSAGE,
     DISCONNECT,
+    HANDOFF, // Internal: work passed from one resolver shard to another
 }
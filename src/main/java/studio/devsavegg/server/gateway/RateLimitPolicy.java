@@ -0,0 +1,47 @@
+package studio.devsavegg.server.gateway;
+
+/**
+ * Per-connection token buckets, one for each {@link CommandClass}.
+ *
+ * @param chat   Limit for chat messages and DMs.
+ * @param query  Limit for lookups: lists, user and room info, history pages.
+ * @param friend Limit for friend requests and their answers.
+ * @param room   Limit for creating, joining and leaving rooms, and renaming.
+ */
+public record RateLimitPolicy(
+        Bucket chat,
+        Bucket query,
+        Bucket friend,
+        Bucket room
+) {
+    public static final RateLimitPolicy DEFAULT = new RateLimitPolicy(
+            new Bucket(10, 20),
+            new Bucket(5, 10),
+            new Bucket(2, 5),
+            new Bucket(2, 5)
+    );
+
+    /**
+     * @param perSecond Tokens added per second (0 = unlimited).
+     * @param burst     Tokens the bucket holds, i.e. how many commands may arrive at once.
+     */
+    public record Bucket(int perSecond, int burst) {
+        public Bucket {
+            if (perSecond < 0) {
+                throw new IllegalArgumentException("perSecond must not be negative, got " + perSecond);
+            }
+            if (burst < 1) {
+                throw new IllegalArgumentException("burst must be at least 1, got " + burst);
+            }
+        }
+    }
+
+    public Bucket bucket(CommandClass commandClass) {
+        return switch (commandClass) {
+            case CHAT -> chat;
+            case QUERY -> query;
+            case FRIEND -> friend;
+            case ROOM -> room;
+        };
+    }
+}
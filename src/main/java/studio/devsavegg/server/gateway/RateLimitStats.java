@@ -0,0 +1,19 @@
+package studio.devsavegg.server.gateway;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Server-wide counters for the gateway rate limits. Updated from the event loops.
+ */
+public class RateLimitStats {
+    private final LongAdder throttled = new LongAdder();
+
+    void recordThrottled() {
+        throttled.increment();
+    }
+
+    /** Commands refused because their connection's bucket was empty. */
+    public long throttled() {
+        return throttled.sum();
+    }
+}
@@ -0,0 +1,71 @@
+package studio.devsavegg.server.gateway;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One connection's token buckets, checked on its event loop before a command is queued.
+ * <p>
+ * Each bucket is kept as a single "theoretical arrival time" (the generic cell rate
+ * algorithm): every accepted command pushes it one token interval into the future, and a
+ * command is refused if that would put it more than a full bucket ahead of now. This is
+ * the same limit as a token bucket refilled at {@code perSecond}, without refill arithmetic
+ * or a timer. Only the connection's own event loop touches it, so there are no locks or
+ * atomics, and checking a command allocates nothing.
+ */
+final class RateLimiter {
+    private static final CommandClass[] CLASSES = CommandClass.values();
+
+    private final long[] intervalNanos = new long[CLASSES.length];  // 0 = unlimited
+    private final long[] toleranceNanos = new long[CLASSES.length]; // How far ahead of now a bucket may run
+    private final long[] arrival = new long[CLASSES.length];
+    private final boolean[] notified = new boolean[CLASSES.length];
+    private final RateLimitStats stats;
+
+    RateLimiter(RateLimitPolicy policy, RateLimitStats stats) {
+        this.stats = stats;
+        long now = System.nanoTime();
+        for (CommandClass commandClass : CLASSES) {
+            RateLimitPolicy.Bucket bucket = policy.bucket(commandClass);
+            int i = commandClass.ordinal();
+            if (bucket.perSecond() > 0) {
+                intervalNanos[i] = TimeUnit.SECONDS.toNanos(1) / bucket.perSecond();
+                toleranceNanos[i] = intervalNanos[i] * (bucket.burst() - 1);
+            }
+            arrival[i] = now;
+        }
+    }
+
+    /**
+     * Takes a token for a command, or returns false if its bucket is empty.
+     */
+    boolean tryAcquire(CommandClass commandClass) {
+        int i = commandClass.ordinal();
+        long interval = intervalNanos[i];
+        if (interval == 0) {
+            return true;
+        }
+
+        long now = System.nanoTime();
+        long next = Math.max(arrival[i], now);
+        if (next - now > toleranceNanos[i]) {
+            stats.recordThrottled();
+            return false;
+        }
+        arrival[i] = next + interval;
+        notified[i] = false;
+        return true;
+    }
+
+    /**
+     * True the first time it is called after a refusal, so a flood of refused commands gets
+     * one 429 reply rather than one each. Rearmed by the next accepted command of the class.
+     */
+    boolean shouldNotify(CommandClass commandClass) {
+        int i = commandClass.ordinal();
+        if (notified[i]) {
+            return false;
+        }
+        notified[i] = true;
+        return true;
+    }
+}
@@ -0,0 +1,37 @@
+package studio.devsavegg.server.history;
+
+/**
+ * Sizing, retention and replay limits for room history.
+ *
+ * @param segmentBytes   Capacity of each segment file. A segment is sealed once the next message does not fit.
+ * @param retainSegments Segments kept per room, including the one being written. The oldest are deleted first.
+ * @param retainMillis   Segments whose newest message is older than this are deleted, except the one an open room writes to (0 = keep them).
+ * @param replayOnJoin   Most recent messages replayed to a client that joins a room (0 = none).
+ * @param pageSize       Messages per {@code /history} page.
+ * @param openRooms      Rooms whose logs are kept open (one mapped segment each); the least recently used are closed.
+ */
+public record HistoryPolicy(
+        int segmentBytes,
+        int retainSegments,
+        long retainMillis,
+        int replayOnJoin,
+        int pageSize,
+        int openRooms
+) {
+    public static final HistoryPolicy DEFAULT = new HistoryPolicy(1024 * 1024, 16, 0, 50, 50, 1024);
+
+    public HistoryPolicy {
+        if (segmentBytes < 64 * 1024) {
+            throw new IllegalArgumentException("segmentBytes must be at least 64 KiB, got " + segmentBytes);
+        }
+        if (retainSegments < 1) {
+            throw new IllegalArgumentException("retainSegments must be at least 1, got " + retainSegments);
+        }
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("pageSize must be at least 1, got " + pageSize);
+        }
+        if (openRooms < 1) {
+            throw new IllegalArgumentException("openRooms must be at least 1, got " + openRooms);
+        }
+    }
+}
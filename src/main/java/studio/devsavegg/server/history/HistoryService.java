@@ -0,0 +1,38 @@
+package studio.devsavegg.server.history;
+
+import io.netty.channel.Channel;
+import studio.devsavegg.server.broadcaster.ChatMessagePayload;
+
+public interface HistoryService {
+
+    /**
+     * Records a chat message sent to a room. Never blocks; the message is written to disk later.
+     * @param roomId The room the message was broadcast to.
+     * @param message The payload exactly as it was broadcast.
+     * @return false if the history writer is backed up and the message was not recorded.
+     */
+    boolean append(String roomId, ChatMessagePayload message);
+
+    /**
+     * Sends a client that just joined a room the room's most recent messages.
+     * Does nothing if the policy replays no messages on join.
+     * Frames sent to the client after this call are held back until the replay has been
+     * written, so call it before the join is announced and live room traffic cannot arrive
+     * ahead of, or mixed into, the history.
+     * @return false if the request could not be queued.
+     */
+    boolean replayRecent(String roomId, Channel channel);
+
+    /**
+     * Sends a client one page of a room's messages, oldest first, preceded by a SYSTEM
+     * "HISTORY" message whose details hold the message count and the cursor for the next page.
+     * @param before Only messages before this cursor are sent; Long.MAX_VALUE for the newest page.
+     * @return false if the request could not be queued.
+     */
+    boolean replayPage(String roomId, Channel channel, long before);
+
+    /**
+     * Writes out queued messages and stops the history writer; later calls are dropped.
+     */
+    void shutdown();
+}
@@ -0,0 +1,362 @@
+package studio.devsavegg.server.history;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.FileRegion;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import studio.devsavegg.server.broadcaster.BinaryPayloadCodec;
+import studio.devsavegg.server.broadcaster.ChatMessagePayload;
+import studio.devsavegg.server.broadcaster.JsonPayloadEncoder;
+import studio.devsavegg.server.broadcaster.OutboundDispatcher;
+import studio.devsavegg.server.broadcaster.SystemMessagePayload;
+import studio.devsavegg.server.broadcaster.WireFormat;
+import studio.devsavegg.server.log.Logger;
+import studio.devsavegg.server.queue.BlockingWaitStrategy;
+import studio.devsavegg.server.queue.MpscRingBuffer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Room history in memory-mapped, append-only segment files, one directory per room
+ * ({@code <dir>/<roomId>/}).
+ * <p>
+ * Only the logs of the {@link HistoryPolicy#openRooms()} most recently used rooms are kept
+ * open, each with just its newest segment mapped. Older logs are closed, which unmaps them,
+ * and reopened from disk when the room is used again. So neither memory nor the number of
+ * mappings grows with the number of rooms that ever had history.
+ * <p>
+ * Once a minute a sweep enforces retention on the open logs and walks the room directories
+ * on disk for the rest. A closed room's segments are aged by their file times. A directory
+ * whose room no longer exists, such as one left by an earlier run (room IDs do not survive
+ * a restart), is deleted outright. The first sweep runs a minute after start, so a cluster
+ * node has heard about the rooms of its peers before it decides which ones are gone.
+ * <p>
+ * Resolver threads only offer tasks to a bounded {@link MpscRingBuffer}. If it is full the
+ * task is dropped rather than waited for. A single "History-Writer" thread owns every
+ * {@link RoomLog}, encodes each message once per wire format into a complete WebSocket
+ * frame, and appends the frames to the mapped files.
+ * <p>
+ * Since the files hold ready-to-send frames, a replay is one SYSTEM "HISTORY" message
+ * followed by one {@link FileRegion} per segment. Both are written on the channel's event
+ * loop. The transport sends the regions with sendfile or splice, so the messages are never
+ * copied into the heap. These writes bypass the slow-consumer guard and are bounded by the
+ * page size. A replay is queued behind the appends that came before it, so it includes every
+ * message broadcast before the join. A replay on join puts the channel on
+ * {@link OutboundDispatcher#hold} until it has been written, so messages broadcast after the
+ * join follow the history instead of overtaking it.
+ */
+public class HistoryServiceImpl implements HistoryService, Runnable {
+    private static final Logger LOG = Logger.get("History");
+    private static final Logger FAILURE_LOG = LOG.sampled("replayFailure", 100);
+    private static final int QUEUE_CAPACITY = 65536;
+    private static final int BATCH_SIZE = 256;
+
+    private static final ChannelFutureListener LOG_FAILURE = future -> {
+        if (!future.isSuccess()) {
+            FAILURE_LOG.warn("Failed to replay history to {}", future.channel().remoteAddress(), future.cause());
+        }
+    };
+
+    private sealed interface Task permits Append, Replay, Sweep {}
+
+    private record Append(String roomId, ChatMessagePayload message) implements Task {}
+
+    /** {@code held}: the channel is on hold until this replay is written. */
+    private record Replay(String roomId, Channel channel, long before, int limit, boolean held) implements Task {}
+
+    private record Sweep() implements Task {}
+
+    private final Path root;
+    private final HistoryPolicy policy;
+    private final Predicate<String> liveRoom;
+    private final MpscRingBuffer<Task> queue = new MpscRingBuffer<>(QUEUE_CAPACITY, new BlockingWaitStrategy());
+    private final LongAdder dropped = new LongAdder();
+    private final Thread writer = new Thread(this, "History-Writer");
+    private final ScheduledExecutorService sweeper;
+    private volatile boolean shutdown = false;
+
+    // --- Writer thread only ---
+    private final Map<String, RoomLog> rooms;
+    private final ByteBuf[] encoded = new ByteBuf[WireFormat.values().length];
+
+    /**
+     * @param liveRoom Whether a room ID belongs to a room that still exists; the sweep deletes the history of any other.
+     */
+    public HistoryServiceImpl(Path root, HistoryPolicy policy, Predicate<String> liveRoom) {
+        this.root = root.toAbsolutePath().normalize();
+        this.policy = policy;
+        this.liveRoom = liveRoom;
+        this.rooms = new LinkedHashMap<>(16, 0.75f, true) { // Access order: least recently used first
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, RoomLog> eldest) {
+                if (size() <= policy.openRooms()) {
+                    return false;
+                }
+                eldest.getValue().close();
+                return true;
+            }
+        };
+        this.writer.setDaemon(true);
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = Unpooled.buffer(256);
+        }
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "History-Retention");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Starts the writer thread and the once-a-minute retention sweep.
+     */
+    public void start() {
+        writer.start();
+        sweeper.scheduleWithFixedDelay(() -> offer(new Sweep()), 1, 1, TimeUnit.MINUTES);
+        LOG.info("Room history in {}", root);
+    }
+
+    @Override
+    public boolean append(String roomId, ChatMessagePayload message) {
+        return offer(new Append(roomId, message));
+    }
+
+    @Override
+    public boolean replayRecent(String roomId, Channel channel) {
+        if (policy.replayOnJoin() == 0) {
+            return true;
+        }
+        OutboundDispatcher.hold(channel);
+        if (!offer(new Replay(roomId, channel, Long.MAX_VALUE, policy.replayOnJoin(), true))) {
+            releaseLater(channel);
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean replayPage(String roomId, Channel channel, long before) {
+        return offer(new Replay(roomId, channel, before, policy.pageSize(), false));
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        sweeper.shutdownNow();
+        writer.interrupt();
+        try {
+            writer.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Tasks waiting for the writer. */
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    /** Appends and replays dropped because the writer was backed up. */
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    private boolean offer(Task task) {
+        if (shutdown || !queue.offer(task)) {
+            dropped.increment();
+            return false;
+        }
+        return true;
+    }
+
+    // --- Writer thread ---
+
+    @Override
+    public void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                if (queue.drain(this::process, BATCH_SIZE) == 0) {
+                    queue.await();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // Shutting down: store whatever made it into the queue, then flush the mappings.
+        while (queue.drain(this::process, BATCH_SIZE) > 0) {
+            // keep draining
+        }
+        rooms.values().forEach(RoomLog::close);
+        LOG.info("History writer stopped.");
+    }
+
+    private void process(Task task) {
+        try {
+            switch (task) {
+                case Append append -> append(append);
+                case Replay replay -> replay(replay);
+                case Sweep sweep -> sweep();
+            }
+        } catch (Exception e) {
+            LOG.error("History task failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private void sweep() throws IOException {
+        long now = System.currentTimeMillis();
+        rooms.values().forEach(log -> log.enforceRetention(now));
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+
+        List<Path> dirs;
+        try (Stream<Path> files = Files.list(root)) {
+            dirs = files.filter(Files::isDirectory).toList();
+        }
+        for (Path dir : dirs) {
+            String roomId = dir.getFileName().toString();
+            if (rooms.containsKey(roomId)) {
+                continue; // Open; retention was enforced above
+            }
+            try {
+                if (!liveRoom.test(roomId)) {
+                    RoomLog.sweepClosed(dir, Long.MAX_VALUE);
+                } else if (policy.retainMillis() > 0) {
+                    RoomLog.sweepClosed(dir, now - policy.retainMillis());
+                }
+            } catch (IOException e) {
+                LOG.warn("Failed to sweep history in {}: {}", dir, e.getMessage());
+            }
+        }
+    }
+
+    private void append(Append task) throws IOException {
+        RoomLog log = room(task.roomId());
+        if (log == null) {
+            return;
+        }
+
+        ChatMessagePayload message = task.message();
+        for (ByteBuf buffer : encoded) {
+            buffer.clear();
+        }
+        JsonPayloadEncoder.encode(message, encoded[WireFormat.JSON.ordinal()]);
+        BinaryPayloadCodec.encode(message, encoded[WireFormat.BINARY.ordinal()]);
+
+        if (!log.append(encoded, message.timestamp())) {
+            LOG.warn("Message from {} in {} is too large for a history segment; not stored", message.senderId(), task.roomId());
+        }
+    }
+
+    private void replay(Replay task) throws IOException {
+        boolean released = !task.held();
+        try {
+            released |= write(task);
+        } finally {
+            if (!released) {
+                releaseLater(task.channel());
+            }
+        }
+    }
+
+    /**
+     * Sends the page on the channel's event loop.
+     * @return true if the event loop task also releases the channel's hold.
+     */
+    private boolean write(Replay task) throws IOException {
+        Channel channel = task.channel();
+        if (!channel.isActive()) {
+            return false;
+        }
+
+        RoomLog log = room(task.roomId());
+        long first = (log != null) ? log.firstSeq() : 0;
+        long to = (log != null) ? Math.max(first, Math.min(task.before(), log.nextSeq())) : 0;
+        long from = Math.max(first, to - task.limit());
+
+        WireFormat format = WireFormat.of(channel);
+        List<FileRegion> regions = (to > from) ? log.regions(format, from, to) : List.of();
+
+        Map<String, Object> details = new LinkedHashMap<>();
+        details.put("roomId", task.roomId());
+        details.put("count", to - from);
+        details.put("before", (from > first) ? from : null); // Cursor for the next page; null when there is none
+        WebSocketFrame header = encode(new SystemMessagePayload("HISTORY", null,
+                "Replaying " + (to - from) + " earlier message(s).", details), format, channel);
+
+        try {
+            channel.eventLoop().execute(() -> {
+                channel.write(header).addListener(LOG_FAILURE);
+                for (FileRegion region : regions) {
+                    channel.write(region).addListener(LOG_FAILURE);
+                }
+                channel.flush();
+                if (task.held()) {
+                    OutboundDispatcher.release(channel);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            header.release();
+            regions.forEach(FileRegion::release);
+            return false;
+        }
+    }
+
+    private static void releaseLater(Channel channel) {
+        try {
+            channel.eventLoop().execute(() -> OutboundDispatcher.release(channel));
+        } catch (RejectedExecutionException e) {
+            // Shutting down; nothing more will be written anyway
+        }
+    }
+
+    private static WebSocketFrame encode(SystemMessagePayload payload, WireFormat format, Channel channel) {
+        ByteBuf content = channel.alloc().buffer();
+        if (format == WireFormat.BINARY) {
+            BinaryPayloadCodec.encode(payload, content);
+        } else {
+            JsonPayloadEncoder.encode(payload, content); // Details are only Strings, Longs and nulls
+        }
+        return format.frame(content, 0);
+    }
+
+    /**
+     * The room's log, opened on first use. Null if the ID is not a safe directory name or the
+     * log cannot be opened.
+     */
+    private RoomLog room(String roomId) {
+        RoomLog log = rooms.get(roomId);
+        if (log != null) {
+            return log;
+        }
+
+        Path dir = root.resolve(roomId).normalize();
+        if (!root.equals(dir.getParent())) {
+            LOG.warn("Refusing history for room ID {}", roomId);
+            return null;
+        }
+        try {
+            log = RoomLog.open(dir, policy);
+        } catch (IOException e) {
+            LOG.error("Failed to open history for {}: {}", roomId, e.getMessage(), e);
+            return null;
+        }
+        rooms.put(roomId, log);
+        return log;
+    }
+}
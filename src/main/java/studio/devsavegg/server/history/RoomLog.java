@@ -0,0 +1,189 @@
+package studio.devsavegg.server.history;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.FileRegion;
+import studio.devsavegg.server.broadcaster.WireFormat;
+import studio.devsavegg.server.log.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * The history of one room: its segments, oldest first, and the sequence number of the next
+ * message. Sequence numbers start at 0 and are never reused, not even across restarts,
+ * because every segment file is named after its first message.
+ * Only the newest segment stays mapped; older ones are sealed, which unmaps them.
+ * Only the history writer thread touches instances.
+ */
+final class RoomLog {
+    private static final Logger LOG = Logger.get("History");
+
+    private final Path dir;
+    private final HistoryPolicy policy;
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    private long nextSeq;
+
+    private RoomLog(Path dir, HistoryPolicy policy) {
+        this.dir = dir;
+        this.policy = policy;
+    }
+
+    /**
+     * Opens the room's existing segments, if any. The directory is only created by the first append.
+     */
+    static RoomLog open(Path dir, HistoryPolicy policy) throws IOException {
+        RoomLog log = new RoomLog(dir, policy);
+        if (!Files.isDirectory(dir)) {
+            return log;
+        }
+
+        long[] baseSeqs;
+        try (Stream<Path> files = Files.list(dir)) {
+            baseSeqs = files.mapToLong(Segment::baseSeqOf).filter(seq -> seq >= 0).sorted().toArray();
+        }
+        for (long baseSeq : baseSeqs) {
+            if (baseSeq < log.nextSeq) {
+                continue; // Overlaps the previous segment; cannot happen unless files were copied in by hand
+            }
+            try {
+                Segment segment = Segment.open(dir, baseSeq);
+                Segment previous = log.segments.peekLast();
+                if (previous != null) {
+                    previous.seal();
+                }
+                log.segments.addLast(segment);
+                log.nextSeq = segment.endSeq();
+            } catch (IOException e) {
+                LOG.warn("Skipping unreadable history segment {} in {}: {}", baseSeq, dir, e.getMessage());
+            }
+        }
+        log.enforceRetention(System.currentTimeMillis());
+        return log;
+    }
+
+    long firstSeq() {
+        Segment first = segments.peekFirst();
+        return (first != null) ? first.baseSeq() : nextSeq;
+    }
+
+    long nextSeq() {
+        return nextSeq;
+    }
+
+    /**
+     * Appends one message, encoded once per format (indexed by {@link WireFormat#ordinal()}).
+     * @return false if the message is too large for a segment and was not stored.
+     */
+    boolean append(ByteBuf[] payloads, long timestamp) throws IOException {
+        Segment active = segments.peekLast();
+        if (active == null || !active.fits(payloads)) {
+            for (ByteBuf payload : payloads) {
+                if (SegmentFile.frameLength(payload.readableBytes()) > policy.segmentBytes()) {
+                    return false;
+                }
+            }
+            if (active != null) {
+                active.seal(); // Written back and unmapped; replays reopen it as a file region
+            }
+            Files.createDirectories(dir);
+            active = Segment.create(dir, nextSeq, policy.segmentBytes());
+            segments.addLast(active);
+            enforceRetention(timestamp);
+        }
+
+        active.append(payloads, timestamp);
+        nextSeq++;
+        return true;
+    }
+
+    /**
+     * Regions holding messages [fromSeq, toSeq) in one format, oldest first; one per segment touched.
+     */
+    List<FileRegion> regions(WireFormat format, long fromSeq, long toSeq) throws IOException {
+        List<FileRegion> regions = new ArrayList<>(2);
+        try {
+            for (Segment segment : segments) {
+                long from = Math.max(fromSeq, segment.baseSeq());
+                long to = Math.min(toSeq, segment.endSeq());
+                if (from < to) {
+                    regions.add(segment.region(format, from, to));
+                }
+            }
+            return regions;
+        } catch (IOException e) {
+            regions.forEach(FileRegion::release);
+            throw e;
+        }
+    }
+
+    /**
+     * Deletes the oldest segments beyond the policy's count, then sealed segments past its age.
+     * The segment being written is always kept.
+     */
+    void enforceRetention(long now) {
+        while (segments.size() > policy.retainSegments()) {
+            delete(segments.pollFirst());
+        }
+        if (policy.retainMillis() > 0) {
+            while (segments.size() > 1 && now - segments.peekFirst().lastAppendMillis() > policy.retainMillis()) {
+                delete(segments.pollFirst());
+            }
+        }
+    }
+
+    /**
+     * Deletes the segments of a room whose log is not open once their files were last written
+     * before {@code cutoff}, then the directory if nothing else is left in it. Works from the
+     * file times alone, so nothing is mapped. A log reopened after all of its segments are gone
+     * numbers its messages from 0 again, like a new room.
+     */
+    static void sweepClosed(Path dir, long cutoff) throws IOException {
+        long[] expired;
+        try (Stream<Path> files = Files.list(dir)) {
+            expired = files.filter(file -> Segment.baseSeqOf(file) >= 0 && modifiedBefore(file, cutoff))
+                    .mapToLong(Segment::baseSeqOf)
+                    .toArray();
+        }
+        for (long baseSeq : expired) {
+            Segment.delete(dir, baseSeq);
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            if (files.findAny().isEmpty()) {
+                Files.deleteIfExists(dir);
+            }
+        }
+    }
+
+    private static boolean modifiedBefore(Path file, long cutoff) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis() < cutoff;
+        } catch (IOException e) {
+            return false; // Gone already, or unreadable; left for the next sweep
+        }
+    }
+
+    void force() {
+        segments.forEach(Segment::force);
+    }
+
+    /**
+     * Writes back and unmaps every segment. The log must be reopened before it is used again.
+     */
+    void close() {
+        segments.forEach(Segment::seal);
+        segments.clear();
+    }
+
+    private void delete(Segment segment) {
+        try {
+            segment.delete();
+        } catch (IOException e) {
+            LOG.warn("Failed to delete history segment {} in {}: {}", segment.baseSeq(), dir, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package studio.devsavegg.server.history;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.FileRegion;
+import studio.devsavegg.server.broadcaster.WireFormat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Consecutive messages of one room, starting at sequence number {@link #baseSeq()}. Each
+ * message is stored once per {@link WireFormat}, in one {@link SegmentFile} per format, so a
+ * replay never re-encodes. A segment is sealed once a message does not fit. After that,
+ * only the room's newest segment is written to.
+ * <p>
+ * Files are named {@code <baseSeq>.<format>}, with the sequence number zero-padded to 20 digits.
+ */
+final class Segment {
+    private static final WireFormat[] FORMATS = WireFormat.values();
+    private static final int TEXT = 0x1;
+    private static final int BINARY = 0x2;
+
+    private final long baseSeq;
+    private final SegmentFile[] files;
+    private long lastAppendMillis;
+
+    private Segment(long baseSeq, SegmentFile[] files, long lastAppendMillis) {
+        this.baseSeq = baseSeq;
+        this.files = files;
+        this.lastAppendMillis = lastAppendMillis;
+    }
+
+    static Segment create(Path dir, long baseSeq, int capacity) throws IOException {
+        SegmentFile[] files = new SegmentFile[FORMATS.length];
+        for (WireFormat format : FORMATS) {
+            files[format.ordinal()] = SegmentFile.create(path(dir, baseSeq, format), capacity);
+        }
+        return new Segment(baseSeq, files, System.currentTimeMillis());
+    }
+
+    /**
+     * Reopens a segment. A message missing from any one of its files (the writer stopped
+     * between them) is dropped from all of them.
+     */
+    static Segment open(Path dir, long baseSeq) throws IOException {
+        SegmentFile[] files = new SegmentFile[FORMATS.length];
+        int frames = Integer.MAX_VALUE;
+        for (WireFormat format : FORMATS) {
+            SegmentFile file = SegmentFile.open(path(dir, baseSeq, format));
+            files[format.ordinal()] = file;
+            frames = Math.min(frames, file.frames());
+        }
+        for (SegmentFile file : files) {
+            if (file.frames() > frames) {
+                file.truncate(frames);
+            }
+        }
+        long modified = Files.getLastModifiedTime(path(dir, baseSeq, FORMATS[0])).toMillis();
+        return new Segment(baseSeq, files, modified);
+    }
+
+    static Path path(Path dir, long baseSeq, WireFormat format) {
+        return dir.resolve(String.format("%020d.%s", baseSeq, format.name().toLowerCase(Locale.ROOT)));
+    }
+
+    /**
+     * The base sequence number encoded in a segment file name, or -1 for any other file.
+     */
+    static long baseSeqOf(Path file) {
+        String name = file.getFileName().toString();
+        String suffix = "." + FORMATS[0].name().toLowerCase(Locale.ROOT);
+        if (name.length() != 20 + suffix.length() || !name.endsWith(suffix)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name, 0, 20, 10);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    long baseSeq() {
+        return baseSeq;
+    }
+
+    /** One past the last message in this segment. */
+    long endSeq() {
+        return baseSeq + files[0].frames();
+    }
+
+    long lastAppendMillis() {
+        return lastAppendMillis;
+    }
+
+    /**
+     * Whether the message, encoded once per format, still fits.
+     */
+    boolean fits(ByteBuf[] payloads) {
+        for (WireFormat format : FORMATS) {
+            if (!files[format.ordinal()].fits(payloads[format.ordinal()].readableBytes())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Appends one message, indexed by {@link WireFormat#ordinal()}. The caller checks {@link #fits} first.
+     */
+    void append(ByteBuf[] payloads, long timestamp) {
+        for (WireFormat format : FORMATS) {
+            files[format.ordinal()].append(format == WireFormat.BINARY ? BINARY : TEXT, payloads[format.ordinal()]);
+        }
+        lastAppendMillis = timestamp;
+    }
+
+    /**
+     * The frames for messages [fromSeq, toSeq) in one format. Both must lie within this segment.
+     */
+    FileRegion region(WireFormat format, long fromSeq, long toSeq) throws IOException {
+        return files[format.ordinal()].region((int) (fromSeq - baseSeq), (int) (toSeq - baseSeq));
+    }
+
+    void force() {
+        for (SegmentFile file : files) {
+            file.force();
+        }
+    }
+
+    /**
+     * Writes the segment back and unmaps its files. It can still be replayed, but not appended to.
+     */
+    void seal() {
+        for (SegmentFile file : files) {
+            file.seal();
+        }
+    }
+
+    void delete() throws IOException {
+        for (SegmentFile file : files) {
+            file.delete();
+        }
+    }
+
+    /**
+     * Deletes the files of a segment that is not open.
+     */
+    static void delete(Path dir, long baseSeq) throws IOException {
+        for (WireFormat format : FORMATS) {
+            Files.deleteIfExists(path(dir, baseSeq, format));
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package studio.devsavegg.server.history;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.channel.FileRegion;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * One memory-mapped file of a {@link Segment}. It holds complete, unmasked WebSocket frames
+ * in a single wire format, back to back. Any run of messages can therefore be sent to a
+ * client with one file region.
+ * <p>
+ * The file is created at full capacity and stays zero-filled after the last frame. Each
+ * frame's first byte is written last, so a scan stops at the first zero byte and never
+ * picks up a half-written frame. The offset of every {@link #INDEX_INTERVAL}th frame is kept
+ * in a sparse in-memory index. Reopening the file rebuilds that index with the same scan.
+ * <p>
+ * Only a file that is being written stays mapped. {@link #seal()} unmaps it (the mapping
+ * belongs to an {@link Arena}, so it is released right away rather than when the GC gets to
+ * it), and a replay from a sealed file maps it read-only just long enough to find its frames.
+ * Only the history writer thread touches instances.
+ */
+final class SegmentFile {
+    static final int INDEX_INTERVAL = 32;
+
+    private static final int FIN = 0x80;
+
+    private final Path path;
+    private Arena arena;        // Null once sealed
+    private MemorySegment mapped;
+    private ByteBuf view;       // Over the mapping; writerIndex is the end of the last frame
+    private int end;            // End of the last frame; kept when the view goes away
+    private int[] index = new int[8];
+    private int frames;
+
+    private SegmentFile(Path path, FileChannel channel, FileChannel.MapMode mode, long size) throws IOException {
+        this.path = path;
+        this.arena = Arena.ofShared();
+        try {
+            this.mapped = channel.map(mode, 0, size, arena);
+        } catch (IOException | RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+        this.view = Unpooled.wrappedBuffer(mapped.asByteBuffer()).clear();
+    }
+
+    static SegmentFile create(Path path, int capacity) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, CREATE_NEW, READ, WRITE)) {
+            return new SegmentFile(path, channel, FileChannel.MapMode.READ_WRITE, capacity);
+        }
+    }
+
+    static SegmentFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, READ, WRITE)) {
+            SegmentFile file = new SegmentFile(path, channel, FileChannel.MapMode.READ_WRITE, channel.size());
+            file.scan();
+            return file;
+        }
+    }
+
+    int frames() {
+        return frames;
+    }
+
+    /**
+     * Whether a frame with this much payload still fits.
+     */
+    boolean fits(int payloadLength) {
+        return view != null && view.writableBytes() >= frameLength(payloadLength);
+    }
+
+    static int frameLength(int payloadLength) {
+        int header = (payloadLength < 126) ? 2 : (payloadLength < 65536) ? 4 : 10;
+        return header + payloadLength;
+    }
+
+    /**
+     * Appends {@code payload} as a final frame with the given opcode. The caller checks {@link #fits} first.
+     * The payload's indices are not modified.
+     */
+    void append(int opcode, ByteBuf payload) {
+        int start = view.writerIndex();
+        int length = payload.readableBytes();
+
+        view.writerIndex(start + 1);
+        if (length < 126) {
+            view.writeByte(length);
+        } else if (length < 65536) {
+            view.writeByte(126);
+            view.writeShort(length);
+        } else {
+            view.writeByte(127);
+            view.writeLong(length);
+        }
+        view.writeBytes(payload, payload.readerIndex(), length);
+        view.setByte(start, FIN | opcode); // Written last: the frame exists from here on
+
+        addToIndex(start);
+        end = view.writerIndex();
+    }
+
+    /**
+     * Drops every frame from {@code frames} on, as if they had never been written.
+     */
+    void truncate(int frames) {
+        int newEnd = offset(view, frames);
+        view.setZero(newEnd, end - newEnd);
+        view.writerIndex(newEnd);
+        this.end = newEnd;
+        this.frames = frames;
+    }
+
+    /**
+     * A region covering frames [from, to), for sending with sendfile or splice.
+     * The region owns its own file descriptor, so the file may be deleted while it is in flight.
+     */
+    FileRegion region(int from, int to) throws IOException {
+        FileChannel channel = FileChannel.open(path, READ);
+        try {
+            long start;
+            long stop;
+            if (view != null) {
+                start = offset(view, from);
+                stop = offset(view, to);
+            } else {
+                // Sealed: map the written part only for as long as it takes to walk the headers.
+                try (Arena scratch = Arena.ofConfined()) {
+                    ByteBuf sealed = Unpooled.wrappedBuffer(
+                            channel.map(FileChannel.MapMode.READ_ONLY, 0, end, scratch).asByteBuffer());
+                    start = offset(sealed, from);
+                    stop = offset(sealed, to);
+                }
+            }
+            return new DefaultFileRegion(channel, start, stop - start);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    void force() {
+        if (mapped != null) {
+            mapped.force();
+        }
+    }
+
+    /**
+     * Writes the file back and unmaps it. It can still be replayed, but no longer appended to.
+     */
+    void seal() {
+        if (arena != null) {
+            mapped.force();
+            view = null;
+            mapped = null;
+            arena.close();
+            arena = null;
+        }
+    }
+
+    void delete() throws IOException {
+        seal();
+        Files.deleteIfExists(path);
+    }
+
+    // --- Sparse index ---
+
+    private void addToIndex(int offset) {
+        if (frames % INDEX_INTERVAL == 0) {
+            int slot = frames / INDEX_INTERVAL;
+            if (slot == index.length) {
+                int[] grown = new int[index.length * 2];
+                System.arraycopy(index, 0, grown, 0, index.length);
+                index = grown;
+            }
+            index[slot] = offset;
+        }
+        frames++;
+    }
+
+    /**
+     * The file offset of a frame (or the end of the data for {@code frame == frames()}):
+     * the nearest indexed offset, then at most INDEX_INTERVAL - 1 headers read from {@code data}.
+     */
+    private int offset(ByteBuf data, int frame) {
+        if (frame >= frames) {
+            return end;
+        }
+        int offset = index[frame / INDEX_INTERVAL];
+        for (int i = frame - frame % INDEX_INTERVAL; i < frame; i++) {
+            offset = frameEnd(data, offset);
+        }
+        return offset;
+    }
+
+    /**
+     * Finds the frames written before the file was last closed.
+     */
+    private void scan() {
+        int offset = 0;
+        while (offset < view.capacity() && view.getByte(offset) != 0) {
+            int next = frameEnd(view, offset);
+            if (next < 0) {
+                break; // Torn or corrupt tail: everything before it is kept
+            }
+            addToIndex(offset);
+            offset = next;
+        }
+        view.writerIndex(offset);
+        end = offset;
+    }
+
+    /**
+     * The offset just past the frame at {@code offset}, or -1 if it does not fit in {@code data}.
+     */
+    private static int frameEnd(ByteBuf data, int offset) {
+        int capacity = data.capacity();
+        if (offset + 2 > capacity) {
+            return -1;
+        }
+        int lengthByte = data.getUnsignedByte(offset + 1);
+        long length;
+        int header;
+        if (lengthByte < 126) {
+            length = lengthByte;
+            header = 2;
+        } else if (lengthByte == 126 && offset + 4 <= capacity) {
+            length = data.getUnsignedShort(offset + 2);
+            header = 4;
+        } else if (lengthByte == 127 && offset + 10 <= capacity) {
+            length = data.getLong(offset + 2);
+            header = 10;
+        } else {
+            return -1; // Masked or truncated header; never written by append()
+        }
+        long end = offset + header + length;
+        return (length < 0 || end > capacity) ? -1 : (int) end;
+    }
+}
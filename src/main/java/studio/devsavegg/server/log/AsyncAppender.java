@@ -0,0 +1,182 @@
+package studio.devsavegg.server.log;
+
+import studio.devsavegg.server.queue.BlockingWaitStrategy;
+import studio.devsavegg.server.queue.MpscRingBuffer;
+
+import java.io.PrintStream;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Writes log events from a single background thread.
+ * <p>
+ * Callers only put the event in a bounded {@link MpscRingBuffer}, which never blocks and never
+ * allocates beyond the event itself. If the buffer is full the event is dropped and counted,
+ * and the writer reports the count with its next batch. The writer drains events in batches,
+ * formats them, and flushes stdout and stderr once per batch, so slow consoles only ever
+ * stall this thread.
+ */
+final class AsyncAppender implements Runnable {
+    private static final int BATCH_SIZE = 512;
+    private static final long HOLD_MILLIS = 30_000;
+    private static final DateTimeFormatter TIME_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    private final MpscRingBuffer<LogEvent> buffer;
+    private final PrintStream out;
+    private final PrintStream err;
+    private final LongAdder dropped = new LongAdder();
+    private final Phaser holds = new Phaser(1); // The shutdown hook is the one permanent party
+    private final StringBuilder line = new StringBuilder(256);
+    private boolean outDirty;
+    private boolean errDirty;
+
+    AsyncAppender(int capacity, PrintStream out, PrintStream err) {
+        this.buffer = new MpscRingBuffer<>(capacity, new BlockingWaitStrategy());
+        this.out = out;
+        this.err = err;
+    }
+
+    /**
+     * Starts the writer thread and a shutdown hook that writes whatever is still queued. The
+     * hook first waits, up to {@value #HOLD_MILLIS} ms, for every {@link #hold()} to be released.
+     */
+    void start() {
+        Thread writer = new Thread(this, "Log-Writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                holds.awaitAdvanceInterruptibly(holds.arrive(), HOLD_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException | TimeoutException ignored) {
+                // Stop anyway; what is queued by now still gets written
+            }
+            writer.interrupt();
+            try {
+                writer.join(1_000);
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            }
+        }, "Log-Flush"));
+    }
+
+    /**
+     * Keeps the shutdown hook from stopping the writer until the returned action runs. Running
+     * it more than once has no further effect.
+     */
+    Runnable hold() {
+        holds.register();
+        AtomicBoolean released = new AtomicBoolean();
+        return () -> {
+            if (released.compareAndSet(false, true)) {
+                holds.arriveAndDeregister();
+            }
+        };
+    }
+
+    /**
+     * Queues an event. Safe from any thread; never blocks.
+     */
+    void append(LogEvent event) {
+        if (!buffer.offer(event)) {
+            dropped.increment();
+        }
+    }
+
+    @Override
+    public void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                if (drainBatch() == 0) {
+                    buffer.await();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // Shutting down: write out everything that made it into the buffer.
+        while (drainBatch() > 0) {
+            // keep draining
+        }
+    }
+
+    private int drainBatch() {
+        int drained = buffer.drain(this::write, BATCH_SIZE);
+        long lost = dropped.sumThenReset();
+        if (lost > 0) {
+            err.println(TIME_FORMAT.format(Instant.now()) + " WARN  [Log] Buffer full, dropped " + lost + " message(s)");
+            errDirty = true;
+        }
+        if (outDirty) {
+            out.flush();
+            outDirty = false;
+        }
+        if (errDirty) {
+            err.flush();
+            errDirty = false;
+        }
+        return drained;
+    }
+
+    private void write(LogEvent event) {
+        line.setLength(0);
+        TIME_FORMAT.formatTo(Instant.ofEpochMilli(event.timestampMillis()), line);
+        line.append(' ').append(event.level().name());
+        for (int pad = event.level().name().length(); pad < 5; pad++) {
+            line.append(' ');
+        }
+        line.append(" [").append(event.logger()).append("] ");
+
+        Throwable thrown = format(event, line);
+        if (event.sampleEvery() > 1) {
+            line.append(" (sampled 1/").append(event.sampleEvery()).append(')');
+        }
+
+        boolean toErr = event.level().compareTo(Level.WARN) >= 0;
+        PrintStream stream = toErr ? err : out;
+        stream.append(line).append(System.lineSeparator());
+        if (thrown != null) {
+            thrown.printStackTrace(stream);
+        }
+        if (toErr) {
+            errDirty = true;
+        } else {
+            outDirty = true;
+        }
+    }
+
+    /**
+     * Replaces each {@code {}} in the template with the next argument. A Throwable left over
+     * after the placeholders are used up is returned so its stack trace can be printed.
+     */
+    static Throwable format(LogEvent event, StringBuilder sb) {
+        String template = event.template();
+        int used = 0;
+        int from = 0;
+        int at;
+        while (used < event.argCount() && (at = template.indexOf("{}", from)) >= 0) {
+            sb.append(template, from, at).append(arg(event, used++));
+            from = at + 2;
+        }
+        sb.append(template, from, template.length());
+
+        if (used < event.argCount() && arg(event, event.argCount() - 1) instanceof Throwable thrown) {
+            return thrown;
+        }
+        return null;
+    }
+
+    private static Object arg(LogEvent event, int index) {
+        return switch (index) {
+            case 0 -> event.arg1();
+            case 1 -> event.arg2();
+            default -> event.arg3();
+        };
+    }
+}
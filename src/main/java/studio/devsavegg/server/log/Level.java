@@ -0,0 +1,20 @@
+package studio.devsavegg.server.log;
+
+/**
+ * Log levels, from most to least verbose. {@link #OFF} disables a logger entirely.
+ */
+public enum Level {
+    DEBUG,
+    INFO,
+    WARN,
+    ERROR,
+    OFF;
+
+    /**
+     * Resolves a level by name (case-insensitive).
+     * @throws IllegalArgumentException If the name is unknown.
+     */
+    public static Level fromName(String name) {
+        return Level.valueOf(name.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,19 @@
+package studio.devsavegg.server.log;
+
+/**
+ * One captured log call. Holds the template and arguments unformatted, so the calling thread
+ * only pays for this record; {@link AsyncAppender} does the formatting.
+ *
+ * @param sampleEvery The sampling rate of the call site (1 when not sampled).
+ */
+record LogEvent(
+        long timestampMillis,
+        Level level,
+        String logger,
+        String template,
+        Object arg1,
+        Object arg2,
+        Object arg3,
+        int argCount,
+        int sampleEvery
+) {}
@@ -0,0 +1,172 @@
+package studio.devsavegg.server.log;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A leveled logger for one component, written asynchronously.
+ * <p>
+ * Messages are templates with {@code {}} placeholders and up to three arguments. A call below
+ * the logger's level returns after one comparison, without building a string or allocating.
+ * Enabled calls capture the arguments in a {@link LogEvent} and hand it to the shared
+ * {@link AsyncAppender}, so the caller never waits on stdout. Arguments are formatted later on
+ * the writer thread, so they should be immutable (IDs, names, addresses).
+ * <p>
+ * A Throwable passed as the last argument, beyond the placeholders, is printed with its stack trace.
+ * <p>
+ * Configuration (system properties):
+ * <ul>
+ *     <li>{@code current.log.level}: the default level (default {@code INFO}).</li>
+ *     <li>{@code current.log.level.<Component>}: the level of one component.</li>
+ *     <li>{@code current.log.sample.<Component>.<site>}: overrides the rate of a sampled call site.</li>
+ *     <li>{@code current.log.bufferSize}: capacity of the appender's ring buffer (default 8192).</li>
+ * </ul>
+ */
+public final class Logger {
+    private static final Level DEFAULT_LEVEL = Level.fromName(System.getProperty("current.log.level", "INFO"));
+    private static final AsyncAppender APPENDER = startAppender();
+
+    private final String name;
+    private final Level level;
+    private final int sampleEvery;
+    private final AtomicLong calls;
+
+    private Logger(String name, Level level, int sampleEvery) {
+        this.name = name;
+        this.level = level;
+        this.sampleEvery = sampleEvery;
+        this.calls = (sampleEvery > 1) ? new AtomicLong() : null;
+    }
+
+    private static AsyncAppender startAppender() {
+        AsyncAppender appender = new AsyncAppender(Integer.getInteger("current.log.bufferSize", 8192), System.out, System.err);
+        appender.start();
+        return appender;
+    }
+
+    /**
+     * Keeps the log writer running at JVM shutdown until the returned action runs, so a component
+     * that stops in its own shutdown hook still gets its last lines written. The writer waits
+     * at most 30 seconds.
+     */
+    public static Runnable holdShutdown() {
+        return APPENDER.hold();
+    }
+
+    /**
+     * The logger for a component. The name is printed as the {@code [Component]} prefix.
+     */
+    public static Logger get(String name) {
+        String override = System.getProperty("current.log.level." + name);
+        return new Logger(name, (override != null) ? Level.fromName(override) : DEFAULT_LEVEL, 1);
+    }
+
+    /**
+     * A view of this logger for one busy call site that only writes every {@code defaultEvery}-th
+     * enabled call. Keep it in a static field so the site has its own counter.
+     * @param site A short name for the call site, used for the {@code current.log.sample} override.
+     */
+    public Logger sampled(String site, int defaultEvery) {
+        int every = Integer.getInteger("current.log.sample." + name + "." + site, defaultEvery);
+        return new Logger(name, level, Math.max(1, every));
+    }
+
+    public boolean isEnabled(Level candidate) {
+        return candidate.compareTo(level) >= 0;
+    }
+
+    public boolean isDebugEnabled() {
+        return isEnabled(Level.DEBUG);
+    }
+
+    // --- DEBUG ---
+
+    public void debug(String message) {
+        log(Level.DEBUG, message, null, null, null, 0);
+    }
+
+    public void debug(String template, Object arg) {
+        log(Level.DEBUG, template, arg, null, null, 1);
+    }
+
+    public void debug(String template, Object arg1, Object arg2) {
+        log(Level.DEBUG, template, arg1, arg2, null, 2);
+    }
+
+    public void debug(String template, Object arg1, Object arg2, Object arg3) {
+        log(Level.DEBUG, template, arg1, arg2, arg3, 3);
+    }
+
+    // --- INFO ---
+
+    public void info(String message) {
+        log(Level.INFO, message, null, null, null, 0);
+    }
+
+    public void info(String template, Object arg) {
+        log(Level.INFO, template, arg, null, null, 1);
+    }
+
+    public void info(String template, Object arg1, Object arg2) {
+        log(Level.INFO, template, arg1, arg2, null, 2);
+    }
+
+    public void info(String template, Object arg1, Object arg2, Object arg3) {
+        log(Level.INFO, template, arg1, arg2, arg3, 3);
+    }
+
+    // --- WARN ---
+
+    public void warn(String message) {
+        log(Level.WARN, message, null, null, null, 0);
+    }
+
+    public void warn(String template, Object arg) {
+        log(Level.WARN, template, arg, null, null, 1);
+    }
+
+    public void warn(String template, Object arg1, Object arg2) {
+        log(Level.WARN, template, arg1, arg2, null, 2);
+    }
+
+    public void warn(String template, Object arg1, Object arg2, Object arg3) {
+        log(Level.WARN, template, arg1, arg2, arg3, 3);
+    }
+
+    // --- ERROR ---
+
+    public void error(String message) {
+        log(Level.ERROR, message, null, null, null, 0);
+    }
+
+    public void error(String template, Object arg) {
+        log(Level.ERROR, template, arg, null, null, 1);
+    }
+
+    public void error(String template, Object arg1, Object arg2) {
+        log(Level.ERROR, template, arg1, arg2, null, 2);
+    }
+
+    public void error(String template, Object arg1, Object arg2, Object arg3) {
+        log(Level.ERROR, template, arg1, arg2, arg3, 3);
+    }
+
+    private void log(Level eventLevel, String template, Object arg1, Object arg2, Object arg3, int argCount) {
+        if (eventLevel.compareTo(level) < 0) {
+            return;
+        }
+        if (calls != null && calls.getAndIncrement() % sampleEvery != 0) {
+            return;
+        }
+        APPENDER.append(new LogEvent(
+                System.currentTimeMillis(),
+                eventLevel,
+                name,
+                template,
+                arg1,
+                arg2,
+                arg3,
+                argCount,
+                sampleEvery
+        ));
+    }
+}
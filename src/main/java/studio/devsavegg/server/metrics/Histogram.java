@@ -0,0 +1,73 @@
+package studio.devsavegg.server.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram with power-of-two bucket bounds, exposed in the Prometheus format.
+ * <p>
+ * Bucket {@code k} counts values {@code <= 2^k}; values at or below {@code 2^minShift} share
+ * the first bucket and values above {@code 2^maxShift} only show up in {@code +Inf}. Recording
+ * is a couple of integer ops, one atomic increment and one {@link LongAdder} add, so it is
+ * cheap enough for the resolver threads and never blocks.
+ */
+public class Histogram {
+    private final int minShift;
+    private final int maxShift;
+    private final AtomicLongArray counts;
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * @param minShift Exponent of the smallest bucket bound.
+     * @param maxShift Exponent of the largest finite bucket bound.
+     */
+    public Histogram(int minShift, int maxShift) {
+        if (minShift < 0 || maxShift < minShift || maxShift > 62) {
+            throw new IllegalArgumentException("Invalid bucket range 2^" + minShift + "..2^" + maxShift);
+        }
+        this.minShift = minShift;
+        this.maxShift = maxShift;
+        // One slot per finite bound plus one for values above the last.
+        this.counts = new AtomicLongArray(maxShift - minShift + 2);
+    }
+
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        // Smallest k with value <= 2^k.
+        int shift = (value <= 1) ? 0 : 64 - Long.numberOfLeadingZeros(value - 1);
+        int slot = Math.min(Math.max(shift, minShift), maxShift + 1) - minShift;
+        counts.incrementAndGet(slot);
+        sum.add(value);
+    }
+
+    /**
+     * Appends the {@code _bucket}, {@code _sum} and {@code _count} series.
+     * @param labels Extra labels without braces (e.g. {@code command="say"}), or an empty string.
+     * @param scale Multiplier applied to bounds and sum (e.g. 1e-9 to expose nanoseconds as seconds).
+     */
+    void writeTo(StringBuilder out, String name, String labels, double scale) {
+        String prefix = labels.isEmpty() ? "" : labels + ",";
+        long cumulative = 0;
+        for (int shift = minShift; shift <= maxShift; shift++) {
+            cumulative += counts.get(shift - minShift);
+            out.append(name).append("_bucket{").append(prefix).append("le=\"")
+                    .append(formatDouble((double) (1L << shift) * scale)).append("\"} ")
+                    .append(cumulative).append('\n');
+        }
+        cumulative += counts.get(maxShift - minShift + 1);
+        out.append(name).append("_bucket{").append(prefix).append("le=\"+Inf\"} ").append(cumulative).append('\n');
+
+        String braces = labels.isEmpty() ? "" : "{" + labels + "}";
+        out.append(name).append("_sum").append(braces).append(' ').append(formatDouble(sum.sum() * scale)).append('\n');
+        out.append(name).append("_count").append(braces).append(' ').append(cumulative).append('\n');
+    }
+
+    static String formatDouble(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+}
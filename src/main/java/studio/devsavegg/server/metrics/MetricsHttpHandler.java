@@ -0,0 +1,68 @@
+package studio.devsavegg.server.metrics;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import studio.devsavegg.server.log.Logger;
+
+/**
+ * Serves {@code GET /metrics} with {@link ServerMetrics#scrape()}. Anything else gets a 404 or 405.
+ */
+@ChannelHandler.Sharable
+public class MetricsHttpHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+    private static final Logger LOG = Logger.get("Metrics");
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final ServerMetrics metrics;
+
+    public MetricsHttpHandler(ServerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest request) {
+        HttpResponseStatus status;
+        String body;
+        if (!"/metrics".equals(new QueryStringDecoder(request.uri()).path())) {
+            status = HttpResponseStatus.NOT_FOUND;
+            body = "Not found\n";
+        } else if (!HttpMethod.GET.equals(request.method())) {
+            status = HttpResponseStatus.METHOD_NOT_ALLOWED;
+            body = "Only GET is supported\n";
+        } else {
+            status = HttpResponseStatus.OK;
+            body = metrics.scrape();
+        }
+
+        ByteBuf content = ByteBufUtil.writeUtf8(ctx.alloc(), body);
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status, content);
+        response.headers().set(HttpHeaderNames.CONTENT_TYPE, CONTENT_TYPE);
+        HttpUtil.setContentLength(response, content.readableBytes());
+
+        boolean keepAlive = HttpUtil.isKeepAlive(request);
+        HttpUtil.setKeepAlive(response, keepAlive);
+        if (keepAlive) {
+            ctx.writeAndFlush(response, ctx.voidPromise());
+        } else {
+            ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        LOG.warn("Request failed: {}", cause.getMessage());
+        ctx.close();
+    }
+}
@@ -0,0 +1,60 @@
+package studio.devsavegg.server.metrics;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpServerCodec;
+import studio.devsavegg.server.log.Logger;
+import studio.devsavegg.server.transport.Transport;
+
+/**
+ * A small HTTP server for Prometheus scrapes, on its own port so it is never exposed with the
+ * chat endpoint. Runs on the chat server's event loops; a scrape only reads counters.
+ * It has no authentication, so it is off unless a port is configured. If the port cannot
+ * be bound the server logs it and runs without metrics.
+ */
+public class MetricsServer {
+    private static final Logger LOG = Logger.get("Metrics");
+
+    private final int port;
+    private final ServerMetrics metrics;
+    private Channel serverChannel;
+
+    public MetricsServer(int port, ServerMetrics metrics) {
+        this.port = port;
+        this.metrics = metrics;
+    }
+
+    public void start(Transport transport, EventLoopGroup bossGroup, EventLoopGroup workerGroup) throws InterruptedException {
+        MetricsHttpHandler handler = new MetricsHttpHandler(metrics);
+        ServerBootstrap b = new ServerBootstrap();
+        b.group(bossGroup, workerGroup)
+                .channel(transport.serverChannelClass())
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline().addLast(new HttpServerCodec());
+                        ch.pipeline().addLast(new HttpObjectAggregator(4096));
+                        ch.pipeline().addLast(handler);
+                    }
+                });
+
+        ChannelFuture bind = b.bind(port).await();
+        if (!bind.isSuccess()) {
+            LOG.error("Cannot serve /metrics on port {}, continuing without it: {}", port, bind.cause().getMessage());
+            return;
+        }
+        serverChannel = bind.channel();
+        LOG.info("Serving /metrics on port {}", port);
+    }
+
+    public void stop() {
+        if (serverChannel != null) {
+            serverChannel.close();
+        }
+    }
+}
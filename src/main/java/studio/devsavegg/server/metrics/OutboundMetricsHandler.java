@@ -0,0 +1,42 @@
+package studio.devsavegg.server.metrics;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.FileRegion;
+
+/**
+ * Counts the bytes written to each client socket and the writes that fail.
+ * Sits at the head of the pipeline, so it sees the final encoded (and compressed) bytes.
+ * Shared by every channel.
+ */
+@ChannelHandler.Sharable
+public class OutboundMetricsHandler extends ChannelOutboundHandlerAdapter {
+    private final ServerMetrics metrics;
+    private final ChannelFutureListener countFailure;
+
+    public OutboundMetricsHandler(ServerMetrics metrics) {
+        this.metrics = metrics;
+        this.countFailure = future -> {
+            if (!future.isSuccess()) {
+                metrics.recordWriteFailure();
+            }
+        };
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (msg instanceof ByteBuf buf) {
+            metrics.recordBytesWritten(buf.readableBytes());
+        } else if (msg instanceof FileRegion region) {
+            metrics.recordBytesWritten(region.count()); // History replays
+        }
+        if (!promise.isVoid()) {
+            promise.addListener(countFailure);
+        }
+        ctx.write(msg, promise);
+    }
+}
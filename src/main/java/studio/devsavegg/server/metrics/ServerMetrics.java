@@ -0,0 +1,125 @@
+package studio.devsavegg.server.metrics;
+
+import studio.devsavegg.server.resolver.ClientCommandType;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Server-wide metrics, rendered in the Prometheus text format by {@link #scrape()}.
+ * <p>
+ * Recorded values live in {@link LongAdder}s and {@link Histogram}s, so recording never takes
+ * a lock. Values that already exist elsewhere (queue depth, client count, ...) are registered
+ * as suppliers and only read at scrape time.
+ */
+public class ServerMetrics {
+    private static final String PREFIX = "current_";
+    private static final double NANOS_TO_SECONDS = 1e-9;
+
+    private static final ClientCommandType[] COMMANDS = ClientCommandType.values();
+
+    /** Time to handle each command, hand-offs and query workers included, in nanoseconds (~1 µs to ~17 s). */
+    private final Histogram[] commandNanos = new Histogram[COMMANDS.length];
+    /** Recipients per room broadcast (1 to ~1M). */
+    private final Histogram fanOutSize = new Histogram(0, 20);
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder writeFailures = new LongAdder();
+    private final List<Sampled> sampled = new CopyOnWriteArrayList<>();
+
+    public ServerMetrics() {
+        for (int i = 0; i < COMMANDS.length; i++) {
+            commandNanos[i] = new Histogram(10, 34);
+        }
+    }
+
+    // --- Recording ---
+
+    /**
+     * Records how long one client command took, from the resolver taking it until the last
+     * of its work (on another shard or a query worker) was done.
+     */
+    public void recordCommand(ClientCommandType command, long nanos) {
+        commandNanos[command.ordinal()].record(nanos);
+    }
+
+    /**
+     * Records the number of members a room broadcast was addressed to.
+     */
+    public void recordFanOut(int recipients) {
+        fanOutSize.record(recipients);
+    }
+
+    public void recordBytesWritten(long bytes) {
+        bytesWritten.add(bytes);
+    }
+
+    public void recordWriteFailure() {
+        writeFailures.increment();
+    }
+
+    // --- Sampled Values ---
+
+    /**
+     * Registers a value that goes up and down (read at scrape time).
+     * Series with the same name should be registered one after the other.
+     * @param labels Labels without braces (e.g. {@code shard="0"}), or an empty string.
+     */
+    public void registerGauge(String name, String help, String labels, LongSupplier value) {
+        sampled.add(new Sampled(PREFIX + name, help, "gauge", labels, value));
+    }
+
+    /**
+     * Registers a monotonically increasing value kept elsewhere (read at scrape time).
+     */
+    public void registerCounter(String name, String help, LongSupplier value) {
+        sampled.add(new Sampled(PREFIX + name, help, "counter", "", value));
+    }
+
+    // --- Exposition ---
+
+    /**
+     * Renders every metric in the Prometheus text exposition format (version 0.0.4).
+     */
+    public String scrape() {
+        StringBuilder out = new StringBuilder(8192);
+
+        String previous = null;
+        for (Sampled s : sampled) {
+            if (!s.name().equals(previous)) {
+                header(out, s.name(), s.help(), s.type());
+                previous = s.name();
+            }
+            out.append(s.name());
+            if (!s.labels().isEmpty()) {
+                out.append('{').append(s.labels()).append('}');
+            }
+            out.append(' ').append(s.value().getAsLong()).append('\n');
+        }
+
+        header(out, PREFIX + "resolver_command_seconds", "Time from a resolver taking a client command until its work, on any shard or query worker, was done.", "histogram");
+        for (ClientCommandType command : COMMANDS) {
+            commandNanos[command.ordinal()].writeTo(out, PREFIX + "resolver_command_seconds",
+                    "command=\"" + command.name().toLowerCase() + "\"", NANOS_TO_SECONDS);
+        }
+
+        header(out, PREFIX + "fanout_recipients", "Members addressed by a room broadcast.", "histogram");
+        fanOutSize.writeTo(out, PREFIX + "fanout_recipients", "", 1);
+
+        header(out, PREFIX + "outbound_bytes_total", "Bytes handed to client sockets.", "counter");
+        out.append(PREFIX).append("outbound_bytes_total ").append(bytesWritten.sum()).append('\n');
+
+        header(out, PREFIX + "outbound_write_failures_total", "Socket writes that failed.", "counter");
+        out.append(PREFIX).append("outbound_write_failures_total ").append(writeFailures.sum()).append('\n');
+
+        return out.toString();
+    }
+
+    private static void header(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private record Sampled(String name, String help, String type, String labels, LongSupplier value) {}
+}
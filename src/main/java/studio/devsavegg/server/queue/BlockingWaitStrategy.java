@@ -0,0 +1,46 @@
+package studio.devsavegg.server.queue;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Parks the consumer until a producer signals. Lowest CPU use, highest wake-up latency.
+ * <p>
+ * The consumer publishes itself in {@code waiter} before re-checking for work, and
+ * producers read {@code waiter} after publishing, so a signal can never be lost.
+ * The first producer to see a waiter claims it, so a burst of offers costs one unpark.
+ */
+public class BlockingWaitStrategy implements WaitStrategy {
+    private final AtomicReference<Thread> waiter = new AtomicReference<>();
+
+    @Override
+    public void await(BooleanSupplier ready) throws InterruptedException {
+        Thread current = Thread.currentThread();
+        try {
+            while (true) {
+                waiter.set(current);
+                if (ready.getAsBoolean()) {
+                    return;
+                }
+                LockSupport.park(this);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } finally {
+            waiter.set(null);
+        }
+    }
+
+    @Override
+    public void signal() {
+        if (waiter.get() == null) {
+            return;
+        }
+        Thread t = waiter.getAndSet(null);
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package studio.devsavegg.server.queue;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * A bounded, lock-free, multi-producer / single-consumer ring buffer.
+ * <p>
+ * All slots are allocated up front, so enqueueing never allocates. Each slot carries a
+ * sequence number (Vyukov's bounded queue): producers claim a position with a CAS on
+ * {@code tail}, write the element, then publish by advancing the slot's sequence.
+ * The single consumer reads slots in order and hands them back by moving the sequence
+ * one lap ahead.
+ * <p>
+ * {@link #offer} never blocks and fails when the buffer is full. {@link #drain} hands the
+ * consumer everything that is ready in one call, up to a limit, so it can process a batch
+ * per wakeup. The {@link WaitStrategy} decides how the consumer idles when it is empty.
+ *
+ * @param <E> The element type.
+ */
+public class MpscRingBuffer<E> {
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+    private final WaitStrategy waitStrategy;
+
+    private final AtomicLong tail = new AtomicLong(); // Next position to claim (producers)
+    private final AtomicLong head = new AtomicLong(); // Next position to read (consumer only)
+
+    /**
+     * @param capacity Number of slots; rounded up to a power of two.
+     * @param waitStrategy How the consumer waits while the buffer is empty.
+     */
+    public MpscRingBuffer(int capacity, WaitStrategy waitStrategy) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("capacity must be at least 2, got " + capacity);
+        }
+        this.capacity = Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = this.capacity - 1;
+        this.elements = new AtomicReferenceArray<>(this.capacity);
+        this.sequences = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++) {
+            sequences.set(i, i);
+        }
+        this.waitStrategy = waitStrategy;
+    }
+
+    /**
+     * Adds an element if there is room. Safe to call from any thread.
+     * @param element The element (not null).
+     * @return true if added, false if the buffer is full.
+     */
+    public boolean offer(E element) {
+        long pos = tail.get();
+        int index;
+        while (true) {
+            index = (int) pos & mask;
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    break;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                return false; // The consumer has not freed this slot yet: full
+            } else {
+                pos = tail.get(); // Another producer claimed it; retry from the new tail
+            }
+        }
+
+        elements.set(index, element);
+        sequences.set(index, pos + 1);
+        waitStrategy.signal();
+        return true;
+    }
+
+    /**
+     * Adds an element, waiting for room if the buffer is full.
+     * Meant for events that must not be lost; prefer {@link #offer} everywhere else.
+     * Spins and then parks the caller, so never call it from a Netty event loop.
+     */
+    public void put(E element) throws InterruptedException {
+        int spins = 0;
+        while (!offer(element)) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (++spins < 100) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(10_000);
+            }
+        }
+    }
+
+    /**
+     * Removes the next element. Consumer thread only.
+     * @return The element, or null if the buffer is empty.
+     */
+    public E poll() {
+        long pos = head.get();
+        int index = (int) pos & mask;
+        if (sequences.get(index) != pos + 1) {
+            return null;
+        }
+
+        E element = elements.get(index);
+        elements.lazySet(index, null);
+        sequences.lazySet(index, pos + capacity);
+        head.lazySet(pos + 1);
+        return element;
+    }
+
+    /**
+     * Hands up to {@code limit} ready elements to the consumer. Consumer thread only.
+     * @return How many elements were drained.
+     */
+    public int drain(Consumer<? super E> consumer, int limit) {
+        int drained = 0;
+        E element;
+        while (drained < limit && (element = poll()) != null) {
+            drained++;
+            consumer.accept(element);
+        }
+        return drained;
+    }
+
+    /**
+     * Blocks the consumer, according to the wait strategy, until the buffer is non-empty.
+     */
+    public void await() throws InterruptedException {
+        waitStrategy.await(() -> !isEmpty());
+    }
+
+    public boolean isEmpty() {
+        long pos = head.get();
+        return sequences.get((int) pos & mask) != pos + 1;
+    }
+
+    /**
+     * Approximate number of elements; exact when producers are quiet.
+     */
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, capacity));
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public WaitStrategy waitStrategy() {
+        return waitStrategy;
+    }
+}
@@ -0,0 +1,24 @@
+package studio.devsavegg.server.queue;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Busy-spins the consumer. Lowest latency, burns a full core while idle.
+ */
+public class SpinningWaitStrategy implements WaitStrategy {
+
+    @Override
+    public void await(BooleanSupplier ready) throws InterruptedException {
+        while (!ready.getAsBoolean()) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    @Override
+    public void signal() {
+        // Nothing to wake; the consumer is always spinning.
+    }
+}
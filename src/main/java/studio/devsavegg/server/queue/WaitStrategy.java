@@ -0,0 +1,37 @@
+package studio.devsavegg.server.queue;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Decides how the single consumer of an {@link MpscRingBuffer} waits for work,
+ * and how producers wake it up.
+ */
+public interface WaitStrategy {
+
+    /**
+     * Called by the consumer when it found nothing to do.
+     * Returns once {@code ready} reports true (or spuriously; callers re-check).
+     * @param ready Reports whether there is work available.
+     * @throws InterruptedException if the consumer thread is interrupted while waiting.
+     */
+    void await(BooleanSupplier ready) throws InterruptedException;
+
+    /**
+     * Called by a producer after it published an item.
+     */
+    void signal();
+
+    /**
+     * Resolves a strategy by name: {@code blocking}, {@code spinning} or {@code yielding}.
+     * @param name The strategy name (case-insensitive).
+     * @return The strategy, never null.
+     */
+    static WaitStrategy fromName(String name) {
+        return switch (name.toLowerCase()) {
+            case "blocking" -> new BlockingWaitStrategy();
+            case "spinning" -> new SpinningWaitStrategy();
+            case "yielding" -> new YieldingWaitStrategy();
+            default -> throw new IllegalArgumentException("Unknown wait strategy: " + name);
+        };
+    }
+}
@@ -0,0 +1,32 @@
+package studio.devsavegg.server.queue;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Spins briefly, then yields the CPU between checks. A middle ground between
+ * {@link SpinningWaitStrategy} and {@link BlockingWaitStrategy}.
+ */
+public class YieldingWaitStrategy implements WaitStrategy {
+    private static final int SPIN_TRIES = 100;
+
+    @Override
+    public void await(BooleanSupplier ready) throws InterruptedException {
+        int counter = SPIN_TRIES;
+        while (!ready.getAsBoolean()) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (counter > 0) {
+                counter--;
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+
+    @Override
+    public void signal() {
+        // Nothing to wake; the consumer polls.
+    }
+}
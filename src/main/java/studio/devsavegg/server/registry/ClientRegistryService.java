@@ -5,11 +5,11 @@ import io.netty.channel.Channel;
 public interface ClientRegistryService {
 
     /**
-     * Registers a new client.
-     * @param clientId The unique ID for the client.
+     * Registers a new client and assigns its unique ID.
      * @param channel The client's Netty channel.
+     * @return The new client's ID.
      */
-    void registerClient(String clientId, Channel channel);
+    String registerClient(Channel channel);
 
     /**
      * Unregisters a client (on disconnect).
@@ -17,6 +17,15 @@ public interface ClientRegistryService {
      */
     void unregisterClient(String clientId);
 
+    /**
+     * Moves a registered client to a new channel (a resumed session).
+     * The client keeps its ID, name and context; its old channel no longer resolves to it.
+     * @param clientId The client's ID.
+     * @param channel The client's new channel.
+     * @return false if the client is not registered.
+     */
+    boolean rebindClient(String clientId, Channel channel);
+
     /**
      * Retrieves a client's channel by their ID.
      * @param clientId The ID of the client.
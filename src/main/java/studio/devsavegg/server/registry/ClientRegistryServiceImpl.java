@@ -1,95 +1,325 @@
 package studio.devsavegg.server.registry;
 
 import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import studio.devsavegg.server.log.Logger;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicReference;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.HexFormat;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Client registry laid out by dense integer handles.
+ * <p>
+ * Each connection gets a free handle (freed handles are reused first, oldest first), stored on its channel as an attribute, so
+ * {@link #getClientId(Channel)} is an attribute read plus an array read. Per-client fields
+ * live in parallel arrays split into fixed-size pages that are never moved or copied, so a
+ * write to one client can never be lost while another registration grows the table.
+ * <p>
+ * The public client ID encodes the handle: the ID prefix ({@code "user-"} by default) followed by 24 hex digits holding
+ * the boot epoch (8), a 40-bit registration sequence number (10) and the 24-bit handle (6). Resolving
+ * an ID is a hex parse of the handle plus one string comparison against the stored ID, so no
+ * String-keyed map is needed. The sequence number grows with every registration and the epoch
+ * is the second the registry was created, so an ID is never issued twice, neither to the
+ * next holder of its handle nor after a restart.
+ */
 public class ClientRegistryServiceImpl implements ClientRegistryService {
-    private record Client(
-            Channel channel,
-            AtomicReference<String> username,
-            AtomicReference<String> context
-    ) {}
+    private static final Logger LOG = Logger.get("ClientRegistry");
 
-    private final Map<String, Client> clients = new ConcurrentHashMap<>();
+    private static final AttributeKey<Integer> HANDLE = AttributeKey.valueOf("clientHandle");
 
-    private final Map<Channel, String> clientChannels = new ConcurrentHashMap<>();
+    private static final int HANDLE_BITS = 24;
+    private static final int HANDLE_MASK = (1 << HANDLE_BITS) - 1;
+    private static final int HANDLE_DIGITS = HANDLE_BITS / 4;
+    private static final int EPOCH_DIGITS = 8;
+    private static final int SEQUENCE_DIGITS = 10;
+    private static final long SEQUENCE_MASK = (1L << (4 * SEQUENCE_DIGITS)) - 1;
+
+    private static final int PAGE_BITS = 10;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    // Release/acquire access so clients registered on one resolver shard are visible to the others.
+    private static final VarHandle CHANNELS = MethodHandles.arrayElementVarHandle(Channel[].class);
+    private static final VarHandle STRINGS = MethodHandles.arrayElementVarHandle(String[].class);
+
+    private static final class Page {
+        final Channel[] channels = new Channel[PAGE_SIZE];
+        final String[] clientIds = new String[PAGE_SIZE];
+        final String[] usernames = new String[PAGE_SIZE];
+        final String[] contexts = new String[PAGE_SIZE];
+    }
+
+    private final String idPrefix;
+    private final String epoch;
+    private final int idLength;
+    private final RegistrySnapshots snapshots; // Null when no snapshots are published
+
+    private volatile Page[] pages = new Page[16];
+    private final AtomicInteger clientCount = new AtomicInteger();
+
+    // --- Handle allocation (guarded by allocationLock) ---
+    private final Object allocationLock = new Object();
+    private int nextHandle = 0;
+    private long nextSequence = 0;
+    private int[] freeHandles = new int[64]; // FIFO ring
+    private int freeHead = 0;
+    private int freeCount = 0;
+
+    public ClientRegistryServiceImpl() {
+        this("user-");
+    }
+
+    /**
+     * @param idPrefix Starts every client ID, e.g. to keep the IDs of cluster nodes apart.
+     */
+    public ClientRegistryServiceImpl(String idPrefix) {
+        this(idPrefix, null);
+    }
+
+    /**
+     * @param snapshots Receives every change to a client's name or context, or null.
+     */
+    public ClientRegistryServiceImpl(String idPrefix, RegistrySnapshots snapshots) {
+        this.idPrefix = idPrefix;
+        this.epoch = HexFormat.of().toHexDigits((int) (System.currentTimeMillis() / 1000));
+        this.idLength = idPrefix.length() + EPOCH_DIGITS + SEQUENCE_DIGITS + HANDLE_DIGITS;
+        this.snapshots = snapshots;
+    }
 
     @Override
-    public void registerClient(String clientId, Channel channel) {
-        Client newClient = new Client(
-                channel,
-                new AtomicReference<>(clientId),
-                new AtomicReference<>(null)
-        );
+    public String registerClient(Channel channel) {
+        long allocation = allocateHandle();
+        int handle = (int) (allocation & HANDLE_MASK);
+        long sequence = allocation >>> HANDLE_BITS;
+        Page page = page(handle);
+        int slot = handle & PAGE_MASK;
+
+        HexFormat hex = HexFormat.of();
+        String clientId = idPrefix + epoch
+                + hex.toHexDigits(sequence).substring(16 - SEQUENCE_DIGITS)
+                + hex.toHexDigits(handle).substring(8 - HANDLE_DIGITS);
+
+        STRINGS.setRelease(page.usernames, slot, clientId);
+        STRINGS.setRelease(page.contexts, slot, (String) null);
+        CHANNELS.setRelease(page.channels, slot, channel);
+        // Publishing the ID last makes the slot resolvable only once it is fully populated.
+        STRINGS.setRelease(page.clientIds, slot, clientId);
 
-        clients.put(clientId, newClient);
-        clientChannels.put(channel, clientId);
-        System.out.println("[ClientRegistry] Client registered: " + clientId);
+        channel.attr(HANDLE).set(handle);
+        clientCount.incrementAndGet();
+        publishClient(clientId);
+        LOG.debug("Client registered: {}", clientId);
+        return clientId;
     }
 
     @Override
     public void unregisterClient(String clientId) {
         if (clientId == null) return;
 
-        Client client = clients.remove(clientId);
+        int handle = handleOf(clientId);
+        if (handle >= 0) {
+            Page page = page(handle);
+            int slot = handle & PAGE_MASK;
+
+            // Invalidate the ID first so concurrent lookups stop resolving this slot.
+            STRINGS.setRelease(page.clientIds, slot, (String) null);
+            Channel channel = (Channel) CHANNELS.getAcquire(page.channels, slot);
+            CHANNELS.setRelease(page.channels, slot, (Channel) null);
+            STRINGS.setRelease(page.usernames, slot, (String) null);
+            STRINGS.setRelease(page.contexts, slot, (String) null);
+
+            if (channel != null) {
+                channel.attr(HANDLE).set(null);
+            }
+            clientCount.decrementAndGet();
+            releaseHandle(handle);
+            publishClient(clientId);
+        }
+        LOG.debug("Client unregistered: {}", clientId);
+    }
+
+    @Override
+    public boolean rebindClient(String clientId, Channel channel) {
+        int handle = handleOf(clientId);
+        if (handle < 0) {
+            return false;
+        }
 
-        if (client != null) {
-            clientChannels.remove(client.channel());
+        Page page = page(handle);
+        int slot = handle & PAGE_MASK;
+        channel.attr(HANDLE).set(handle);
+        Channel previous = (Channel) CHANNELS.getAndSet(page.channels, slot, channel);
+        if (previous != null && previous != channel) {
+            previous.attr(HANDLE).set(null);
         }
-        System.out.println("[ClientRegistry] Client unregistered: " + clientId);
+        LOG.debug("Client {} moved to a new connection", clientId);
+        return true;
     }
 
     @Override
     public Channel getChannel(String clientId) {
-        Client client = clients.get(clientId);
-        return (client != null) ? client.channel() : null;
+        int handle = handleOf(clientId);
+        return (handle >= 0) ? (Channel) CHANNELS.getAcquire(page(handle).channels, handle & PAGE_MASK) : null;
     }
 
     @Override
     public void setUsername(String clientId, String username) {
-        Client client = clients.get(clientId);
-        if (client != null) {
-            client.username().set(username);
-            System.out.println("[ClientRegistry] Client " + clientId + " username set to: " + username);
+        int handle = handleOf(clientId);
+        if (handle >= 0) {
+            STRINGS.setRelease(page(handle).usernames, handle & PAGE_MASK, username);
+            publishClient(clientId);
+            LOG.debug("Client {} username set to: {}", clientId, username);
         }
     }
 
     @Override
     public String getUsername(String clientId) {
-        Client client = clients.get(clientId);
-        return (client != null) ? client.username().get() : clientId;
+        int handle = handleOf(clientId);
+        return (handle >= 0) ? (String) STRINGS.getAcquire(page(handle).usernames, handle & PAGE_MASK) : clientId;
     }
 
     @Override
     public void setClientContext(String clientId, String contextId) {
-        Client client = clients.get(clientId);
-        if (client != null) {
-            client.context().set(contextId);
-            System.out.println("[ClientRegistry] Client " + clientId + " context set to: " + contextId);
+        int handle = handleOf(clientId);
+        if (handle >= 0) {
+            STRINGS.setRelease(page(handle).contexts, handle & PAGE_MASK, contextId);
+            publishClient(clientId);
+            LOG.debug("Client {} context set to: {}", clientId, contextId);
         }
     }
 
     @Override
     public String getClientContext(String clientId) {
-        Client client = clients.get(clientId);
-        return (client != null) ? client.context().get() : null;
+        int handle = handleOf(clientId);
+        return (handle >= 0) ? (String) STRINGS.getAcquire(page(handle).contexts, handle & PAGE_MASK) : null;
     }
 
     @Override
     public String getClientId(Channel channel) {
-        return clientChannels.get(channel);
+        Integer handle = channel.attr(HANDLE).get();
+        if (handle == null) {
+            return null;
+        }
+        Page page = page(handle);
+        return (page != null) ? (String) STRINGS.getAcquire(page.clientIds, handle & PAGE_MASK) : null;
     }
 
     @Override
     public boolean isClientOnline(String clientId) {
-        return clients.containsKey(clientId);
+        return handleOf(clientId) >= 0;
     }
 
     @Override
     public int getTotalClientCount() {
-        return clients.size();
+        return clientCount.get();
+    }
+
+    // --- Helpers ---
+
+    private void publishClient(String clientId) {
+        if (snapshots != null) {
+            snapshots.putClient(clientId, () -> {
+                int handle = handleOf(clientId);
+                if (handle < 0) {
+                    return null;
+                }
+                Page page = page(handle);
+                int slot = handle & PAGE_MASK;
+                return new RegistrySnapshot.Client(clientId,
+                        (String) STRINGS.getAcquire(page.usernames, slot),
+                        (String) STRINGS.getAcquire(page.contexts, slot));
+            });
+        }
+    }
+
+    /**
+     * Resolves an external client ID to its handle.
+     * @return The handle, or -1 if the ID is malformed or not currently registered.
+     */
+    private int handleOf(String clientId) {
+        if (clientId == null || clientId.length() != idLength || !clientId.startsWith(idPrefix)) {
+            return -1;
+        }
+
+        // Only the handle is parsed; the epoch and sequence are checked by the comparison below.
+        int handle = 0;
+        for (int i = idLength - HANDLE_DIGITS; i < idLength; i++) {
+            int digit = Character.digit(clientId.charAt(i), 16);
+            if (digit < 0) {
+                return -1;
+            }
+            handle = (handle << 4) | digit;
+        }
+
+        Page page = page(handle);
+        if (page == null) {
+            return -1;
+        }
+        return clientId.equals(STRINGS.getAcquire(page.clientIds, handle & PAGE_MASK)) ? handle : -1;
+    }
+
+    private Page page(int handle) {
+        Page[] current = pages;
+        int index = handle >>> PAGE_BITS;
+        return (index < current.length) ? current[index] : null;
+    }
+
+    /**
+     * @return The handle in the low 24 bits and the registration's sequence number above it.
+     */
+    private long allocateHandle() {
+        synchronized (allocationLock) {
+            int handle;
+            if (freeCount > 0) {
+                // Oldest first, so a handle rests as long as possible before it is reused.
+                handle = freeHandles[freeHead];
+                freeHead = (freeHead + 1) % freeHandles.length;
+                freeCount--;
+            } else {
+                handle = newHandle();
+            }
+
+            if (nextSequence > SEQUENCE_MASK) {
+                throw new IllegalStateException("Client ID sequence exhausted (" + (SEQUENCE_MASK + 1) + " registrations)");
+            }
+            return (nextSequence++ << HANDLE_BITS) | handle;
+        }
+    }
+
+    /**
+     * Hands out the next never-used handle, adding a page if needed. Caller holds allocationLock.
+     */
+    private int newHandle() {
+        if (nextHandle > HANDLE_MASK) {
+            throw new IllegalStateException("Client registry is full (" + (HANDLE_MASK + 1) + " handles)");
+        }
+
+        int handle = nextHandle++;
+        int index = handle >>> PAGE_BITS;
+        Page[] current = pages;
+        if (index >= current.length || current[index] == null) {
+            // Never write into the published array; readers see either the old array or the new one.
+            Page[] grown = new Page[(index < current.length) ? current.length : current.length * 2];
+            System.arraycopy(current, 0, grown, 0, current.length);
+            grown[index] = new Page();
+            pages = grown; // Volatile publish; pages themselves are never moved
+        }
+        return handle;
+    }
+
+    private void releaseHandle(int handle) {
+        synchronized (allocationLock) {
+            if (freeCount == freeHandles.length) {
+                int[] grown = new int[freeHandles.length * 2];
+                for (int i = 0; i < freeCount; i++) {
+                    grown[i] = freeHandles[(freeHead + i) % freeHandles.length];
+                }
+                freeHandles = grown;
+                freeHead = 0;
+            }
+            freeHandles[(freeHead + freeCount++) % freeHandles.length] = handle;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,303 @@
+package studio.devsavegg.server.registry;
+
+import java.util.function.BiConsumer;
+
+/**
+ * An immutable hash map whose updates share structure with the map they came from.
+ * <p>
+ * A hash array mapped trie: each level consumes 5 bits of the key's hash and stores only
+ * the slots in use, indexed by a 32-bit bitmap. {@link #plus} and {@link #minus} copy the
+ * path from the root to the changed entry (at most 7 small arrays) and reuse everything
+ * else, so keeping every version costs memory only for what changed. Keys whose full
+ * hashes collide share a list node at the bottom.
+ * <p>
+ * Instances are immutable and safe to read from any thread once published.
+ *
+ * @param <K> The key type; must have consistent {@code equals} and {@code hashCode}.
+ * @param <V> The value type.
+ */
+public final class PersistentMap<K, V> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private static final PersistentMap<?, ?> EMPTY = new PersistentMap<>(null, 0);
+
+    private final Node root; // Null when empty
+    private final int size;
+
+    private PersistentMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentMap<K, V> empty() {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(K key) {
+        return (root != null) ? (V) root.find(0, key.hashCode(), key) : null;
+    }
+
+    public boolean containsKey(K key) {
+        return get(key) != null;
+    }
+
+    /**
+     * A map with {@code key} mapped to {@code value} (not null); this map if nothing changes.
+     */
+    public PersistentMap<K, V> plus(K key, V value) {
+        boolean[] added = new boolean[1];
+        Node base = (root != null) ? root : BitmapNode.EMPTY;
+        Node updated = base.assoc(0, key.hashCode(), key, value, added);
+        if (updated == root) {
+            return this;
+        }
+        return new PersistentMap<>(updated, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * A map without {@code key}; this map if it was not present.
+     */
+    public PersistentMap<K, V> minus(K key) {
+        if (root == null) {
+            return this;
+        }
+        Node updated = root.without(0, key.hashCode(), key);
+        if (updated == root) {
+            return this;
+        }
+        return (updated == null) ? empty() : new PersistentMap<>(updated, size - 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        if (root != null) {
+            root.forEach((BiConsumer<Object, Object>) action);
+        }
+    }
+
+    // --- Trie nodes ---
+
+    private interface Node {
+        /** The value for a key, or null. */
+        Object find(int shift, int hash, Object key);
+
+        /** This node with the entry set; this node itself if the entry was already there. */
+        Node assoc(int shift, int hash, Object key, Object value, boolean[] added);
+
+        /** This node without the key; this node itself if absent, null if it becomes empty. */
+        Node without(int shift, int hash, Object key);
+
+        void forEach(BiConsumer<Object, Object> action);
+    }
+
+    /**
+     * Up to 32 slots, one per 5-bit hash chunk. Each slot is a key and value pair in
+     * {@code array}, or a null key and a child node.
+     */
+    private static final class BitmapNode implements Node {
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        final int bitmap;
+        final Object[] array;
+
+        BitmapNode(int bitmap, Object[] array) {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        public Object find(int shift, int hash, Object key) {
+            int bit = bitpos(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            int i = 2 * index(bit);
+            Object k = array[i];
+            if (k == null) {
+                return ((Node) array[i + 1]).find(shift + BITS, hash, key);
+            }
+            return key.equals(k) ? array[i + 1] : null;
+        }
+
+        @Override
+        public Node assoc(int shift, int hash, Object key, Object value, boolean[] added) {
+            int bit = bitpos(hash, shift);
+            int i = 2 * index(bit);
+
+            if ((bitmap & bit) == 0) {
+                Object[] grown = new Object[array.length + 2];
+                System.arraycopy(array, 0, grown, 0, i);
+                grown[i] = key;
+                grown[i + 1] = value;
+                System.arraycopy(array, i, grown, i + 2, array.length - i);
+                added[0] = true;
+                return new BitmapNode(bitmap | bit, grown);
+            }
+
+            Object k = array[i];
+            Object v = array[i + 1];
+            if (k == null) {
+                Node child = ((Node) v).assoc(shift + BITS, hash, key, value, added);
+                return (child == v) ? this : withSlot(i, null, child);
+            }
+            if (key.equals(k)) {
+                return (v == value) ? this : withSlot(i, k, value);
+            }
+            added[0] = true;
+            return withSlot(i, null, split(shift + BITS, k, v, hash, key, value));
+        }
+
+        @Override
+        public Node without(int shift, int hash, Object key) {
+            int bit = bitpos(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int i = 2 * index(bit);
+            Object k = array[i];
+            if (k == null) {
+                Node child = (Node) array[i + 1];
+                Node updated = child.without(shift + BITS, hash, key);
+                if (updated == child) {
+                    return this;
+                }
+                return (updated != null) ? withSlot(i, null, updated) : removeSlot(bit, i);
+            }
+            return key.equals(k) ? removeSlot(bit, i) : this;
+        }
+
+        @Override
+        public void forEach(BiConsumer<Object, Object> action) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (array[i] == null) {
+                    ((Node) array[i + 1]).forEach(action);
+                } else {
+                    action.accept(array[i], array[i + 1]);
+                }
+            }
+        }
+
+        private BitmapNode withSlot(int i, Object key, Object value) {
+            Object[] copy = array.clone();
+            copy[i] = key;
+            copy[i + 1] = value;
+            return new BitmapNode(bitmap, copy);
+        }
+
+        private BitmapNode removeSlot(int bit, int i) {
+            if (bitmap == bit) {
+                return null;
+            }
+            Object[] shrunk = new Object[array.length - 2];
+            System.arraycopy(array, 0, shrunk, 0, i);
+            System.arraycopy(array, i + 2, shrunk, i, array.length - i - 2);
+            return new BitmapNode(bitmap ^ bit, shrunk);
+        }
+
+        /**
+         * A node holding two entries that shared a slot one level up.
+         */
+        private static Node split(int shift, Object k1, Object v1, int h2, Object k2, Object v2) {
+            int h1 = k1.hashCode();
+            if (h1 == h2) {
+                return new CollisionNode(h1, new Object[]{k1, v1, k2, v2});
+            }
+            // The hashes differ somewhere in their 32 bits, so this terminates by shift 30.
+            boolean[] ignored = new boolean[1];
+            return EMPTY.assoc(shift, h1, k1, v1, ignored).assoc(shift, h2, k2, v2, ignored);
+        }
+    }
+
+    /**
+     * Entries whose keys have the same full hash, as a flat key and value array.
+     */
+    private static final class CollisionNode implements Node {
+        final int hash;
+        final Object[] array;
+
+        CollisionNode(int hash, Object[] array) {
+            this.hash = hash;
+            this.array = array;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public Object find(int shift, int hash, Object key) {
+            int i = indexOf(key);
+            return (i >= 0) ? array[i + 1] : null;
+        }
+
+        @Override
+        public Node assoc(int shift, int hash, Object key, Object value, boolean[] added) {
+            if (hash != this.hash) {
+                // Push this node one level down, next to the new key.
+                return new BitmapNode(bitpos(this.hash, shift), new Object[]{null, this})
+                        .assoc(shift, hash, key, value, added);
+            }
+            int i = indexOf(key);
+            if (i >= 0) {
+                if (array[i + 1] == value) {
+                    return this;
+                }
+                Object[] copy = array.clone();
+                copy[i + 1] = value;
+                return new CollisionNode(hash, copy);
+            }
+            Object[] grown = new Object[array.length + 2];
+            System.arraycopy(array, 0, grown, 0, array.length);
+            grown[array.length] = key;
+            grown[array.length + 1] = value;
+            added[0] = true;
+            return new CollisionNode(hash, grown);
+        }
+
+        @Override
+        public Node without(int shift, int hash, Object key) {
+            int i = indexOf(key);
+            if (i < 0) {
+                return this;
+            }
+            if (array.length == 2) {
+                return null;
+            }
+            Object[] shrunk = new Object[array.length - 2];
+            System.arraycopy(array, 0, shrunk, 0, i);
+            System.arraycopy(array, i + 2, shrunk, i, array.length - i - 2);
+            return new CollisionNode(hash, shrunk);
+        }
+
+        @Override
+        public void forEach(BiConsumer<Object, Object> action) {
+            for (int i = 0; i < array.length; i += 2) {
+                action.accept(array[i], array[i + 1]);
+            }
+        }
+    }
+
+    private static int bitpos(int hash, int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+}
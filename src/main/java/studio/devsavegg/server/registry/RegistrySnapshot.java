@@ -0,0 +1,40 @@
+package studio.devsavegg.server.registry;
+
+/**
+ * One immutable, consistent version of the client and room registries, for commands that
+ * only read them.
+ * <p>
+ * Successive versions share every room and client that did not change between them (see
+ * {@link PersistentMap}), so publishing a new one after each change is cheap and an old one
+ * stays valid for as long as a reader holds it.
+ *
+ * @param version Increases by one with every change.
+ * @param clients Client ID -> client, for the clients connected to this node.
+ * @param rooms   Room ID -> room, public rooms and DM sessions alike.
+ */
+public record RegistrySnapshot(
+        long version,
+        PersistentMap<String, Client> clients,
+        PersistentMap<String, Room> rooms
+) {
+    public static final RegistrySnapshot EMPTY = new RegistrySnapshot(0, PersistentMap.empty(), PersistentMap.empty());
+
+    /**
+     * @param context The room or DM session the client is talking in, or null.
+     */
+    public record Client(String clientId, String username, String context) {}
+
+    /**
+     * @param inviteCode Null for DM sessions.
+     * @param members    Member client ID -> itself.
+     */
+    public record Room(String roomId, String roomName, String inviteCode, PersistentMap<String, String> members) {}
+
+    public Client client(String clientId) {
+        return (clientId != null) ? clients.get(clientId) : null;
+    }
+
+    public Room room(String roomId) {
+        return (roomId != null) ? rooms.get(roomId) : null;
+    }
+}
@@ -0,0 +1,173 @@
+package studio.devsavegg.server.registry;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Publishes new {@link RegistrySnapshot}s as the registries change.
+ * <p>
+ * Registries keep their live, concurrent structures for the resolver shards that own their
+ * entries, and call in here after each change to a client or a room membership. A resolver
+ * thread that called {@link #batchCurrentThread()} only notes which entries it touched, and
+ * {@link #publish()} applies them all with one compare-and-set: once per drain pass, and
+ * before the shard hands a query to a worker, so a query still sees every change its shard
+ * made before it. Shards therefore meet on the shared reference once per pass rather than
+ * once per change, and an entry touched many times in a pass is copied into the trie once.
+ * Any other thread publishes each change right away.
+ * <p>
+ * Changes from different threads are applied with a compare-and-set, so none is lost. Each
+ * change re-reads the live value it publishes rather than carrying it along, so if two threads
+ * touch the same entry the snapshot still ends up agreeing with the registry.
+ */
+public class RegistrySnapshots {
+    private final AtomicReference<RegistrySnapshot> current = new AtomicReference<>(RegistrySnapshot.EMPTY);
+    private final ThreadLocal<Batch> batches = new ThreadLocal<>();
+
+    /**
+     * The latest snapshot. Never null; safe from any thread.
+     */
+    public RegistrySnapshot current() {
+        return current.get();
+    }
+
+    public long version() {
+        return current.get().version();
+    }
+
+    /**
+     * From now on, changes made on the calling thread wait for its next {@link #publish()}.
+     */
+    public void batchCurrentThread() {
+        if (batches.get() == null) {
+            batches.set(new Batch());
+        }
+    }
+
+    /**
+     * Publishes the changes the calling thread has batched since its last call, if any.
+     */
+    public void publish() {
+        Batch batch = batches.get();
+        if (batch == null || batch.isEmpty()) {
+            return;
+        }
+        update(s -> {
+            RegistrySnapshot next = s;
+            for (Map.Entry<String, RoomSeed> room : batch.rooms.entrySet()) {
+                next = withRoom(next, room.getKey(), room.getValue());
+            }
+            for (Map.Entry<Member, BooleanSupplier> member : batch.members.entrySet()) {
+                next = withMember(next, member.getKey().roomId(), member.getKey().clientId(), member.getValue());
+            }
+            for (Map.Entry<String, Supplier<RegistrySnapshot.Client>> client : batch.clients.entrySet()) {
+                next = withClient(next, client.getKey(), client.getValue());
+            }
+            return next;
+        });
+        batch.clear();
+    }
+
+    /**
+     * Publishes a client's row as {@code live} reads it from the registry, or removes the
+     * client if it reads null.
+     */
+    void putClient(String clientId, Supplier<RegistrySnapshot.Client> live) {
+        Batch batch = batches.get();
+        if (batch != null) {
+            batch.clients.put(clientId, live);
+        } else {
+            update(s -> withClient(s, clientId, live));
+        }
+    }
+
+    /**
+     * Adds a room with no members if it is not in the snapshot yet.
+     */
+    void putRoom(String roomId, String roomName, String inviteCode) {
+        RoomSeed seed = new RoomSeed(roomName, inviteCode);
+        Batch batch = batches.get();
+        if (batch != null) {
+            batch.rooms.putIfAbsent(roomId, seed);
+        } else {
+            update(s -> withRoom(s, roomId, seed));
+        }
+    }
+
+    /**
+     * Publishes whether a client is a member of a room, as {@code live} reads it from the registry.
+     */
+    void putMember(String roomId, String clientId, BooleanSupplier live) {
+        Batch batch = batches.get();
+        if (batch != null) {
+            batch.members.put(new Member(roomId, clientId), live);
+        } else {
+            update(s -> withMember(s, roomId, clientId, live));
+        }
+    }
+
+    private void update(UnaryOperator<RegistrySnapshot> change) {
+        RegistrySnapshot prev;
+        RegistrySnapshot next;
+        do {
+            prev = current.get();
+            next = change.apply(prev);
+        } while (next != prev && !current.compareAndSet(prev, next));
+    }
+
+    private static RegistrySnapshot withClient(RegistrySnapshot s, String clientId, Supplier<RegistrySnapshot.Client> live) {
+        RegistrySnapshot.Client client = live.get();
+        PersistentMap<String, RegistrySnapshot.Client> clients = (client != null)
+                ? s.clients().plus(clientId, client)
+                : s.clients().minus(clientId);
+        return (clients == s.clients()) ? s : new RegistrySnapshot(s.version() + 1, clients, s.rooms());
+    }
+
+    private static RegistrySnapshot withRoom(RegistrySnapshot s, String roomId, RoomSeed seed) {
+        if (s.rooms().containsKey(roomId)) {
+            return s;
+        }
+        RegistrySnapshot.Room room = new RegistrySnapshot.Room(roomId, seed.roomName(), seed.inviteCode(), PersistentMap.empty());
+        return new RegistrySnapshot(s.version() + 1, s.clients(), s.rooms().plus(roomId, room));
+    }
+
+    private static RegistrySnapshot withMember(RegistrySnapshot s, String roomId, String clientId, BooleanSupplier live) {
+        RegistrySnapshot.Room room = s.rooms().get(roomId);
+        if (room == null) {
+            return s;
+        }
+        boolean member = live.getAsBoolean();
+        PersistentMap<String, String> members = member
+                ? room.members().plus(clientId, clientId)
+                : room.members().minus(clientId);
+        if (members == room.members()) {
+            return s;
+        }
+        RegistrySnapshot.Room updated = new RegistrySnapshot.Room(room.roomId(), room.roomName(), room.inviteCode(), members);
+        return new RegistrySnapshot(s.version() + 1, s.clients(), s.rooms().plus(roomId, updated));
+    }
+
+    private record RoomSeed(String roomName, String inviteCode) {}
+
+    private record Member(String roomId, String clientId) {}
+
+    /** One thread's changes since its last publish, latest supplier per entry. */
+    private static final class Batch {
+        final Map<String, RoomSeed> rooms = new LinkedHashMap<>();
+        final Map<Member, BooleanSupplier> members = new LinkedHashMap<>();
+        final Map<String, Supplier<RegistrySnapshot.Client>> clients = new LinkedHashMap<>();
+
+        boolean isEmpty() {
+            return rooms.isEmpty() && members.isEmpty() && clients.isEmpty();
+        }
+
+        void clear() {
+            rooms.clear();
+            members.clear();
+            clients.clear();
+        }
+    }
+}
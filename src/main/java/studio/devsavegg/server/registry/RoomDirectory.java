@@ -0,0 +1,133 @@
+package studio.devsavegg.server.registry;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.IntSupplier;
+
+/**
+ * The public rooms, kept sorted by member count and by name as they change, for paging
+ * through them without ever walking the whole registry.
+ * <p>
+ * Each room has one entry in each of two skip lists. A membership change replaces the room's
+ * entry (an O(log n) remove and insert), and a page is a seek to the cursor followed by a
+ * walk of at most one page. Cursors hold the sort key of the last room on a page rather
+ * than an offset, so rooms added or reordered meanwhile never make a page repeat or skip
+ * a room that stayed put. Safe to read and update from any thread.
+ */
+public class RoomDirectory {
+
+    public enum Sort {
+        MEMBERS, // Most members first
+        NAME;    // Alphabetical, ignoring case
+
+        /**
+         * @return The sort for a name, or null if there is none.
+         */
+        public static Sort fromName(String name) {
+            for (Sort sort : values()) {
+                if (sort.name().equalsIgnoreCase(name)) {
+                    return sort;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * @param rooms      The rooms on this page, in order.
+     * @param nextCursor Where the next page starts, or null if this is the last one.
+     */
+    public record Page(List<RoomRegistryService.RoomInfo> rooms, String nextCursor) {}
+
+    private record Entry(String roomId, String roomName, int memberCount) {}
+
+    private static final Comparator<Entry> BY_MEMBERS = Comparator.comparingInt(Entry::memberCount).reversed()
+            .thenComparing(Entry::roomId);
+    private static final Comparator<Entry> BY_NAME = Comparator.comparing(Entry::roomName, String.CASE_INSENSITIVE_ORDER)
+            .thenComparing(Entry::roomName)
+            .thenComparing(Entry::roomId);
+
+    private final NavigableSet<Entry> byMembers = new ConcurrentSkipListSet<>(BY_MEMBERS);
+    private final NavigableSet<Entry> byName = new ConcurrentSkipListSet<>(BY_NAME);
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Re-indexes a room after a change. The member count is read while the room's entry is
+     * locked, so when two threads change the same room the last one to get here wins with the
+     * latest count.
+     */
+    void update(String roomId, String roomName, IntSupplier memberCount) {
+        entries.compute(roomId, (id, previous) -> {
+            Entry entry = new Entry(id, roomName, memberCount.getAsInt());
+            if (entry.equals(previous)) {
+                return previous;
+            }
+            if (previous != null) {
+                byMembers.remove(previous);
+                byName.remove(previous);
+            }
+            byMembers.add(entry);
+            byName.add(entry);
+            return entry;
+        });
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Gets up to {@code limit} rooms after the cursor.
+     * @param cursor The {@link Page#nextCursor()} of the previous page with the same sort, or null for the first page.
+     * @throws IllegalArgumentException if the cursor is malformed.
+     */
+    public Page page(Sort sort, String cursor, int limit) {
+        NavigableSet<Entry> index = (sort == Sort.NAME) ? byName : byMembers;
+        Iterator<Entry> it = (cursor != null)
+                ? index.tailSet(decode(sort, cursor), false).iterator()
+                : index.iterator();
+
+        List<RoomRegistryService.RoomInfo> rooms = new ArrayList<>(Math.min(limit, 64));
+        Entry last = null;
+        while (rooms.size() < limit && it.hasNext()) {
+            last = it.next();
+            rooms.add(new RoomRegistryService.RoomInfo(last.roomId(), last.roomName(), last.memberCount()));
+        }
+        return new Page(rooms, (last != null && it.hasNext()) ? encode(sort, last) : null);
+    }
+
+    // --- Cursors: "<sort key>:<room ID>" ---
+
+    private static String encode(Sort sort, Entry entry) {
+        String key = (sort == Sort.NAME)
+                ? Base64.getUrlEncoder().withoutPadding().encodeToString(entry.roomName().getBytes(StandardCharsets.UTF_8))
+                : Integer.toString(entry.memberCount());
+        return key + ":" + entry.roomId();
+    }
+
+    private static Entry decode(Sort sort, String cursor) {
+        int colon = cursor.indexOf(':');
+        if (colon <= 0 || colon == cursor.length() - 1) {
+            throw new IllegalArgumentException("Malformed cursor: " + cursor);
+        }
+        String key = cursor.substring(0, colon);
+        String roomId = cursor.substring(colon + 1);
+        if (sort == Sort.NAME) {
+            // Base64.Decoder throws IllegalArgumentException for anything that is not Base64
+            return new Entry(roomId, new String(Base64.getUrlDecoder().decode(key), StandardCharsets.UTF_8), 0);
+        }
+        try {
+            return new Entry(roomId, "", Integer.parseInt(key));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed cursor: " + cursor, e);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package studio.devsavegg.server.registry;
 
 import java.util.Collection;
 import java.util.Set;
+import java.util.function.Predicate;
 
 public interface RoomRegistryService {
 
@@ -43,6 +44,21 @@ public interface RoomRegistryService {
      */
     void removeClientFromAllRooms(String clientId);
 
+    /**
+     * Removes a client from every room accepted by the filter.
+     * Used by resolver shards to clean up only the rooms they own.
+     * @param clientId The client to remove.
+     * @param roomFilter Selects the room IDs to remove the client from.
+     */
+    void removeClientFromRooms(String clientId, Predicate<String> roomFilter);
+
+    /**
+     * Gets the IDs of every room (and DM session) a client is a member of.
+     * @param clientId The client.
+     * @return An unmodifiable Set of room IDs; empty if the client is in no rooms.
+     */
+    Set<String> getClientRooms(String clientId);
+
     /**
      * Checks if a client is a member of a specific room.
      * @param clientId The client to check.
@@ -85,6 +101,22 @@ public interface RoomRegistryService {
      */
     Collection<RoomInfo> getAllRooms();
 
+    /**
+     * Gets one page of public rooms from the room directory, which is kept sorted as rooms change.
+     * @param sort The order of the rooms.
+     * @param cursor The nextCursor of the previous page, or null for the first page.
+     * @param limit The most rooms to return.
+     * @return The page of rooms.
+     * @throws IllegalArgumentException if the cursor is malformed.
+     */
+    RoomDirectory.Page listRooms(RoomDirectory.Sort sort, String cursor, int limit);
+
+    /**
+     * Gets the number of public rooms (DM sessions are not counted).
+     * @return The room count.
+     */
+    int getRoomCount();
+
     /**
      * Finds or creates a unique DM session between two users.
      * @param clientId1 The first client.
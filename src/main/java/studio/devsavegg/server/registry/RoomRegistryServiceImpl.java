@@ -1,13 +1,19 @@
 package studio.devsavegg.server.registry;
 
+import studio.devsavegg.server.log.Logger;
+
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 public class RoomRegistryServiceImpl implements RoomRegistryService {
+    private static final Logger LOG = Logger.get("RoomRegistry");
+
     private record Room(
             String id,
             String name,
@@ -18,6 +24,28 @@ public class RoomRegistryServiceImpl implements RoomRegistryService {
     private final Map<String, Room> rooms = new ConcurrentHashMap<>();
     private final Map<String, String> inviteCodes = new ConcurrentHashMap<>();
 
+    /**
+     * Reverse index: client ID -> IDs of the rooms (and DM sessions) they are in.
+     * Lets leave-all and membership lookups cost only the client's own memberships.
+     * Each membership costs one set node (~32 bytes plus table slot); the room ID string
+     * is shared with the Room record. Clients with no memberships have no entry.
+     */
+    private final Map<String, Set<String>> clientRooms = new ConcurrentHashMap<>();
+
+    private final RoomDirectory directory = new RoomDirectory();
+    private final RegistrySnapshots snapshots; // Null when no snapshots are published
+
+    public RoomRegistryServiceImpl() {
+        this(null);
+    }
+
+    /**
+     * @param snapshots Receives every room and membership change, or null.
+     */
+    public RoomRegistryServiceImpl(RegistrySnapshots snapshots) {
+        this.snapshots = snapshots;
+    }
+
     @Override
     public String createRoom(String ownerClientId, String roomName) {
         String roomId = "room-" + generateId();
@@ -29,11 +57,33 @@ public class RoomRegistryServiceImpl implements RoomRegistryService {
         Room newRoom = new Room(roomId, roomName, inviteCode, members);
         rooms.put(roomId, newRoom);
         inviteCodes.put(inviteCode, roomId);
+        indexMembership(ownerClientId, roomId);
+        publishRoom(newRoom);
+        publishMember(roomId, ownerClientId);
+        indexRoom(newRoom);
 
-        System.out.println("[RoomRegistry] Room created: " + roomName + " (ID: " + roomId + ", Code: " + inviteCode + ")");
+        LOG.debug("Room created: {} (ID: {}, Code: {})", roomName, roomId, inviteCode);
         return inviteCode;
     }
 
+    /**
+     * Adds a member to a room that may have been created on another cluster node, first
+     * adding the room under the ID and invite code it was given there if it is new here.
+     */
+    public void addMember(String roomId, String roomName, String inviteCode, String clientId) {
+        Room room = rooms.computeIfAbsent(roomId, id -> {
+            if (inviteCode != null) {
+                inviteCodes.putIfAbsent(inviteCode, id);
+            }
+            return new Room(id, roomName, inviteCode, ConcurrentHashMap.newKeySet());
+        });
+        room.members().add(clientId);
+        indexMembership(clientId, roomId);
+        publishRoom(room);
+        publishMember(roomId, clientId);
+        indexRoom(room);
+    }
+
     @Override
     public String joinRoom(String clientId, String inviteCode) {
         String roomId = inviteCodes.get(inviteCode);
@@ -47,7 +97,10 @@ public class RoomRegistryServiceImpl implements RoomRegistryService {
         }
 
         room.members().add(clientId);
-        System.out.println("[RoomRegistry] Client " + clientId + " joined room: " + room.name());
+        indexMembership(clientId, room.id());
+        publishMember(room.id(), clientId);
+        indexRoom(room);
+        LOG.debug("Client {} joined room: {}", clientId, room.name());
         return room.id();
     }
 
@@ -56,22 +109,59 @@ public class RoomRegistryServiceImpl implements RoomRegistryService {
         Room room = rooms.get(roomId);
         if (room != null) {
             room.members().remove(clientId);
-            System.out.println("[ClientRegistry] Client " + clientId + " left room: " + room.name());
+            unindexMembership(clientId, room.id());
+            publishMember(room.id(), clientId);
+            indexRoom(room);
+            LOG.debug("Client {} left room: {}", clientId, room.name());
         }
     }
 
     @Override
     public void removeClientFromAllRooms(String clientId) {
-        for (Room room : rooms.values()) {
-            room.members().remove(clientId);
+        Set<String> memberships = clientRooms.remove(clientId);
+        if (memberships != null) {
+            for (String roomId : memberships) {
+                Room room = rooms.get(roomId);
+                if (room != null) {
+                    room.members().remove(clientId);
+                    indexRoom(room);
+                }
+                publishMember(roomId, clientId);
+            }
+        }
+        LOG.debug("Client {} removed from all rooms.", clientId);
+    }
+
+    @Override
+    public void removeClientFromRooms(String clientId, Predicate<String> roomFilter) {
+        Set<String> memberships = clientRooms.get(clientId);
+        if (memberships == null) {
+            return;
         }
-        System.out.println("[ClientRegistry] Client " + clientId + " removed from all rooms.");
+
+        for (String roomId : memberships) {
+            if (roomFilter.test(roomId)) {
+                Room room = rooms.get(roomId);
+                if (room != null) {
+                    room.members().remove(clientId);
+                    indexRoom(room);
+                }
+                unindexMembership(clientId, roomId);
+                publishMember(roomId, clientId);
+            }
+        }
+    }
+
+    @Override
+    public Set<String> getClientRooms(String clientId) {
+        Set<String> memberships = clientRooms.get(clientId);
+        return (memberships != null) ? Collections.unmodifiableSet(memberships) : Collections.emptySet();
     }
 
     @Override
     public boolean isClientInRoom(String clientId, String roomId) {
-        Room room = rooms.get(roomId);
-        return room != null && room.members().contains(clientId);
+        Set<String> memberships = clientRooms.get(clientId);
+        return memberships != null && memberships.contains(roomId);
     }
 
     @Override
@@ -105,6 +195,17 @@ public class RoomRegistryServiceImpl implements RoomRegistryService {
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public RoomDirectory.Page listRooms(RoomDirectory.Sort sort, String cursor, int limit) {
+        return directory.page(sort, cursor, limit);
+    }
+
+    @Override
+    public int getRoomCount() {
+        // Only public rooms have an invite code.
+        return inviteCodes.size();
+    }
+
     @Override
     public String getOrCreateDMSession(String clientId1, String clientId2) {
         String dmId;
@@ -114,15 +215,25 @@ public class RoomRegistryServiceImpl implements RoomRegistryService {
             dmId = "dm-" + clientId2 + "-" + clientId1;
         }
 
-        return rooms.computeIfAbsent(dmId, id -> {
-            System.out.println("[RoomRegistry] Creating DM session: " + id);
+        boolean[] created = new boolean[1];
+        Room dmSession = rooms.computeIfAbsent(dmId, id -> {
+            LOG.debug("Creating DM session: {}", id);
+            created[0] = true;
             Set<String> members = ConcurrentHashMap.newKeySet();
             members.add(clientId1);
             members.add(clientId2);
+            indexMembership(clientId1, id);
+            indexMembership(clientId2, id);
             String dmName = "DM: " + clientId1 + " / " + clientId2;
 
             return new Room(id, dmName, null, members);
-        }).id();
+        });
+        if (created[0]) {
+            publishRoom(dmSession);
+            publishMember(dmId, clientId1);
+            publishMember(dmId, clientId2);
+        }
+        return dmSession.id();
     }
 
     @Override
@@ -142,6 +253,48 @@ public class RoomRegistryServiceImpl implements RoomRegistryService {
 
     // --- Helpers ---
 
+    private void indexMembership(String clientId, String roomId) {
+        // compute() keeps add/remove of the per-client set atomic across resolver shards.
+        clientRooms.compute(clientId, (id, memberships) -> {
+            if (memberships == null) {
+                memberships = ConcurrentHashMap.newKeySet();
+            }
+            memberships.add(roomId);
+            return memberships;
+        });
+    }
+
+    private void unindexMembership(String clientId, String roomId) {
+        clientRooms.computeIfPresent(clientId, (id, memberships) -> {
+            memberships.remove(roomId);
+            return memberships.isEmpty() ? null : memberships;
+        });
+    }
+
+    /**
+     * Keeps a public room's directory entry in step with its member count.
+     */
+    private void indexRoom(Room room) {
+        if (room.id().startsWith("room-")) {
+            directory.update(room.id(), room.name(), room.members()::size);
+        }
+    }
+
+    private void publishRoom(Room room) {
+        if (snapshots != null) {
+            snapshots.putRoom(room.id(), room.name(), room.inviteCode());
+        }
+    }
+
+    private void publishMember(String roomId, String clientId) {
+        if (snapshots != null) {
+            snapshots.putMember(roomId, clientId, () -> {
+                Room room = rooms.get(roomId);
+                return room != null && room.members().contains(clientId);
+            });
+        }
+    }
+
     private String generateId() {
         return UUID.randomUUID().toString();
     }
@@ -0,0 +1,80 @@
+package studio.devsavegg.server.resolver;
+
+import io.netty.buffer.ByteBuf;
+
+import java.util.Collections;
+import java.util.List;
+
+import static studio.devsavegg.server.broadcaster.BinaryWire.readString;
+import static studio.devsavegg.server.broadcaster.BinaryWire.writeString;
+
+/**
+ * Client commands on the binary subprotocol.
+ * <p>
+ * A command is a {@link ClientCommandType} tag byte followed by its argument as a
+ * {@link studio.devsavegg.server.broadcaster.BinaryWire} string:
+ * <ul>
+ *     <li>LEAVE_ROOM takes no argument.</li>
+ *     <li>LIST, ROOM_INFO, USER_INFO and HISTORY take an optional argument.</li>
+ *     <li>Every other command takes exactly one: the message for SAY, the name for
+ *     CREATE_ROOM and SET_NAME, otherwise a user ID, invite code, list type or history cursor.</li>
+ * </ul>
+ * Arguments are taken verbatim (no whitespace splitting), but must not be blank, and a frame
+ * with trailing bytes is rejected. Anything malformed decodes to UNKNOWN.
+ */
+public final class BinaryCommandCodec {
+    private BinaryCommandCodec() {
+    }
+
+    /**
+     * Writes a command as a client would. {@code argument} may be null for commands without one.
+     */
+    public static void encode(ClientCommandType command, String argument, ByteBuf out) {
+        out.writeByte(command.tag);
+        if (argument != null) {
+            writeString(argument, out);
+        }
+    }
+
+    /**
+     * Decodes a command from a binary frame's content. The buffer's indices are not modified.
+     */
+    public static ParsedCommand decode(ByteBuf content) {
+        ByteBuf in = content.duplicate();
+        if (!in.isReadable()) {
+            return unknown();
+        }
+
+        ClientCommandType command = ClientCommandType.fromTag(in.readUnsignedByte());
+        String argument = null;
+        try {
+            if (in.isReadable()) {
+                argument = readString(in);
+                if (argument == null || argument.isBlank() || in.isReadable()) {
+                    return unknown();
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            return unknown();
+        }
+
+        if (argument == null) {
+            return switch (command) {
+                case LIST, USER_INFO, ROOM_INFO, HISTORY, LEAVE_ROOM ->
+                        new ParsedCommand(command, command.name(), Collections.emptyList(), null);
+                default -> unknown();
+            };
+        }
+
+        return switch (command) {
+            case SAY -> new ParsedCommand(command, command.name(), Collections.emptyList(), argument);
+            case DM, JOIN_ROOM, ADD_FRIEND, ACCEPT_FRIEND, REJECT_FRIEND, REMOVE_FRIEND, LIST, ROOM_INFO, USER_INFO, HISTORY,
+                 CREATE_ROOM, SET_NAME -> new ParsedCommand(command, command.name(), List.of(argument), null);
+            default -> unknown();
+        };
+    }
+
+    private static ParsedCommand unknown() {
+        return new ParsedCommand(ClientCommandType.UNKNOWN, "BINARY", Collections.emptyList(), null);
+    }
+}
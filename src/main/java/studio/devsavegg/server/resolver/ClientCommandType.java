@@ -6,23 +6,32 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public enum ClientCommandType {
-    CREATE_ROOM,
-    JOIN_ROOM,
-    LEAVE_ROOM,
-    SAY,
-    DM,
-    LIST,
-    ADD_FRIEND,
+    CREATE_ROOM(1),
+    JOIN_ROOM(2),
+    LEAVE_ROOM(3),
+    SAY(4),
+    DM(5),
+    LIST(6),
+    ADD_FRIEND(7),
 
-    ACCEPT_FRIEND,
-    REJECT_FRIEND, // Rejects an incoming request OR cancels an outgoing one
-    REMOVE_FRIEND,
+    ACCEPT_FRIEND(8),
+    REJECT_FRIEND(9), // Rejects an incoming request OR cancels an outgoing one
+    REMOVE_FRIEND(10),
 
-    SET_NAME,
+    SET_NAME(11),
 
-    USER_INFO,
-    ROOM_INFO,
-    UNKNOWN; // Fallback for any command that isn't recognized
+    USER_INFO(12),
+    ROOM_INFO(13),
+
+    HISTORY(14), // Pages back through the current room's messages
+    UNKNOWN(0); // Fallback for any command that isn't recognized
+
+    /** The first byte of a command on the binary subprotocol. */
+    public final int tag;
+
+    ClientCommandType(int tag) {
+        this.tag = tag;
+    }
 
     private static final Map<String, ClientCommandType> commandMap =
             Stream.of(values())
@@ -32,10 +41,25 @@ public enum ClientCommandType {
                             Function.identity()
                     ));
 
+    private static final ClientCommandType[] byTag = new ClientCommandType[values().length];
+
+    static {
+        for (ClientCommandType type : values()) {
+            byTag[type.tag] = type;
+        }
+    }
+
     public static ClientCommandType fromString(String commandString) {
         if (commandString == null) {
             return UNKNOWN;
         }
+        if (commandString.startsWith("/")) {
+            commandString = commandString.substring(1); // "/say" and "say" are the same command
+        }
         return commandMap.getOrDefault(commandString.toUpperCase(), UNKNOWN);
     }
+
+    public static ClientCommandType fromTag(int tag) {
+        return (tag > 0 && tag < byTag.length) ? byTag[tag] : UNKNOWN;
+    }
 }
\ No newline at end of file
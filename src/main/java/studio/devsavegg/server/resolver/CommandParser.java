@@ -1,9 +1,21 @@
 package studio.devsavegg.server.resolver;
 
+import io.netty.buffer.ByteBuf;
+
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.List;
 
 public class CommandParser {
+    private static final ClientCommandType[] COMMANDS = ClientCommandType.values();
+    private static final byte[][] COMMAND_NAMES = new byte[COMMANDS.length][];
+
+    static {
+        for (int i = 0; i < COMMANDS.length; i++) {
+            COMMAND_NAMES[i] = COMMANDS[i].name().getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
     public ParsedCommand parse(String payload) {
         if (payload == null || payload.isBlank()) {
             return new ParsedCommand(ClientCommandType.UNKNOWN, "", Collections.emptyList(), null);
@@ -17,6 +29,7 @@ public class CommandParser {
             if (command == ClientCommandType.LIST ||
                     command == ClientCommandType.USER_INFO ||
                     command == ClientCommandType.ROOM_INFO ||
+                    command == ClientCommandType.HISTORY ||
                     command == ClientCommandType.LEAVE_ROOM) {
                 return new ParsedCommand(command, commandString, Collections.emptyList(), null);
             }
@@ -30,13 +43,13 @@ public class CommandParser {
                 String message = joinParts(parts, 1);
                 yield new ParsedCommand(command, commandString, Collections.emptyList(), message);
             }
-            case DM, JOIN_ROOM, ADD_FRIEND, ACCEPT_FRIEND, REJECT_FRIEND, REMOVE_FRIEND, LIST, ROOM_INFO, USER_INFO -> {
+            case DM, JOIN_ROOM, ADD_FRIEND, ACCEPT_FRIEND, REJECT_FRIEND, REMOVE_FRIEND, ROOM_INFO, USER_INFO, HISTORY -> {
                 // Format: CMD <arg1>
                 String targetUser = parts[1];
                 yield new ParsedCommand(command, commandString, List.of(targetUser), null);
             }
-            case CREATE_ROOM, SET_NAME -> {
-                // Format: CMD <name...>
+            case CREATE_ROOM, SET_NAME, LIST -> {
+                // Format: CMD <name...> (LIST: <type> [options...], split by the handler)
                 String arg = joinParts(parts, 1);
                 yield new ParsedCommand(command, commandString, List.of(arg), null);
             }
@@ -44,6 +57,62 @@ public class CommandParser {
         };
     }
 
+    /**
+     * Parses a command straight from an inbound frame's UTF-8 bytes, with the same rules as
+     * {@link #parse(String)}: leading/trailing control characters are trimmed and tokens are
+     * separated by runs of ASCII whitespace. No regex, no token array and no intermediate
+     * String for the whole payload; only the arguments that end up in the result are decoded.
+     * The buffer's indices are not modified.
+     */
+    public ParsedCommand parse(ByteBuf content) {
+        int start = content.readerIndex();
+        int end = content.writerIndex();
+
+        // Same as String.trim(): drop anything <= ' ' at both ends.
+        while (start < end && (content.getByte(start) & 0xFF) <= ' ') start++;
+        while (end > start && (content.getByte(end - 1) & 0xFF) <= ' ') end--;
+
+        if (start == end) {
+            return new ParsedCommand(ClientCommandType.UNKNOWN, "", Collections.emptyList(), null);
+        }
+
+        int commandEnd = nextWhitespace(content, start, end);
+        ClientCommandType command = matchCommand(content, start, commandEnd);
+        int argStart = skipWhitespace(content, commandEnd, end);
+
+        if (argStart == end) {
+            if (command == ClientCommandType.LIST ||
+                    command == ClientCommandType.USER_INFO ||
+                    command == ClientCommandType.ROOM_INFO ||
+                    command == ClientCommandType.HISTORY ||
+                    command == ClientCommandType.LEAVE_ROOM) {
+                return new ParsedCommand(command, command.name(), Collections.emptyList(), null);
+            }
+
+            return new ParsedCommand(ClientCommandType.UNKNOWN, decode(content, start, commandEnd), Collections.emptyList(), null);
+        }
+
+        return switch (command) {
+            case SAY -> {
+                // Format: CMD <message...>
+                String message = joinTokens(content, argStart, end);
+                yield new ParsedCommand(command, command.name(), Collections.emptyList(), message);
+            }
+            case DM, JOIN_ROOM, ADD_FRIEND, ACCEPT_FRIEND, REJECT_FRIEND, REMOVE_FRIEND, ROOM_INFO, USER_INFO, HISTORY -> {
+                // Format: CMD <arg1>
+                String targetUser = decode(content, argStart, nextWhitespace(content, argStart, end));
+                yield new ParsedCommand(command, command.name(), List.of(targetUser), null);
+            }
+            case CREATE_ROOM, SET_NAME, LIST -> {
+                // Format: CMD <name...> (LIST: <type> [options...], split by the handler)
+                String arg = joinTokens(content, argStart, end);
+                yield new ParsedCommand(command, command.name(), List.of(arg), null);
+            }
+            default -> new ParsedCommand(ClientCommandType.UNKNOWN, decode(content, start, commandEnd),
+                    Collections.emptyList(), decode(content, content.readerIndex(), content.writerIndex()));
+        };
+    }
+
     private String joinParts(String[] parts, int startIndex) {
         if (startIndex >= parts.length) {
             return "";
@@ -54,4 +123,98 @@ public class CommandParser {
         }
         return sb.toString().trim();
     }
-}
\ No newline at end of file
+
+    // --- Byte-level helpers ---
+
+    /**
+     * Matches the command token case-insensitively against the known command names.
+     * An optional leading '/' is accepted, as in "/say hello".
+     */
+    private static ClientCommandType matchCommand(ByteBuf content, int from, int to) {
+        if (from < to && content.getByte(from) == '/') {
+            from++;
+        }
+        int length = to - from;
+
+        for (int i = 0; i < COMMANDS.length; i++) {
+            byte[] name = COMMAND_NAMES[i];
+            if (COMMANDS[i] == ClientCommandType.UNKNOWN || name.length != length) {
+                continue;
+            }
+            int j = 0;
+            while (j < length && toUpperAscii(content.getByte(from + j)) == name[j]) {
+                j++;
+            }
+            if (j == length) {
+                return COMMANDS[i];
+            }
+        }
+        return ClientCommandType.UNKNOWN;
+    }
+
+    /**
+     * Decodes the tokens in [from, to) joined by single spaces, like joinParts does.
+     */
+    private static String joinTokens(ByteBuf content, int from, int to) {
+        boolean singleSpaced = true;
+        boolean previousWasSpace = false;
+        for (int i = from; i < to; i++) {
+            byte b = content.getByte(i);
+            if (isWhitespace(b)) {
+                if (b != ' ' || previousWasSpace) {
+                    singleSpaced = false;
+                    break;
+                }
+                previousWasSpace = true;
+            } else {
+                previousWasSpace = false;
+            }
+        }
+        if (singleSpaced) {
+            return decode(content, from, to); // Common case: nothing to collapse
+        }
+
+        byte[] out = new byte[to - from];
+        int length = 0;
+        boolean pendingSpace = false;
+        for (int i = from; i < to; i++) {
+            byte b = content.getByte(i);
+            if (isWhitespace(b)) {
+                pendingSpace = length > 0;
+            } else {
+                if (pendingSpace) {
+                    out[length++] = ' ';
+                    pendingSpace = false;
+                }
+                out[length++] = b;
+            }
+        }
+        return new String(out, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static int nextWhitespace(ByteBuf content, int from, int to) {
+        while (from < to && !isWhitespace(content.getByte(from))) from++;
+        return from;
+    }
+
+    private static int skipWhitespace(ByteBuf content, int from, int to) {
+        while (from < to && isWhitespace(content.getByte(from))) from++;
+        return from;
+    }
+
+    /**
+     * The characters matched by the regex {@code \s}. Multi-byte UTF-8 sequences never
+     * contain bytes in this range, so scanning bytes is safe.
+     */
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || (b >= '\t' && b <= '\r');
+    }
+
+    private static byte toUpperAscii(byte b) {
+        return (b >= 'a' && b <= 'z') ? (byte) (b - ('a' - 'A')) : b;
+    }
+
+    private static String decode(ByteBuf content, int from, int to) {
+        return content.toString(from, to - from, StandardCharsets.UTF_8);
+    }
+}
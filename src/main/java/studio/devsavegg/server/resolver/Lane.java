@@ -0,0 +1,27 @@
+package studio.devsavegg.server.resolver;
+
+import studio.devsavegg.server.gateway.ClientCommand;
+
+/**
+ * The queues a resolver shard takes its gateway commands from, highest priority first.
+ */
+public enum Lane {
+    LIFECYCLE, // CONNECT, RESUME and DISCONNECT
+    CHAT,      // Everything that changes state: chat, DMs, rooms, names, friends
+    QUERY;     // Read-only lookups that build replies over many users or rooms
+
+    public static Lane of(ClientCommand command) {
+        return switch (command.commandType()) {
+            case CONNECT, RESUME, DISCONNECT, HANDOFF -> LIFECYCLE;
+            case MESSAGE -> switch (command.parsedCommand().command()) {
+                case LIST, USER_INFO, ROOM_INFO, HISTORY -> QUERY;
+                default -> CHAT;
+            };
+        };
+    }
+
+    /** The label of this lane in metrics and config. */
+    public String label() {
+        return name().toLowerCase();
+    }
+}
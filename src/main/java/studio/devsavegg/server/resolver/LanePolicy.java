@@ -0,0 +1,45 @@
+package studio.devsavegg.server.resolver;
+
+/**
+ * How a resolver shard divides its time between its {@link Lane}s, and when it sheds queries.
+ *
+ * @param lifecycleWeight Share of each batch for connects and disconnects.
+ * @param chatWeight      Share of each batch for chat and other state changes.
+ * @param queryWeight     Share of each batch for queries.
+ * @param queryShedDepth  Queries are refused while this many chat and query commands are
+ *                        waiting on the shard (0 = only when the query lane is full).
+ */
+public record LanePolicy(
+        int lifecycleWeight,
+        int chatWeight,
+        int queryWeight,
+        int queryShedDepth
+) {
+    public static final LanePolicy DEFAULT = new LanePolicy(4, 4, 1, 1024);
+
+    public LanePolicy {
+        if (lifecycleWeight < 1 || chatWeight < 1 || queryWeight < 1) {
+            throw new IllegalArgumentException("Lane weights must be at least 1, got "
+                    + lifecycleWeight + "/" + chatWeight + "/" + queryWeight);
+        }
+        if (queryShedDepth < 0) {
+            throw new IllegalArgumentException("queryShedDepth must not be negative, got " + queryShedDepth);
+        }
+    }
+
+    public int weight(Lane lane) {
+        return switch (lane) {
+            case LIFECYCLE -> lifecycleWeight;
+            case CHAT -> chatWeight;
+            case QUERY -> queryWeight;
+        };
+    }
+
+    /**
+     * How many commands a lane may run per pass, out of a batch of {@code batchSize}.
+     */
+    public int quota(Lane lane, int batchSize) {
+        int total = lifecycleWeight + chatWeight + queryWeight;
+        return Math.max(1, (int) ((long) batchSize * weight(lane) / total));
+    }
+}
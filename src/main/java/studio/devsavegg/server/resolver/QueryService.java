@@ -0,0 +1,307 @@
+package studio.devsavegg.server.resolver;
+
+import io.netty.channel.Channel;
+import studio.devsavegg.server.broadcaster.BroadcastService;
+import studio.devsavegg.server.friend.FriendService;
+import studio.devsavegg.server.friend.FriendshipStatus;
+import studio.devsavegg.server.log.Logger;
+import studio.devsavegg.server.registry.ClientRegistryService;
+import studio.devsavegg.server.registry.RegistrySnapshot;
+import studio.devsavegg.server.registry.RegistrySnapshots;
+import studio.devsavegg.server.registry.RoomDirectory;
+import studio.devsavegg.server.registry.RoomRegistryService;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Answers the read-only commands ({@code /list}, {@code /user_info}, {@code /room_info}) from
+ * a {@link RegistrySnapshot}, on a small pool of worker threads.
+ * <p>
+ * These replies walk every member of a room or every room, which is the slowest work a
+ * resolver does. Here the resolver only hands the command over, and a worker builds the
+ * reply from the latest snapshot. A snapshot never changes, so one reply sees a single
+ * consistent version of the registries, however long it takes. The friend graph is read live
+ * from the {@link FriendService}, and the room list from the registry's {@link RoomDirectory},
+ * a page at a time; both are safe from any thread.
+ * <p>
+ * A query sees every change its own shard made before it, but may trail the other shards by up
+ * to one drain pass, so a client's {@code /list users} right after its own {@code /join_room}
+ * can still show the previous room. With no workers, queries run on the calling resolver,
+ * still from a snapshot.
+ */
+public class QueryService {
+    private static final Logger LOG = Logger.get("QueryService");
+
+    private final RegistrySnapshots snapshots;
+    private final ClientRegistryService clientRegistry; // Names and presence of clients on other cluster nodes
+    private final RoomRegistryService roomRegistry;
+    private final FriendService friendService;
+    private final BroadcastService broadcastService;
+    private final int roomPageSize;
+    private final ThreadPoolExecutor workers; // Null when queries run on the resolver
+
+    /**
+     * @param roomPageSize  Rooms per page of {@code /list rooms}.
+     * @param workers       Worker threads (0 runs queries on the resolver thread that received them).
+     * @param queueCapacity Queries that may wait for a worker; more are refused with a 503.
+     */
+    public QueryService(RegistrySnapshots snapshots,
+                        ClientRegistryService clientRegistry,
+                        RoomRegistryService roomRegistry,
+                        FriendService friendService,
+                        BroadcastService broadcastService,
+                        int roomPageSize,
+                        int workers,
+                        int queueCapacity) {
+        this.snapshots = snapshots;
+        this.clientRegistry = clientRegistry;
+        this.roomRegistry = roomRegistry;
+        this.friendService = friendService;
+        this.broadcastService = broadcastService;
+        this.roomPageSize = roomPageSize;
+        if (workers > 0) {
+            AtomicInteger threadIndex = new AtomicInteger();
+            this.workers = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity),
+                    r -> {
+                        Thread t = new Thread(r, "Query-Worker-" + threadIndex.getAndIncrement());
+                        t.setDaemon(true);
+                        return t;
+                    });
+        } else {
+            this.workers = null;
+        }
+    }
+
+    /**
+     * Answers a query on a worker, or right away if there are none. First publishes the
+     * calling shard's batched registry changes, so the query sees everything the shard did before it.
+     * @param done Called once the reply has been sent (or the query refused), on whichever thread did it.
+     */
+    public void submit(Channel channel, String clientId, ParsedCommand command, Runnable done) {
+        snapshots.publish();
+        if (workers == null) {
+            run(channel, clientId, command, done);
+            return;
+        }
+        try {
+            workers.execute(() -> run(channel, clientId, command, done));
+        } catch (RejectedExecutionException e) {
+            broadcastService.sendError(channel, 503, command.commandString(), "Server is busy. Please try again.");
+            done.run();
+        }
+    }
+
+    /** Queries waiting for a worker. */
+    public int queueDepth() {
+        return (workers != null) ? workers.getQueue().size() : 0;
+    }
+
+    public void shutdown() {
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+    }
+
+    private void run(Channel channel, String clientId, ParsedCommand command, Runnable done) {
+        RegistrySnapshot snapshot = snapshots.current();
+        try {
+            switch (command.command()) {
+                case LIST -> handleList(snapshot, channel, clientId, command.args());
+                case USER_INFO -> handleUserInfo(snapshot, channel, clientId, command.args());
+                case ROOM_INFO -> handleRoomInfo(snapshot, channel, clientId, command.args());
+                default -> throw new IllegalArgumentException("Not a query: " + command.command());
+            }
+        } catch (Exception e) {
+            LOG.error("CRITICAL ERROR processing query: {}", e.getMessage(), e);
+            broadcastService.sendError(channel, 500, command.commandString(),
+                    "An internal server error occurred while processing your request.");
+        } finally {
+            done.run();
+        }
+    }
+
+    private void handleList(RegistrySnapshot snapshot, Channel clientChannel, String clientId, List<String> args) {
+        // The text parser and the binary codec both pass "<type> [options...]" as one argument.
+        String[] options = args.isEmpty() ? new String[0] : args.getFirst().trim().split("\\s+");
+        if (options.length == 0 || options[0].equalsIgnoreCase("rooms")) {
+            handleListRooms(clientChannel, options);
+            return;
+        }
+
+        String listType = options[0].toLowerCase();
+        switch (listType) {
+            case "users":
+                RegistrySnapshot.Client client = snapshot.client(clientId);
+                String contextId = (client != null) ? client.context() : null;
+                if (contextId == null) {
+                    broadcastService.sendError(clientChannel, 400, "LIST", "Error: You are not in a room.");
+                    return;
+                }
+                RegistrySnapshot.Room room = snapshot.room(contextId);
+                if (room == null) {
+                    broadcastService.sendError(clientChannel, 404, "LIST", "Error: Could not find members for your current room.");
+                    return;
+                }
+                List<String> users = new ArrayList<>(room.members().size());
+                room.members().forEach((id, ignored) -> users.add("  - " + username(snapshot, id) + " (" + id + ")"));
+                broadcastService.sendSystemMessage(clientChannel, "LIST_USERS", "Users in this room:\n" + String.join("\n", users));
+                break;
+
+            case "friends":
+                Set<String> friends = friendService.listFriends(clientId);
+                String friendList = friends.stream()
+                        .map(id -> "  - " + username(snapshot, id) + " (" + id + ") [" + (isOnline(snapshot, id) ? "Online" : "Offline") + "]")
+                        .collect(Collectors.joining("\n"));
+                broadcastService.sendSystemMessage(clientChannel, "LIST_FRIENDS", "Your Friends:\n" + (friendList.isEmpty() ? "  (None)" : friendList));
+                break;
+
+            case "pending_in":
+                Set<String> pendingIn = friendService.listPendingIncomingRequests(clientId);
+                String pendingInList = pendingIn.stream()
+                        .map(id -> "  - " + username(snapshot, id) + " (" + id + ")")
+                        .collect(Collectors.joining("\n"));
+                broadcastService.sendSystemMessage(clientChannel, "LIST_PENDING_IN", "Pending Incoming Requests (use /accept <id>):\n" + (pendingInList.isEmpty() ? "  (None)" : pendingInList));
+                break;
+
+            case "pending_out":
+                Set<String> pendingOut = friendService.listPendingOutgoingRequests(clientId);
+                String pendingOutList = pendingOut.stream()
+                        .map(id -> "  - " + username(snapshot, id) + " (" + id + ")")
+                        .collect(Collectors.joining("\n"));
+                broadcastService.sendSystemMessage(clientChannel, "LIST_PENDING_OUT", "Pending Outgoing Requests (use /reject <id> to cancel):\n" + (pendingOutList.isEmpty() ? "  (None)" : pendingOutList));
+                break;
+
+            default:
+                broadcastService.sendError(clientChannel, 400, "LIST", "Usage: /list [rooms [members | name] [cursor] | users | friends | pending_in | pending_out]");
+                break;
+        }
+    }
+
+    /**
+     * {@code /list rooms [members | name] [cursor]}: one page of public rooms, most members
+     * first unless sorted by name. The reply's details carry the cursor of the next page.
+     */
+    private void handleListRooms(Channel clientChannel, String[] options) {
+        RoomDirectory.Sort sort = RoomDirectory.Sort.MEMBERS;
+        if (options.length > 1) {
+            sort = RoomDirectory.Sort.fromName(options[1]);
+            if (sort == null) {
+                broadcastService.sendError(clientChannel, 400, "LIST", "Usage: /list rooms [members | name] [cursor]");
+                return;
+            }
+        }
+        String cursor = (options.length > 2) ? options[2] : null;
+
+        RoomDirectory.Page page;
+        try {
+            page = roomRegistry.listRooms(sort, cursor, roomPageSize);
+        } catch (IllegalArgumentException e) {
+            broadcastService.sendError(clientChannel, 400, "LIST", "Error: Invalid cursor. Use the 'next' value from the previous page.");
+            return;
+        }
+
+        StringBuilder text = new StringBuilder("Available Rooms:\n");
+        if (page.rooms().isEmpty()) {
+            text.append("  (None)");
+        }
+        for (RoomRegistryService.RoomInfo r : page.rooms()) {
+            text.append(String.format("  - %s (ID: %s, Members: %d)\n", r.roomName(), r.roomId(), r.memberCount()));
+        }
+        if (page.nextCursor() != null) {
+            text.append("More: /list rooms ").append(sort.name().toLowerCase()).append(' ').append(page.nextCursor());
+        }
+
+        Map<String, Object> details = new HashMap<>();
+        details.put("sort", sort.name().toLowerCase());
+        details.put("count", page.rooms().size());
+        details.put("total", roomRegistry.getRoomCount());
+        details.put("next", page.nextCursor()); // Null on the last page
+        broadcastService.sendSystemMessage(clientChannel, "LIST_ROOMS", text.toString().stripTrailing(), details);
+    }
+
+    private void handleUserInfo(RegistrySnapshot snapshot, Channel clientChannel, String clientId, List<String> args) {
+        String targetClientId = clientId;
+
+        if (!args.isEmpty()) {
+            targetClientId = args.getFirst();
+        }
+
+        if (!isOnline(snapshot, targetClientId)) {
+            broadcastService.sendError(clientChannel, 404, "USER_INFO", "Error: User '" + targetClientId + "' is not online.");
+            return;
+        }
+
+        RegistrySnapshot.Client target = snapshot.client(targetClientId);
+        String username = username(snapshot, targetClientId);
+        String currentContext = (target != null) ? target.context() : null;
+        FriendshipStatus status = friendService.getFriendshipStatus(clientId, targetClientId);
+
+        StringBuilder info = new StringBuilder();
+        info.append(String.format("--- Info for %s (%s) ---\n", username, targetClientId));
+        info.append(String.format("Status: %s\n", "Online"));
+        info.append(String.format("Current Context: %s\n", (currentContext != null ? currentContext : "None")));
+        if (!clientId.equals(targetClientId)) {
+            info.append(String.format("Friendship: %s\n", (status != null ? status : "None")));
+        }
+
+        broadcastService.sendSystemMessage(clientChannel, "USER_INFO_RESULT", info.toString());
+    }
+
+    private void handleRoomInfo(RegistrySnapshot snapshot, Channel clientChannel, String clientId, List<String> args) {
+        String roomId;
+
+        if (args.isEmpty()) {
+            RegistrySnapshot.Client client = snapshot.client(clientId);
+            roomId = (client != null) ? client.context() : null;
+            if (roomId == null || !roomId.startsWith("room-")) {
+                broadcastService.sendError(clientChannel, 400, "ROOM_INFO", "Error: You are not currently in a room. Use /room_info <room_id>");
+                return;
+            }
+        } else {
+            roomId = args.getFirst();
+        }
+
+        RegistrySnapshot.Room room = snapshot.room(roomId);
+        if (room == null) {
+            broadcastService.sendError(clientChannel, 404, "ROOM_INFO", "Error: Room '" + roomId + "' not found.");
+            return;
+        }
+
+        Set<String> members = new HashSet<>();
+        room.members().forEach((id, ignored) -> members.add(username(snapshot, id) + " (" + id + ")"));
+
+        String info = String.format("--- Info for Room '%s' ---\n", room.roomName()) +
+                String.format("ID: %s\n", roomId) +
+                String.format("Invite Code: %s\n", (room.inviteCode() != null ? room.inviteCode() : "N/A")) +
+                String.format("Member Count: %d\n", room.members().size()) +
+                String.format("Members: %s\n", members);
+
+        broadcastService.sendSystemMessage(clientChannel, "ROOM_INFO_RESULT", info);
+    }
+
+    // --- Helpers ---
+
+    /**
+     * A client's name from the snapshot; the registry knows clients on other cluster nodes.
+     */
+    private String username(RegistrySnapshot snapshot, String clientId) {
+        RegistrySnapshot.Client client = snapshot.client(clientId);
+        return (client != null) ? client.username() : clientRegistry.getUsername(clientId);
+    }
+
+    private boolean isOnline(RegistrySnapshot snapshot, String clientId) {
+        return snapshot.client(clientId) != null || clientRegistry.isClientOnline(clientId);
+    }
+}
@@ -2,82 +2,309 @@ package studio.devsavegg.server.resolver;
 
 import io.netty.channel.Channel;
 import studio.devsavegg.server.broadcaster.BroadcastService;
+import studio.devsavegg.server.broadcaster.ChatMessagePayload;
 import studio.devsavegg.server.friend.FriendService;
 import studio.devsavegg.server.friend.FriendshipStatus;
 import studio.devsavegg.server.gateway.ClientCommand;
+import studio.devsavegg.server.history.HistoryService;
+import studio.devsavegg.server.log.Logger;
+import studio.devsavegg.server.metrics.ServerMetrics;
+import studio.devsavegg.server.queue.MpscRingBuffer;
+import studio.devsavegg.server.queue.WaitStrategy;
 import studio.devsavegg.server.registry.ClientRegistryService;
+import studio.devsavegg.server.registry.RegistrySnapshots;
 import studio.devsavegg.server.registry.RoomRegistryService;
+import studio.devsavegg.server.session.SessionService;
 
-import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.UUID;
-import java.util.concurrent.BlockingQueue;
-import java.util.stream.Collectors;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 
 public class ResolverService implements Runnable {
-    private final BlockingQueue<ClientCommand> controlQueue;
-    private final CommandParser commandParser;
+    private static final Logger LOG = Logger.get("ResolverService");
+    // Connects and disconnects come in bursts under load; these sites can be sampled.
+    private static final Logger CONNECT_LOG = LOG.sampled("connect", 1);
+    private static final Logger DISCONNECT_LOG = LOG.sampled("disconnect", 1);
+
+    private final ShardRouter shardRouter;
+    private final int shardId;
+    private final MpscRingBuffer<ClientCommand>[] lanes; // Indexed by Lane ordinal; null for LIFECYCLE
+    private final int[] quotas; // Commands each lane may run per pass
+    private final WaitStrategy waitStrategy;
+    private final Queue<ClientCommand> lifecycle;
+    private final Queue<ClientCommand> handoffs;
+    private final BooleanSupplier hasWork;
+    private final int batchSize;
     private final ClientRegistryService clientRegistry;
     private final RoomRegistryService roomRegistry;
     private final BroadcastService broadcastService;
     private final FriendService friendService;
+    private final HistoryService historyService; // Null when room history is disabled
+    private final SessionService sessionService; // Null when sessions cannot be resumed
+    private final QueryService queryService;
+    private final RegistrySnapshots snapshots;
+    private final ServerMetrics metrics;
+    private CommandTiming timing; // The client command whose work is running on this thread, if any
+
+    /**
+     * Times one client command from the moment a resolver takes it until the last piece of its
+     * work is done, on whichever shard or query worker that piece runs. Every hand-off made
+     * while the command's work runs adds a piece; the latency is recorded once, when the
+     * count drops back to zero.
+     */
+    private static final class CommandTiming {
+        private final ClientCommandType command;
+        private final long start;
+        private final ServerMetrics metrics;
+        private final AtomicInteger pending = new AtomicInteger(1);
+
+        CommandTiming(ClientCommandType command, long start, ServerMetrics metrics) {
+            this.command = command;
+            this.start = start;
+            this.metrics = metrics;
+        }
+
+        void fork() {
+            pending.incrementAndGet();
+        }
+
+        void done() {
+            if (pending.decrementAndGet() == 0) {
+                metrics.recordCommand(command, System.nanoTime() - start);
+            }
+        }
+    }
 
-    public ResolverService(BlockingQueue<ClientCommand> controlQueue,
-                           CommandParser commandParser,
+    /**
+     * A hand-off that belongs to a timed client command.
+     */
+    private record TimedTask(CommandTiming timing, Runnable task) implements Runnable {
+        @Override
+        public void run() {
+            task.run();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public ResolverService(ShardRouter shardRouter,
+                           int shardId,
+                           int batchSize,
                            ClientRegistryService clientRegistry,
                            RoomRegistryService roomRegistry,
                            BroadcastService broadcastService,
-                           FriendService friendService) {
-        this.controlQueue = controlQueue;
-        this.commandParser = commandParser;
+                           FriendService friendService,
+                           HistoryService historyService,
+                           SessionService sessionService,
+                           QueryService queryService,
+                           RegistrySnapshots snapshots,
+                           ServerMetrics metrics) {
+        this.shardRouter = shardRouter;
+        this.shardId = shardId;
+        Lane[] laneValues = Lane.values();
+        this.lanes = new MpscRingBuffer[laneValues.length];
+        this.quotas = new int[laneValues.length];
+        for (Lane lane : laneValues) {
+            if (lane != Lane.LIFECYCLE) {
+                lanes[lane.ordinal()] = shardRouter.queue(shardId, lane);
+            }
+            quotas[lane.ordinal()] = shardRouter.lanePolicy().quota(lane, batchSize);
+        }
+        this.waitStrategy = shardRouter.waitStrategy(shardId);
+        this.lifecycle = shardRouter.lifecycle(shardId);
+        this.handoffs = shardRouter.handoffs(shardId);
+        this.hasWork = () -> !handoffs.isEmpty() || !isIdle();
+        this.batchSize = batchSize;
         this.clientRegistry = clientRegistry;
         this.roomRegistry = roomRegistry;
         this.broadcastService = broadcastService;
         this.friendService = friendService;
+        this.historyService = historyService;
+        this.sessionService = sessionService;
+        this.queryService = queryService;
+        this.snapshots = snapshots;
+        this.metrics = metrics;
     }
 
     @Override
     public void run() {
-        System.out.println("[ResolverService] Started.");
+        LOG.info("Shard {} started.", shardId);
+        snapshots.batchCurrentThread();
         while (!Thread.currentThread().isInterrupted()) {
-            ClientCommand command = null;
             try {
-                command = controlQueue.take();
-
-                switch (command.commandType()) {
-                    case CONNECT:
-                        handleConnect(command.channel(), command.payload());
-                        break;
-                    case DISCONNECT:
-                        handleDisconnect(command.channel());
-                        break;
-                    case MESSAGE:
-                        handleClientMessage(command.channel(), command.payload());
-                        break;
-                }
-            } catch (Exception e) {
-                System.err.println("[ResolverService] CRITICAL ERROR processing command: " + e.getMessage());
-                e.printStackTrace();
-
-                if (command != null) {
-                    broadcastService.sendError(
-                            command.channel(),
-                            500,
-                            (command.payload() != null ? command.payload() : "UNKNOWN"),
-                            "An internal server error occurred while processing your request."
-                    );
+                int processed = drainHandoffs() + drainLanes();
+                snapshots.publish(); // One snapshot per pass; QueryService publishes earlier before a query
+                if (processed == 0) {
+                    waitStrategy.await(hasWork);
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
         }
-        System.out.println("[ResolverService] Stopped.");
+        LOG.info("Shard {} stopped.", shardId);
     }
 
-    private void handleConnect(Channel channel, String initialUsername) {
-        String clientId = "user-" + UUID.randomUUID().toString().substring(0, 8);
+    /**
+     * Runs queued hand-offs from other shards, up to one batch.
+     */
+    private int drainHandoffs() {
+        return drain(handoffs, batchSize);
+    }
+
+    private int drain(Queue<ClientCommand> mailbox, int limit) {
+        int drained = 0;
+        ClientCommand command;
+        while (drained < limit && (command = mailbox.poll()) != null) {
+            drained++;
+            process(command);
+        }
+        return drained;
+    }
+
+    /**
+     * One weighted round over the lanes, highest priority first. Each lane runs at most its
+     * share of a batch, so a flood on one lane delays the others by a bounded amount, and a
+     * lane with nothing to do leaves its share to the next pass.
+     */
+    private int drainLanes() {
+        int drained = 0;
+        for (int i = 0; i < lanes.length; i++) {
+            drained += (lanes[i] != null)
+                    ? lanes[i].drain(this::process, quotas[i])
+                    : drain(lifecycle, quotas[i]);
+        }
+        return drained;
+    }
+
+    /**
+     * Runs the lifecycle mailbox to empty if {@code channel} has no client yet. The gateway
+     * queues a connection's CONNECT or RESUME before reading any of its frames, so once one of
+     * its lane commands is visible here, so is that lifecycle command. Draining the mailbox
+     * then registers the client before its first command runs, as the single queue used to.
+     */
+    private void awaitRegistration(Channel channel) {
+        if (clientRegistry.getClientId(channel) == null) {
+            drain(lifecycle, Integer.MAX_VALUE);
+        }
+    }
 
-        clientRegistry.registerClient(clientId, channel);
+    private boolean isIdle() {
+        if (!lifecycle.isEmpty()) {
+            return false;
+        }
+        for (MpscRingBuffer<ClientCommand> lane : lanes) {
+            if (lane != null && !lane.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void process(ClientCommand command) {
+        try {
+            switch (command.commandType()) {
+                case CONNECT:
+                    handleConnect(command.channel(), command.payload());
+                    break;
+                case RESUME:
+                    handleResume(command.channel(), command.payload());
+                    break;
+                case DISCONNECT:
+                    handleDisconnect(command.channel());
+                    break;
+                case MESSAGE:
+                    awaitRegistration(command.channel());
+                    runTimed(new CommandTiming(commandType(command.parsedCommand()), System.nanoTime(), metrics),
+                            () -> handleClientMessage(command.channel(), command.parsedCommand()));
+                    break;
+                case HANDOFF:
+                    if (command.task() instanceof TimedTask timed) {
+                        runTimed(timed.timing(), timed.task());
+                    } else {
+                        command.task().run();
+                    }
+                    break;
+            }
+        } catch (Exception e) {
+            LOG.error("CRITICAL ERROR processing command: {}", e.getMessage(), e);
+
+            if (command.channel() != null) {
+                broadcastService.sendError(
+                        command.channel(),
+                        500,
+                        describe(command),
+                        "An internal server error occurred while processing your request."
+                );
+            }
+        }
+    }
+
+    /**
+     * What the client sent, for the originalCommand field of an error reply.
+     */
+    private static String describe(ClientCommand command) {
+        if (command.parsedCommand() != null) {
+            return command.parsedCommand().commandString();
+        }
+        return (command.payload() != null) ? command.payload() : "UNKNOWN";
+    }
+
+    private static ClientCommandType commandType(ParsedCommand command) {
+        return (command != null) ? command.command() : ClientCommandType.UNKNOWN;
+    }
+
+    /**
+     * Runs one piece of a client command's work with its timing current, so hand-offs it makes are timed too.
+     */
+    private void runTimed(CommandTiming commandTiming, Runnable work) {
+        CommandTiming previous = timing;
+        timing = commandTiming;
+        try {
+            work.run();
+        } finally {
+            timing = previous;
+            commandTiming.done();
+        }
+    }
+
+    /**
+     * Adds a piece of work, finished elsewhere, to the current command's timing.
+     * @return What to call when that piece is done.
+     */
+    private Runnable forkTiming() {
+        CommandTiming current = timing;
+        if (current == null) {
+            return () -> {};
+        }
+        current.fork();
+        return current::done;
+    }
+
+    // --- Shard hand-off helpers (see ShardRouter for the ownership rules) ---
+
+    private void onShard(int targetShard, Runnable task) {
+        if (targetShard == shardId) {
+            task.run();
+        } else if (timing != null) {
+            timing.fork();
+            shardRouter.handOff(targetShard, new TimedTask(timing, task));
+        } else {
+            shardRouter.handOff(targetShard, task);
+        }
+    }
+
+    private void onRoomShard(String roomId, Runnable task) {
+        onShard(shardRouter.shardOfRoom(roomId), task);
+    }
+
+    private void onPairShard(String clientId1, String clientId2, Runnable task) {
+        onShard(shardRouter.shardOfPair(clientId1, clientId2), task);
+    }
+
+    private void handleConnect(Channel channel, String initialUsername) {
+        String clientId = clientRegistry.registerClient(channel);
 
         // --- Use initial username or default to client ID ---
         String finalUsername = (initialUsername != null && !initialUsername.isBlank())
@@ -87,11 +314,16 @@ public class ResolverService implements Runnable {
         clientRegistry.setUsername(clientId, finalUsername);
 
         // --- Send personalized welcome message ---
-        broadcastService.sendSystemMessage(channel, "WELCOME",
-                "Welcome, " + finalUsername + "! Your ID is: " + clientId);
+        String welcome = "Welcome, " + finalUsername + "! Your ID is: " + clientId;
+        if (sessionService != null) {
+            String token = sessionService.open(clientId, channel);
+            broadcastService.sendSystemMessage(channel, "WELCOME", welcome, Map.of("clientId", clientId, "resumeToken", token));
+        } else {
+            broadcastService.sendSystemMessage(channel, "WELCOME", welcome);
+        }
 
         broadcastService.sendSystemMessage(channel, "HELP",
-                "Commands: /set_name, /create, /join, /leave_room, /dm, /say, /list, /add_friend, ...");
+                "Commands: /set_name, /create, /join, /leave_room, /dm, /say, /history, /list, /add_friend, ...");
 
         Set<String> pendingRequests = friendService.listPendingIncomingRequests(clientId);
         if (!pendingRequests.isEmpty()) {
@@ -99,43 +331,98 @@ public class ResolverService implements Runnable {
                     "You have pending friend requests from: " + pendingRequests);
         }
 
-        System.out.println("[ResolverService] Client connected: " + clientId + " (Name: " + finalUsername + ")");
+        CONNECT_LOG.info("Client connected: {} (Name: {})", clientId, finalUsername);
+    }
+
+    /**
+     * Moves a client's session onto this new connection. The client keeps its ID, name and
+     * rooms, nobody is told it was gone, and it receives what was sent to it meanwhile.
+     * An unknown or expired token gets a fresh connection instead.
+     */
+    private void handleResume(Channel channel, String token) {
+        SessionService.Resumed resumed = (sessionService != null)
+                ? sessionService.resume(token, channel, r -> {
+                    broadcastService.sendSystemMessage(channel, "RESUMED",
+                            "Welcome back, " + clientRegistry.getUsername(r.clientId()) + "! " + r.missed().size() + " missed message(s) follow"
+                                    + (r.dropped() > 0 ? "; " + r.dropped() + " older one(s) were lost." : "."),
+                            Map.of("clientId", r.clientId(), "resumeToken", r.token(), "missed", r.missed().size(), "dropped", r.dropped()));
+                    broadcastService.replay(channel, r.missed());
+                })
+                : null;
+
+        if (resumed == null) {
+            broadcastService.sendSystemMessage(channel, "RESUME_FAILED", "Your session could not be resumed. Connecting as a new client.");
+            handleConnect(channel, null);
+            return;
+        }
+
+        clientRegistry.rebindClient(resumed.clientId(), channel);
+        if (resumed.previous() != channel && resumed.previous().isOpen()) {
+            // The client reconnected before its old connection was noticed as dead.
+            resumed.previous().close();
+        }
+        CONNECT_LOG.info("Client resumed: {} ({} missed, {} dropped)", resumed.clientId(), resumed.missed().size(), resumed.dropped());
     }
 
     private void handleDisconnect(Channel channel) {
         String clientId = clientRegistry.getClientId(channel);
         if (clientId == null) {
-            System.err.println("[ResolverService] Disconnect from unknown channel: " + channel.remoteAddress());
+            // Also the old connection of a client that has since resumed on a new one.
+            LOG.debug("Disconnect from unknown channel: {}", channel.remoteAddress());
+            return;
+        }
+
+        if (sessionService != null) {
+            // Keep the client's ID and rooms so it can resume; it only leaves if the grace period runs out.
+            if (sessionService.detach(clientId, channel, () -> shardRouter.handOff(shardId, () -> removeClient(clientId)))) {
+                DISCONNECT_LOG.info("Client detached: {}", clientId);
+            }
             return;
         }
+        removeClient(clientId);
+    }
 
+    /**
+     * Drops a client from every room and the registry, and tells its current room it left.
+     */
+    private void removeClient(String clientId) {
         String currentContextId = clientRegistry.getClientContext(clientId);
 
-        roomRegistry.removeClientFromAllRooms(clientId);
+        if (shardRouter.shardCount() == 1) {
+            roomRegistry.removeClientFromAllRooms(clientId);
+        } else {
+            // Every shard drops the client from the rooms it owns. Queued after any earlier
+            // join hand-off from this client, so no stale membership can be left behind.
+            for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+                int owner = shard;
+                onShard(owner, () -> roomRegistry.removeClientFromRooms(clientId,
+                        roomId -> shardRouter.shardOfRoom(roomId) == owner));
+            }
+        }
         clientRegistry.unregisterClient(clientId);
 
-        System.out.println("[ResolverService] Client disconnected: " + clientId);
+        DISCONNECT_LOG.info("Client disconnected: {}", clientId);
 
         if (currentContextId != null && currentContextId.startsWith("room-")) {
-            broadcastService.broadcastSystemMessageToRoom(
+            onRoomShard(currentContextId, () -> broadcastService.broadcastSystemMessageToRoom(
                     currentContextId,
                     "USER_LEAVE",
                     "User '" + clientRegistry.getUsername(clientId) + "' (" + clientId + ") has left.", // Use username
                     Map.of("userId", clientId)
-            );
+            ));
         }
     }
 
-    private void handleClientMessage(Channel channel, String rawMessage) {
+    private void handleClientMessage(Channel channel, ParsedCommand command) {
         String clientId = clientRegistry.getClientId(channel);
         if (clientId == null) {
             broadcastService.sendError(channel, 401, "UNKNOWN", "You are not registered. Please reconnect.");
             return;
         }
 
-        ParsedCommand command = commandParser.parse(rawMessage);
+        // The gateway already rejected unknown commands; this only guards other producers.
         if (command == null || command.command() == ClientCommandType.UNKNOWN) {
-            broadcastService.sendError(channel, 400, rawMessage, "Unknown command. Type /help for commands.");
+            broadcastService.sendError(channel, 400, "UNKNOWN", "Unknown command. Type /help for commands.");
             return;
         }
 
@@ -156,28 +443,35 @@ public class ResolverService implements Runnable {
                 handleSay(clientId, command.message());
                 break;
             case LIST:
-                handleList(clientId, command.args());
+            case USER_INFO:
+            case ROOM_INFO:
+                queryService.submit(channel, clientId, command, forkTiming());
                 break;
-            case ADD_FRIEND:
-                handleAddFriend(clientId, command.args().getFirst());
+            case ADD_FRIEND: {
+                String targetId = command.args().getFirst();
+                onPairShard(clientId, targetId, () -> handleAddFriend(clientId, targetId));
                 break;
-            case ACCEPT_FRIEND:
-                handleAcceptFriend(clientId, command.args().getFirst());
+            }
+            case ACCEPT_FRIEND: {
+                String requesterId = command.args().getFirst();
+                onPairShard(clientId, requesterId, () -> handleAcceptFriend(clientId, requesterId));
                 break;
-            case REJECT_FRIEND:
-                handleRejectFriend(clientId, command.args().getFirst());
+            }
+            case REJECT_FRIEND: {
+                String otherId = command.args().getFirst();
+                onPairShard(clientId, otherId, () -> handleRejectFriend(clientId, otherId));
                 break;
-            case REMOVE_FRIEND:
-                handleRemoveFriend(clientId, command.args().getFirst());
+            }
+            case REMOVE_FRIEND: {
+                String friendId = command.args().getFirst();
+                onPairShard(clientId, friendId, () -> handleRemoveFriend(clientId, friendId));
                 break;
+            }
             case SET_NAME:
                 handleSetName(clientId, command.args().get(0));
                 break;
-            case USER_INFO:
-                handleUserInfo(clientId, command.args());
-                break;
-            case ROOM_INFO:
-                handleRoomInfo(clientId, command.args());
+            case HISTORY:
+                handleHistory(clientId, command.args());
                 break;
 
             default:
@@ -192,6 +486,8 @@ public class ResolverService implements Runnable {
             return;
         }
 
+        // A brand-new room is not reachable by anyone else until it is registered,
+        // so it can be created here before its owning shard ever sees it.
         String inviteCode = roomRegistry.createRoom(clientId, roomName);
         String roomId = roomRegistry.getRoomId(inviteCode);
 
@@ -210,7 +506,7 @@ public class ResolverService implements Runnable {
             return;
         }
 
-        String roomId = roomRegistry.joinRoom(clientId, inviteCode);
+        String roomId = roomRegistry.getRoomId(inviteCode);
 
         if (roomId == null) {
             broadcastService.sendError(clientChannel, 404, "JOIN_ROOM", "Error: Invalid invite code.");
@@ -218,15 +514,26 @@ public class ResolverService implements Runnable {
         }
 
         clientRegistry.setClientContext(clientId, roomId);
-        String roomName = roomRegistry.getRoomName(roomId);
 
-        broadcastService.sendSystemMessage(clientChannel, "USER_JOIN", "Successfully joined room: '" + roomName + "'");
-        broadcastService.broadcastSystemMessageToRoom(
-                roomId,
-                "USER_JOIN",
-                "User '" + clientRegistry.getUsername(clientId) + "' (" + clientId + ") has joined the room.", // Use username
-                Map.of("userId", clientId)
-        );
+        onRoomShard(roomId, () -> {
+            if (roomRegistry.joinRoom(clientId, inviteCode) == null) {
+                broadcastService.sendError(clientChannel, 404, "JOIN_ROOM", "Error: Invalid invite code.");
+                return;
+            }
+            String roomName = roomRegistry.getRoomName(roomId);
+
+            broadcastService.sendSystemMessage(clientChannel, "USER_JOIN", "Successfully joined room: '" + roomName + "'");
+            if (historyService != null && clientChannel != null) {
+                // Before the announcement: everything the room sends from here on waits for the history
+                historyService.replayRecent(roomId, clientChannel);
+            }
+            broadcastService.broadcastSystemMessageToRoom(
+                    roomId,
+                    "USER_JOIN",
+                    "User '" + clientRegistry.getUsername(clientId) + "' (" + clientId + ") has joined the room.", // Use username
+                    Map.of("userId", clientId)
+            );
+        });
     }
 
     private void handleLeaveRoom(String clientId) {
@@ -241,17 +548,20 @@ public class ResolverService implements Runnable {
         String roomName = roomRegistry.getRoomName(contextId);
         String username = clientRegistry.getUsername(clientId);
 
-        roomRegistry.leaveRoom(clientId, contextId);
         clientRegistry.setClientContext(clientId, null);
 
-        broadcastService.sendSystemMessage(clientChannel, "ROOM_LEAVE", "You have left room: '" + roomName + "'.");
+        onRoomShard(contextId, () -> {
+            roomRegistry.leaveRoom(clientId, contextId);
 
-        broadcastService.broadcastSystemMessageToRoom(
-                contextId,
-                "USER_LEAVE",
-                "User '" + username + "' (" + clientId + ") has left the room.",
-                Map.of("userId", clientId)
-        );
+            broadcastService.sendSystemMessage(clientChannel, "ROOM_LEAVE", "You have left room: '" + roomName + "'.");
+
+            broadcastService.broadcastSystemMessageToRoom(
+                    contextId,
+                    "USER_LEAVE",
+                    "User '" + username + "' (" + clientId + ") has left the room.",
+                    Map.of("userId", clientId)
+            );
+        });
     }
 
     private void handleDirectMessage(String clientId, String targetClientId) {
@@ -271,6 +581,8 @@ public class ResolverService implements Runnable {
             return;
         }
 
+        // DM sessions never change after creation and DMs are written straight to both
+        // channels, so they need no hand-off regardless of which shards the users live on.
         String dmContextId = roomRegistry.getOrCreateDMSession(clientId, targetClientId);
         clientRegistry.setClientContext(clientId, dmContextId);
 
@@ -293,7 +605,12 @@ public class ResolverService implements Runnable {
         }
 
         if (contextId.startsWith("room-")) {
-            broadcastService.broadcastChatMessage(clientId, contextId, message);
+            onRoomShard(contextId, () -> {
+                ChatMessagePayload sent = broadcastService.broadcastChatMessage(clientId, contextId, message);
+                if (sent != null && historyService != null) {
+                    historyService.append(contextId, sent);
+                }
+            });
         } else if (contextId.startsWith("dm-")) {
             String targetClientId = roomRegistry.getOtherDMUser(contextId, clientId);
             if (targetClientId == null || !clientRegistry.isClientOnline(targetClientId)) {
@@ -304,68 +621,6 @@ public class ResolverService implements Runnable {
         }
     }
 
-    private void handleList(String clientId, List<String> args) {
-        Channel clientChannel = clientRegistry.getChannel(clientId);
-
-        if (args.isEmpty()) {
-            // /list -> list all rooms
-            Collection<RoomRegistryService.RoomInfo> rooms = roomRegistry.getAllRooms();
-            String roomList = rooms.stream()
-                    .map(r -> String.format("  - %s (ID: %s, Members: %d)", r.roomName(), r.roomId(), r.memberCount()))
-                    .collect(Collectors.joining("\n"));
-            broadcastService.sendSystemMessage(clientChannel, "LIST_ROOMS", "Available Rooms:\n" + (roomList.isEmpty() ? "  (None)" : roomList));
-            return;
-        }
-
-        String listType = args.getFirst().toLowerCase();
-        switch (listType) {
-            case "users":
-                String contextId = clientRegistry.getClientContext(clientId);
-                if (contextId == null) {
-                    broadcastService.sendError(clientChannel, 400, "LIST", "Error: You are not in a room.");
-                    return;
-                }
-                Set<String> members = roomRegistry.getRoomMembers(contextId);
-                if (members == null) {
-                    broadcastService.sendError(clientChannel, 404, "LIST", "Error: Could not find members for your current room.");
-                    return;
-                }
-                String userList = members.stream()
-                        .map(id -> "  - " + clientRegistry.getUsername(id) + " (" + id + ")")
-                        .collect(Collectors.joining("\n"));
-                broadcastService.sendSystemMessage(clientChannel, "LIST_USERS", "Users in this room:\n" + userList);
-                break;
-
-            case "friends":
-                Set<String> friends = friendService.listFriends(clientId);
-                String friendList = friends.stream()
-                        .map(id -> "  - " + clientRegistry.getUsername(id) + " (" + id + ") [" + (clientRegistry.isClientOnline(id) ? "Online" : "Offline") + "]")
-                        .collect(Collectors.joining("\n"));
-                broadcastService.sendSystemMessage(clientChannel, "LIST_FRIENDS", "Your Friends:\n" + (friendList.isEmpty() ? "  (None)" : friendList));
-                break;
-
-            case "pending_in":
-                Set<String> pendingIn = friendService.listPendingIncomingRequests(clientId);
-                String pendingInList = pendingIn.stream()
-                        .map(id -> "  - " + clientRegistry.getUsername(id) + " (" + id + ")")
-                        .collect(Collectors.joining("\n"));
-                broadcastService.sendSystemMessage(clientChannel, "LIST_PENDING_IN", "Pending Incoming Requests (use /accept <id>):\n" + (pendingInList.isEmpty() ? "  (None)" : pendingInList));
-                break;
-
-            case "pending_out":
-                Set<String> pendingOut = friendService.listPendingOutgoingRequests(clientId);
-                String pendingOutList = pendingOut.stream()
-                        .map(id -> "  - " + clientRegistry.getUsername(id) + " (" + id + ")")
-                        .collect(Collectors.joining("\n"));
-                broadcastService.sendSystemMessage(clientChannel, "LIST_PENDING_OUT", "Pending Outgoing Requests (use /reject <id> to cancel):\n" + (pendingOutList.isEmpty() ? "  (None)" : pendingOutList));
-                break;
-
-            default:
-                broadcastService.sendError(clientChannel, 400, "LIST", "Usage: /list [users | friends | pending_in | pending_out]");
-                break;
-        }
-    }
-
     private void handleAddFriend(String clientId, String targetClientId) {
         Channel clientChannel = clientRegistry.getChannel(clientId);
 
@@ -480,75 +735,41 @@ public class ResolverService implements Runnable {
 
         String contextId = clientRegistry.getClientContext(clientId);
         if (contextId != null && contextId.startsWith("room-")) {
-            broadcastService.broadcastSystemMessageToRoom(
+            onRoomShard(contextId, () -> broadcastService.broadcastSystemMessageToRoom(
                     contextId,
                     "NAME_CHANGE",
                     "User '" + oldName + "' is now known as '" + newName + "'.",
                     Map.of("userId", clientId, "oldName", oldName, "newName", newName)
-            );
+            ));
         }
     }
 
-    private void handleUserInfo(String clientId, List<String> args) {
+    private void handleHistory(String clientId, List<String> args) {
         Channel clientChannel = clientRegistry.getChannel(clientId);
-        String targetClientId = clientId;
 
-        if (!args.isEmpty()) {
-            targetClientId = args.getFirst();
-        }
-
-        if (!clientRegistry.isClientOnline(targetClientId)) {
-            broadcastService.sendError(clientChannel, 404, "USER_INFO", "Error: User '" + targetClientId + "' is not online.");
+        if (historyService == null) {
+            broadcastService.sendError(clientChannel, 501, "HISTORY", "Room history is disabled on this server.");
             return;
         }
 
-        String username = clientRegistry.getUsername(targetClientId);
-        String currentContext = clientRegistry.getClientContext(targetClientId);
-        FriendshipStatus status = friendService.getFriendshipStatus(clientId, targetClientId);
-
-        StringBuilder info = new StringBuilder();
-        info.append(String.format("--- Info for %s (%s) ---\n", username, targetClientId));
-        info.append(String.format("Status: %s\n", "Online"));
-        info.append(String.format("Current Context: %s\n", (currentContext != null ? currentContext : "None")));
-        if (!clientId.equals(targetClientId)) {
-            info.append(String.format("Friendship: %s\n", (status != null ? status : "None")));
+        String contextId = clientRegistry.getClientContext(clientId);
+        if (contextId == null || !contextId.startsWith("room-")) {
+            broadcastService.sendError(clientChannel, 400, "HISTORY", "Error: You are not currently in a room.");
+            return;
         }
 
-        broadcastService.sendSystemMessage(clientChannel, "USER_INFO_RESULT", info.toString());
-    }
-
-    private void handleRoomInfo(String clientId, List<String> args) {
-        Channel clientChannel = clientRegistry.getChannel(clientId);
-        String roomId;
-
-        if (args.isEmpty()) {
-            roomId = clientRegistry.getClientContext(clientId);
-            if (roomId == null || !roomId.startsWith("room-")) {
-                broadcastService.sendError(clientChannel, 400, "ROOM_INFO", "Error: You are not currently in a room. Use /room_info <room_id>");
+        long before = Long.MAX_VALUE;
+        if (!args.isEmpty()) {
+            try {
+                before = Long.parseLong(args.getFirst());
+            } catch (NumberFormatException e) {
+                broadcastService.sendError(clientChannel, 400, "HISTORY", "Usage: /history [before], where 'before' comes from the previous page.");
                 return;
             }
-        } else {
-            roomId = args.getFirst();
         }
 
-        String roomName = roomRegistry.getRoomName(roomId);
-        if (roomName == null) {
-            broadcastService.sendError(clientChannel, 404, "ROOM_INFO", "Error: Room '" + roomId + "' not found.");
-            return;
+        if (!historyService.replayPage(contextId, clientChannel, before)) {
+            broadcastService.sendError(clientChannel, 503, "HISTORY", "History is busy right now. Please try again.");
         }
-
-        Set<String> members = roomRegistry.getRoomMembers(roomId);
-        String inviteCode = roomRegistry.getInviteCode(roomId);
-
-        assert members != null;
-        String info = String.format("--- Info for Room '%s' ---\n", roomName) +
-                String.format("ID: %s\n", roomId) +
-                String.format("Invite Code: %s\n", (inviteCode != null ? inviteCode : "N/A")) +
-                String.format("Member Count: %d\n", members.size()) +
-                String.format("Members: %s\n", members.stream()
-                        .map(id -> clientRegistry.getUsername(id) + " (" + id + ")")
-                        .collect(Collectors.toSet()));
-
-        broadcastService.sendSystemMessage(clientChannel, "ROOM_INFO_RESULT", info);
     }
-}
\ No newline at end of file
+}
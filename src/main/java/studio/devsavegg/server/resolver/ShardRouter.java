@@ -0,0 +1,224 @@
+package studio.devsavegg.server.resolver;
+
+import io.netty.channel.Channel;
+import studio.devsavegg.server.gateway.ClientCommand;
+import studio.devsavegg.server.queue.MpscRingBuffer;
+import studio.devsavegg.server.queue.WaitStrategy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Routes work to one of N resolver shards, each with its own queue and logic thread.
+ * <p>
+ * Each shard has a bounded {@link MpscRingBuffer} for each of the chat and query {@link Lane}s,
+ * an unbounded lifecycle mailbox, and an unbounded hand-off mailbox fed by other shards.
+ * Chat and queries are shed when their lane is full; connects, resumes and disconnects
+ * must never be lost, and the Netty event loops that submit them must never wait, so they
+ * go to a mailbox that always has room. Keeping hand-offs out of the bounded buffers means
+ * two busy shards can never deadlock waiting for room in each other's queue.
+ * All of a shard's queues share one {@link WaitStrategy}, so work on any of them wakes the shard.
+ * Queries are shed early, once the shard's chat and query backlog reaches
+ * {@link LanePolicy#queryShedDepth()}, so a query flood cannot hold up chat.
+ * <p>
+ * Ownership rules:
+ * <ul>
+ *     <li>A <b>client</b> belongs to the shard picked from its channel. All of its raw commands
+ *     (connect, messages, disconnect) are processed there, in order, and only that shard
+ *     mutates the client's registry entry (username, context).</li>
+ *     <li>A <b>room</b> belongs to the shard picked from its room ID. Membership changes and
+ *     broadcasts for the room only run there, so every member sees room events in one order.</li>
+ *     <li>A <b>friend pair</b> belongs to the shard picked from both user IDs, so requests,
+ *     accepts and removals between two users never race each other.</li>
+ * </ul>
+ * Hand-off protocol: when a shard needs to act on state it does not own, it wraps the
+ * action in a {@link ClientCommand#handoff(Runnable)} and puts it in the owner's mailbox.
+ * If the current shard already owns the state, the action runs inline.
+ * <p>
+ * Ordering is only FIFO within each lane and within each mailbox. A shard drains its
+ * hand-off mailbox and its lanes separately, so nothing orders a hand-off against the
+ * commands waiting in the target shard's lanes, or the lanes against each other. What does
+ * hold:
+ * <ul>
+ *     <li>Hand-offs from one shard to another run in the order they were sent. A client's
+ *     chat commands run in order on its shard, and its hand-offs for one room or pair all go
+ *     through the same mailbox. So a SAY never overtakes the same client's earlier JOIN.</li>
+ *     <li>Everything that touches a room runs on one thread, so all members see its events
+ *     in one order.</li>
+ *     <li>A connection's commands never run before its CONNECT or RESUME: a command from a
+ *     channel with no client yet first runs the lifecycle mailbox to empty, and the gateway
+ *     queues the CONNECT or RESUME before it reads any of the connection's frames.</li>
+ * </ul>
+ * What does not hold: work for one room that starts on different shards has no order
+ * beyond that. A client's query may run before a state change it sent earlier, and a
+ * DISCONNECT may run before its connection's last commands. Those commands then find no
+ * client and are dropped, as if they had arrived after it.
+ * <p>
+ * With a single shard every action is local and the behaviour is identical to the
+ * original single-threaded resolver.
+ */
+public class ShardRouter {
+    private static final Lane[] LANES = Lane.values();
+
+    private final List<MpscRingBuffer<ClientCommand>[]> queues; // The LIFECYCLE slot is unused
+    private final List<WaitStrategy> waitStrategies;
+    private final List<Queue<ClientCommand>> lifecycle;
+    private final List<Queue<ClientCommand>> handoffs;
+    private final LanePolicy lanePolicy;
+    private final LongAdder[] shed = new LongAdder[LANES.length];
+
+    public ShardRouter(int shardCount, int queueCapacity, String waitStrategy) {
+        this(shardCount, queueCapacity, waitStrategy, LanePolicy.DEFAULT);
+    }
+
+    /**
+     * @param shardCount Number of resolver shards.
+     * @param queueCapacity Capacity of the chat and query lanes of each shard.
+     * @param waitStrategy Name of the {@link WaitStrategy} each resolver idles with.
+     * @param lanePolicy Lane weights and the query shedding threshold.
+     */
+    @SuppressWarnings("unchecked")
+    public ShardRouter(int shardCount, int queueCapacity, String waitStrategy, LanePolicy lanePolicy) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("shardCount must be at least 1, got " + shardCount);
+        }
+        this.queues = new ArrayList<>(shardCount);
+        this.waitStrategies = new ArrayList<>(shardCount);
+        this.lifecycle = new ArrayList<>(shardCount);
+        this.handoffs = new ArrayList<>(shardCount);
+        this.lanePolicy = lanePolicy;
+        for (int i = 0; i < shardCount; i++) {
+            WaitStrategy strategy = WaitStrategy.fromName(waitStrategy);
+            MpscRingBuffer<ClientCommand>[] lanes = new MpscRingBuffer[LANES.length];
+            for (Lane lane : LANES) {
+                if (lane != Lane.LIFECYCLE) {
+                    lanes[lane.ordinal()] = new MpscRingBuffer<>(queueCapacity, strategy);
+                }
+            }
+            queues.add(lanes);
+            waitStrategies.add(strategy);
+            lifecycle.add(new ConcurrentLinkedQueue<>());
+            handoffs.add(new ConcurrentLinkedQueue<>());
+        }
+        for (Lane lane : LANES) {
+            shed[lane.ordinal()] = new LongAdder();
+        }
+    }
+
+    public int shardCount() {
+        return queues.size();
+    }
+
+    /**
+     * The bounded buffer of a chat or query lane. The lifecycle lane is {@link #lifecycle(int)}.
+     */
+    public MpscRingBuffer<ClientCommand> queue(int shard, Lane lane) {
+        if (lane == Lane.LIFECYCLE) {
+            throw new IllegalArgumentException("The lifecycle lane is a mailbox, not a ring buffer");
+        }
+        return queues.get(shard)[lane.ordinal()];
+    }
+
+    public Queue<ClientCommand> lifecycle(int shard) {
+        return lifecycle.get(shard);
+    }
+
+    /**
+     * Commands waiting on one lane of a shard, for metrics.
+     */
+    public int depth(int shard, Lane lane) {
+        return (lane == Lane.LIFECYCLE) ? lifecycle.get(shard).size() : queue(shard, lane).size();
+    }
+
+    /**
+     * How a shard idles; shared by all of its lanes.
+     */
+    public WaitStrategy waitStrategy(int shard) {
+        return waitStrategies.get(shard);
+    }
+
+    public LanePolicy lanePolicy() {
+        return lanePolicy;
+    }
+
+    /** Commands refused on a lane because the shard was backed up. */
+    public long shed(Lane lane) {
+        return shed[lane.ordinal()].sum();
+    }
+
+    public Queue<ClientCommand> handoffs(int shard) {
+        return handoffs.get(shard);
+    }
+
+    /**
+     * The shard that owns the client behind this channel.
+     */
+    public int shardOf(Channel channel) {
+        return shardFor(channel.id().hashCode());
+    }
+
+    /**
+     * The shard that owns a room (or DM session).
+     */
+    public int shardOfRoom(String roomId) {
+        return shardFor(roomId.hashCode());
+    }
+
+    /**
+     * The shard that owns the relationship between two users. Symmetric in its arguments.
+     */
+    public int shardOfPair(String clientId1, String clientId2) {
+        return shardFor(clientId1.hashCode() ^ clientId2.hashCode());
+    }
+
+    /**
+     * Queues a chat or query command from the gateway on its client's shard and lane, if there is room.
+     * Lifecycle commands go through {@link #submit} instead.
+     * @return false if the command was shed: its lane is full, or it is a query and the shard is backed up.
+     */
+    public boolean offer(ClientCommand command) {
+        Lane lane = Lane.of(command);
+        if (lane == Lane.LIFECYCLE) {
+            submit(command);
+            return true;
+        }
+        MpscRingBuffer<ClientCommand>[] lanes = queues.get(shardOf(command.channel()));
+        if (lane == Lane.QUERY && lanePolicy.queryShedDepth() > 0
+                && lanes[Lane.CHAT.ordinal()].size() + lanes[Lane.QUERY.ordinal()].size() >= lanePolicy.queryShedDepth()) {
+            shed[lane.ordinal()].increment();
+            return false;
+        }
+        if (!lanes[lane.ordinal()].offer(command)) {
+            shed[lane.ordinal()].increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Queues a command that must not be lost (connect, resume, disconnect) on its client's
+     * shard. Never blocks, so it is safe to call from an event loop.
+     */
+    public void submit(ClientCommand command) {
+        int shard = shardOf(command.channel());
+        lifecycle.get(shard).add(command);
+        waitStrategies.get(shard).signal();
+    }
+
+    /**
+     * Queues an action in another shard's mailbox and wakes that shard.
+     */
+    public void handOff(int shard, Runnable task) {
+        handoffs.get(shard).add(ClientCommand.handoff(task));
+        waitStrategies.get(shard).signal();
+    }
+
+    private int shardFor(int hash) {
+        // Spread the bits so sequential hashes do not cluster on one shard.
+        int h = hash ^ (hash >>> 16);
+        return Math.floorMod(h, queues.size());
+    }
+}
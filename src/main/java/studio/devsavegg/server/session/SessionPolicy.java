@@ -0,0 +1,27 @@
+package studio.devsavegg.server.session;
+
+/**
+ * How long a dropped connection can be resumed, and how much it may miss meanwhile.
+ *
+ * @param graceMillis How long a disconnected client keeps its ID and rooms (0 disables resumption).
+ * @param bufferSize  Payloads kept for a disconnected client. Once full, the oldest are dropped.
+ */
+public record SessionPolicy(
+        long graceMillis,
+        int bufferSize
+) {
+    public static final SessionPolicy DEFAULT = new SessionPolicy(30_000, 256);
+
+    public SessionPolicy {
+        if (graceMillis < 0) {
+            throw new IllegalArgumentException("graceMillis must not be negative, got " + graceMillis);
+        }
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("bufferSize must be at least 1, got " + bufferSize);
+        }
+    }
+
+    public boolean enabled() {
+        return graceMillis > 0;
+    }
+}
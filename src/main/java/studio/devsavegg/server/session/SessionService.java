@@ -0,0 +1,66 @@
+package studio.devsavegg.server.session;
+
+import io.netty.channel.Channel;
+import studio.devsavegg.server.broadcaster.ServerPayload;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+public interface SessionService {
+
+    /**
+     * What a client missed while it was disconnected, handed over when it resumes.
+     *
+     * @param clientId The resumed client's ID.
+     * @param token    The new resume token; the one the client presented is no longer valid.
+     * @param previous The connection the session was taken from. Still open if the client
+     *                 reconnected before the server noticed the old one was gone.
+     * @param missed   Payloads addressed to the client while it was disconnected, oldest first.
+     * @param dropped  Payloads lost because the buffer was full.
+     */
+    record Resumed(String clientId, String token, Channel previous, List<ServerPayload> missed, int dropped) {}
+
+    /**
+     * Starts a resumable session for a client that just connected.
+     * @param clientId The client's ID.
+     * @param channel The client's channel.
+     * @return The token the client presents to resume the session.
+     */
+    String open(String clientId, Channel channel);
+
+    /**
+     * Keeps the session of a client whose connection dropped for the grace period.
+     * Payloads addressed to it are buffered until it resumes or the period runs out.
+     * @param clientId The client's ID.
+     * @param channel The connection that dropped.
+     * @param onExpiry Runs (on a timer thread) if the client has not resumed in time.
+     * @return false if the session no longer belongs to this channel: the client has already
+     *         resumed elsewhere, so the disconnect is stale and must be ignored.
+     */
+    boolean detach(String clientId, Channel channel, Runnable onExpiry);
+
+    /**
+     * Moves a session to a new connection.
+     * {@code onResume} runs before any payload can be sent to the new channel, so whatever it
+     * dispatches reaches the client ahead of every later message.
+     * @param token The token from the client's last WELCOME or RESUMED message.
+     * @param channel The new connection.
+     * @param onResume Receives the missed payloads; runs on the calling thread.
+     * @return The resumed session, or null if the token is unknown or has expired.
+     */
+    Resumed resume(String token, Channel channel, Consumer<Resumed> onResume);
+
+    /**
+     * Buffers a payload for a client whose connection is down.
+     * @param clientId The addressee.
+     * @param payload The payload that could not be sent.
+     * @return null if the payload was buffered (or the client has no session); otherwise the
+     *         client's new channel, because it resumed after the caller looked its channel up.
+     */
+    Channel buffer(String clientId, ServerPayload payload);
+
+    /**
+     * Stops the expiry timer. Sessions still detached are not expired.
+     */
+    void shutdown();
+}
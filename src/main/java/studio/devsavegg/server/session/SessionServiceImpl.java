@@ -0,0 +1,249 @@
+package studio.devsavegg.server.session;
+
+import io.netty.channel.Channel;
+import studio.devsavegg.server.broadcaster.ServerPayload;
+import studio.devsavegg.server.log.Logger;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Resumable sessions, one per connected client, indexed by client ID and by resume token.
+ * <p>
+ * A session is attached to one channel at a time. When that channel drops it is detached,
+ * and every payload addressed to the client goes into a fixed-size ring that overwrites its
+ * oldest entry once full. Payloads are kept as the immutable records they were built from
+ * and only encoded when replayed, so the new connection may use another wire format.
+ * <p>
+ * Each session has its own lock. Attach, detach, buffering and expiry all hold it, so a
+ * payload is either in the ring a resume drains or sent to the new channel after the replay.
+ * A "Session-Expiry" timer ends sessions that are still detached after the grace period.
+ * Every detach bumps the session's epoch, so the timer of an earlier detach does nothing.
+ */
+public class SessionServiceImpl implements SessionService {
+    private static final Logger LOG = Logger.get("Sessions");
+    private static final int TOKEN_BYTES = 16;
+
+    private static final class Session {
+        final String clientId;
+        final ServerPayload[] ring;
+        String token;
+        Channel channel;
+        boolean detached;
+        boolean closed;
+        int epoch;
+        int head; // Index of the oldest buffered payload
+        int size;
+        int dropped;
+
+        Session(String clientId, String token, Channel channel, int bufferSize) {
+            this.clientId = clientId;
+            this.token = token;
+            this.channel = channel;
+            this.ring = new ServerPayload[bufferSize];
+        }
+
+        void add(ServerPayload payload) {
+            int tail = (head + size) % ring.length;
+            ring[tail] = payload;
+            if (size < ring.length) {
+                size++;
+            } else {
+                head = (head + 1) % ring.length; // Overwrote the oldest
+                dropped++;
+            }
+        }
+
+        List<ServerPayload> drain() {
+            List<ServerPayload> missed = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                int index = (head + i) % ring.length;
+                missed.add(ring[index]);
+                ring[index] = null;
+            }
+            head = 0;
+            size = 0;
+            return missed;
+        }
+    }
+
+    private final SessionPolicy policy;
+    private final Map<String, Session> byClient = new ConcurrentHashMap<>();
+    private final Map<String, Session> byToken = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+    private final ScheduledExecutorService expiry = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "Session-Expiry");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final AtomicInteger detachedCount = new AtomicInteger();
+    private final LongAdder resumed = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    public SessionServiceImpl(SessionPolicy policy) {
+        this.policy = policy;
+        LOG.info("Sessions can be resumed for {} s, buffering up to {} payload(s)", policy.graceMillis() / 1000, policy.bufferSize());
+    }
+
+    @Override
+    public String open(String clientId, Channel channel) {
+        Session session = new Session(clientId, newToken(), channel, policy.bufferSize());
+        byToken.put(session.token, session);
+        Session previous = byClient.put(clientId, session);
+        if (previous != null) {
+            byToken.remove(previous.token); // Only if an ID was reused before its session ended
+        }
+        return session.token;
+    }
+
+    @Override
+    public boolean detach(String clientId, Channel channel, Runnable onExpiry) {
+        Session session = byClient.get(clientId);
+        if (session == null) {
+            return false;
+        }
+
+        int epoch;
+        synchronized (session) {
+            if (session.closed || session.channel != channel) {
+                return false;
+            }
+            if (!session.detached) {
+                session.detached = true;
+                detachedCount.incrementAndGet();
+            }
+            epoch = ++session.epoch;
+        }
+
+        try {
+            expiry.schedule(() -> expire(session, epoch, onExpiry), policy.graceMillis(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down; the session goes away with the server.
+        }
+        return true;
+    }
+
+    @Override
+    public Resumed resume(String token, Channel channel, Consumer<Resumed> onResume) {
+        Session session = (token != null) ? byToken.get(token) : null;
+        if (session == null) {
+            return null;
+        }
+
+        synchronized (session) {
+            if (session.closed || !token.equals(session.token)) {
+                return null;
+            }
+            if (session.detached) {
+                session.detached = false;
+                detachedCount.decrementAndGet();
+            }
+            session.epoch++; // Cancels a pending expiry
+
+            // A token is good for one resume; the client gets a fresh one.
+            byToken.remove(session.token);
+            session.token = newToken();
+            byToken.put(session.token, session);
+
+            Channel previous = session.channel;
+            session.channel = channel;
+            Resumed result = new Resumed(session.clientId, session.token, previous, session.drain(), session.dropped);
+            session.dropped = 0;
+            resumed.increment();
+
+            // Still under the lock: a payload buffered concurrently is either in this replay or
+            // handed to the new channel by buffer() after it.
+            onResume.accept(result);
+            return result;
+        }
+    }
+
+    @Override
+    public Channel buffer(String clientId, ServerPayload payload) {
+        Session session = byClient.get(clientId);
+        if (session == null) {
+            return null;
+        }
+
+        synchronized (session) {
+            if (session.closed) {
+                return null;
+            }
+            if (session.channel.isOpen()) {
+                return session.channel;
+            }
+            int before = session.dropped;
+            session.add(payload);
+            if (session.dropped != before) {
+                dropped.increment();
+            }
+            return null;
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        expiry.shutdownNow();
+    }
+
+    /**
+     * Ends the session if it is still detached from the same disconnect.
+     */
+    private void expire(Session session, int epoch, Runnable onExpiry) {
+        synchronized (session) {
+            if (session.closed || !session.detached || session.epoch != epoch) {
+                return;
+            }
+            session.closed = true;
+            session.detached = false;
+            session.drain();
+        }
+        detachedCount.decrementAndGet();
+        byClient.remove(session.clientId, session);
+        byToken.remove(session.token, session);
+        expired.increment();
+        LOG.debug("Session of {} expired", session.clientId);
+        onExpiry.run();
+    }
+
+    private String newToken() {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        return HexFormat.of().formatHex(bytes);
+    }
+
+    // --- Metrics ---
+
+    /** Sessions waiting to be resumed. */
+    public int detachedCount() {
+        return detachedCount.get();
+    }
+
+    /** Sessions resumed since startup. */
+    public long resumed() {
+        return resumed.sum();
+    }
+
+    /** Sessions that ran out their grace period since startup. */
+    public long expired() {
+        return expired.sum();
+    }
+
+    /** Payloads dropped because a disconnected client's buffer was full. */
+    public long dropped() {
+        return dropped.sum();
+    }
+}
@@ -0,0 +1,192 @@
+package studio.devsavegg.server.transport;
+
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.IoHandlerFactory;
+import io.netty.channel.MultiThreadIoEventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollIoHandler;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioIoHandler;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioChannelOption;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.channel.uring.IoUring;
+import io.netty.channel.uring.IoUringChannelOption;
+import io.netty.channel.uring.IoUringIoHandler;
+import io.netty.channel.uring.IoUringServerSocketChannel;
+import io.netty.channel.uring.IoUringSocketChannel;
+import studio.devsavegg.server.log.Logger;
+
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+
+/**
+ * The Netty I/O transports the server can run on, in order of preference.
+ * <p>
+ * The native transports need Linux and the bundled native libraries; {@link #select(String)}
+ * falls back to the next available transport, ending with {@link #NIO}, which works everywhere.
+ * Every transport runs on a {@link MultiThreadIoEventLoopGroup}, so the rest of the server does
+ * not care which one was picked.
+ */
+public enum Transport {
+    IO_URING {
+        @Override
+        public boolean isAvailable() {
+            return IoUring.isAvailable();
+        }
+
+        @Override
+        Throwable unavailabilityCause() {
+            return IoUring.unavailabilityCause();
+        }
+
+        @Override
+        IoHandlerFactory ioHandlerFactory() {
+            return IoUringIoHandler.newFactory();
+        }
+
+        @Override
+        public Class<? extends ServerChannel> serverChannelClass() {
+            return IoUringServerSocketChannel.class;
+        }
+
+        @Override
+        public Class<? extends SocketChannel> socketChannelClass() {
+            return IoUringSocketChannel.class;
+        }
+
+        @Override
+        public ChannelOption<Boolean> reusePortOption() {
+            return IoUringChannelOption.SO_REUSEPORT;
+        }
+    },
+    EPOLL {
+        @Override
+        public boolean isAvailable() {
+            return Epoll.isAvailable();
+        }
+
+        @Override
+        Throwable unavailabilityCause() {
+            return Epoll.unavailabilityCause();
+        }
+
+        @Override
+        IoHandlerFactory ioHandlerFactory() {
+            return EpollIoHandler.newFactory();
+        }
+
+        @Override
+        public Class<? extends ServerChannel> serverChannelClass() {
+            return EpollServerSocketChannel.class;
+        }
+
+        @Override
+        public Class<? extends SocketChannel> socketChannelClass() {
+            return EpollSocketChannel.class;
+        }
+
+        @Override
+        public ChannelOption<Boolean> reusePortOption() {
+            return EpollChannelOption.SO_REUSEPORT;
+        }
+    },
+    NIO {
+        @Override
+        public boolean isAvailable() {
+            return true;
+        }
+
+        @Override
+        Throwable unavailabilityCause() {
+            return null;
+        }
+
+        @Override
+        IoHandlerFactory ioHandlerFactory() {
+            return NioIoHandler.newFactory();
+        }
+
+        @Override
+        public Class<? extends ServerChannel> serverChannelClass() {
+            return NioServerSocketChannel.class;
+        }
+
+        @Override
+        public Class<? extends SocketChannel> socketChannelClass() {
+            return NioSocketChannel.class;
+        }
+
+        @Override
+        public ChannelOption<Boolean> reusePortOption() {
+            // The JDK exposes SO_REUSEPORT only on platforms that have it (Linux, macOS).
+            return NIO_REUSE_PORT ? NioChannelOption.of(StandardSocketOptions.SO_REUSEPORT) : null;
+        }
+    };
+
+    private static final Logger LOG = Logger.get("Transport");
+    private static final boolean NIO_REUSE_PORT = nioSupportsReusePort();
+
+    public abstract boolean isAvailable();
+
+    abstract Throwable unavailabilityCause();
+
+    abstract IoHandlerFactory ioHandlerFactory();
+
+    public abstract Class<? extends ServerChannel> serverChannelClass();
+
+    public abstract Class<? extends SocketChannel> socketChannelClass();
+
+    /**
+     * The option that enables {@code SO_REUSEPORT} on a server channel, or null if unsupported.
+     */
+    public abstract ChannelOption<Boolean> reusePortOption();
+
+    /**
+     * Creates an event loop group for this transport.
+     * @param threads Number of event loops; 0 uses Netty's default (twice the CPU count).
+     */
+    public EventLoopGroup newEventLoopGroup(int threads) {
+        return new MultiThreadIoEventLoopGroup(threads, ioHandlerFactory());
+    }
+
+    /**
+     * Resolves the transport to run on.
+     * @param name {@code auto} for the best available transport, or one of {@code io_uring},
+     *             {@code epoll}, {@code nio} (case-insensitive).
+     * @return The requested transport if it is available, otherwise the next available one.
+     */
+    public static Transport select(String name) {
+        Transport requested = name.equalsIgnoreCase("auto")
+                ? IO_URING
+                : Transport.valueOf(name.trim().toUpperCase());
+
+        Transport[] all = values();
+        for (int i = requested.ordinal(); i < all.length; i++) {
+            Transport candidate = all[i];
+            if (candidate.isAvailable()) {
+                return candidate;
+            }
+            if (candidate == requested && !name.equalsIgnoreCase("auto")) {
+                LOG.warn("{} transport unavailable ({}), falling back", candidate, candidate.unavailabilityCause());
+            } else {
+                LOG.info("{} transport unavailable ({}), trying the next one", candidate, candidate.unavailabilityCause());
+            }
+        }
+        return NIO;
+    }
+
+    private static boolean nioSupportsReusePort() {
+        try (ServerSocketChannel probe = ServerSocketChannel.open()) {
+            return probe.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+        } catch (IOException | UnsupportedOperationException e) {
+            return false;
+        }
+    }
+}